@@ -0,0 +1,64 @@
+package com.datalogic.apossampleapp.simulator;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.datalogic.apossampleapp.config.AposConfigLoader;
+import com.datalogic.apossampleapp.config.AposEntry;
+import com.datalogic.dlapos.commons.control.BaseControl;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Creates the simulated controls declared in apos-debug.json, i.e. the entries whose factory class is this class.
+ * <p>
+ * Debug builds only: the release build has a factory that simulates nothing. Entries are streamed from
+ * apos-debug.json only for the logical names actually asked for.
+ */
+public final class SimulatedDeviceFactory {
+    private static final String CONFIG_FILE = "apos-debug.json";
+    private static final AposConfigLoader _loader = new AposConfigLoader();
+    private static final Map<String, AposEntry> _entries = new HashMap<>();
+
+    private SimulatedDeviceFactory() {
+    }
+
+    /**
+     * @return a new simulated control for the logical name, or null if the logical name is not simulated.
+     */
+    public static BaseControl create(String logicalName, Context context) {
+        AposEntry entry = entry(logicalName, context);
+        if (entry == null)
+            return null;
+        if (SimulatedScale.class.getName().equals(entry.getServiceClass()))
+            return new SimulatedScale(SimulationConfig.fromProperties(entry.getProperties()));
+        return new SimulatedScanner(SimulationConfig.fromProperties(entry.getProperties()));
+    }
+
+    public static boolean isSimulated(String logicalName, Context context) {
+        return entry(logicalName, context) != null;
+    }
+
+    /**
+     * @return the entry of the logical name if it is simulated, null otherwise.
+     */
+    private static synchronized AposEntry entry(String logicalName, Context context) {
+        if (!_entries.containsKey(logicalName)) {
+            AposEntry entry = null;
+            try (Reader reader = new InputStreamReader(context.getAssets().open(CONFIG_FILE), StandardCharsets.UTF_8)) {
+                entry = _loader.load(reader, logicalName);
+            } catch (IOException e) {
+                Log.e("Example", "Reading simulated devices: ", e);
+            }
+            if (entry != null && !SimulatedDeviceFactory.class.getName().equals(entry.getFactoryClass()))
+                entry = null;
+            _entries.put(logicalName, entry);
+        }
+        return _entries.get(logicalName);
+    }
+}
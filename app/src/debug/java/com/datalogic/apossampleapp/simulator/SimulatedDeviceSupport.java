@@ -0,0 +1,300 @@
+package com.datalogic.apossampleapp.simulator;
+
+import com.datalogic.apossampleapp.firmware.FirmwareHeader;
+import com.datalogic.dlapos.androidpos.common.DLSJposConst;
+import com.datalogic.dlapos.commons.constant.CommonsConstants;
+import com.datalogic.dlapos.commons.event.BaseEvent;
+import com.datalogic.dlapos.commons.event.DataEvent;
+import com.datalogic.dlapos.commons.event.ErrorEvent;
+import com.datalogic.dlapos.commons.event.EventCallback;
+import com.datalogic.dlapos.commons.event.StatusUpdateEvent;
+import com.datalogic.dlapos.commons.support.APosException;
+import com.datalogic.dlapos.commons.upos.RequestListener;
+import com.datalogic.dlapos.control.event.EventListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * State, listeners and event construction shared by the simulated controls.
+ */
+class SimulatedDeviceSupport {
+    // UPOS values of E_FAILURE, EL_INPUT and ER_CLEAR.
+    private static final int ERROR_FAILURE = 111;
+    private static final int ERROR_LOCUS_INPUT = 2;
+    private static final int ERROR_RESPONSE_CLEAR = 12;
+    // UPOS values of E_CLOSED, E_NOTCLAIMED, E_DISABLED and E_OFFLINE.
+    private static final int ERROR_CLOSED = 101;
+    private static final int ERROR_NOT_CLAIMED = 103;
+    private static final int ERROR_DISABLED = 105;
+    private static final int ERROR_OFFLINE = 108;
+
+    private final Object _source;
+    private final List<EventListener> _dataListeners = new CopyOnWriteArrayList<>();
+    private final List<EventListener> _statusListeners = new CopyOnWriteArrayList<>();
+    private final List<EventListener> _errorListeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong _dataEvents = new AtomicLong();
+    private final AtomicLong _errorEvents = new AtomicLong();
+    private final AtomicLong _suppressedEvents = new AtomicLong();
+
+    volatile String logicalName;
+    volatile boolean opened;
+    volatile boolean claimed;
+    volatile boolean deviceEnabled;
+    volatile boolean dataEventEnabled;
+    volatile boolean autoDisable;
+    volatile int powerNotify;
+    volatile boolean online = true;
+    volatile boolean failNextClaim;
+    volatile long lifecycleDelayMillis;
+    volatile FirmwareHeader firmware;
+    volatile long firmwareUpdateMillis;
+    volatile boolean failNextFirmwareUpdate;
+
+    SimulatedDeviceSupport(Object source) {
+        _source = source;
+    }
+
+    void addEventListener(EventListener listener, EventCallback.EventType type) {
+        List<EventListener> listeners = listenersOf(type);
+        if (listeners != null && !listeners.contains(listener))
+            listeners.add(listener);
+    }
+
+    void removeEventListener(EventListener listener, EventCallback.EventType type) {
+        List<EventListener> listeners = listenersOf(type);
+        if (listeners != null)
+            listeners.remove(listener);
+    }
+
+    void open(String logicalName) {
+        lifecycleDelay();
+        this.logicalName = logicalName;
+        opened = true;
+    }
+
+    void claim(RequestListener listener) {
+        lifecycleDelay();
+        if (!opened || !online || failNextClaim) {
+            listener.onFailure(!opened ? "The device is not opened." : !online ? "The device is offline." : "Simulated claim failure.");
+            failNextClaim = false;
+            return;
+        }
+        claimed = true;
+        listener.onSuccess();
+    }
+
+    /**
+     * Wait as long as a real device takes to execute a lifecycle command.
+     */
+    void lifecycleDelay() {
+        if (lifecycleDelayMillis <= 0)
+            return;
+        try {
+            Thread.sleep(lifecycleDelayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Fail the way a real control fails a method that needs the device opened, claimed and enabled.
+     */
+    void checkEnabled() throws APosException {
+        if (!opened)
+            throw new APosException("The device is not opened.", ERROR_CLOSED);
+        if (!claimed)
+            throw new APosException("The device is not claimed.", ERROR_NOT_CLAIMED);
+        if (!deviceEnabled)
+            throw new APosException("The device is not enabled.", ERROR_DISABLED);
+        if (!online)
+            throw new APosException("The device is offline.", ERROR_OFFLINE);
+    }
+
+    boolean isReady() {
+        return opened && claimed && deviceEnabled && online;
+    }
+
+    /**
+     * Fire a data event if data events are enabled, following the UPOS rule that disables them after each
+     * delivered event.
+     *
+     * @return false if the event was suppressed.
+     */
+    boolean fireData(int status) {
+        if (!isReady() || !dataEventEnabled) {
+            _suppressedEvents.incrementAndGet();
+            return false;
+        }
+        dataEventEnabled = false;
+        if (autoDisable)
+            deviceEnabled = false;
+        _dataEvents.incrementAndGet();
+        fire(_dataListeners, new DataEvent(_source, status));
+        return true;
+    }
+
+    void fireError() {
+        if (!isReady()) {
+            _suppressedEvents.incrementAndGet();
+            return;
+        }
+        _errorEvents.incrementAndGet();
+        ErrorEvent event = new ErrorEvent(_source, ERROR_FAILURE, 0, ERROR_LOCUS_INPUT, ERROR_RESPONSE_CLEAR);
+        fire(_errorListeners, event);
+        // Listeners registered for data only still see the error, as the sample app filters it in onEvent.
+        for (EventListener listener : _dataListeners) {
+            if (!_errorListeners.contains(listener))
+                listener.onEvent(event);
+        }
+    }
+
+    void fireStatus(int status) {
+        if (opened)
+            fire(_statusListeners, new StatusUpdateEvent(_source, status));
+    }
+
+    void setOnline(boolean online) {
+        if (this.online == online)
+            return;
+        this.online = online;
+        if (powerNotify == CommonsConstants.PN_ENABLED)
+            fireStatus(online ? CommonsConstants.SUE_POWER_ONLINE : CommonsConstants.SUE_POWER_OFF_OFFLINE);
+    }
+
+    int getPowerState() {
+        return online ? CommonsConstants.SUE_POWER_ONLINE : CommonsConstants.SUE_POWER_OFF_OFFLINE;
+    }
+
+    void reset() {
+        opened = false;
+        claimed = false;
+        deviceEnabled = false;
+        dataEventEnabled = false;
+    }
+
+    void retrieveStatistics(String[] statistics) {
+        String name = logicalName == null ? "" : logicalName;
+        statistics[0] = String.format(Locale.ROOT,
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<UPOSStat version=\"1.13\">\n"
+                        + "  <Equipment><UnifiedPOSVersion>1.13</UnifiedPOSVersion><DeviceCategory UPOS=\"%s\"/></Equipment>\n"
+                        + "  <Parameter><Name>GoodScanCount</Name><Value>%d</Value></Parameter>\n"
+                        + "  <Parameter><Name>ErrorCount</Name><Value>%d</Value></Parameter>\n"
+                        + "  <Parameter><Name>SuppressedEventCount</Name><Value>%d</Value></Parameter>\n"
+                        + "</UPOSStat>\n",
+                name, _dataEvents.get(), _errorEvents.get(), _suppressedEvents.get());
+        if (statistics.length > 1)
+            statistics[1] = String.format(Locale.ROOT, "GoodScanCount=%d\nErrorCount=%d\nSuppressedEventCount=%d\n",
+                    _dataEvents.get(), _errorEvents.get(), _suppressedEvents.get());
+    }
+
+    /**
+     * Compare the header of the file with the simulated firmware.
+     *
+     * @param unknownResult the result when no firmware is simulated.
+     */
+    void compareFirmwareVersion(String firmwareFileName, int[] result, int unknownResult) {
+        FirmwareHeader installed = firmware;
+        FirmwareHeader file = installed == null ? null : readHeader(firmwareFileName);
+        if (installed == null || file == null) {
+            result[0] = installed == null ? unknownResult : CommonsConstants.CVF_FIRMWARE_UNKNOWN;
+            return;
+        }
+        if (file.getVendorId() != installed.getVendorId()) {
+            result[0] = DLSJposConst.DLS_CFV_INVALID_VID;
+            result[2] = file.getVendorId();
+        } else if (file.getProductId() != installed.getProductId()) {
+            result[0] = DLSJposConst.DLS_CFV_INVALID_PID;
+            result[2] = file.getProductId();
+        } else {
+            int order = Integer.compare(file.getVersion(), installed.getVersion());
+            result[0] = order > 0 ? CommonsConstants.CVF_FIRMWARE_NEWER
+                    : order < 0 ? CommonsConstants.CVF_FIRMWARE_OLDER : CommonsConstants.CVF_FIRMWARE_SAME;
+            result[3] = file.getVersion();
+            result[4] = installed.getVersion();
+        }
+    }
+
+    /**
+     * Report the progress of an update through status events, in the background if the update takes time; the
+     * simulated firmware then takes the version of the file.
+     */
+    void simulateFirmwareUpdate(String firmwareFileName, int steps) {
+        long duration = firmwareUpdateMillis;
+        Runnable update = () -> {
+            for (int i = 1; i <= steps; i++) {
+                pause(duration / (steps + 1));
+                fireStatus(CommonsConstants.SUE_UF_PROGRESS + (i * 100 / (steps + 1)));
+            }
+            pause(duration / (steps + 1));
+            if (failNextFirmwareUpdate) {
+                failNextFirmwareUpdate = false;
+                fireStatus(CommonsConstants.SUE_UF_FAILED_DEV_OK);
+                return;
+            }
+            FirmwareHeader installed = firmware;
+            FirmwareHeader file = installed == null ? null : readHeader(firmwareFileName);
+            if (file != null)
+                firmware = new FirmwareHeader(installed.getVendorId(), installed.getProductId(), file.getVersion());
+            fireStatus(CommonsConstants.SUE_UF_COMPLETE);
+        };
+        if (duration > 0) {
+            Thread thread = new Thread(update, "simulated-firmware-update");
+            thread.setDaemon(true);
+            thread.start();
+        } else
+            update.run();
+    }
+
+    long getDataEventCount() {
+        return _dataEvents.get();
+    }
+
+    long getErrorEventCount() {
+        return _errorEvents.get();
+    }
+
+    long getSuppressedEventCount() {
+        return _suppressedEvents.get();
+    }
+
+    private static FirmwareHeader readHeader(String firmwareFileName) {
+        try {
+            return FirmwareHeader.read(new File(firmwareFileName));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void pause(long millis) {
+        if (millis <= 0)
+            return;
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private List<EventListener> listenersOf(EventCallback.EventType type) {
+        switch (type) {
+            case Data:
+                return _dataListeners;
+            case StatusUpdate:
+                return _statusListeners;
+            case Error:
+                return _errorListeners;
+            default:
+                return null;
+        }
+    }
+
+    private static void fire(List<EventListener> listeners, BaseEvent event) {
+        for (EventListener listener : listeners)
+            listener.onEvent(event);
+    }
+}
@@ -0,0 +1,87 @@
+package com.datalogic.apossampleapp.simulator;
+
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates device events on a dedicated thread following a {@link SimulationConfig}.
+ */
+public class SimulatedEventSource {
+    public interface Listener {
+        /**
+         * Called on the source thread for every generated event.
+         *
+         * @param sequence number of the event, starting from 0.
+         * @param error    true if the event must be reported as an error.
+         */
+        void onTick(long sequence, boolean error);
+    }
+
+    private final SimulationConfig _config;
+    private final Listener _listener;
+    private final Random _random;
+    private final long _periodNanos;
+    private ScheduledExecutorService _executor;
+    private ScheduledFuture<?> _next;
+    private long _sequence;
+    private long _nextDeadline;
+
+    public SimulatedEventSource(SimulationConfig config, Listener listener) {
+        _config = config;
+        _listener = listener;
+        _random = new Random(config.getSeed());
+        _periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / config.getEventsPerSecond());
+    }
+
+    public synchronized void start() {
+        if (_executor != null)
+            return;
+        _executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "simulated-device");
+            thread.setDaemon(true);
+            return thread;
+        });
+        _nextDeadline = System.nanoTime();
+        scheduleNext();
+    }
+
+    public synchronized void stop() {
+        if (_executor == null)
+            return;
+        if (_next != null)
+            _next.cancel(false);
+        _executor.shutdown();
+        _executor = null;
+    }
+
+    public synchronized boolean isRunning() {
+        return _executor != null;
+    }
+
+    /**
+     * @return the random generator of the source, shared so that generated content is reproducible too.
+     */
+    public Random getRandom() {
+        return _random;
+    }
+
+    private void scheduleNext() {
+        long jitter = _config.getJitterMicros() == 0 ? 0
+                : (long) ((_random.nextDouble() * 2 - 1) * TimeUnit.MICROSECONDS.toNanos(_config.getJitterMicros()));
+        _nextDeadline += _periodNanos;
+        long delay = Math.max(0, _nextDeadline + jitter - System.nanoTime());
+        _next = _executor.schedule(this::tick, delay, TimeUnit.NANOSECONDS);
+    }
+
+    private void tick() {
+        boolean error = _random.nextDouble() < _config.getErrorRate();
+        _listener.onTick(_sequence++, error);
+        synchronized (this) {
+            if (_executor != null)
+                scheduleNext();
+        }
+    }
+}
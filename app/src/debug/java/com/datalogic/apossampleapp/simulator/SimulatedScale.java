@@ -0,0 +1,254 @@
+package com.datalogic.apossampleapp.simulator;
+
+import android.content.Context;
+
+import com.datalogic.apossampleapp.firmware.FirmwareHeader;
+import com.datalogic.dlapos.commons.constant.CommonsConstants;
+import com.datalogic.dlapos.commons.constant.ScaleConstants;
+import com.datalogic.dlapos.commons.event.EventCallback;
+import com.datalogic.dlapos.commons.support.APosException;
+import com.datalogic.dlapos.commons.upos.RequestListener;
+import com.datalogic.dlapos.control.Scale;
+import com.datalogic.dlapos.control.event.EventListener;
+
+import java.util.Random;
+
+/**
+ * A {@link Scale} that needs no hardware: the weight on the platter changes at the configured rate and is
+ * reported through data events in async mode.
+ */
+public class SimulatedScale extends Scale {
+    private static final int MAX_WEIGHT = 15_000;
+
+    private final SimulatedDeviceSupport _support = new SimulatedDeviceSupport(this);
+    private final SimulatedEventSource _source;
+    private final Random _random;
+    private volatile boolean _asyncMode;
+    private volatile boolean _asyncReadPending;
+    private volatile int _weight;
+    private volatile long _readDelayMillis;
+
+    public SimulatedScale(SimulationConfig config) {
+        _source = new SimulatedEventSource(config, this::onTick);
+        _random = _source.getRandom();
+    }
+
+    private void onTick(long sequence, boolean error) {
+        if (error) {
+            _support.fireError();
+            return;
+        }
+        // Items are put on and taken off the platter now and then, the weight settles in between.
+        if (_random.nextInt(20) == 0)
+            _weight = _weight == 0 ? 50 + _random.nextInt(MAX_WEIGHT) : 0;
+        else if (_weight > 0)
+            _weight = Math.max(0, _weight + _random.nextInt(5) - 2);
+        // Like a UPOS scale, each asynchronous read delivers one weight, and the listener may start the next.
+        if (_asyncMode && _asyncReadPending) {
+            _asyncReadPending = false;
+            if (!_support.fireData(_weight))
+                _asyncReadPending = true;
+        }
+    }
+
+    /**
+     * @return the weight currently on the platter.
+     */
+    public int getSimulatedWeight() {
+        return _weight;
+    }
+
+    public void setSimulatedWeight(int weight) {
+        _weight = weight;
+    }
+
+    /**
+     * Make every {@link #readWeight(int[], int)} take the given time, up to its timeout.
+     */
+    public void setReadDelayMillis(long delayMillis) {
+        _readDelayMillis = delayMillis;
+    }
+
+    public void setOnline(boolean online) {
+        _support.setOnline(online);
+    }
+
+    /**
+     * Make open, claim and enable take the given time, like a real device does.
+     */
+    public void setLifecycleDelayMillis(long delayMillis) {
+        _support.lifecycleDelayMillis = delayMillis;
+    }
+
+    public void failNextClaim() {
+        _support.failNextClaim = true;
+    }
+
+    /**
+     * Simulate a firmware with the given identification, compared with the header of the firmware files.
+     */
+    public void setFirmware(int vendorId, int productId, int version) {
+        _support.firmware = new FirmwareHeader(vendorId, productId, version);
+    }
+
+    /**
+     * @return the version of the simulated firmware, {@link FirmwareHeader#UNKNOWN_VERSION} if there is none.
+     */
+    public int getFirmwareVersion() {
+        FirmwareHeader firmware = _support.firmware;
+        return firmware == null ? FirmwareHeader.UNKNOWN_VERSION : firmware.getVersion();
+    }
+
+    /**
+     * Make firmware updates take the given time, reporting their progress from another thread.
+     */
+    public void setFirmwareUpdateMillis(long updateMillis) {
+        _support.firmwareUpdateMillis = updateMillis;
+    }
+
+    /**
+     * Make the next firmware update fail, leaving the device usable.
+     */
+    public void failNextFirmwareUpdate() {
+        _support.failNextFirmwareUpdate = true;
+    }
+
+    public long getDataEventCount() {
+        return _support.getDataEventCount();
+    }
+
+    public long getErrorEventCount() {
+        return _support.getErrorEventCount();
+    }
+
+    @Override
+    public void readWeight(int[] weightData, int timeout) throws APosException {
+        _support.checkEnabled();
+        if (_asyncMode) {
+            _asyncReadPending = true;
+            return;
+        }
+        long delay = Math.min(_readDelayMillis, Math.max(0, timeout));
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        weightData[0] = _weight;
+    }
+
+    @Override
+    public boolean getAsyncMode() {
+        return _asyncMode;
+    }
+
+    @Override
+    public void setAsyncMode(boolean asyncMode) {
+        _asyncMode = asyncMode;
+    }
+
+    @Override
+    public int getWeightUnit() {
+        return ScaleConstants.SCAL_WU_GRAM;
+    }
+
+    @Override
+    public void open(String logicalName, Context context) {
+        _support.open(logicalName);
+    }
+
+    @Override
+    public void claim(RequestListener listener) {
+        _support.claim(listener);
+    }
+
+    @Override
+    public void release() {
+        setDeviceEnabled(false);
+        _support.claimed = false;
+    }
+
+    @Override
+    public void close() {
+        _source.stop();
+        _support.reset();
+    }
+
+    @Override
+    public void setDeviceEnabled(boolean enabled) {
+        if (enabled)
+            _support.lifecycleDelay();
+        _support.deviceEnabled = enabled && _support.claimed;
+        if (_support.deviceEnabled)
+            _source.start();
+        else
+            _source.stop();
+    }
+
+    @Override
+    public boolean getDeviceEnabled() {
+        return _support.deviceEnabled;
+    }
+
+    @Override
+    public void setDataEventEnabled(boolean enabled) {
+        _support.dataEventEnabled = enabled;
+    }
+
+    @Override
+    public boolean getDataEventEnabled() {
+        return _support.dataEventEnabled;
+    }
+
+    @Override
+    public void setAutoDisable(boolean autoDisable) {
+        _support.autoDisable = autoDisable;
+    }
+
+    @Override
+    public void setPowerNotify(int powerNotify) {
+        _support.powerNotify = powerNotify;
+    }
+
+    @Override
+    public int getPowerState() {
+        return _support.getPowerState();
+    }
+
+    @Override
+    public void addEventListener(EventListener listener, EventCallback.EventType type) {
+        _support.addEventListener(listener, type);
+    }
+
+    @Override
+    public void removeEventListener(EventListener listener, EventCallback.EventType type) {
+        _support.removeEventListener(listener, type);
+    }
+
+    @Override
+    public void retrieveStatistics(String[] statistics) {
+        _support.retrieveStatistics(statistics);
+    }
+
+    @Override
+    public void compareFirmwareVersion(String firmwareFileName, int[] result) {
+        _support.compareFirmwareVersion(firmwareFileName, result, CommonsConstants.CVF_FIRMWARE_UNKNOWN);
+    }
+
+    @Override
+    public void updateFirmware(String firmwareFileName) {
+        _support.simulateFirmwareUpdate(firmwareFileName, 10);
+    }
+
+    @Override
+    public String getPhysicalDeviceName() {
+        return "Simulated Scale";
+    }
+
+    @Override
+    public String getDeviceServiceDescription() {
+        return "Simulated scale service, " + _support.getDataEventCount() + " weights reported";
+    }
+}
@@ -0,0 +1,239 @@
+package com.datalogic.apossampleapp.simulator;
+
+import android.content.Context;
+
+import com.datalogic.apossampleapp.firmware.FirmwareHeader;
+import com.datalogic.dlapos.commons.constant.CommonsConstants;
+import com.datalogic.dlapos.commons.constant.ScannerConstants;
+import com.datalogic.dlapos.commons.event.EventCallback;
+import com.datalogic.dlapos.commons.upos.RequestListener;
+import com.datalogic.dlapos.control.Scanner;
+import com.datalogic.dlapos.control.event.EventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A {@link Scanner} that needs no hardware: once enabled it reads labels at the configured rate.
+ */
+public class SimulatedScanner extends Scanner {
+    private static final int[] SYMBOLOGIES = {
+            ScannerConstants.SCAN_SDT_EAN13,
+            ScannerConstants.SCAN_SDT_UPCA,
+            ScannerConstants.SCAN_SDT_Code128
+    };
+
+    private final SimulatedDeviceSupport _support = new SimulatedDeviceSupport(this);
+    private final SimulatedEventSource _source;
+    private final byte[][] _labels;
+    private final Queue<byte[]> _heldLabels = new ConcurrentLinkedQueue<>();
+    private volatile byte[] _scanData = new byte[0];
+    private volatile int _scanDataType = ScannerConstants.SCAN_SDT_UNKNOWN;
+
+    public SimulatedScanner(SimulationConfig config) {
+        _source = new SimulatedEventSource(config, this::onTick);
+        _labels = new byte[256][];
+        Random random = new Random(config.getSeed());
+        for (int i = 0; i < _labels.length; i++)
+            _labels[i] = String.format("%013d", Math.abs(random.nextLong()) % 10_000_000_000_000L).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private void onTick(long sequence, boolean error) {
+        if (error) {
+            _support.fireError();
+            return;
+        }
+        if (_support.isReady() && _support.dataEventEnabled) {
+            byte[] held = _heldLabels.poll();
+            _scanData = held != null ? held : _labels[(int) (sequence % _labels.length)];
+            _scanDataType = held != null ? ScannerConstants.SCAN_SDT_EAN13
+                    : SYMBOLOGIES[(int) (sequence % SYMBOLOGIES.length)];
+        }
+        _support.fireData(0);
+    }
+
+    /**
+     * Simulate an EAN-13 label read by the user. Like a real scanner, the simulated one holds the label while data
+     * events are disabled, and delivers it before the labels it generates once they are enabled again.
+     */
+    public void scan(String label) {
+        _heldLabels.add(label.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Simulate a cable being unplugged or plugged back.
+     */
+    public void setOnline(boolean online) {
+        _support.setOnline(online);
+    }
+
+    /**
+     * Make open, claim and enable take the given time, like a real device does.
+     */
+    public void setLifecycleDelayMillis(long delayMillis) {
+        _support.lifecycleDelayMillis = delayMillis;
+    }
+
+    /**
+     * Make the next claim fail.
+     */
+    public void failNextClaim() {
+        _support.failNextClaim = true;
+    }
+
+    /**
+     * Simulate a firmware with the given identification, compared with the header of the firmware files.
+     */
+    public void setFirmware(int vendorId, int productId, int version) {
+        _support.firmware = new FirmwareHeader(vendorId, productId, version);
+    }
+
+    /**
+     * @return the version of the simulated firmware, {@link FirmwareHeader#UNKNOWN_VERSION} if there is none.
+     */
+    public int getFirmwareVersion() {
+        FirmwareHeader firmware = _support.firmware;
+        return firmware == null ? FirmwareHeader.UNKNOWN_VERSION : firmware.getVersion();
+    }
+
+    /**
+     * Make firmware updates take the given time, reporting their progress from another thread.
+     */
+    public void setFirmwareUpdateMillis(long updateMillis) {
+        _support.firmwareUpdateMillis = updateMillis;
+    }
+
+    /**
+     * Make the next firmware update fail, leaving the device usable.
+     */
+    public void failNextFirmwareUpdate() {
+        _support.failNextFirmwareUpdate = true;
+    }
+
+    public long getDataEventCount() {
+        return _support.getDataEventCount();
+    }
+
+    public long getErrorEventCount() {
+        return _support.getErrorEventCount();
+    }
+
+    public long getSuppressedEventCount() {
+        return _support.getSuppressedEventCount();
+    }
+
+    @Override
+    public void open(String logicalName, Context context) {
+        _support.open(logicalName);
+    }
+
+    @Override
+    public void claim(RequestListener listener) {
+        _support.claim(listener);
+    }
+
+    @Override
+    public void release() {
+        setDeviceEnabled(false);
+        _support.claimed = false;
+    }
+
+    @Override
+    public void close() {
+        _source.stop();
+        _support.reset();
+    }
+
+    @Override
+    public void setDeviceEnabled(boolean enabled) {
+        if (enabled)
+            _support.lifecycleDelay();
+        _support.deviceEnabled = enabled && _support.claimed;
+        if (_support.deviceEnabled)
+            _source.start();
+        else
+            _source.stop();
+    }
+
+    @Override
+    public boolean getDeviceEnabled() {
+        return _support.deviceEnabled;
+    }
+
+    @Override
+    public void setDataEventEnabled(boolean enabled) {
+        _support.dataEventEnabled = enabled;
+    }
+
+    @Override
+    public boolean getDataEventEnabled() {
+        return _support.dataEventEnabled;
+    }
+
+    @Override
+    public void setAutoDisable(boolean autoDisable) {
+        _support.autoDisable = autoDisable;
+    }
+
+    @Override
+    public void setPowerNotify(int powerNotify) {
+        _support.powerNotify = powerNotify;
+    }
+
+    @Override
+    public int getPowerState() {
+        return _support.getPowerState();
+    }
+
+    @Override
+    public byte[] getScanDataLabel() {
+        return _scanData;
+    }
+
+    @Override
+    public byte[] getScanData() {
+        return _scanData;
+    }
+
+    @Override
+    public int getScanDataType() {
+        return _scanDataType;
+    }
+
+    @Override
+    public void addEventListener(EventListener listener, EventCallback.EventType type) {
+        _support.addEventListener(listener, type);
+    }
+
+    @Override
+    public void removeEventListener(EventListener listener, EventCallback.EventType type) {
+        _support.removeEventListener(listener, type);
+    }
+
+    @Override
+    public void retrieveStatistics(String[] statistics) {
+        _support.retrieveStatistics(statistics);
+    }
+
+    @Override
+    public void compareFirmwareVersion(String firmwareFileName, int[] result) {
+        _support.compareFirmwareVersion(firmwareFileName, result, CommonsConstants.CVF_FIRMWARE_SAME);
+    }
+
+    @Override
+    public void updateFirmware(String firmwareFileName) {
+        _support.simulateFirmwareUpdate(firmwareFileName, 10);
+    }
+
+    @Override
+    public String getPhysicalDeviceName() {
+        return "Simulated Scanner";
+    }
+
+    @Override
+    public String getDeviceServiceDescription() {
+        return "Simulated scanner service, " + _support.getDataEventCount() + " labels read";
+    }
+}
@@ -0,0 +1,62 @@
+package com.datalogic.apossampleapp.simulator;
+
+import com.datalogic.apossampleapp.config.PropertyMap;
+
+/**
+ * Rate, jitter and error injection settings of a simulated device.
+ */
+public final class SimulationConfig {
+    public static final String EVENT_RATE = "simulatedEventRate";
+    public static final String JITTER = "simulatedJitter";
+    public static final String ERROR_RATE = "simulatedErrorRate";
+    public static final String SEED = "simulatedSeed";
+
+    private final double _eventsPerSecond;
+    private final long _jitterMicros;
+    private final double _errorRate;
+    private final long _seed;
+
+    /**
+     * @param eventsPerSecond mean number of generated events per second.
+     * @param jitterMicros    maximum random deviation from the nominal event period.
+     * @param errorRate       probability, between 0 and 1, that a generated event is an error.
+     * @param seed            seed of the random generator, so runs can be reproduced.
+     */
+    public SimulationConfig(double eventsPerSecond, long jitterMicros, double errorRate, long seed) {
+        if (eventsPerSecond <= 0)
+            throw new IllegalArgumentException("The event rate must be positive.");
+        if (errorRate < 0 || errorRate > 1)
+            throw new IllegalArgumentException("The error rate must be between 0 and 1.");
+        _eventsPerSecond = eventsPerSecond;
+        _jitterMicros = Math.max(0, jitterMicros);
+        _errorRate = errorRate;
+        _seed = seed;
+    }
+
+    /**
+     * Build a configuration from apos.json properties; the jitter property is expressed in milliseconds.
+     */
+    public static SimulationConfig fromProperties(PropertyMap properties) {
+        return new SimulationConfig(
+                properties.getDouble(EVENT_RATE, 10),
+                (long) (properties.getDouble(JITTER, 0) * 1000),
+                properties.getDouble(ERROR_RATE, 0),
+                (long) properties.getDouble(SEED, 0));
+    }
+
+    public double getEventsPerSecond() {
+        return _eventsPerSecond;
+    }
+
+    public long getJitterMicros() {
+        return _jitterMicros;
+    }
+
+    public double getErrorRate() {
+        return _errorRate;
+    }
+
+    public long getSeed() {
+        return _seed;
+    }
+}
@@ -1,14 +1,55 @@
 package com.datalogic.apossampleapp;
 
+import android.content.ContentResolver;
 import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
 
-import com.datalogic.dlapos.commons.constant.CommonsConstants;
-import com.datalogic.dlapos.commons.constant.ScaleConstants;
+import com.datalogic.apossampleapp.device.DeviceEventBus;
+import com.datalogic.apossampleapp.device.DeviceManager;
+import com.datalogic.apossampleapp.device.DevicePool;
+import com.datalogic.apossampleapp.device.DeviceState;
+import com.datalogic.apossampleapp.device.DeviceStateMachine;
+import com.datalogic.apossampleapp.device.DeviceSupervisor;
+import com.datalogic.apossampleapp.device.ManagedDevice;
+import com.datalogic.apossampleapp.config.AposEntry;
+import com.datalogic.apossampleapp.events.EventBus;
+import com.datalogic.apossampleapp.firmware.FirmwareCatalog;
+import com.datalogic.apossampleapp.firmware.FirmwareImage;
+import com.datalogic.apossampleapp.firmware.FirmwareInput;
+import com.datalogic.apossampleapp.metrics.MetricsExporter;
+import com.datalogic.apossampleapp.metrics.MetricsHttpServer;
+import com.datalogic.apossampleapp.metrics.MetricsRegistry;
+import com.datalogic.apossampleapp.profiles.ProfileIdIndex;
+import com.datalogic.apossampleapp.profiles.ProfileStore;
+import com.datalogic.apossampleapp.scale.LiveWeight;
+import com.datalogic.apossampleapp.scale.LiveWeightPoller;
+import com.datalogic.apossampleapp.scale.WeightRequests;
+import com.datalogic.apossampleapp.scale.WeightStream;
+import com.datalogic.apossampleapp.scale.WeightUnits;
+import com.datalogic.apossampleapp.scan.DuplicateFilter;
+import com.datalogic.apossampleapp.scan.ItemIndex;
+import com.datalogic.apossampleapp.scan.ItemLookup;
+import com.datalogic.apossampleapp.scan.LabelPipeline;
+import com.datalogic.apossampleapp.scan.ScanBatchLiveData;
+import com.datalogic.apossampleapp.scan.ScanBatcher;
+import com.datalogic.apossampleapp.scan.ScanJournal;
+import com.datalogic.apossampleapp.scan.ScanPipeline;
+import com.datalogic.apossampleapp.scan.ScanPublisher;
+import com.datalogic.apossampleapp.scan.ScanRecord;
+import com.datalogic.apossampleapp.scan.ScanRecordPool;
+import com.datalogic.apossampleapp.scan.Symbologies;
+import com.datalogic.apossampleapp.scheduler.DeviceCommand;
+import com.datalogic.apossampleapp.statistics.StatisticsCollector;
+import com.datalogic.apossampleapp.statistics.StatisticsDeltaLog;
+import com.datalogic.apossampleapp.statistics.StatisticsExporter;
+import com.datalogic.apossampleapp.scheduler.DeviceCommandScheduler;
 import com.datalogic.dlapos.commons.control.BaseControl;
 import com.datalogic.dlapos.commons.event.BaseEvent;
 import com.datalogic.dlapos.commons.event.DataEvent;
@@ -16,17 +57,25 @@ import com.datalogic.dlapos.commons.event.ErrorEvent;
 import com.datalogic.dlapos.commons.event.EventCallback;
 import com.datalogic.dlapos.commons.event.StatusUpdateEvent;
 import com.datalogic.dlapos.commons.support.APosException;
-import com.datalogic.dlapos.commons.upos.RequestListener;
 import com.datalogic.dlapos.confighelper.DLAPosConfigHelper;
 import com.datalogic.dlapos.control.Scale;
 import com.datalogic.dlapos.control.Scanner;
 
-import java.nio.charset.StandardCharsets;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.EventListener;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 
 public class ExampleViewModel extends ViewModel implements EventListener, com.datalogic.dlapos.control.event.EventListener {
+    /**
+     * The {@link DeviceState} of the device, as the screen sees it.
+     */
     public enum Status {
         CLOSED,
         OPENED,
@@ -40,30 +89,161 @@ public class ExampleViewModel extends ViewModel implements EventListener, com.da
         AVALANCHE
     }
 
-    private String _logicalName;
+    private static final long METRICS_EXPORT_PERIOD_MS = 10_000;
+    private static final int METRICS_HTTP_PORT = 8090;
+    private static final long STATISTICS_COLLECTION_PERIOD_MS = 60_000;
+    private static final double STATISTICS_COLLECTION_JITTER = 0.25;
+    private static final int SCAN_BUFFER_CAPACITY = 1024;
+    private static final int SCAN_BATCH_MAX_SIZE = 256;
+    private static final long SCAN_FLUSH_INTERVAL_MS = 16;
+    private static final String LIVE_WEIGHT_POLL_RATE = "liveWeightPollRate";
+    private static final int DEFAULT_LIVE_WEIGHT_POLL_MS = 500;
+    private static final int READ_WEIGHT_TIMEOUT_MS = 1000;
+    private static final int LIVE_WEIGHT_DEADBAND = 5;
+    private static final int LIVE_WEIGHT_STABLE_TOLERANCE = 2;
+    private static final long LIVE_WEIGHT_STABLE_WINDOW_MS = 400;
+    private static final String DUPLICATE_READ_WINDOW = "duplicateReadWindow";
+    private static final int DUPLICATE_READ_LABELS = 1024;
+    private static final int SCAN_JOURNAL_CAPACITY = 1 << 20;
+    private static final long SCAN_JOURNAL_GROUP_COMMIT_MS = 20;
+    private static final int ITEM_CACHE_SIZE = 4096;
+    private static final int DEVICE_EVENT_QUEUE = 64;
+    private static final int PROFILE_FIRST_PAGE = 64;
+
+    private volatile String _logicalName;
     private MutableLiveData<Boolean> _online;
     private MutableLiveData<Status> _status;
-    private MutableLiveData<String> _barcodeContent;
-    private MutableLiveData<String> _barcodeSymbology;
-    private MutableLiveData<List<String>> _profileIDs;
+    private final DeviceStateMachine _deviceState;
+    private final Executor _mainThread;
+    private ScanBatchLiveData _scans;
+    private MutableLiveData<ProfileIdIndex> _profileIDs;
+    private ProfileIdIndex _profileIndex = ProfileIdIndex.EMPTY;
+    private String _profileFilter = "";
     private MutableLiveData<Integer> _connectionStatus;
     private MutableLiveData<String> _statistics;
     private MutableLiveData<Boolean> _isUpgradable;
     private MutableLiveData<int[]> _firmwareInfo;
     private MutableLiveData<Double> _weight;
+    private MutableLiveData<LiveWeight> _liveWeight;
     private String _errorMessage = "";
-    private BaseControl _device;
+    private DeviceEventBus _events;
     private StatisticsFormat statisticsFormat = StatisticsFormat.XML;
+    private boolean statisticsGzip;
     private String _filePath;
+    private final DeviceCommandScheduler _scheduler = DeviceCommandScheduler.getInstance();
+    private final MetricsRegistry _metrics = MetricsRegistry.getInstance();
+    private final DeviceManager _manager = new DeviceManager();
+    private DeviceSupervisor _supervisor;
+    private final DevicePool _pool = DevicePool.getInstance();
+    private volatile DevicePool.Lease _lease;
+    private MetricsExporter _metricsExporter;
+    private MetricsHttpServer _metricsServer;
+    private StatisticsCollector _statisticsCollector;
+    private volatile ScanJournal _journal;
+    private DeviceCommand _pendingComparison;
+    private FirmwareCatalog _firmwareCatalog;
+    private FirmwareInput _firmwareInput;
+    private final ScanRecordPool _scanRecords = new ScanRecordPool(SCAN_BUFFER_CAPACITY, 64);
+    private final ScanPipeline _scanPipeline = new ScanPipeline(Symbologies.STANDARD, _scanRecords);
+    private final ScanBatcher _scanBatcher;
+    private final ScanPublisher _scanPublisher;
+    private final WeightStream _weightStream;
+    private LiveWeightPoller _liveWeightPoller;
+    private WeightRequests _weightRequests;
+    private volatile boolean _liveWeightEnabled;
+    private volatile boolean _liveWeightAsync;
+    private int _liveWeightPollMillis = DEFAULT_LIVE_WEIGHT_POLL_MS;
+
+    public ExampleViewModel() {
+        this(new Handler(Looper.getMainLooper()));
+    }
+
+    private ExampleViewModel(Handler mainThread) {
+        this(mainThread::post, mainThread::postDelayed);
+    }
+
+    /**
+     * @param mainThread        runs the deliveries to the screen.
+     * @param mainThreadFlushes runs the flushes of the scans to the screen.
+     */
+    ExampleViewModel(Executor mainThread, ScanBatcher.FlushScheduler mainThreadFlushes) {
+        _mainThread = mainThread;
+        _deviceState = new DeviceStateMachine(DeviceState.CLOSED, mainThread, this::deliverStatus);
+        _scanBatcher = new ScanBatcher(SCAN_BUFFER_CAPACITY, SCAN_BATCH_MAX_SIZE, SCAN_FLUSH_INTERVAL_MS,
+                mainThreadFlushes, this::deliverScans);
+        _scanPublisher = new ScanPublisher(_scanPipeline, _scanBatcher, e -> {
+            Log.e("Example", "Journaling scan: ", e);
+            _metrics.failed(_logicalName, "journalScan");
+        });
+        _weightStream = new WeightStream(LIVE_WEIGHT_DEADBAND, LIVE_WEIGHT_STABLE_TOLERANCE,
+                TimeUnit.MILLISECONDS.toNanos(LIVE_WEIGHT_STABLE_WINDOW_MS), mainThread, this::deliverLiveWeight);
+        _scheduler.addObserver(_metrics);
+        _manager.addListener(new DeviceManager.Listener() {
+            @Override
+            public void onDeviceEvent(ManagedDevice device, BaseEvent event) {
+                // Received through the event bus of the device instead.
+            }
+
+            @Override
+            public void onDeviceStateChanged(ManagedDevice device, DeviceState state) {
+                followDevice(device, state);
+            }
+        });
+    }
+
+    /**
+     * @return the control of the device of the screen: leased from the pool, or held by the manager while open.
+     */
+    private BaseControl control() {
+        DevicePool.Lease lease = _lease;
+        if (lease != null)
+            return lease.getControl();
+        String logicalName = _logicalName;
+        ManagedDevice device = logicalName == null ? null : _manager.getDevice(logicalName);
+        return device == null || device.getState() == DeviceState.CLOSED ? null : device.getControl();
+    }
+
+    /**
+     * Follow the lifecycle of the device of the screen in the manager: its events are listened to while it is open,
+     * its statistics are collected while it is enabled, and its state is shown. A device the supervisor brought back
+     * is a new control to follow.
+     */
+    private void followDevice(ManagedDevice device, DeviceState state) {
+        if (!device.getLogicalName().equals(_logicalName))
+            return;
+        if (state == DeviceState.CLOSED || state == DeviceState.ERROR) {
+            closeEvents();
+            stopCollectingStatistics();
+        } else {
+            openEvents(device.getControl());
+        }
+        if (state == DeviceState.ENABLED)
+            collectStatistics();
+        else if (state == DeviceState.ERROR)
+            _errorMessage = device.getErrorMessage();
+        // The manager already checked the transition on its own state. The screen may be in another one, e.g. in
+        // ERROR after a failed read while the device is still enabled, and a disable must then still show CLAIMED
+        // instead of being rejected as a move out of ERROR.
+        _deviceState.reset(state);
+    }
 
     @Override
     public void onEvent(BaseEvent event) {
+        long start = System.nanoTime();
         try {
             if (event instanceof DataEvent) {
-                if (_device instanceof Scanner) {
-                    _barcodeContent.postValue(new String(((Scanner) _device).getScanDataLabel(), StandardCharsets.UTF_8));
-                    _barcodeSymbology.postValue("" + ((Scanner) _device).getScanDataType());
-                    _device.setDataEventEnabled(true);
+                BaseControl device = control();
+                if (device instanceof Scanner) {
+                    Scanner scanner = (Scanner) device;
+                    byte[] label = scanner.getScanDataLabel();
+                    _scanPublisher.publish(label, label.length, scanner.getScanDataType());
+                    scanner.setDataEventEnabled(true);
+                } else if (_liveWeightEnabled) {
+                    _weightStream.offer(((DataEvent) event).getStatus(), System.nanoTime());
+                    if (_liveWeightAsync)
+                        readAsyncWeight();
+                    else
+                        device.setDataEventEnabled(true);
                 } else {
                     _weight.postValue(formatWeight(((DataEvent) event).getStatus()));
                 }
@@ -71,247 +251,547 @@ public class ExampleViewModel extends ViewModel implements EventListener, com.da
             if (event instanceof StatusUpdateEvent) {
                 _connectionStatus.postValue(((StatusUpdateEvent) event).getStatus());
             }
+            // An asynchronous read that timed out, e.g. on a swaying platter, is started again like one that read.
+            if (event instanceof ErrorEvent && _liveWeightAsync)
+                readAsyncWeight();
             if (!(event instanceof ErrorEvent)) {
-                _status.postValue(Status.ENABLED);
+                _deviceState.moveFrom(DeviceState.ERROR, DeviceState.ENABLED);
             }
         } catch (APosException e) {
             Log.e("Example", "Receiving event: ", e);
+            _metrics.failed(_logicalName, eventOperation(event));
             _errorMessage = e.getMessage();
-            _status.postValue(Status.ERROR);
+            moveTo(DeviceState.ERROR);
+        } finally {
+            _metrics.record(_logicalName, eventOperation(event), start);
         }
     }
 
+    private void onErrorEvent(BaseEvent event) {
+        long start = System.nanoTime();
+        ErrorEvent error = (ErrorEvent) event;
+        Log.w("Example", "Device error " + error.getErrorCode() + ", extended " + error.getErrorCodeExtended());
+        _metrics.record(_logicalName, "onErrorEvent", start);
+    }
+
+    /**
+     * Fan the events of the device out through a {@link DeviceEventBus}: this view model is one subscriber among
+     * any others, and none of them runs on the device callback thread.
+     */
+    private synchronized void openEvents(BaseControl control) {
+        if (_events != null && _events.getControl() == control)
+            return;
+        closeEvents();
+        _events = new DeviceEventBus(control);
+        // Every data event is taken: until the label is read, the device holds the next one back anyway.
+        _events.subscribe(DEVICE_EVENT_QUEUE, EventBus.OverflowPolicy.BLOCK, null, this::onEvent,
+                EventCallback.EventType.Data, EventCallback.EventType.StatusUpdate);
+        _events.subscribe(DEVICE_EVENT_QUEUE, EventBus.OverflowPolicy.DROP_OLDEST, null, this::onErrorEvent,
+                EventCallback.EventType.Error);
+    }
+
+    private synchronized void closeEvents() {
+        if (_events != null) {
+            _events.close();
+            _events = null;
+        }
+    }
+
+    private static String eventOperation(BaseEvent event) {
+        if (event instanceof DataEvent)
+            return "onDataEvent";
+        if (event instanceof StatusUpdateEvent)
+            return "onStatusUpdateEvent";
+        if (event instanceof ErrorEvent)
+            return "onErrorEvent";
+        return "onEvent";
+    }
+
 
     public void open(String logicalName, Context context) {
         _logicalName = logicalName;
-        new Thread(() -> {
+        supervise(context);
+        _scheduler.submitCoalescing(logicalName, "loadProfile", () -> {
             try {
-                if (logicalName.contains("Scale") && !logicalName.contains("Scanner"))
-                    _device = new Scale();
-                else
-                    _device = new Scanner();
-                _device.open(logicalName, context);
-                _status.postValue(Status.OPENED);
+                ProfileStore profiles = ProfileStore.getInstance(context);
+                // Profiles served from the cache leave the configuration helper to be initialized here.
+                profiles.ensureInitialized();
+                configure(profiles.getEntry(logicalName));
             } catch (APosException e) {
                 Log.e("Example", "Opening: ", e);
+                _metrics.failed(logicalName, "open");
                 _errorMessage = e.getMessage();
-                _status.postValue(Status.ERROR);
+                moveTo(DeviceState.ERROR);
+                return;
             }
-        }).start();
+            // Queued right after this command on the lane of the device.
+            openDevice(logicalName, null, context);
+        });
+    }
+
+    /**
+     * Open a control made beforehand, e.g. a simulated one, configured by the given apos.json entry, if any.
+     */
+    void open(String logicalName, BaseControl device, AposEntry entry) {
+        _logicalName = logicalName;
+        configure(entry);
+        openDevice(logicalName, device, null);
+    }
+
+    /**
+     * Bring the device back by itself when it goes offline, instead of leaving the user to close and open it again.
+     */
+    private synchronized void supervise(Context context) {
+        if (_supervisor == null)
+            _supervisor = new DeviceSupervisor(_manager, context.getApplicationContext());
+    }
+
+    private void openDevice(String logicalName, BaseControl device, Context context) {
+        _manager.open(logicalName, device, context).whenComplete((ignored, e) -> recordFailure(logicalName, "open", e));
+    }
+
+    /**
+     * The manager has already moved the device to ERROR with the reason of a failed lifecycle step: only count it.
+     */
+    private void recordFailure(String logicalName, String operation, Throwable failure) {
+        if (failure != null)
+            _metrics.failed(logicalName, operation);
+    }
+
+    /**
+     * @return true, once the state is shown as closed, if no device was opened yet, e.g. after the profiles failed
+     * to load.
+     */
+    private boolean withoutDevice(String logicalName) {
+        if (logicalName != null)
+            return false;
+        _deviceState.reset(DeviceState.CLOSED);
+        return true;
     }
 
     public void claim() {
-        new Thread(() -> {
-            try {
-                _device.claim(new RequestListener() {
-                    @Override
-                    public void onSuccess() {
-                        _errorMessage = "N/A";
-                        _status.postValue(Status.CLAIMED);
-                    }
-
-                    @Override
-                    public void onFailure(String failureDescription) {
-                        _errorMessage = failureDescription;
-                        _status.postValue(Status.ERROR);
-                    }
-                });
-            } catch (APosException e) {
-                Log.e("Example", "Claiming: ", e);
-                _errorMessage = e.getMessage();
-                _status.postValue(Status.ERROR);
-            }
-        }
-        ).start();
+        String logicalName = _logicalName;
+        if (withoutDevice(logicalName))
+            return;
+        _manager.claim(logicalName).whenComplete((ignored, e) -> recordFailure(logicalName, "claim", e));
     }
 
     public void retrieveStatistics() {
-        new Thread(() -> {
+        _scheduler.submitCoalescing(_logicalName, "retrieveStatistics", () -> {
             try {
                 String[] stats = new String[2];
                 stats[0] = "";
-                _device.retrieveStatistics(stats);
+                control().retrieveStatistics(stats);
                 if (statisticsFormat == StatisticsFormat.XML)
                     _statistics.postValue(stats[0]);
                 else
                     _statistics.postValue(stats[1]);
             } catch (APosException e) {
                 Log.e("Example", "SavingStatistics: ", e);
+                _metrics.failed(_logicalName, "retrieveStatistics");
+                _errorMessage = e.getMessage();
+                moveTo(DeviceState.ERROR);
+            }
+        });
+    }
+
+    /**
+     * Write the last retrieved statistics to the document, gzipped if so chosen, off the main thread.
+     */
+    public void saveStatistics(ContentResolver resolver, Uri uri) {
+        String statistics = getStatistics().getValue();
+        if (statistics == null)
+            return;
+        StatisticsExporter exporter = new StatisticsExporter(statisticsGzip);
+        _scheduler.submit(StatisticsExporter.class, "saveStatistics", () -> {
+            try (OutputStream os = resolver.openOutputStream(uri)) {
+                if (os == null)
+                    throw new IOException("Cannot open " + uri);
+                exporter.export(statistics, os);
+            } catch (IOException e) {
+                Log.e("Example", "SavingStatistics: ", e);
+                _metrics.failed(_logicalName, "saveStatistics");
                 _errorMessage = e.getMessage();
-                _status.postValue(Status.ERROR);
             }
-        }).start();
+        });
     }
 
+    /**
+     * Read the weight without waiting for the scale: clicks made while a read is queued share it, and disabling or
+     * closing the scale cancels them.
+     */
     public void readWeight() {
-        if (_device instanceof Scale) {
-            int[] result = new int[3];
+        if (control() instanceof Scale) {
+            weightRequests().request(READ_WEIGHT_TIMEOUT_MS).whenComplete((weight, e) -> {
+                if (e == null) {
+                    _weight.postValue(formatWeight(weight));
+                    _deviceState.moveFrom(DeviceState.ERROR, DeviceState.ENABLED);
+                } else if (!(e instanceof CancellationException)) {
+                    Log.e("Example", "ReadingWeight: ", e);
+                    _metrics.failed(_logicalName, "readWeight");
+                    _errorMessage = e.getMessage();
+                    moveTo(DeviceState.ERROR);
+                }
+            });
+        }
+    }
+
+    private synchronized WeightRequests weightRequests() {
+        if (_weightRequests == null)
+            _weightRequests = new WeightRequests(_scheduler, _logicalName, this::readRequestedWeight);
+        return _weightRequests;
+    }
+
+    private int readRequestedWeight(int timeoutMillis) throws APosException {
+        Scale scale = (Scale) control();
+        if (scale.getAsyncMode())
+            scale.setDataEventEnabled(true);
+        int[] result = new int[3];
+        scale.readWeight(result, timeoutMillis);
+        return result[0];
+    }
+
+    private synchronized void cancelWeightRequests() {
+        if (_weightRequests != null) {
+            _weightRequests.cancelAll();
+            _weightRequests = null;
+        }
+    }
+
+    /**
+     * Stream weight changes to {@link #getLiveWeight()}: polled at the liveWeightPollRate of apos.json, or
+     * pushed by data events in async mode.
+     */
+    public void setLiveWeight(boolean enabled) {
+        if (!(control() instanceof Scale))
+            throw new UnsupportedOperationException("Only Scales have this functionality.");
+        _liveWeightEnabled = enabled;
+        updateLiveWeightPolling();
+    }
+
+    /**
+     * Poll the scale, or in async mode start the first asynchronous read, which each data event starts again. The
+     * mode is read in the device queue, like every other call to the scale.
+     */
+    private synchronized void updateLiveWeightPolling() {
+        if (_liveWeightPoller == null)
+            _liveWeightPoller = new LiveWeightPoller(_scheduler, _logicalName, this::readLiveWeight, _weightStream,
+                    this::failLiveWeight);
+        LiveWeightPoller poller = _liveWeightPoller;
+        _scheduler.submitCoalescing(_logicalName, "liveWeightMode", () -> {
+            boolean asyncMode = false;
             try {
-                if (((Scale) _device).getAsyncMode())
-                    _device.setDataEventEnabled(true);
-                ((Scale) _device).readWeight(result, 1000);
-                _weight.postValue(formatWeight(result[0]));
-                _status.postValue(Status.ENABLED);
+                BaseControl device = control();
+                asyncMode = device instanceof Scale && ((Scale) device).getAsyncMode();
             } catch (APosException e) {
-                Log.e("Example", "ReadingWeight: ", e);
-                _errorMessage = e.getMessage();
-                _status.postValue(Status.ERROR);
+                Log.e("Example", "Reading async mode: ", e);
             }
+            synchronized (this) {
+                // Stopped meanwhile.
+                if (poller != _liveWeightPoller)
+                    return;
+                _liveWeightAsync = _liveWeightEnabled && asyncMode;
+                if (_liveWeightEnabled && !asyncMode)
+                    poller.start(_liveWeightPollMillis);
+                else
+                    poller.stop();
+            }
+            if (_liveWeightAsync) {
+                _weightStream.reset();
+                readAsyncWeight();
+            }
+        });
+    }
+
+    private int readLiveWeight() throws APosException {
+        int[] result = new int[3];
+        ((Scale) control()).readWeight(result, _liveWeightPollMillis);
+        return result[0];
+    }
+
+    /**
+     * Start an asynchronous read of the live weight, delivered by a data event.
+     */
+    private void readAsyncWeight() {
+        _scheduler.submitCoalescing(_logicalName, "readAsyncWeight", () -> {
+            if (!_liveWeightAsync)
+                return;
+            try {
+                Scale scale = (Scale) control();
+                scale.setDataEventEnabled(true);
+                scale.readWeight(new int[3], _liveWeightPollMillis);
+            } catch (APosException e) {
+                failLiveWeight(e);
+            }
+        });
+    }
+
+    private void failLiveWeight(Exception e) {
+        Log.e("Example", "Reading live weight: ", e);
+        _metrics.failed(_logicalName, "liveWeight");
+        _errorMessage = e.getMessage();
+        moveTo(DeviceState.ERROR);
+    }
+
+    private synchronized void stopLiveWeight() {
+        _liveWeightEnabled = false;
+        _liveWeightAsync = false;
+        if (_liveWeightPoller != null) {
+            _liveWeightPoller.stop();
+            _liveWeightPoller = null;
         }
     }
 
+    /**
+     * Apply the settings of the apos.json entry of the device, read once per open; null if it has none.
+     */
+    private void configure(AposEntry entry) {
+        _liveWeightPollMillis = liveWeightPollRate(entry);
+        _scanPipeline.setDuplicateFilter(duplicateFilter(entry));
+        _scanPipeline.setLabelPipeline(labelPipeline(entry));
+    }
+
+    private static int liveWeightPollRate(AposEntry entry) {
+        return entry == null ? DEFAULT_LIVE_WEIGHT_POLL_MS
+                : Math.max(1, entry.getProperties().getInt(LIVE_WEIGHT_POLL_RATE, DEFAULT_LIVE_WEIGHT_POLL_MS));
+    }
+
+    /**
+     * @return a filter of the reads repeated within the duplicateReadWindow of apos.json, in milliseconds, or null
+     * if the profile has none. Unlike doubleReadTimeout it also applies to reads of different planes.
+     */
+    private static DuplicateFilter duplicateFilter(AposEntry entry) {
+        int windowMillis = entry == null ? 0 : entry.getProperties().getInt(DUPLICATE_READ_WINDOW, 0);
+        return windowMillis > 0 ? new DuplicateFilter(windowMillis, DUPLICATE_READ_LABELS) : null;
+    }
+
+    /**
+     * @return the post-processing of the labels given by the labelStages of apos.json, or null if there is none.
+     */
+    private static LabelPipeline labelPipeline(AposEntry entry) {
+        if (entry == null)
+            return null;
+        try {
+            return LabelPipeline.fromProperties(entry.getProperties());
+        } catch (IllegalArgumentException e) {
+            Log.e("Example", "Reading label stages: ", e);
+            return null;
+        }
+    }
+
+    private void moveTo(DeviceState next) {
+        if (!_deviceState.moveTo(next))
+            Log.w("Example", "Ignoring move from " + _deviceState.getState() + " to " + next);
+    }
+
+    private void deliverStatus(DeviceState state) {
+        ((MutableLiveData<Status>) getStatus()).setValue(Status.valueOf(state.name()));
+    }
+
+    private void deliverLiveWeight(LiveWeight weight) {
+        ((MutableLiveData<LiveWeight>) getLiveWeight()).setValue(weight);
+    }
+
     private double formatWeight(int integerValue) {
-        return (integerValue * 1d) / 1000d;
+        return WeightUnits.STANDARD.toUnits(integerValue);
     }
 
     public void setScaleAsync(boolean asyncMode) {
-        if (_device instanceof Scale) {
+        BaseControl device = control();
+        if (device instanceof Scale) {
             try {
-                ((Scale) _device).setAsyncMode(asyncMode);
+                ((Scale) device).setAsyncMode(asyncMode);
+                if (_liveWeightEnabled)
+                    updateLiveWeightPolling();
             } catch (APosException e) {
                 Log.e("Example", "Setting async mode: ", e);
                 _errorMessage = e.getMessage();
-                _status.postValue(Status.ERROR);
+                moveTo(DeviceState.ERROR);
             }
         } else
             throw new UnsupportedOperationException("Only Scales have this functionality.");
     }
 
     public String getWeightUnit() {
-        if (_device instanceof Scale) {
+        BaseControl device = control();
+        if (device instanceof Scale) {
             try {
-                int weightUnit = ((Scale) _device).getWeightUnit();
-                String result = "";
-                switch (weightUnit) {
-                    case ScaleConstants.SCAL_WU_GRAM:
-                        result = "grams";
-                        break;
-                    case ScaleConstants.SCAL_WU_KILOGRAM:
-                        result = "kilograms";
-                        break;
-                    case ScaleConstants.SCAL_WU_OUNCE:
-                        result = "ounces";
-                        break;
-                    case ScaleConstants.SCAL_WU_POUND:
-                        result = "pounds";
-                        break;
-                }
-                return result;
+                return WeightUnits.STANDARD.unitName(((Scale) device).getWeightUnit());
             } catch (APosException e) {
                 Log.e("Example", "ReadingWeight: ", e);
                 _errorMessage = e.getMessage();
-                _status.postValue(Status.ERROR);
+                moveTo(DeviceState.ERROR);
             }
         }
         throw new UnsupportedOperationException("Only scales supports this function");
     }
 
-    public void compareFirmware(String filePath) {
-        new Thread(() -> {
+    public void compareFirmware(Context cxt, Uri uri) {
+        Context appContext = cxt.getApplicationContext();
+        submitComparison(() -> {
             int[] result = new int[5];
             try {
-                _device.compareFirmwareVersion(filePath, result);
+                // Opened once; the device service reads the same descriptor for the comparison and the update.
+                FirmwareInput input = FirmwareInput.open(appContext.getContentResolver(), uri, appContext.getCacheDir());
+                replaceFirmwareInput(input);
+                control().compareFirmwareVersion(input.getPath(), result);
                 if (_firmwareInfo != null)
                     _firmwareInfo.postValue(result);
-                this._filePath = filePath;
-            } catch (APosException e) {
+                this._filePath = input.getPath();
+            } catch (IOException | APosException e) {
                 Log.e("Example", "Comparing firmware: ", e);
+                _metrics.failed(_logicalName, "compareFirmware");
                 _errorMessage = e.getMessage();
                 result[0] = -1;
                 _firmwareInfo.postValue(result);
             }
-        }).start();
+        });
     }
 
-    public void updateFirmware() {
-        new Thread(() -> {
+    /**
+     * Submit a firmware comparison, superseding one that has not started yet. Called from the main thread and from
+     * the scan of the firmware catalog.
+     */
+    private synchronized void submitComparison(Runnable comparison) {
+        if (_pendingComparison != null)
+            _pendingComparison.cancel();
+        _pendingComparison = _scheduler.submit(_logicalName, "compareFirmware", comparison);
+    }
+
+    private synchronized void replaceFirmwareInput(FirmwareInput input) {
+        if (_firmwareInput != null) {
             try {
-                _device.updateFirmware(_filePath);
-            } catch (APosException e) {
-                Log.e("Example", "SavingStatistics: ", e);
-                _errorMessage = e.getMessage();
+                _firmwareInput.close();
+            } catch (IOException e) {
+                Log.e("Example", "Closing firmware: ", e);
             }
-        }).start();
+        }
+        _firmwareInput = input;
     }
 
-    public void enable() {
-        new Thread(() -> {
+    /**
+     * Compare the firmware files of the app firmware directory with the device, and pick the newest one made for it.
+     */
+    public void compareFirmwareCatalog(Context cxt) {
+        File directory = cxt.getExternalFilesDir("firmware");
+        FirmwareCatalog catalog = getFirmwareCatalog(cxt);
+        _scheduler.submitCoalescing(FirmwareCatalog.class, "scanFirmware", () -> {
+            List<FirmwareImage> images;
             try {
-                if (_device instanceof Scanner) {
-                    ((Scanner) _device).addEventListener(this, EventCallback.EventType.Data);
-                    ((Scanner) _device).addEventListener(this, EventCallback.EventType.StatusUpdate);
-                    _connectionStatus.postValue(_device.getPowerState());
-                } else {
-                    ((Scale) _device).addEventListener(this, EventCallback.EventType.Data);
-                    ((Scale) _device).addEventListener(this, EventCallback.EventType.StatusUpdate);
-                }
-                _device.setAutoDisable(false);
-                _status.postValue(Status.ENABLED);
-                _device.setDataEventEnabled(true);
-                _device.setPowerNotify(CommonsConstants.PN_ENABLED);
-                _device.setDeviceEnabled(true);
-            } catch (APosException e) {
-                Log.e("Example", "Enabling: ", e);
+                images = catalog.scan(directory);
+            } catch (IOException e) {
+                Log.e("Example", "Scanning firmware: ", e);
                 _errorMessage = e.getMessage();
-                _status.postValue(Status.ERROR);
+                _firmwareInfo.postValue(new int[]{-1, 0, 0, 0, 0});
+                return;
             }
-        }).start();
+            submitComparison(() -> {
+                int[] result = new int[5];
+                try {
+                    BaseControl device = control();
+                    FirmwareImage best = FirmwareCatalog.findBest(images, (file, fileResult) ->
+                            device.compareFirmwareVersion(file.getPath(), fileResult), result);
+                    if (best == null) {
+                        _errorMessage = "No firmware for this device in " + directory + ".";
+                        result[0] = -1;
+                    } else
+                        this._filePath = best.getFile().getPath();
+                } catch (Exception e) {
+                    Log.e("Example", "Comparing firmware: ", e);
+                    _metrics.failed(_logicalName, "compareFirmware");
+                    _errorMessage = e.getMessage();
+                    result[0] = -1;
+                }
+                _firmwareInfo.postValue(result);
+            });
+        });
     }
 
-    public void disable() {
-        new Thread(() -> {
+    private synchronized FirmwareCatalog getFirmwareCatalog(Context cxt) {
+        if (_firmwareCatalog == null)
+            _firmwareCatalog = new FirmwareCatalog(new File(cxt.getCacheDir(), "firmware.idx"),
+                    Runtime.getRuntime().availableProcessors());
+        return _firmwareCatalog;
+    }
+
+    public void updateFirmware() {
+        _scheduler.submitBlockingCoalescing(_logicalName, "updateFirmware", () -> {
             try {
-                if (_device instanceof Scanner) {
-                    ((Scanner) _device).setDataEventEnabled(false);
-                    ((Scanner) _device).setAutoDisable(true);
-                    ((Scanner) _device).removeEventListener(this, EventCallback.EventType.Data);
-                    ((Scanner) _device).setDeviceEnabled(false);
-                    ((Scanner) _device).removeEventListener(this, EventCallback.EventType.StatusUpdate);
-                } else {
-                    _device.setAutoDisable(true);
-                    _device.setDeviceEnabled(false);
-                }
-                _status.postValue(Status.CLAIMED);
+                control().updateFirmware(_filePath);
             } catch (APosException e) {
-                Log.e("Example", "Disabling: ", e);
+                Log.e("Example", "SavingStatistics: ", e);
+                _metrics.failed(_logicalName, "updateFirmware");
                 _errorMessage = e.getMessage();
-                _status.postValue(Status.ERROR);
             }
-        }).start();
+        });
     }
 
-    public void release() {
-        new Thread(() -> {
+    public void enable() {
+        String logicalName = _logicalName;
+        if (withoutDevice(logicalName))
+            return;
+        _manager.enable(logicalName).whenComplete((ignored, e) -> {
+            if (e != null) {
+                recordFailure(logicalName, "enable", e);
+                return;
+            }
+            BaseControl device = control();
             try {
-                _device.release();
-                _status.postValue(Status.OPENED);
-            } catch (APosException e) {
-                Log.e("Example", "Releasing: ", e);
-                _errorMessage = e.getMessage();
-                _status.postValue(Status.ERROR);
+                if (device instanceof Scanner)
+                    _connectionStatus.postValue(device.getPowerState());
+            } catch (APosException powerStateFailure) {
+                Log.e("Example", "Reading power state: ", powerStateFailure);
             }
-        }).start();
+        });
+    }
+
+    public void disable() {
+        stopLiveWeight();
+        cancelWeightRequests();
+        stopCollectingStatistics();
+        String logicalName = _logicalName;
+        if (withoutDevice(logicalName))
+            return;
+        takeLeasedDevice(logicalName);
+        _manager.disable(logicalName).whenComplete((ignored, e) -> recordFailure(logicalName, "disable", e));
     }
 
+    public void release() {
+        String logicalName = _logicalName;
+        if (withoutDevice(logicalName))
+            return;
+        _manager.release(logicalName).whenComplete((ignored, e) -> recordFailure(logicalName, "release", e));
+    }
+
+    /**
+     * Close the device from any state, which also leaves an error.
+     */
     public void close() {
-        new Thread(() -> {
-            try {
-                _device.close();
-                _status.postValue(Status.CLOSED);
-            } catch (APosException e) {
-                Log.e("Example", "Closing: ", e);
-                _errorMessage = e.getMessage();
-                _status.postValue(Status.ERROR);
-            }
-        }).start();
+        stopLiveWeight();
+        cancelWeightRequests();
+        stopCollectingStatistics();
+        String logicalName = _logicalName;
+        if (withoutDevice(logicalName))
+            return;
+        synchronized (this) {
+            if (_supervisor != null)
+                _supervisor.cancel(logicalName);
+        }
+        takeLeasedDevice(logicalName);
+        _manager.close(logicalName).whenComplete((ignored, e) -> {
+            recordFailure(logicalName, "close", e);
+            // Also after an error of this view model, such as a profile that could not be loaded.
+            if (e == null)
+                moveTo(DeviceState.CLOSED);
+        });
     }
 
     public String getProductName() throws APosException {
-        return _device.getPhysicalDeviceName();
+        return control().getPhysicalDeviceName();
     }
 
     public String getAdditionalData() throws APosException {
-        return _device.getDeviceServiceDescription();
+        return control().getDeviceServiceDescription();
     }
 
     public LiveData<int[]> getDeviceFirmwareVersion() {
@@ -338,25 +818,38 @@ public class ExampleViewModel extends ViewModel implements EventListener, com.da
     }
 
     public LiveData<Status> getStatus() {
-        if (_status == null) {
-            _status = new MutableLiveData<>();
-            _status.postValue(Status.CLOSED);
-        }
+        if (_status == null)
+            _status = new MutableLiveData<>(Status.valueOf(_deviceState.getState().name()));
         return _status;
     }
 
-    public LiveData<String> getBarcodeContent() {
-        if (_barcodeContent == null) {
-            _barcodeContent = new MutableLiveData<>();
+    public LiveData<List<ScanRecord>> getScans() {
+        if (_scans == null) {
+            _scans = new ScanBatchLiveData(SCAN_BUFFER_CAPACITY, this::acknowledgeScans);
         }
-        return _barcodeContent;
+        return _scans;
     }
 
-    public LiveData<String> getBarcodeSymbology() {
-        if (_barcodeSymbology == null) {
-            _barcodeSymbology = new MutableLiveData<>();
-        }
-        return _barcodeSymbology;
+    /**
+     * @return the number of scans shown since the view model was created.
+     */
+    public long getScanCount() {
+        return ((ScanBatchLiveData) getScans()).getShownCount();
+    }
+
+    private void deliverScans(List<ScanRecord> batch) {
+        ((ScanBatchLiveData) getScans()).setValue(batch);
+    }
+
+    /**
+     * The scans of a batch leave the journal once the screen has received them, not when they are merely set
+     * while no screen observes them.
+     */
+    private void acknowledgeScans(List<ScanRecord> batch) {
+        long sequence = batch.isEmpty() ? 0 : batch.get(batch.size() - 1).getJournalSequence();
+        ScanJournal journal = _journal;
+        if (journal != null && sequence > 0)
+            journal.acknowledge(sequence);
     }
 
     public LiveData<Integer> getConnectionStatus() {
@@ -379,10 +872,24 @@ public class ExampleViewModel extends ViewModel implements EventListener, com.da
         return _weight;
     }
 
+    public LiveData<LiveWeight> getLiveWeight() {
+        if (_liveWeight == null) {
+            _liveWeight = new MutableLiveData<>();
+        }
+        return _liveWeight;
+    }
+
     public String getErrorMessage() {
         return _errorMessage;
     }
 
+    /**
+     * @return the logical name of the device opened or resumed last, null if there was none.
+     */
+    public synchronized String getLogicalName() {
+        return _logicalName;
+    }
+
     public StatisticsFormat getStatisticFormat() {
         return statisticsFormat;
     }
@@ -391,32 +898,282 @@ public class ExampleViewModel extends ViewModel implements EventListener, com.da
         statisticsFormat = format;
     }
 
+    public boolean isStatisticsGzip() {
+        return statisticsGzip;
+    }
+
+    public void setStatisticsGzip(boolean gzip) {
+        statisticsGzip = gzip;
+    }
+
     public boolean isDeviceAScale() {
-        return ((_device != null) && (_device instanceof Scale));
+        return control() instanceof Scale;
     }
 
-    public LiveData<List<String>> getProfiles(Context cxt) {
+    /**
+     * Export the metrics of the device operations to metrics.json in the app files directory, and in debug
+     * builds serve them on http://localhost:8090/metrics as well.
+     */
+    public void startMetricsExport(Context cxt) {
+        if (_metricsExporter != null)
+            return;
+        _metricsExporter = new MetricsExporter(_metrics, new File(cxt.getFilesDir(), "metrics.json"));
+        _metricsExporter.start(METRICS_EXPORT_PERIOD_MS);
+        if (BuildConfig.DEBUG) {
+            _metricsServer = new MetricsHttpServer(_metrics, METRICS_HTTP_PORT);
+            try {
+                _metricsServer.start();
+            } catch (IOException e) {
+                Log.e("Example", "Starting metrics server: ", e);
+                _metricsServer = null;
+            }
+        }
+    }
+
+    /**
+     * Poll the statistics of the enabled device about every minute and keep their changes in statistics.log
+     * in the app files directory.
+     */
+    public void startStatisticsCollection(Context cxt) {
+        // Opening the log replays it: off the main thread and off the pool the device commands share.
+        _scheduler.submitBlockingCoalescing(StatisticsDeltaLog.class, "openStatisticsLog", () -> {
+            synchronized (this) {
+                if (_statisticsCollector != null)
+                    return;
+            }
+            StatisticsDeltaLog log;
+            try {
+                log = new StatisticsDeltaLog(new File(cxt.getFilesDir(), "statistics.log"));
+            } catch (IOException e) {
+                Log.e("Example", "Opening statistics log: ", e);
+                return;
+            }
+            synchronized (this) {
+                _statisticsCollector = new StatisticsCollector(_scheduler, log, STATISTICS_COLLECTION_PERIOD_MS,
+                        STATISTICS_COLLECTION_JITTER, new Random());
+                // The device may have been enabled while the log was read.
+                if (_deviceState.getState() == DeviceState.ENABLED)
+                    collectStatistics();
+            }
+        });
+    }
+
+    /**
+     * Keep the scans in scans.journal in the app files directory until they have been shown, and show again those
+     * a previous run of the app did not.
+     */
+    public void startScanJournal(Context cxt) {
+        // Replaying more scans than the batcher holds waits for the main thread to take them: off the main thread
+        // and off the pool the device commands share.
+        _scheduler.submitBlockingCoalescing(ScanJournal.class, "openScanJournal", () -> {
+            ScanJournal journal;
+            synchronized (this) {
+                if (_journal != null)
+                    return;
+                try {
+                    journal = new ScanJournal(new File(cxt.getFilesDir(), "scans.journal"), SCAN_JOURNAL_CAPACITY,
+                            SCAN_JOURNAL_GROUP_COMMIT_MS);
+                } catch (IOException e) {
+                    Log.e("Example", "Opening scan journal: ", e);
+                    return;
+                }
+                _journal = journal;
+                _scanPublisher.setJournal(journal);
+            }
+            journal.replay(_scanRecords, Symbologies.STANDARD, (record, timeMillis) -> _scanBatcher.publish(record));
+        });
+    }
+
+    /**
+     * Resolve the scans to the items of items.idx in the app files directory, an {@link ItemIndex} the POS puts
+     * there; without it scans are published without their item.
+     */
+    public void startItemLookup(Context cxt) {
+        _scheduler.submitCoalescing(ItemIndex.class, "openItemIndex", () -> {
+            File file = new File(cxt.getFilesDir(), "items.idx");
+            if (!file.exists())
+                return;
+            try {
+                _scanPipeline.setItemLookup(new ItemLookup(new ItemIndex(file), ITEM_CACHE_SIZE));
+            } catch (IOException e) {
+                Log.e("Example", "Opening item index: ", e);
+            }
+        });
+    }
+
+    private synchronized void collectStatistics() {
+        final BaseControl device = control();
+        if (_statisticsCollector == null || device == null)
+            return;
+        _statisticsCollector.add(_logicalName, () -> {
+            String[] stats = new String[2];
+            device.retrieveStatistics(stats);
+            return stats[0];
+        });
+    }
+
+    private synchronized void stopCollectingStatistics() {
+        if (_statisticsCollector != null)
+            _statisticsCollector.remove(_logicalName);
+    }
+
+    /**
+     * Take over the device a previous screen left enabled in the {@link DevicePool}, if any, so that scanning goes
+     * on without opening and claiming it again.
+     */
+    public void resume(Context cxt) {
+        if (control() != null)
+            return;
+        List<String> idle = _pool.getIdleLogicalNames();
+        if (idle.isEmpty())
+            return;
+        // The pool brings the device back while it is leased, the manager of this view model once it is taken.
+        _pool.supervise(cxt.getApplicationContext());
+        supervise(cxt);
+        String logicalName = idle.get(0);
+        long start = System.nanoTime();
+        _pool.acquire(logicalName, cxt, this).whenComplete((lease, failure) -> {
+            if (failure != null) {
+                Log.e("Example", "Resuming: ", failure);
+                _metrics.failed(logicalName, "resume");
+                return;
+            }
+            _metrics.record(logicalName, "resume", start);
+            synchronized (this) {
+                _logicalName = logicalName;
+                _lease = lease;
+            }
+            configure(ProfileStore.getInstance(cxt).getEntry(logicalName));
+            _deviceState.reset(DeviceState.ENABLED);
+            collectStatistics();
+        });
+    }
+
+    /**
+     * The device leaves the pool for good, for the manager of this view model, once the user takes it out of the
+     * enabled state.
+     */
+    private void takeLeasedDevice(String logicalName) {
+        if (_lease == null)
+            return;
+        _scheduler.submitCoalescing(logicalName, "takeLeasedDevice", () -> {
+            try {
+                BaseControl control;
+                synchronized (this) {
+                    if (_lease == null)
+                        return;
+                    control = _lease.take();
+                    _lease = null;
+                }
+                _manager.adopt(logicalName, control);
+            } catch (APosException | IllegalStateException e) {
+                Log.e("Example", "Taking leased device: ", e);
+                _metrics.failed(logicalName, "takeLeasedDevice");
+                _errorMessage = e.getMessage();
+                moveTo(DeviceState.ERROR);
+            }
+        });
+    }
+
+    /**
+     * Leave an enabled device to the pool for the next screen instead of keeping it open with nobody to use it.
+     */
+    private synchronized void parkDevice() {
+        stopLiveWeight();
+        cancelWeightRequests();
+        if (_lease != null) {
+            _lease.close();
+            _lease = null;
+            return;
+        }
+        ManagedDevice device = _logicalName == null ? null : _manager.getDevice(_logicalName);
+        if (device == null || device.getState() != DeviceState.ENABLED)
+            return;
+        try {
+            closeEvents();
+            _pool.park(_logicalName, _manager.detach(_logicalName));
+        } catch (APosException | IllegalStateException e) {
+            Log.e("Example", "Parking device: ", e);
+        }
+    }
+
+    @Override
+    protected void onCleared() {
+        parkDevice();
+        _scheduler.removeObserver(_metrics);
+        if (_metricsExporter != null)
+            _metricsExporter.stop();
+        if (_metricsServer != null)
+            _metricsServer.stop();
+        synchronized (this) {
+            if (_supervisor != null)
+                _supervisor.stop();
+            if (_firmwareCatalog != null)
+                _firmwareCatalog.shutdown();
+            replaceFirmwareInput(null);
+            if (_statisticsCollector != null) {
+                _statisticsCollector.stop();
+                try {
+                    _statisticsCollector.getLog().close();
+                } catch (IOException e) {
+                    Log.e("Example", "Closing statistics log: ", e);
+                }
+            }
+            if (_journal != null) {
+                _scanPublisher.setJournal(null);
+                try {
+                    _journal.close();
+                } catch (IOException e) {
+                    Log.e("Example", "Closing scan journal: ", e);
+                }
+                _journal = null;
+            }
+        }
+    }
+
+    /**
+     * @return the profile IDs of apos.json that start with the filter: the first page as soon as it is read, then
+     * all of them.
+     */
+    public LiveData<ProfileIdIndex> getProfiles(Context cxt) {
         if (_profileIDs == null) {
             _profileIDs = new MutableLiveData<>();
-            new Thread(() -> {
+            _scheduler.submit(DLAPosConfigHelper.class, "getProfiles", () -> {
+                ProfileIdIndex index;
                 try {
-                    DLAPosConfigHelper.getInstance(cxt).initialize(cxt);
+                    index = ProfileStore.getInstance(cxt).loadProfileIndex(PROFILE_FIRST_PAGE, this::deliverProfiles);
                 } catch (APosException e) {
                     _errorMessage = e.getMessage();
-                    _status.postValue(Status.ERROR);
+                    moveTo(DeviceState.ERROR);
+                    index = ProfileIdIndex.of(DLAPosConfigHelper.getInstance(cxt).getProfileManager().getAllProfileIds());
                 }
-                _profileIDs.postValue(DLAPosConfigHelper.getInstance(cxt).getProfileManager().getAllProfileIds());
-            }).start();
+                deliverProfiles(index);
+            });
         }
         return _profileIDs;
     }
 
+    /**
+     * Show only the profile IDs that start with the prefix, ignoring case, e.g. DL-PowerScan-*.
+     */
+    public void filterProfiles(String prefix) {
+        _profileFilter = prefix;
+        if (_profileIDs != null)
+            _profileIDs.setValue(_profileIndex.startingWith(prefix));
+    }
+
+    private void deliverProfiles(ProfileIdIndex index) {
+        // Filtered on the main thread, so a filter typed meanwhile is not undone.
+        _mainThread.execute(() -> {
+            _profileIndex = index;
+            _profileIDs.setValue(index.startingWith(_profileFilter));
+        });
+    }
+
     public void cleanDatabase(Context cxt) {
-        new Thread(() -> {
-            if (DLAPosConfigHelper.getInstance(cxt).isInitialized()) {
-                DLAPosConfigHelper.getInstance(cxt).getProfileManager().deleteAllProfiles();
-            }
-        }).start();
+        // Profiles matching the current apos.json are kept for the next launch.
+        _scheduler.submitCoalescing(DLAPosConfigHelper.class, "cleanDatabase",
+                () -> ProfileStore.getInstance(cxt).cleanDatabase());
     }
 
 }
@@ -3,9 +3,15 @@ package com.datalogic.apossampleapp;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.view.LayoutInflater;
 import android.view.View;
+import android.view.ViewGroup;
 import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
+import android.widget.BaseAdapter;
+import android.widget.TextView;
 
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
@@ -13,16 +19,17 @@ import androidx.core.app.ActivityCompat;
 import androidx.lifecycle.ViewModelProvider;
 
 import com.datalogic.apossampleapp.databinding.ActivityMainBinding;
-import com.datalogic.apossampleapp.helpers.UriHelper;
+import com.datalogic.apossampleapp.profiles.ProfileIdIndex;
+import com.datalogic.apossampleapp.scale.WeightUnits;
+import com.datalogic.apossampleapp.scan.Item;
+import com.datalogic.apossampleapp.scan.ScanRecord;
 import com.datalogic.dlapos.androidpos.common.DLSJposConst;
 import com.datalogic.dlapos.commons.constant.CommonsConstants;
 import com.datalogic.dlapos.commons.support.APosException;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.text.MessageFormat;
+import java.util.List;
+import java.util.Locale;
 
 public class MainActivity extends AppCompatActivity {
 
@@ -31,7 +38,6 @@ public class MainActivity extends AppCompatActivity {
     private static final int READ_STORAGE_PERMISSION_REQUEST_CODE = 41;
     private static final int CREATE_FILE = 1;
     private static final int PICK_FILE = 2;
-    private String logicalName = "DL-Gryphon-GD4500-USB-OEM";
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -49,21 +55,8 @@ public class MainActivity extends AppCompatActivity {
             }
         }
 
-        // handle profile spinner selections
-        binding.logicalNameSpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
-            @Override
-            public void onItemSelected(AdapterView<?> adapterView, View view, int i, long l) {
-                logicalName = (String) adapterView.getItemAtPosition(i);
-            }
-
-            @Override
-            public void onNothingSelected(AdapterView<?> adapterView) {
-                //nothing to do here
-            }
-        });
-
         binding.closeButton.setOnClickListener(view1 -> viewModel.close());
-        binding.openButton.setOnClickListener(view1 -> viewModel.open(logicalName, getApplicationContext()));
+        binding.openButton.setOnClickListener(view1 -> openSelectedProfile());
         binding.claimButton.setOnClickListener(view1 -> viewModel.claim());
         binding.releaseButton.setOnClickListener(view1 -> viewModel.release());
         binding.enableButton.setOnClickListener(view1 -> viewModel.enable());
@@ -72,6 +65,7 @@ public class MainActivity extends AppCompatActivity {
         binding.saveStatistics.setOnClickListener(view1 -> viewModel.retrieveStatistics());
         binding.openFirmwareButton.setOnClickListener(view1 -> pickFile());
         binding.upgradeButton.setOnClickListener(view1 -> viewModel.updateFirmware());
+        binding.bestFirmwareButton.setOnClickListener(view1 -> viewModel.compareFirmwareCatalog(this));
         ArrayAdapter<CharSequence> spinnerAdapter = ArrayAdapter.createFromResource(this,
                 R.array.statistics_file_types,
                 android.R.layout.simple_spinner_item);
@@ -80,10 +74,9 @@ public class MainActivity extends AppCompatActivity {
         binding.spinnerStatistics.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
             @Override
             public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
-                if (position == 0)
-                    viewModel.setStatisticsFormat(ExampleViewModel.StatisticsFormat.XML);
-                else if (position == 1)
-                    viewModel.setStatisticsFormat(ExampleViewModel.StatisticsFormat.AVALANCHE);
+                // Xml, Avalanche, then the same gzipped.
+                viewModel.setStatisticsFormat(position % 2 == 0 ? ExampleViewModel.StatisticsFormat.XML : ExampleViewModel.StatisticsFormat.AVALANCHE);
+                viewModel.setStatisticsGzip(position >= 2);
             }
 
             @Override
@@ -94,6 +87,10 @@ public class MainActivity extends AppCompatActivity {
         binding.asyncSwitch.setOnCheckedChangeListener((compoundButton, checked) -> {
             viewModel.setScaleAsync(checked);
         });
+        binding.liveWeightSwitch.setOnCheckedChangeListener((compoundButton, checked) -> {
+            if (viewModel.isDeviceAScale())
+                viewModel.setLiveWeight(checked);
+        });
 
         viewModel.getStatus().observe(this, status -> {
             handleButtonsOnStatusChange(status);
@@ -108,6 +105,8 @@ public class MainActivity extends AppCompatActivity {
                     break;
                 case ENABLED:
                     try {
+                        // A device resumed from the pool skips the opened state.
+                        binding.productNameValue.setText(viewModel.getProductName());
                         binding.additionalDataValue.setText(viewModel.getAdditionalData());
                     } catch (APosException e) {
                         e.printStackTrace();
@@ -120,19 +119,38 @@ public class MainActivity extends AppCompatActivity {
             }
             binding.statusValue.setText(status.name());
         });
-        viewModel.getBarcodeContent().observe(this, content -> binding.barcodeContentValue.setText(content));
-        viewModel.getBarcodeSymbology().observe(this, symbology -> binding.barcodeSymbologyValue.setText(symbology));
+        viewModel.getScans().observe(this, this::renderScans);
         viewModel.getConnectionStatus().observe(this, this::handleConnectionStatusChange);
         viewModel.getStatistics().observe(this, stats -> createFile());
         viewModel.isUpgradable().observe(this, upgradable -> binding.upgradeButton.setEnabled(upgradable));
         viewModel.getDeviceFirmwareVersion().observe(this, this::handleFirmwareComparisonResult);
         viewModel.getWeight().observe(this, weight -> binding.weightValue.setText(weight + " " + viewModel.getWeightUnit()));
+        viewModel.getLiveWeight().observe(this, weight -> binding.weightValue.setText(
+                WeightUnits.STANDARD.toUnits(weight.getWeight()) + " " + viewModel.getWeightUnit() + (weight.isStable() ? "" : " ~")));
+
+        viewModel.startMetricsExport(this);
+        viewModel.startStatisticsCollection(this);
+        viewModel.startScanJournal(this);
+        viewModel.startItemLookup(this);
+        viewModel.resume(this);
+
+        // populate profile spinner with the profiles contained in apos.json, a page first, filtered as typed
+        ProfileIdAdapter profileAdapter = new ProfileIdAdapter();
+        binding.logicalNameSpinner.setAdapter(profileAdapter);
+        viewModel.getProfiles(this).observe(this, profileAdapter::setProfiles);
+        binding.profileFilter.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence text, int start, int count, int after) {
+            }
 
-        // create adapter based on profiles contained in apos.json and populate profile spinner
-        viewModel.getProfiles(this).observe(this, profiles -> {
-            ArrayAdapter<String> newAdapter = new ArrayAdapter<String>(this, android.R.layout.simple_spinner_item, profiles);
-            newAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
-            binding.logicalNameSpinner.setAdapter(newAdapter);
+            @Override
+            public void onTextChanged(CharSequence text, int start, int before, int count) {
+                viewModel.filterProfiles(text.toString());
+            }
+
+            @Override
+            public void afterTextChanged(Editable editable) {
+            }
         });
 
     }
@@ -141,32 +159,37 @@ public class MainActivity extends AppCompatActivity {
     protected void onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
         if (resultCode == RESULT_OK && requestCode == CREATE_FILE) {
-            try {
-                InputStream is = new ByteArrayInputStream(viewModel.getStatistics().getValue().getBytes());
-                OutputStream os = getContentResolver().openOutputStream(data.getData());
-                byte[] buf = new byte[8192];
-                int length;
-                while ((length = is.read(buf)) > 0) {
-                    os.write(buf, 0, length);
-                }
-                os.flush();
-                os.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            viewModel.saveStatistics(getContentResolver(), data.getData());
         }
         if (resultCode == RESULT_OK && requestCode == PICK_FILE) {
-            String filePath = UriHelper.getPath(getApplicationContext(), data.getData());
-            viewModel.compareFirmware(filePath);
+            viewModel.compareFirmware(this, data.getData());
+        }
+    }
+
+    /**
+     * Open the device of the profile selected when the button is pressed, which the filter may have changed.
+     */
+    private void openSelectedProfile() {
+        String selected = (String) binding.logicalNameSpinner.getSelectedItem();
+        if (selected == null) {
+            binding.additionalDataValue.setText(R.string.no_profile);
+            return;
         }
+        viewModel.open(selected, getApplicationContext());
     }
 
     protected void createFile() {
         Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
         intent.addCategory(Intent.CATEGORY_OPENABLE);
         String format = (viewModel.getStatisticFormat() == ExampleViewModel.StatisticsFormat.XML) ? "xml" : "txt";
-        intent.setType("text/" + format);
-        intent.putExtra(Intent.EXTRA_TITLE, logicalName + "_stats." + format);
+        String logicalName = viewModel.getLogicalName();
+        if (viewModel.isStatisticsGzip()) {
+            intent.setType("application/gzip");
+            intent.putExtra(Intent.EXTRA_TITLE, logicalName + "_stats." + format + ".gz");
+        } else {
+            intent.setType("text/" + format);
+            intent.putExtra(Intent.EXTRA_TITLE, logicalName + "_stats." + format);
+        }
 
         startActivityForResult(intent, CREATE_FILE);
     }
@@ -195,6 +218,30 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    private void renderScans(List<ScanRecord> scans) {
+        if (scans.isEmpty())
+            return;
+        ScanRecord latest = scans.get(scans.size() - 1);
+        String content = latest.getElementCount() > 0 ? humanReadable(latest) : latest.getLabelText();
+        Item item = latest.getItem();
+        if (item != null)
+            content += String.format(Locale.getDefault(), "\n%s %d.%02d", item.getDescription(),
+                    item.getPriceCents() / 100, item.getPriceCents() % 100);
+        binding.barcodeContentValue.setText(content);
+        binding.barcodeSymbologyValue.setText(latest.getSymbologyName());
+        binding.scanCountValue.setText(String.valueOf(viewModel.getScanCount()));
+    }
+
+    /**
+     * @return the GS1 elements of the scan the way they are printed under the barcode, e.g. (01)09501101530003(10)AB12.
+     */
+    private static String humanReadable(ScanRecord scan) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < scan.getElementCount(); i++)
+            text.append('(').append(scan.getApplicationIdentifier(i)).append(')').append(scan.getElementValue(i));
+        return text.toString();
+    }
+
     private void disableAll() {
         binding.openButton.setEnabled(false);
         binding.closeButton.setEnabled(false);
@@ -203,9 +250,14 @@ public class MainActivity extends AppCompatActivity {
         binding.enableButton.setEnabled(false);
         binding.disableButton.setEnabled(false);
         binding.logicalNameSpinner.setEnabled(false);
+        binding.profileFilter.setEnabled(false);
         binding.openFirmwareButton.setEnabled(false);
+        binding.bestFirmwareButton.setEnabled(false);
         binding.upgradeButton.setEnabled(false);
         binding.saveStatistics.setEnabled(false);
+        binding.readWeightButton.setEnabled(false);
+        binding.asyncSwitch.setEnabled(false);
+        binding.liveWeightSwitch.setEnabled(false);
     }
 
     private void prepareFirmwareComparisonLabels() {
@@ -226,8 +278,12 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void handleButtonsOnStatusChange(ExampleViewModel.Status status) {
-        if (status == ExampleViewModel.Status.ERROR)
+        if (status == ExampleViewModel.Status.ERROR) {
+            // Only closing the device leaves an error.
+            disableAll();
+            binding.closeButton.setEnabled(true);
             return;
+        }
 
         binding.openButton.setEnabled(status == ExampleViewModel.Status.CLOSED);
         binding.closeButton.setEnabled(status == ExampleViewModel.Status.OPENED);
@@ -236,12 +292,17 @@ public class MainActivity extends AppCompatActivity {
         binding.enableButton.setEnabled(status == ExampleViewModel.Status.CLAIMED);
         binding.disableButton.setEnabled(status == ExampleViewModel.Status.ENABLED);
         binding.logicalNameSpinner.setEnabled(status == ExampleViewModel.Status.CLOSED);
+        binding.profileFilter.setEnabled(status == ExampleViewModel.Status.CLOSED);
         binding.openFirmwareButton.setEnabled(status == ExampleViewModel.Status.ENABLED);
+        binding.bestFirmwareButton.setEnabled(status == ExampleViewModel.Status.ENABLED);
         binding.saveStatistics.setEnabled(status == ExampleViewModel.Status.ENABLED);
         binding.readWeightButton.setEnabled(viewModel.isDeviceAScale() && status == ExampleViewModel.Status.ENABLED);
         binding.asyncSwitch.setEnabled(viewModel.isDeviceAScale() && status == ExampleViewModel.Status.ENABLED);
-        if (!viewModel.isDeviceAScale() || status != ExampleViewModel.Status.ENABLED)
+        binding.liveWeightSwitch.setEnabled(viewModel.isDeviceAScale() && status == ExampleViewModel.Status.ENABLED);
+        if (!viewModel.isDeviceAScale() || status != ExampleViewModel.Status.ENABLED) {
             binding.asyncSwitch.setChecked(false);
+            binding.liveWeightSwitch.setChecked(false);
+        }
     }
 
     private void handleFirmwareComparisonResult(int[] result) {
@@ -293,7 +354,9 @@ public class MainActivity extends AppCompatActivity {
 
     @Override
     protected void onDestroy() {
-        viewModel.cleanDatabase(this);
+        // A screen created again keeps the profiles its devices were opened with.
+        if (isFinishing())
+            viewModel.cleanDatabase(this);
         super.onDestroy();
     }
 
@@ -311,4 +374,48 @@ public class MainActivity extends AppCompatActivity {
             throw e;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * The rows of the profile spinner, made from the IDs only when shown.
+     */
+    private static class ProfileIdAdapter extends BaseAdapter {
+        private ProfileIdIndex profiles = ProfileIdIndex.EMPTY;
+
+        void setProfiles(ProfileIdIndex profiles) {
+            this.profiles = profiles;
+            notifyDataSetChanged();
+        }
+
+        @Override
+        public int getCount() {
+            return profiles.size();
+        }
+
+        @Override
+        public String getItem(int position) {
+            return profiles.get(position);
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return profiles.getIndex(position);
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            return row(position, convertView, parent, android.R.layout.simple_spinner_item);
+        }
+
+        @Override
+        public View getDropDownView(int position, View convertView, ViewGroup parent) {
+            return row(position, convertView, parent, android.R.layout.simple_spinner_dropdown_item);
+        }
+
+        private View row(int position, View convertView, ViewGroup parent, int layout) {
+            TextView row = (TextView) (convertView != null ? convertView
+                    : LayoutInflater.from(parent.getContext()).inflate(layout, parent, false));
+            row.setText(getItem(position));
+            return row;
+        }
+    }
+}
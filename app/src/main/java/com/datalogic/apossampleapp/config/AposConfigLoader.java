@@ -0,0 +1,182 @@
+package com.datalogic.apossampleapp.config;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads apos.json one entry at a time.
+ * <p>
+ * Only the entries of the requested logical names are materialized, the others are skipped token by
+ * token, and reading stops as soon as all the requested entries are found. Names and repeated values
+ * are interned in a table shared by everything the loader reads.
+ */
+public final class AposConfigLoader {
+    private static final String ENTRIES = "aPosEntries";
+
+    private final NameTable _names = new NameTable();
+    private final PropertyMap.Builder _properties = new PropertyMap.Builder();
+
+    /**
+     * @return the logical names of all the entries, in file order.
+     */
+    public List<String> readLogicalNames(Reader reader) throws IOException {
+        List<String> logicalNames = new ArrayList<>();
+        JsonTokenizer tokenizer = new JsonTokenizer(reader);
+        if (!seekEntries(tokenizer))
+            return logicalNames;
+        while (tokenizer.next() == JsonTokenizer.Token.BEGIN_OBJECT) {
+            String logicalName = null;
+            JsonTokenizer.Token token;
+            while ((token = tokenizer.next()) == JsonTokenizer.Token.NAME) {
+                if (logicalName == null && tokenizer.textEquals("logicalName")) {
+                    tokenizer.next();
+                    logicalName = _names.intern(tokenizer.textBuffer());
+                } else
+                    tokenizer.skipValue();
+            }
+            if (token != JsonTokenizer.Token.END_OBJECT)
+                throw new IOException("Malformed entry in " + ENTRIES);
+            if (logicalName != null)
+                logicalNames.add(logicalName);
+        }
+        return logicalNames;
+    }
+
+    /**
+     * @param logicalNames the entries to read, or null to read them all.
+     * @return the entries found, by logical name.
+     */
+    public Map<String, AposEntry> load(Reader reader, Collection<String> logicalNames) throws IOException {
+        Map<String, AposEntry> entries = new HashMap<>();
+        Set<String> wanted = logicalNames == null ? null : new HashSet<>(logicalNames);
+        JsonTokenizer tokenizer = new JsonTokenizer(reader);
+        if (!seekEntries(tokenizer))
+            return entries;
+        while ((wanted == null || entries.size() < wanted.size()) && tokenizer.next() == JsonTokenizer.Token.BEGIN_OBJECT) {
+            AposEntry entry = readEntry(tokenizer, wanted);
+            if (entry != null)
+                entries.put(entry.getLogicalName(), entry);
+        }
+        return entries;
+    }
+
+    /**
+     * @return the entry of the logical name, or null if there is none.
+     */
+    public AposEntry load(Reader reader, String logicalName) throws IOException {
+        return load(reader, Collections.singleton(logicalName)).get(logicalName);
+    }
+
+    /**
+     * @return the number of distinct names and values interned so far.
+     */
+    public int getInternedCount() {
+        return _names.size();
+    }
+
+    private static boolean seekEntries(JsonTokenizer tokenizer) throws IOException {
+        if (tokenizer.next() != JsonTokenizer.Token.BEGIN_OBJECT)
+            throw new IOException("apos.json must be an object");
+        JsonTokenizer.Token token;
+        while ((token = tokenizer.next()) == JsonTokenizer.Token.NAME) {
+            if (tokenizer.textEquals(ENTRIES)) {
+                if (tokenizer.next() != JsonTokenizer.Token.BEGIN_ARRAY)
+                    throw new IOException(ENTRIES + " must be an array");
+                return true;
+            }
+            tokenizer.skipValue();
+        }
+        return false;
+    }
+
+    /**
+     * Read the entry whose opening brace was just consumed.
+     *
+     * @return the entry, or null if it is not wanted.
+     */
+    private AposEntry readEntry(JsonTokenizer tokenizer, Set<String> wanted) throws IOException {
+        String logicalName = null;
+        String category = null;
+        String factoryClass = null;
+        String serviceClass = null;
+        PropertyMap properties = PropertyMap.EMPTY;
+        JsonTokenizer.Token token;
+        while ((token = tokenizer.next()) == JsonTokenizer.Token.NAME) {
+            if (tokenizer.textEquals("logicalName")) {
+                tokenizer.next();
+                logicalName = _names.intern(tokenizer.textBuffer());
+                if (wanted != null && !wanted.contains(logicalName)) {
+                    tokenizer.skipToEndOfContainer();
+                    return null;
+                }
+            } else if (tokenizer.textEquals("creation")) {
+                String[] classes = readFields(tokenizer, "factoryClass", "serviceClass");
+                factoryClass = classes[0];
+                serviceClass = classes[1];
+            } else if (tokenizer.textEquals("apos")) {
+                category = readFields(tokenizer, "category", null)[0];
+            } else if (tokenizer.textEquals("properties")) {
+                properties = readProperties(tokenizer);
+            } else
+                tokenizer.skipValue();
+        }
+        if (token != JsonTokenizer.Token.END_OBJECT)
+            throw new IOException("Malformed entry in " + ENTRIES);
+        if (logicalName == null || (wanted != null && !wanted.contains(logicalName)))
+            return null;
+        return new AposEntry(logicalName, category, factoryClass, serviceClass, properties);
+    }
+
+    /**
+     * Read up to two string fields of the object that follows, skipping the others.
+     */
+    private String[] readFields(JsonTokenizer tokenizer, String first, String second) throws IOException {
+        String[] values = new String[2];
+        if (tokenizer.next() != JsonTokenizer.Token.BEGIN_OBJECT)
+            throw new IOException("Expected an object in " + ENTRIES);
+        while (tokenizer.next() == JsonTokenizer.Token.NAME) {
+            int index = tokenizer.textEquals(first) ? 0 : second != null && tokenizer.textEquals(second) ? 1 : -1;
+            if (index < 0)
+                tokenizer.skipValue();
+            else {
+                tokenizer.next();
+                values[index] = _names.intern(tokenizer.textBuffer());
+            }
+        }
+        return values;
+    }
+
+    private PropertyMap readProperties(JsonTokenizer tokenizer) throws IOException {
+        if (tokenizer.next() != JsonTokenizer.Token.BEGIN_ARRAY)
+            throw new IOException("properties must be an array");
+        while (tokenizer.next() == JsonTokenizer.Token.BEGIN_OBJECT) {
+            String name = null;
+            String type = null;
+            String value = null;
+            while (tokenizer.next() == JsonTokenizer.Token.NAME) {
+                if (tokenizer.textEquals("name")) {
+                    tokenizer.next();
+                    name = _names.intern(tokenizer.textBuffer());
+                } else if (tokenizer.textEquals("type")) {
+                    tokenizer.next();
+                    type = _names.intern(tokenizer.textBuffer());
+                } else if (tokenizer.textEquals("value")) {
+                    tokenizer.next();
+                    value = _names.intern(tokenizer.textBuffer());
+                } else
+                    tokenizer.skipValue();
+            }
+            if (name != null)
+                _properties.add(name, PropertyMap.typed(type, value == null ? "" : value));
+        }
+        return _properties.build();
+    }
+}
@@ -0,0 +1,43 @@
+package com.datalogic.apossampleapp.config;
+
+/**
+ * One entry of apos.json: a logical name, the classes that serve it and its properties.
+ */
+public final class AposEntry {
+    private final String _logicalName;
+    private final String _category;
+    private final String _factoryClass;
+    private final String _serviceClass;
+    private final PropertyMap _properties;
+
+    AposEntry(String logicalName, String category, String factoryClass, String serviceClass, PropertyMap properties) {
+        _logicalName = logicalName;
+        _category = category;
+        _factoryClass = factoryClass;
+        _serviceClass = serviceClass;
+        _properties = properties;
+    }
+
+    public String getLogicalName() {
+        return _logicalName;
+    }
+
+    /**
+     * @return the UPOS category, e.g. "Scanner" or "Scale".
+     */
+    public String getCategory() {
+        return _category;
+    }
+
+    public String getFactoryClass() {
+        return _factoryClass;
+    }
+
+    public String getServiceClass() {
+        return _serviceClass;
+    }
+
+    public PropertyMap getProperties() {
+        return _properties;
+    }
+}
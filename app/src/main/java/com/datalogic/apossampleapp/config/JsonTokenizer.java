@@ -0,0 +1,238 @@
+package com.datalogic.apossampleapp.config;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A pull parser that reads a JSON document one token at a time, without building a tree.
+ * <p>
+ * The text of the current token is kept in a reused buffer: {@link #text()} allocates a String,
+ * {@link NameTable#intern(CharSequence)} on {@link #textBuffer()} does not for names seen before.
+ */
+public final class JsonTokenizer implements Closeable {
+    public enum Token {BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT}
+
+    private static final byte ARRAY = 0;
+    private static final byte OBJECT_NAME = 1;
+    private static final byte OBJECT_VALUE = 2;
+
+    private final Reader _reader;
+    private final char[] _buf = new char[8192];
+    private int _pos;
+    private int _limit;
+    private final StringBuilder _text = new StringBuilder(64);
+    private byte[] _stack = new byte[32];
+    private int _depth;
+
+    public JsonTokenizer(Reader reader) {
+        _reader = reader;
+    }
+
+    /**
+     * @return the next token.
+     * @throws IOException if the document cannot be read or is not well formed.
+     */
+    public Token next() throws IOException {
+        int c = nextSignificant();
+        switch (c) {
+            case -1:
+                return Token.END_DOCUMENT;
+            case '{':
+                push(OBJECT_NAME);
+                return Token.BEGIN_OBJECT;
+            case '[':
+                push(ARRAY);
+                return Token.BEGIN_ARRAY;
+            case '}':
+            case ']':
+                if (_depth == 0)
+                    throw syntaxError("Unexpected '" + (char) c + "'");
+                _depth--;
+                valueDone();
+                return c == '}' ? Token.END_OBJECT : Token.END_ARRAY;
+            case '"':
+                readString();
+                if (_depth > 0 && _stack[_depth - 1] == OBJECT_NAME) {
+                    _stack[_depth - 1] = OBJECT_VALUE;
+                    return Token.NAME;
+                }
+                valueDone();
+                return Token.STRING;
+            default:
+                readLiteral((char) c);
+                valueDone();
+                char first = _text.charAt(0);
+                if (first == 't' || first == 'f')
+                    return Token.BOOLEAN;
+                if (first == 'n')
+                    return Token.NULL;
+                return Token.NUMBER;
+        }
+    }
+
+    /**
+     * Skip the value that follows the last {@link Token#NAME}, or the rest of an array element, including
+     * nested containers.
+     */
+    public void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            Token token = next();
+            if (token == Token.BEGIN_OBJECT || token == Token.BEGIN_ARRAY)
+                depth++;
+            else if (token == Token.END_OBJECT || token == Token.END_ARRAY)
+                depth--;
+            else if (token == Token.END_DOCUMENT)
+                throw syntaxError("Unexpected end of document");
+        } while (depth > 0);
+    }
+
+    /**
+     * Skip everything up to and including the end of the container the parser is in.
+     */
+    public void skipToEndOfContainer() throws IOException {
+        int depth = 1;
+        do {
+            Token token = next();
+            if (token == Token.BEGIN_OBJECT || token == Token.BEGIN_ARRAY)
+                depth++;
+            else if (token == Token.END_OBJECT || token == Token.END_ARRAY)
+                depth--;
+            else if (token == Token.END_DOCUMENT)
+                throw syntaxError("Unexpected end of document");
+        } while (depth > 0);
+    }
+
+    /**
+     * @return the text of the last name, string, number or literal; the buffer is overwritten by the next call.
+     */
+    public CharSequence textBuffer() {
+        return _text;
+    }
+
+    public String text() {
+        return _text.toString();
+    }
+
+    public boolean textEquals(String value) {
+        if (_text.length() != value.length())
+            return false;
+        for (int i = 0; i < value.length(); i++) {
+            if (_text.charAt(i) != value.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        _reader.close();
+    }
+
+    private void push(byte state) {
+        if (_depth == _stack.length) {
+            byte[] stack = new byte[_stack.length * 2];
+            System.arraycopy(_stack, 0, stack, 0, _depth);
+            _stack = stack;
+        }
+        _stack[_depth++] = state;
+    }
+
+    private void valueDone() {
+        if (_depth > 0 && _stack[_depth - 1] == OBJECT_VALUE)
+            _stack[_depth - 1] = OBJECT_NAME;
+    }
+
+    private int read() throws IOException {
+        if (_pos == _limit) {
+            _limit = _reader.read(_buf, 0, _buf.length);
+            _pos = 0;
+            if (_limit <= 0) {
+                _limit = 0;
+                return -1;
+            }
+        }
+        return _buf[_pos++];
+    }
+
+    /**
+     * Commas and colons only separate tokens, the structure comes from the brackets.
+     */
+    private int nextSignificant() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == ',' || c == ':');
+        return c;
+    }
+
+    private void readString() throws IOException {
+        _text.setLength(0);
+        while (true) {
+            int c = read();
+            if (c == '"')
+                return;
+            if (c == -1)
+                throw syntaxError("Unterminated string");
+            if (c == '\\') {
+                c = read();
+                switch (c) {
+                    case 'n':
+                        c = '\n';
+                        break;
+                    case 't':
+                        c = '\t';
+                        break;
+                    case 'r':
+                        c = '\r';
+                        break;
+                    case 'b':
+                        c = '\b';
+                        break;
+                    case 'f':
+                        c = '\f';
+                        break;
+                    case 'u':
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(read(), 16);
+                            if (digit < 0)
+                                throw syntaxError("Invalid unicode escape");
+                            code = (code << 4) | digit;
+                        }
+                        c = code;
+                        break;
+                    case -1:
+                        throw syntaxError("Unterminated string");
+                    default:
+                        break;
+                }
+            }
+            _text.append((char) c);
+        }
+    }
+
+    private void readLiteral(char first) throws IOException {
+        _text.setLength(0);
+        _text.append(first);
+        while (true) {
+            if (_pos == _limit && read() != -1)
+                _pos--;
+            if (_pos == _limit)
+                break;
+            char c = _buf[_pos];
+            if (c == ',' || c == '}' || c == ']' || c == ':' || c == ' ' || c == '\n' || c == '\r' || c == '\t')
+                break;
+            _text.append(c);
+            _pos++;
+        }
+        char c = _text.charAt(0);
+        if (c != '-' && (c < '0' || c > '9') && !textEquals("true") && !textEquals("false") && !textEquals("null"))
+            throw syntaxError("Unexpected '" + _text + "'");
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException(message + " in JSON document");
+    }
+}
@@ -0,0 +1,68 @@
+package com.datalogic.apossampleapp.config;
+
+/**
+ * Interns the names and repeated values of a configuration, so that the same text is one String no
+ * matter how many entries use it, and looking it up does not allocate.
+ */
+public final class NameTable {
+    private String[] _table = new String[256];
+    private int _size;
+
+    /**
+     * @return the interned copy of the text, created on the first call.
+     */
+    public String intern(CharSequence text) {
+        int hash = hash(text);
+        int mask = _table.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            String name = _table[i];
+            if (name == null) {
+                name = text.toString();
+                _table[i] = name;
+                if (++_size * 2 > _table.length)
+                    grow();
+                return name;
+            }
+            if (contentEquals(name, text))
+                return name;
+        }
+    }
+
+    public int size() {
+        return _size;
+    }
+
+    private void grow() {
+        String[] old = _table;
+        _table = new String[old.length * 2];
+        int mask = _table.length - 1;
+        for (String name : old) {
+            if (name == null)
+                continue;
+            int i = hash(name) & mask;
+            while (_table[i] != null)
+                i = (i + 1) & mask;
+            _table[i] = name;
+        }
+    }
+
+    /**
+     * Same value as {@link String#hashCode()}, mixed so that similar names spread over the table.
+     */
+    private static int hash(CharSequence text) {
+        int h = 0;
+        for (int i = 0; i < text.length(); i++)
+            h = 31 * h + text.charAt(i);
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean contentEquals(String name, CharSequence text) {
+        if (name.length() != text.length())
+            return false;
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != text.charAt(i))
+                return false;
+        }
+        return true;
+    }
+}
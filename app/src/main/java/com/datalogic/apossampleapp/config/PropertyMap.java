@@ -0,0 +1,162 @@
+package com.datalogic.apossampleapp.config;
+
+import java.util.Arrays;
+
+/**
+ * The properties of an apos.json entry, stored as two sorted arrays.
+ * <p>
+ * Names are interned. Values are typed when they are read: "True" and "False" become a {@link Boolean},
+ * integers written in their canonical form become an {@link Integer}, anything else stays a String.
+ */
+public final class PropertyMap {
+    static final PropertyMap EMPTY = new PropertyMap(new String[0], new Object[0]);
+
+    private final String[] _names;
+    private final Object[] _values;
+
+    private PropertyMap(String[] names, Object[] values) {
+        _names = names;
+        _values = values;
+    }
+
+    public int size() {
+        return _names.length;
+    }
+
+    public String nameAt(int index) {
+        return _names[index];
+    }
+
+    public Object valueAt(int index) {
+        return _values[index];
+    }
+
+    /**
+     * @return the typed value of the property, or null if there is no such property.
+     */
+    public Object get(String name) {
+        int index = indexOf(name);
+        return index < 0 ? null : _values[index];
+    }
+
+    /**
+     * @return the value as apos.json writes it, booleans included.
+     */
+    public String getString(String name) {
+        Object value = get(name);
+        if (value instanceof Boolean)
+            return (Boolean) value ? "True" : "False";
+        return value == null ? null : value.toString();
+    }
+
+    public int getInt(String name, int defaultValue) {
+        Object value = get(name);
+        if (value instanceof Integer)
+            return (Integer) value;
+        return (int) getDouble(name, defaultValue);
+    }
+
+    public double getDouble(String name, double defaultValue) {
+        Object value = get(name);
+        if (value instanceof Number)
+            return ((Number) value).doubleValue();
+        if (value instanceof String) {
+            try {
+                return Double.parseDouble(((String) value).trim());
+            } catch (NumberFormatException e) {
+                return defaultValue;
+            }
+        }
+        return defaultValue;
+    }
+
+    public boolean getBoolean(String name, boolean defaultValue) {
+        Object value = get(name);
+        return value instanceof Boolean ? (Boolean) value : defaultValue;
+    }
+
+    private int indexOf(String name) {
+        int low = 0;
+        int high = _names.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            String candidate = _names[middle];
+            int order = candidate == name ? 0 : candidate.compareTo(name);
+            if (order == 0)
+                return middle;
+            if (order < 0)
+                low = middle + 1;
+            else
+                high = middle - 1;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the typed form of a value read as text.
+     */
+    static Object typed(String type, String text) {
+        if ("True".equalsIgnoreCase(text))
+            return Boolean.TRUE;
+        if ("False".equalsIgnoreCase(text))
+            return Boolean.FALSE;
+        if (("Integer".equals(type) || "String".equals(type) || type == null) && isCanonicalInt(text))
+            return Integer.valueOf(text);
+        return text;
+    }
+
+    private static boolean isCanonicalInt(String text) {
+        int length = text.length();
+        int start = length > 0 && text.charAt(0) == '-' ? 1 : 0;
+        if (length == start || length - start > 9 || (text.charAt(start) == '0' && length - start > 1))
+            return false;
+        for (int i = start; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9')
+                return false;
+        }
+        return !(start == 1 && length == 2 && text.charAt(1) == '0');
+    }
+
+    /**
+     * Collects the properties of one entry; reused across entries.
+     */
+    static final class Builder {
+        private String[] names = new String[32];
+        private Object[] values = new Object[32];
+        private int size;
+
+        void add(String name, Object value) {
+            if (size == names.length) {
+                names = Arrays.copyOf(names, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            names[size] = name;
+            values[size] = value;
+            size++;
+        }
+
+        PropertyMap build() {
+            if (size == 0)
+                return EMPTY;
+            // Insertion sort: entries are short and usually already sorted, as in apos.json.
+            for (int i = 1; i < size; i++) {
+                String name = names[i];
+                Object value = values[i];
+                int j = i - 1;
+                while (j >= 0 && names[j].compareTo(name) > 0) {
+                    names[j + 1] = names[j];
+                    values[j + 1] = values[j];
+                    j--;
+                }
+                names[j + 1] = name;
+                values[j + 1] = value;
+            }
+            PropertyMap map = new PropertyMap(Arrays.copyOf(names, size), Arrays.copyOf(values, size));
+            Arrays.fill(names, 0, size, null);
+            Arrays.fill(values, 0, size, null);
+            size = 0;
+            return map;
+        }
+    }
+}
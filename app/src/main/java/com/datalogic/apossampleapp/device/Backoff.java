@@ -0,0 +1,45 @@
+package com.datalogic.apossampleapp.device;
+
+import java.util.Random;
+
+/**
+ * Delays between retries that double up to a maximum, each shortened by a random part so that devices failing
+ * together do not retry together.
+ */
+public class Backoff {
+    private final long _initialMillis;
+    private final long _maxMillis;
+    private final double _jitter;
+    private final Random _random;
+    private int _attempts;
+
+    /**
+     * @param jitter the largest part of a delay that may be cut off at random, from 0 to 1.
+     */
+    public Backoff(long initialMillis, long maxMillis, double jitter, Random random) {
+        _initialMillis = Math.max(1, initialMillis);
+        _maxMillis = Math.max(_initialMillis, maxMillis);
+        _jitter = Math.max(0, Math.min(1, jitter));
+        _random = random;
+    }
+
+    /**
+     * @return the delay before the next attempt.
+     */
+    public synchronized long nextDelayMillis() {
+        long delay = Math.min(_maxMillis, _initialMillis << Math.min(_attempts, 30));
+        _attempts++;
+        return delay - (long) (delay * _jitter * _random.nextDouble());
+    }
+
+    /**
+     * @return the number of delays handed out since the last reset.
+     */
+    public synchronized int getAttempts() {
+        return _attempts;
+    }
+
+    public synchronized void reset() {
+        _attempts = 0;
+    }
+}
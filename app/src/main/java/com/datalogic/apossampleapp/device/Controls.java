@@ -0,0 +1,66 @@
+package com.datalogic.apossampleapp.device;
+
+import android.content.Context;
+
+import com.datalogic.apossampleapp.simulator.SimulatedDeviceFactory;
+import com.datalogic.dlapos.commons.constant.CommonsConstants;
+import com.datalogic.dlapos.commons.control.BaseControl;
+import com.datalogic.dlapos.commons.event.EventCallback;
+import com.datalogic.dlapos.commons.support.APosException;
+import com.datalogic.dlapos.control.Scale;
+import com.datalogic.dlapos.control.Scanner;
+import com.datalogic.dlapos.control.event.EventListener;
+
+/**
+ * Helpers for the lifecycle steps that differ between scanners and scales.
+ */
+public final class Controls {
+    private Controls() {
+    }
+
+    /**
+     * @return a new, closed control for the logical name.
+     */
+    public static BaseControl create(String logicalName, Context context) {
+        BaseControl simulated = SimulatedDeviceFactory.create(logicalName, context);
+        if (simulated != null)
+            return simulated;
+        if (logicalName.contains("Scale") && !logicalName.contains("Scanner"))
+            return new Scale();
+        return new Scanner();
+    }
+
+    public static void addEventListener(BaseControl control, EventListener listener, EventCallback.EventType type) throws APosException {
+        if (control instanceof Scanner)
+            ((Scanner) control).addEventListener(listener, type);
+        else if (control instanceof Scale)
+            ((Scale) control).addEventListener(listener, type);
+    }
+
+    public static void removeEventListener(BaseControl control, EventListener listener, EventCallback.EventType type) throws APosException {
+        if (control instanceof Scanner)
+            ((Scanner) control).removeEventListener(listener, type);
+        else if (control instanceof Scale)
+            ((Scale) control).removeEventListener(listener, type);
+    }
+
+    /**
+     * Register the listener for data and status events and enable the device, the same way the sample app does.
+     */
+    public static void enable(BaseControl control, EventListener listener) throws APosException {
+        addEventListener(control, listener, EventCallback.EventType.Data);
+        addEventListener(control, listener, EventCallback.EventType.StatusUpdate);
+        control.setAutoDisable(false);
+        control.setDataEventEnabled(true);
+        control.setPowerNotify(CommonsConstants.PN_ENABLED);
+        control.setDeviceEnabled(true);
+    }
+
+    public static void disable(BaseControl control, EventListener listener) throws APosException {
+        control.setDataEventEnabled(false);
+        control.setAutoDisable(true);
+        removeEventListener(control, listener, EventCallback.EventType.Data);
+        control.setDeviceEnabled(false);
+        removeEventListener(control, listener, EventCallback.EventType.StatusUpdate);
+    }
+}
@@ -0,0 +1,105 @@
+package com.datalogic.apossampleapp.device;
+
+import android.util.Log;
+
+import com.datalogic.apossampleapp.events.EventBus;
+import com.datalogic.dlapos.commons.control.BaseControl;
+import com.datalogic.dlapos.commons.event.BaseEvent;
+import com.datalogic.dlapos.commons.event.ErrorEvent;
+import com.datalogic.dlapos.commons.event.EventCallback;
+import com.datalogic.dlapos.commons.support.APosException;
+import com.datalogic.dlapos.control.event.EventListener;
+
+import java.util.concurrent.Executor;
+
+/**
+ * The events of one device, fanned out to several in-process subscribers through an {@link EventBus} whose topics
+ * are the event types.
+ * <p>
+ * The bus listens to the device for the types that have subscribers only, with one listener per type so that the
+ * type of an event is known from the listener it arrives on. Error events, which devices also deliver to data
+ * listeners, go to the error subscribers only. Device callbacks only queue the events.
+ */
+public class DeviceEventBus implements EventBus.TopicListener {
+    private static final EventCallback.EventType[] TYPES = EventCallback.EventType.values();
+
+    private final BaseControl _control;
+    private final EventBus<BaseEvent> _bus;
+    private final EventListener[] _listeners = new EventListener[TYPES.length];
+    private int _registered;
+
+    public DeviceEventBus(BaseControl control) {
+        this(control, null);
+    }
+
+    /**
+     * @param executor runs the deliveries of the subscribers without an executor of their own, or null for a shared
+     *                 pool of daemon threads.
+     */
+    public DeviceEventBus(BaseControl control, Executor executor) {
+        _control = control;
+        _bus = executor == null ? new EventBus<>(this) : new EventBus<>(executor, this);
+        for (EventCallback.EventType type : TYPES) {
+            int topic = type.ordinal();
+            _listeners[topic] = event -> {
+                if (type == EventCallback.EventType.Error || !(event instanceof ErrorEvent))
+                    _bus.publish(topic, event);
+            };
+        }
+    }
+
+    /**
+     * Subscribe to events of the given types, registering for them with the device if needed.
+     *
+     * @param capacity number of events that can wait for the subscriber.
+     * @param executor runs the deliveries, or null for the executor of the bus.
+     */
+    public EventBus.Subscription<BaseEvent> subscribe(int capacity, EventBus.OverflowPolicy policy, Executor executor,
+                                                      EventBus.Subscriber<? super BaseEvent> subscriber,
+                                                      EventCallback.EventType... types) {
+        int topics = 0;
+        for (EventCallback.EventType type : types)
+            topics |= 1 << type.ordinal();
+        return _bus.subscribe(topics, capacity, policy, executor, subscriber);
+    }
+
+    @Override
+    public synchronized void onTopicsChanged(int topics) {
+        for (EventCallback.EventType type : TYPES) {
+            int bit = 1 << type.ordinal();
+            try {
+                if ((topics & bit) != 0 && (_registered & bit) == 0) {
+                    Controls.addEventListener(_control, _listeners[type.ordinal()], type);
+                    _registered |= bit;
+                } else if ((topics & bit) == 0 && (_registered & bit) != 0) {
+                    Controls.removeEventListener(_control, _listeners[type.ordinal()], type);
+                    _registered &= ~bit;
+                }
+            } catch (APosException e) {
+                Log.e("Example", "Listening to " + type + " events: ", e);
+            }
+        }
+    }
+
+    /**
+     * @return true if the bus listens to the device for events of the type.
+     */
+    public synchronized boolean isListening(EventCallback.EventType type) {
+        return (_registered & 1 << type.ordinal()) != 0;
+    }
+
+    public BaseControl getControl() {
+        return _control;
+    }
+
+    public int getSubscriberCount() {
+        return _bus.getSubscriberCount();
+    }
+
+    /**
+     * End all the subscriptions, which stops listening to the device.
+     */
+    public void close() {
+        _bus.clear();
+    }
+}
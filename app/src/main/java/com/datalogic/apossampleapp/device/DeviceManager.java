@@ -0,0 +1,375 @@
+package com.datalogic.apossampleapp.device;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.datalogic.apossampleapp.scheduler.DeviceCommandScheduler;
+import com.datalogic.dlapos.commons.control.BaseControl;
+import com.datalogic.dlapos.commons.event.BaseEvent;
+import com.datalogic.dlapos.commons.event.EventCallback;
+import com.datalogic.dlapos.commons.support.APosException;
+import com.datalogic.dlapos.commons.upos.RequestListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Opens, claims and enables several devices in parallel and merges their events into one stream.
+ * <p>
+ * Every device has its own command queue on the {@link DeviceCommandScheduler}, so a lane starts in about
+ * the time of its slowest device instead of the sum of all of them. The lifecycle steps can also be run one at a
+ * time, as the screen does; a step does nothing unless the device is in the state the step starts from, and a
+ * step that fails moves the device to {@link DeviceState#ERROR}, which only closing it leaves.
+ */
+public class DeviceManager {
+    public interface ControlFactory {
+        BaseControl create(String logicalName, Context context);
+    }
+
+    public interface Listener {
+        /**
+         * Called on the device callback thread for every event of every managed device.
+         */
+        void onDeviceEvent(ManagedDevice device, BaseEvent event);
+
+        void onDeviceStateChanged(ManagedDevice device, DeviceState state);
+    }
+
+    private static final long CLAIM_TIMEOUT_MS = 5000;
+
+    private final DeviceCommandScheduler _scheduler;
+    private final ControlFactory _factory;
+    private final Map<String, ManagedDevice> _devices = new ConcurrentHashMap<>();
+    private final List<Listener> _listeners = new CopyOnWriteArrayList<>();
+
+    public DeviceManager() {
+        this(DeviceCommandScheduler.getInstance(), Controls::create);
+    }
+
+    public DeviceManager(DeviceCommandScheduler scheduler, ControlFactory factory) {
+        _scheduler = scheduler;
+        _factory = factory;
+    }
+
+    public void addListener(Listener listener) {
+        _listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        _listeners.remove(listener);
+    }
+
+    /**
+     * Open, claim and enable every device in parallel.
+     *
+     * @return a future completed when every device is either enabled or in error.
+     */
+    public CompletableFuture<Void> start(Collection<String> logicalNames, Context context) {
+        List<CompletableFuture<Void>> steps = new ArrayList<>();
+        for (String logicalName : logicalNames) {
+            ManagedDevice device = getOrCreate(logicalName);
+            // Waits for the claim to complete.
+            steps.add(run(device, "start", true, () -> start(device, context)));
+        }
+        return CompletableFuture.allOf(steps.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Disable, release and close every device in parallel.
+     */
+    public CompletableFuture<Void> stop(Collection<String> logicalNames) {
+        List<CompletableFuture<Void>> steps = new ArrayList<>();
+        for (String logicalName : logicalNames) {
+            ManagedDevice device = _devices.get(logicalName);
+            if (device != null)
+                steps.add(run(device, "stop", false, () -> stop(device)));
+        }
+        return CompletableFuture.allOf(steps.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Open a closed device.
+     *
+     * @param control the control to open, or null for one made by the factory of the manager.
+     * @return a future completed once the step ran, or failed with the reason the device moved to ERROR.
+     */
+    public CompletableFuture<Void> open(String logicalName, BaseControl control, Context context) {
+        return step(logicalName, "open", false, device -> {
+            if (device.getState() != DeviceState.CLOSED)
+                return;
+            BaseControl opened = control != null ? control : _factory.create(logicalName, context);
+            device.setControl(opened);
+            opened.open(logicalName, context);
+            device.moveTo(DeviceState.OPENED);
+        });
+    }
+
+    /**
+     * Claim an opened device, waiting for the claim to complete off the shared pool.
+     */
+    public CompletableFuture<Void> claim(String logicalName) {
+        return step(logicalName, "claim", true, device -> {
+            if (device.getState() != DeviceState.OPENED)
+                return;
+            claim(device);
+            device.moveTo(DeviceState.CLAIMED);
+        });
+    }
+
+    /**
+     * Enable a claimed device, whose data and status events then go to the listeners of the manager too.
+     */
+    public CompletableFuture<Void> enable(String logicalName) {
+        return step(logicalName, "enable", false, device -> {
+            if (device.getState() != DeviceState.CLAIMED)
+                return;
+            Controls.enable(device.getControl(), device);
+            device.moveTo(DeviceState.ENABLED);
+        });
+    }
+
+    public CompletableFuture<Void> disable(String logicalName) {
+        return step(logicalName, "disable", false, device -> {
+            if (device.getState() != DeviceState.ENABLED)
+                return;
+            Controls.disable(device.getControl(), device);
+            device.moveTo(DeviceState.CLAIMED);
+        });
+    }
+
+    public CompletableFuture<Void> release(String logicalName) {
+        return step(logicalName, "release", false, device -> {
+            if (device.getState() != DeviceState.CLAIMED)
+                return;
+            device.getControl().release();
+            device.moveTo(DeviceState.OPENED);
+        });
+    }
+
+    /**
+     * Close a device from any state, disabling and releasing it first if needed; a device in error is closed
+     * whatever its control throws.
+     */
+    public CompletableFuture<Void> close(String logicalName) {
+        return step(logicalName, "close", false, device -> {
+            if (device.getState() == DeviceState.ERROR)
+                reset(device);
+            else
+                shutDown(device);
+        });
+    }
+
+    /**
+     * Take over a control its caller opened, claimed and enabled itself: from now on its events go to the listeners
+     * of the manager, and stopping it is up to the manager.
+     *
+     * @throws IllegalStateException if the manager already has the device open.
+     */
+    public ManagedDevice adopt(String logicalName, BaseControl control) throws APosException {
+        ManagedDevice device = getOrCreate(logicalName);
+        if (device.getState() != DeviceState.CLOSED)
+            throw new IllegalStateException(logicalName + " is already " + device.getState() + ".");
+        device.setControl(control);
+        Controls.addEventListener(control, device, EventCallback.EventType.Data);
+        Controls.addEventListener(control, device, EventCallback.EventType.StatusUpdate);
+        device.moveTo(DeviceState.OPENED);
+        device.moveTo(DeviceState.CLAIMED);
+        device.moveTo(DeviceState.ENABLED);
+        return device;
+    }
+
+    /**
+     * Hand a device over to the caller, as it is: the manager stops receiving its events and forgets it.
+     *
+     * @return the control of the device, or null if the manager does not have it.
+     */
+    public BaseControl detach(String logicalName) throws APosException {
+        ManagedDevice device = _devices.remove(logicalName);
+        if (device == null || device.getControl() == null)
+            return null;
+        BaseControl control = device.getControl();
+        Controls.removeEventListener(control, device, EventCallback.EventType.Data);
+        Controls.removeEventListener(control, device, EventCallback.EventType.StatusUpdate);
+        return control;
+    }
+
+    public CompletableFuture<Void> stopAll() {
+        return stop(new ArrayList<>(_devices.keySet()));
+    }
+
+    public ManagedDevice getDevice(String logicalName) {
+        return _devices.get(logicalName);
+    }
+
+    public Collection<ManagedDevice> getDevices() {
+        return _devices.values();
+    }
+
+    void dispatchEvent(ManagedDevice device, BaseEvent event) {
+        for (Listener listener : _listeners)
+            listener.onDeviceEvent(device, event);
+    }
+
+    void dispatchStateChange(ManagedDevice device, DeviceState state) {
+        for (Listener listener : _listeners)
+            listener.onDeviceStateChanged(device, state);
+    }
+
+    private ManagedDevice getOrCreate(String logicalName) {
+        ManagedDevice device = _devices.get(logicalName);
+        if (device == null) {
+            ManagedDevice created = new ManagedDevice(logicalName, this);
+            device = _devices.putIfAbsent(logicalName, created);
+            if (device == null)
+                device = created;
+        }
+        return device;
+    }
+
+    /**
+     * @param blocking true if the action may wait long on the device, which then runs off the shared pool.
+     * @return a future completed once the action ran, whether the device failed or not.
+     */
+    private CompletableFuture<Void> run(ManagedDevice device, String name, boolean blocking, Runnable action) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        Runnable command = () -> {
+            try {
+                action.run();
+            } finally {
+                result.complete(null);
+            }
+        };
+        if (blocking)
+            _scheduler.submitBlocking(device.getLogicalName(), name, command);
+        else
+            _scheduler.submit(device.getLogicalName(), name, command);
+        return result;
+    }
+
+    private CompletableFuture<Void> step(String logicalName, String name, boolean blocking, Step step) {
+        ManagedDevice device = getOrCreate(logicalName);
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        run(device, name, blocking, () -> {
+            try {
+                step.run(device);
+                result.complete(null);
+            } catch (Exception e) {
+                Log.e("Example", name + " " + logicalName + ": ", e);
+                device.fail(e.getMessage());
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    private void start(ManagedDevice device, Context context) {
+        long startTime = System.nanoTime();
+        try {
+            if (device.getState() == DeviceState.ERROR)
+                reset(device);
+            if (device.getState() == DeviceState.CLOSED) {
+                BaseControl control = _factory.create(device.getLogicalName(), context);
+                device.setControl(control);
+                control.open(device.getLogicalName(), context);
+                device.moveTo(DeviceState.OPENED);
+            }
+            if (device.getState() == DeviceState.OPENED) {
+                claim(device);
+                device.moveTo(DeviceState.CLAIMED);
+            }
+            if (device.getState() == DeviceState.CLAIMED) {
+                Controls.enable(device.getControl(), device);
+                device.moveTo(DeviceState.ENABLED);
+            }
+            device.setStartupNanos(System.nanoTime() - startTime);
+        } catch (APosException e) {
+            Log.e("Example", "Starting " + device.getLogicalName() + ": ", e);
+            device.fail(e.getMessage());
+        } catch (ClaimException e) {
+            device.fail(e.getMessage());
+        }
+    }
+
+    private void claim(ManagedDevice device) throws APosException, ClaimException {
+        CompletableFuture<Void> claimed = new CompletableFuture<>();
+        device.getControl().claim(new RequestListener() {
+            @Override
+            public void onSuccess() {
+                claimed.complete(null);
+            }
+
+            @Override
+            public void onFailure(String failureDescription) {
+                claimed.completeExceptionally(new ClaimException(failureDescription));
+            }
+        });
+        try {
+            claimed.get(CLAIM_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new ClaimException(e.getCause().getMessage());
+        } catch (TimeoutException e) {
+            throw new ClaimException("Claim timed out.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClaimException("Claim interrupted.");
+        }
+    }
+
+    private void stop(ManagedDevice device) {
+        try {
+            shutDown(device);
+        } catch (APosException e) {
+            Log.e("Example", "Stopping " + device.getLogicalName() + ": ", e);
+            device.fail(e.getMessage());
+        }
+    }
+
+    private void shutDown(ManagedDevice device) throws APosException {
+        BaseControl control = device.getControl();
+        if (control == null || device.getState() == DeviceState.CLOSED)
+            return;
+        if (device.getState() == DeviceState.ENABLED) {
+            Controls.disable(control, device);
+            device.moveTo(DeviceState.CLAIMED);
+        }
+        if (device.getState() == DeviceState.CLAIMED) {
+            control.release();
+            device.moveTo(DeviceState.OPENED);
+        }
+        control.close();
+        device.moveTo(DeviceState.CLOSED);
+    }
+
+    private void reset(ManagedDevice device) {
+        BaseControl control = device.getControl();
+        if (control != null) {
+            try {
+                control.close();
+            } catch (APosException e) {
+                Log.e("Example", "Resetting " + device.getLogicalName() + ": ", e);
+            }
+        }
+        device.setControl(null);
+        device.moveTo(DeviceState.CLOSED);
+    }
+
+    private interface Step {
+        void run(ManagedDevice device) throws APosException, ClaimException;
+    }
+
+    private static final class ClaimException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private ClaimException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package com.datalogic.apossampleapp.device;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.datalogic.apossampleapp.events.EventBus;
+import com.datalogic.dlapos.commons.control.BaseControl;
+import com.datalogic.dlapos.commons.event.BaseEvent;
+import com.datalogic.dlapos.commons.event.EventCallback;
+import com.datalogic.dlapos.commons.support.APosException;
+import com.datalogic.dlapos.control.event.EventListener;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps devices opened, claimed and enabled for the life of the process, so that a screen created again, e.g. after
+ * a configuration change or a return from the file picker, gets its device back in milliseconds instead of the
+ * seconds an open and claim take.
+ * <p>
+ * Screens hold a {@link Lease} on a device while they use it, and receive its events through the lease, from a
+ * {@link DeviceEventBus} of the device rather than on its callback thread. A device
+ * nobody holds a lease on stays ready for the idle timeout, then it is disabled, released and closed. Its data
+ * events are disabled meanwhile, so the device holds the scans made while it is idle for the next lease.
+ */
+public class DevicePool implements DeviceManager.Listener {
+    public static final long IDLE_TIMEOUT_MS = 120_000;
+    private static final int LEASE_EVENT_QUEUE = 64;
+    private static DevicePool _instance;
+    private static ScheduledExecutorService _timer;
+
+    private final DeviceManager _manager;
+    private final long _idleTimeoutMillis;
+    private final Map<String, Entry> _entries = new HashMap<>();
+    private DeviceSupervisor _supervisor;
+
+    public static synchronized DevicePool getInstance() {
+        if (_instance == null)
+            _instance = new DevicePool(new DeviceManager(), IDLE_TIMEOUT_MS);
+        return _instance;
+    }
+
+    public DevicePool(DeviceManager manager, long idleTimeoutMillis) {
+        _manager = manager;
+        _idleTimeoutMillis = idleTimeoutMillis;
+        manager.addListener(this);
+    }
+
+    /**
+     * Lease the device, opening, claiming and enabling it first unless the pool already holds it ready.
+     *
+     * @param listener receives the events of the device until the lease is closed, may be null.
+     * @return a future completed with the lease once the device is enabled, or failed if it could not be.
+     */
+    public CompletableFuture<Lease> acquire(String logicalName, Context context, EventListener listener) {
+        Lease lease = new Lease(logicalName, listener);
+        synchronized (this) {
+            Entry entry = _entries.get(logicalName);
+            if (entry == null) {
+                entry = new Entry();
+                _entries.put(logicalName, entry);
+            }
+            cancelEviction(entry);
+            entry.leases.add(lease);
+            listen(logicalName, entry);
+            if (!entry.evicting && isEnabled(logicalName)) {
+                CompletableFuture<Lease> warm = new CompletableFuture<>();
+                try {
+                    // Disabled when the device went idle: the scans held since are delivered to this lease.
+                    lease.getControl().setDataEventEnabled(true);
+                    warm.complete(lease);
+                } catch (APosException e) {
+                    lease.close();
+                    warm.completeExceptionally(e);
+                }
+                return warm;
+            }
+        }
+        // Queued on the lane of the device, after an eviction in progress if any.
+        return _manager.start(Collections.singletonList(logicalName), context).thenApply(ignored -> {
+            ManagedDevice device = _manager.getDevice(logicalName);
+            if (device.getState() != DeviceState.ENABLED) {
+                lease.close();
+                throw new IllegalStateException(device.getErrorMessage());
+            }
+            return lease;
+        });
+    }
+
+    /**
+     * Keep a control the caller opened, claimed and enabled itself ready for the next lease.
+     *
+     * @throws IllegalStateException if the pool already holds the device.
+     */
+    public synchronized void park(String logicalName, BaseControl control) throws APosException {
+        if (_entries.containsKey(logicalName) && isEnabled(logicalName))
+            throw new IllegalStateException(logicalName + " is already in the pool.");
+        control.setDataEventEnabled(false);
+        _manager.adopt(logicalName, control);
+        Entry entry = new Entry();
+        Entry previous = _entries.put(logicalName, entry);
+        if (previous != null && previous.events != null)
+            previous.events.close();
+        scheduleEviction(logicalName, entry);
+    }
+
+    /**
+     * Bring the devices of the pool back by themselves when they go offline, leased or idle, like the devices of a
+     * screen.
+     *
+     * @return the supervisor of the devices of the pool, made on the first call.
+     */
+    public synchronized DeviceSupervisor supervise(Context context) {
+        if (_supervisor == null)
+            _supervisor = new DeviceSupervisor(_manager, context);
+        return _supervisor;
+    }
+
+    /**
+     * @return true if the device is enabled and a lease on it is granted at once.
+     */
+    public synchronized boolean isWarm(String logicalName) {
+        Entry entry = _entries.get(logicalName);
+        return entry != null && !entry.evicting && isEnabled(logicalName);
+    }
+
+    /**
+     * @return the devices held ready that nobody has a lease on, the most recently used first.
+     */
+    public synchronized List<String> getIdleLogicalNames() {
+        List<String> names = new ArrayList<>();
+        for (Map.Entry<String, Entry> entry : _entries.entrySet()) {
+            if (entry.getValue().leases.isEmpty() && !entry.getValue().evicting && isEnabled(entry.getKey()))
+                names.add(entry.getKey());
+        }
+        names.sort((a, b) -> Long.compare(_entries.get(b).idleSinceNanos, _entries.get(a).idleSinceNanos));
+        return names;
+    }
+
+    public synchronized int getLeaseCount(String logicalName) {
+        Entry entry = _entries.get(logicalName);
+        return entry == null ? 0 : entry.leases.size();
+    }
+
+    @Override
+    public void onDeviceEvent(ManagedDevice device, BaseEvent event) {
+        // Received by the leases through the event bus of the device instead.
+    }
+
+    @Override
+    public synchronized void onDeviceStateChanged(ManagedDevice device, DeviceState state) {
+        Entry entry = _entries.get(device.getLogicalName());
+        if (entry != null)
+            listen(device.getLogicalName(), entry);
+    }
+
+    /**
+     * Called with the lock held. Listen to the control of the device while it is open, a new one once the device is
+     * opened again, and subscribe the leases that are not yet.
+     */
+    private void listen(String logicalName, Entry entry) {
+        ManagedDevice device = _manager.getDevice(logicalName);
+        BaseControl control = device == null || device.getState() == DeviceState.CLOSED ? null : device.getControl();
+        if (entry.events != null && entry.events.getControl() != control) {
+            entry.events.close();
+            entry.events = null;
+            for (Lease lease : entry.leases)
+                lease._subscription = null;
+        }
+        if (control == null)
+            return;
+        if (entry.events == null)
+            entry.events = new DeviceEventBus(control);
+        for (Lease lease : entry.leases) {
+            if (lease._listener != null && lease._subscription == null)
+                lease._subscription = entry.events.subscribe(LEASE_EVENT_QUEUE, EventBus.OverflowPolicy.BLOCK, null,
+                        lease._listener::onEvent, EventCallback.EventType.Data, EventCallback.EventType.StatusUpdate,
+                        EventCallback.EventType.Error);
+        }
+    }
+
+    private boolean isEnabled(String logicalName) {
+        ManagedDevice device = _manager.getDevice(logicalName);
+        return device != null && device.getState() == DeviceState.ENABLED;
+    }
+
+    /**
+     * Called with the lock held.
+     */
+    private void scheduleEviction(String logicalName, Entry entry) {
+        cancelEviction(entry);
+        entry.idleSinceNanos = System.nanoTime();
+        entry.eviction = timer().schedule(() -> evict(logicalName, entry), _idleTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Called with the lock held.
+     */
+    private void cancelEviction(Entry entry) {
+        if (entry.eviction != null) {
+            entry.eviction.cancel(false);
+            entry.eviction = null;
+        }
+    }
+
+    private void evict(String logicalName, Entry entry) {
+        synchronized (this) {
+            if (_entries.get(logicalName) != entry || !entry.leases.isEmpty() || entry.evicting)
+                return;
+            entry.evicting = true;
+            entry.eviction = null;
+        }
+        _manager.stop(Collections.singletonList(logicalName)).whenComplete((ignored, failure) -> {
+            synchronized (this) {
+                entry.evicting = false;
+                if (entry.leases.isEmpty() && _entries.get(logicalName) == entry)
+                    _entries.remove(logicalName);
+            }
+        });
+    }
+
+    private synchronized void release(Lease lease) {
+        Entry entry = _entries.get(lease._logicalName);
+        if (entry == null || !entry.leases.remove(lease))
+            return;
+        if (lease._subscription != null) {
+            lease._subscription.close();
+            lease._subscription = null;
+        }
+        if (entry.leases.isEmpty()) {
+            BaseControl control = lease.getControl();
+            try {
+                if (control != null)
+                    control.setDataEventEnabled(false);
+            } catch (APosException e) {
+                Log.e("Example", "Disabling data events of " + lease._logicalName + ": ", e);
+            }
+            scheduleEviction(lease._logicalName, entry);
+        }
+    }
+
+    private synchronized BaseControl take(Lease lease) throws APosException {
+        Entry entry = _entries.get(lease._logicalName);
+        if (entry == null || !entry.leases.contains(lease))
+            throw new IllegalStateException("The lease is closed.");
+        if (entry.leases.size() > 1)
+            throw new IllegalStateException(lease._logicalName + " is leased by others.");
+        _entries.remove(lease._logicalName);
+        cancelEviction(entry);
+        entry.leases.clear();
+        if (entry.events != null)
+            entry.events.close();
+        return _manager.detach(lease._logicalName);
+    }
+
+    private static synchronized ScheduledExecutorService timer() {
+        if (_timer == null) {
+            _timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "device-pool");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return _timer;
+    }
+
+    /**
+     * The use of a pooled device by one screen, until it is closed.
+     */
+    public final class Lease implements Closeable {
+        private final String _logicalName;
+        private final EventListener _listener;
+        private EventBus.Subscription<BaseEvent> _subscription;
+
+        private Lease(String logicalName, EventListener listener) {
+            _logicalName = logicalName;
+            _listener = listener;
+        }
+
+        public String getLogicalName() {
+            return _logicalName;
+        }
+
+        public BaseControl getControl() {
+            ManagedDevice device = _manager.getDevice(_logicalName);
+            return device == null ? null : device.getControl();
+        }
+
+        /**
+         * Take the device out of the pool, enabled as it is: the caller becomes its only owner and is responsible
+         * for closing it. The lease is closed.
+         *
+         * @throws IllegalStateException if the lease is closed or other leases are held on the device.
+         */
+        public BaseControl take() throws APosException {
+            return DevicePool.this.take(this);
+        }
+
+        /**
+         * Give the device back to the pool, which keeps it ready for the idle timeout if nobody else holds it.
+         */
+        @Override
+        public void close() {
+            release(this);
+        }
+    }
+
+    private static final class Entry {
+        private final List<Lease> leases = new CopyOnWriteArrayList<>();
+        private DeviceEventBus events;
+        private ScheduledFuture<?> eviction;
+        private boolean evicting;
+        private long idleSinceNanos = System.nanoTime();
+    }
+}
@@ -0,0 +1,38 @@
+package com.datalogic.apossampleapp.device;
+
+/**
+ * Lifecycle state of a device and the transitions allowed between states.
+ * <p>
+ * Any state may move to {@link #ERROR}. An error is left by closing the device, or back to {@link #ENABLED} when an
+ * enabled device works again, e.g. delivers events after a failed read.
+ */
+public enum DeviceState {
+    CLOSED,
+    OPENED,
+    CLAIMED,
+    ENABLED,
+    ERROR;
+
+    private static final boolean[][] TRANSITIONS = new boolean[values().length][values().length];
+
+    static {
+        allow(CLOSED, OPENED);
+        allow(OPENED, CLAIMED);
+        allow(OPENED, CLOSED);
+        allow(CLAIMED, ENABLED);
+        allow(CLAIMED, OPENED);
+        allow(ENABLED, CLAIMED);
+        allow(ERROR, CLOSED);
+        allow(ERROR, ENABLED);
+        for (DeviceState state : values())
+            allow(state, ERROR);
+    }
+
+    private static void allow(DeviceState from, DeviceState to) {
+        TRANSITIONS[from.ordinal()][to.ordinal()] = true;
+    }
+
+    public boolean canMoveTo(DeviceState next) {
+        return TRANSITIONS[ordinal()][next.ordinal()];
+    }
+}
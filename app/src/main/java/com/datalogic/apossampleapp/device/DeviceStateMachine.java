@@ -0,0 +1,116 @@
+package com.datalogic.apossampleapp.device;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The state of one device, changed from any thread along the transitions of {@link DeviceState} and published to a
+ * listener on its executor, usually the main thread, only when it really changes.
+ * <p>
+ * Moving to the current state costs a volatile read and publishes nothing. Changes made faster than the executor
+ * runs are published once, with the latest state.
+ */
+public final class DeviceStateMachine {
+    public interface Listener {
+        void onStateChanged(DeviceState state);
+    }
+
+    private final AtomicReference<DeviceState> _state;
+    private final Executor _executor;
+    private final Listener _listener;
+    private final AtomicBoolean _scheduled = new AtomicBoolean();
+    private final AtomicLong _rejected = new AtomicLong();
+    private final AtomicLong _published = new AtomicLong();
+    private final Runnable _publish = this::publish;
+    private DeviceState _lastPublished;
+
+    /**
+     * @param initial  the state the listener already knows of.
+     * @param executor runs the listener, one call at a time.
+     */
+    public DeviceStateMachine(DeviceState initial, Executor executor, Listener listener) {
+        _state = new AtomicReference<>(initial);
+        _lastPublished = initial;
+        _executor = executor;
+        _listener = listener;
+    }
+
+    public DeviceState getState() {
+        return _state.get();
+    }
+
+    /**
+     * @return false if the transition is not allowed from the current state, which is then left as is.
+     */
+    public boolean moveTo(DeviceState next) {
+        while (true) {
+            DeviceState current = _state.get();
+            if (current == next)
+                return true;
+            if (!current.canMoveTo(next)) {
+                _rejected.incrementAndGet();
+                return false;
+            }
+            if (_state.compareAndSet(current, next)) {
+                schedule();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Move only from the given state, e.g. to recover from an error without undoing a disable done meanwhile.
+     *
+     * @return true if the state was the expected one and is now the next one.
+     */
+    public boolean moveFrom(DeviceState expected, DeviceState next) {
+        if (_state.get() != expected || !expected.canMoveTo(next))
+            return false;
+        if (!_state.compareAndSet(expected, next))
+            return false;
+        schedule();
+        return true;
+    }
+
+    /**
+     * Take the state of a device handed over in it, e.g. enabled from the pool, whatever the current one. The
+     * transitions are not checked: use it to mirror a state already checked elsewhere, such as the one of a device in
+     * DeviceManager, which this one may have drifted from.
+     */
+    public void reset(DeviceState state) {
+        if (_state.getAndSet(state) != state)
+            schedule();
+    }
+
+    /**
+     * @return the number of transitions rejected as not allowed.
+     */
+    public long getRejectedCount() {
+        return _rejected.get();
+    }
+
+    /**
+     * @return the number of calls made to the listener.
+     */
+    public long getPublishedCount() {
+        return _published.get();
+    }
+
+    private void schedule() {
+        if (_scheduled.compareAndSet(false, true))
+            _executor.execute(_publish);
+    }
+
+    private void publish() {
+        // Down first, so a change made while the listener runs schedules another call.
+        _scheduled.set(false);
+        DeviceState state = _state.get();
+        if (state == _lastPublished)
+            return;
+        _lastPublished = state;
+        _published.incrementAndGet();
+        _listener.onStateChanged(state);
+    }
+}
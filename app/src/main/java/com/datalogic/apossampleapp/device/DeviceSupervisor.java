@@ -0,0 +1,261 @@
+package com.datalogic.apossampleapp.device;
+
+import android.content.Context;
+
+import com.datalogic.apossampleapp.metrics.MetricsRegistry;
+import com.datalogic.dlapos.commons.constant.CommonsConstants;
+import com.datalogic.dlapos.commons.event.BaseEvent;
+import com.datalogic.dlapos.commons.event.StatusUpdateEvent;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Brings the devices of a {@link DeviceManager} back when they go offline, e.g. when a USB cable is bumped.
+ * <p>
+ * An enabled device reported offline is given a short while to come back online by itself; after that it is
+ * closed, then opened, claimed and enabled again, with a {@link Backoff} between failed attempts, until a maximum
+ * number of attempts after which the device is left in error for the user to close. The listeners of the manager
+ * stay registered meanwhile and see the events of the device again once it is back. The time from the offline
+ * report to the device being enabled again is recorded as the "recover" operation of the device.
+ * <p>
+ * Listeners are called without the lock of the supervisor held.
+ */
+public class DeviceSupervisor implements DeviceManager.Listener {
+    public interface Listener {
+        /**
+         * @param attempt     the number of the next attempt, from 1.
+         * @param delayMillis the time before the attempt.
+         */
+        void onRecovering(ManagedDevice device, int attempt, long delayMillis);
+
+        void onRecovered(ManagedDevice device, long recoverNanos);
+
+        /**
+         * The device is left in error after the given number of failed attempts.
+         */
+        void onGaveUp(ManagedDevice device, int attempts);
+    }
+
+    public static final String RECOVER = "recover";
+    public static final String RECONNECT = "reconnect";
+    private static final long INITIAL_DELAY_MS = 250;
+    private static final long MAX_DELAY_MS = 30_000;
+    private static final double JITTER = 0.5;
+    private static final int MAX_ATTEMPTS = 20;
+    private static ScheduledExecutorService _timer;
+
+    private final DeviceManager _manager;
+    private final Context _context;
+    private final MetricsRegistry _metrics;
+    private final long _initialDelayMillis;
+    private final long _maxDelayMillis;
+    private final int _maxAttempts;
+    private final Random _random;
+    private final Map<String, Recovery> _recoveries = new HashMap<>();
+    private final List<Listener> _listeners = new CopyOnWriteArrayList<>();
+
+    public DeviceSupervisor(DeviceManager manager, Context context) {
+        this(manager, context, MetricsRegistry.getInstance(), INITIAL_DELAY_MS, MAX_DELAY_MS, MAX_ATTEMPTS,
+                new Random());
+    }
+
+    public DeviceSupervisor(DeviceManager manager, Context context, MetricsRegistry metrics, long initialDelayMillis,
+                            long maxDelayMillis, int maxAttempts, Random random) {
+        _manager = manager;
+        _context = context;
+        _metrics = metrics;
+        _initialDelayMillis = initialDelayMillis;
+        _maxDelayMillis = maxDelayMillis;
+        _maxAttempts = maxAttempts;
+        _random = random;
+        manager.addListener(this);
+    }
+
+    public void addListener(Listener listener) {
+        _listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        _listeners.remove(listener);
+    }
+
+    /**
+     * Stop supervising: pending attempts are cancelled, devices are left as they are.
+     */
+    public synchronized void stop() {
+        _manager.removeListener(this);
+        for (Recovery recovery : _recoveries.values()) {
+            if (recovery.next != null)
+                recovery.next.cancel(false);
+        }
+        _recoveries.clear();
+    }
+
+    /**
+     * Stop bringing the device back, e.g. because the user closes it. An attempt under way still completes.
+     */
+    public synchronized void cancel(String logicalName) {
+        Recovery recovery = _recoveries.remove(logicalName);
+        if (recovery != null && recovery.next != null)
+            recovery.next.cancel(false);
+    }
+
+    /**
+     * @return true while the device is offline and being brought back.
+     */
+    public synchronized boolean isRecovering(String logicalName) {
+        return _recoveries.containsKey(logicalName);
+    }
+
+    @Override
+    public void onDeviceEvent(ManagedDevice device, BaseEvent event) {
+        if (!(event instanceof StatusUpdateEvent))
+            return;
+        int status = ((StatusUpdateEvent) event).getStatus();
+        if (status == CommonsConstants.SUE_POWER_OFF_OFFLINE || status == CommonsConstants.SUE_POWER_OFFLINE
+                || status == CommonsConstants.SUE_POWER_OFF)
+            offline(device);
+        else if (status == CommonsConstants.SUE_POWER_ONLINE)
+            online(device);
+    }
+
+    @Override
+    public void onDeviceStateChanged(ManagedDevice device, DeviceState state) {
+    }
+
+    private void offline(ManagedDevice device) {
+        Runnable notification;
+        synchronized (this) {
+            if (_recoveries.containsKey(device.getLogicalName()) || device.getState() != DeviceState.ENABLED)
+                return;
+            Recovery recovery = new Recovery(device);
+            _recoveries.put(device.getLogicalName(), recovery);
+            notification = schedule(recovery);
+        }
+        notification.run();
+    }
+
+    /**
+     * A device that stayed open and came back needs nothing more; one being reopened is tried again right away.
+     */
+    private void online(ManagedDevice device) {
+        Recovery recovery;
+        Runnable notification;
+        synchronized (this) {
+            recovery = _recoveries.get(device.getLogicalName());
+            if (recovery == null || recovery.attempting)
+                return;
+            if (recovery.next != null)
+                recovery.next.cancel(false);
+            recovery.next = null;
+            notification = !recovery.reopening && device.getState() == DeviceState.ENABLED ? recovered(recovery) : null;
+        }
+        if (notification != null)
+            notification.run();
+        else
+            attempt(recovery);
+    }
+
+    /**
+     * Called with the lock held.
+     *
+     * @return the notification of the listeners, to run once the lock is released.
+     */
+    private Runnable schedule(Recovery recovery) {
+        long delay = recovery.backoff.nextDelayMillis();
+        recovery.next = timer().schedule(() -> attempt(recovery), delay, TimeUnit.MILLISECONDS);
+        int attempt = recovery.attempts + 1;
+        return () -> {
+            for (Listener listener : _listeners)
+                listener.onRecovering(recovery.device, attempt, delay);
+        };
+    }
+
+    private void attempt(Recovery recovery) {
+        ManagedDevice device = recovery.device;
+        synchronized (this) {
+            if (_recoveries.get(device.getLogicalName()) != recovery || recovery.attempting)
+                return;
+            recovery.attempting = true;
+            recovery.reopening = true;
+            recovery.attempts++;
+        }
+        long start = System.nanoTime();
+        // Moving to ERROR makes the manager close the device before opening it again.
+        device.fail("The device went offline.");
+        _manager.start(Collections.singletonList(device.getLogicalName()), _context).whenComplete((ignored, failure) -> {
+            _metrics.record(device.getLogicalName(), RECONNECT, start);
+            Runnable notification;
+            synchronized (this) {
+                recovery.attempting = false;
+                if (_recoveries.get(device.getLogicalName()) != recovery)
+                    return;
+                if (device.getState() == DeviceState.ENABLED) {
+                    notification = recovered(recovery);
+                } else if (recovery.attempts >= _maxAttempts) {
+                    _recoveries.remove(device.getLogicalName());
+                    _metrics.failed(device.getLogicalName(), RECONNECT);
+                    _metrics.failed(device.getLogicalName(), RECOVER);
+                    int attempts = recovery.attempts;
+                    notification = () -> {
+                        for (Listener listener : _listeners)
+                            listener.onGaveUp(device, attempts);
+                    };
+                } else {
+                    _metrics.failed(device.getLogicalName(), RECONNECT);
+                    notification = schedule(recovery);
+                }
+            }
+            notification.run();
+        });
+    }
+
+    /**
+     * Called with the lock held.
+     *
+     * @return the notification of the listeners, to run once the lock is released.
+     */
+    private Runnable recovered(Recovery recovery) {
+        _recoveries.remove(recovery.device.getLogicalName());
+        long recoverNanos = System.nanoTime() - recovery.offlineNanos;
+        _metrics.record(recovery.device.getLogicalName(), RECOVER, recovery.offlineNanos);
+        return () -> {
+            for (Listener listener : _listeners)
+                listener.onRecovered(recovery.device, recoverNanos);
+        };
+    }
+
+    private static synchronized ScheduledExecutorService timer() {
+        if (_timer == null) {
+            _timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "device-supervisor");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return _timer;
+    }
+
+    private final class Recovery {
+        private final ManagedDevice device;
+        private final long offlineNanos = System.nanoTime();
+        private final Backoff backoff = new Backoff(_initialDelayMillis, _maxDelayMillis, JITTER, _random);
+        private ScheduledFuture<?> next;
+        private int attempts;
+        private boolean attempting;
+        private boolean reopening;
+
+        private Recovery(ManagedDevice device) {
+            this.device = device;
+        }
+    }
+}
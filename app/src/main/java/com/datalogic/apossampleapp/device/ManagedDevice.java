@@ -0,0 +1,84 @@
+package com.datalogic.apossampleapp.device;
+
+import com.datalogic.dlapos.commons.control.BaseControl;
+import com.datalogic.dlapos.commons.event.BaseEvent;
+import com.datalogic.dlapos.control.event.EventListener;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A device owned by a {@link DeviceManager}, with its own lifecycle state.
+ */
+public class ManagedDevice implements EventListener {
+    private final String _logicalName;
+    private final DeviceManager _manager;
+    private final AtomicReference<DeviceState> _state = new AtomicReference<>(DeviceState.CLOSED);
+    private volatile BaseControl _control;
+    private volatile String _errorMessage = "";
+    private volatile long _startupNanos = -1;
+
+    ManagedDevice(String logicalName, DeviceManager manager) {
+        _logicalName = logicalName;
+        _manager = manager;
+    }
+
+    @Override
+    public void onEvent(BaseEvent event) {
+        _manager.dispatchEvent(this, event);
+    }
+
+    /**
+     * Move to the given state if the transition is allowed.
+     *
+     * @return false if the transition is not allowed from the current state.
+     */
+    boolean moveTo(DeviceState next) {
+        while (true) {
+            DeviceState current = _state.get();
+            if (current == next)
+                return true;
+            if (!current.canMoveTo(next))
+                return false;
+            if (_state.compareAndSet(current, next)) {
+                _manager.dispatchStateChange(this, next);
+                return true;
+            }
+        }
+    }
+
+    void fail(String message) {
+        _errorMessage = message;
+        moveTo(DeviceState.ERROR);
+    }
+
+    void setControl(BaseControl control) {
+        _control = control;
+    }
+
+    void setStartupNanos(long startupNanos) {
+        _startupNanos = startupNanos;
+    }
+
+    public String getLogicalName() {
+        return _logicalName;
+    }
+
+    public BaseControl getControl() {
+        return _control;
+    }
+
+    public DeviceState getState() {
+        return _state.get();
+    }
+
+    public String getErrorMessage() {
+        return _errorMessage;
+    }
+
+    /**
+     * @return the time taken by the last open, claim and enable sequence, or -1 if it never completed.
+     */
+    public long getStartupNanos() {
+        return _startupNanos;
+    }
+}
@@ -0,0 +1,81 @@
+package com.datalogic.apossampleapp.events;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free queue for many producers and many consumers, so that a producer can also take the oldest
+ * element out to make room.
+ * <p>
+ * Each slot has a sequence number telling whether it is free for the producer of a given position or filled for
+ * the consumer of that position.
+ */
+final class BoundedQueue<E> {
+    private final AtomicReferenceArray<E> _elements;
+    private final AtomicLongArray _sequences;
+    private final int _mask;
+    private final AtomicLong _tail = new AtomicLong();
+    private final AtomicLong _head = new AtomicLong();
+
+    /**
+     * @param capacity the capacity, rounded up to a power of two.
+     */
+    BoundedQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        _elements = new AtomicReferenceArray<>(size);
+        _sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++)
+            _sequences.set(i, i);
+        _mask = size - 1;
+    }
+
+    /**
+     * @return false if the queue is full.
+     */
+    boolean offer(E element) {
+        while (true) {
+            long tail = _tail.get();
+            int index = (int) tail & _mask;
+            long sequence = _sequences.get(index);
+            if (sequence == tail) {
+                if (_tail.compareAndSet(tail, tail + 1)) {
+                    _elements.lazySet(index, element);
+                    _sequences.lazySet(index, tail + 1);
+                    return true;
+                }
+            } else if (sequence < tail) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * @return the oldest element, or null if the queue is empty.
+     */
+    E poll() {
+        while (true) {
+            long head = _head.get();
+            int index = (int) head & _mask;
+            long sequence = _sequences.get(index);
+            if (sequence == head + 1) {
+                if (_head.compareAndSet(head, head + 1)) {
+                    E element = _elements.get(index);
+                    _elements.lazySet(index, null);
+                    _sequences.lazySet(index, head + _mask + 1);
+                    return element;
+                }
+            } else if (sequence < head + 1) {
+                return null;
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return _tail.get() == _head.get();
+    }
+
+    int capacity() {
+        return _mask + 1;
+    }
+}
@@ -0,0 +1,273 @@
+package com.datalogic.apossampleapp.events;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fans the events of one source out to any number of subscribers, each with its own bounded queue, so that the
+ * publishing thread only queues events and a slow subscriber cannot hold it up.
+ * <p>
+ * Events are published on a topic, one of 32, and subscribers choose the topics they receive as a bit mask. Each
+ * subscriber receives its events in order, one at a time, on its executor; when its queue is full, its
+ * {@link OverflowPolicy} decides what is lost.
+ */
+public final class EventBus<E> {
+    public interface Subscriber<E> {
+        void onEvent(E event);
+    }
+
+    /**
+     * Called when the topics that have subscribers change.
+     */
+    public interface TopicListener {
+        void onTopicsChanged(int topics);
+    }
+
+    public enum OverflowPolicy {
+        /**
+         * The event that does not fit is dropped.
+         */
+        DROP_NEWEST,
+        /**
+         * The oldest event of the queue is dropped to make room, for subscribers that only care for the latest.
+         */
+        DROP_OLDEST,
+        /**
+         * The publisher waits for room, for subscribers that must see every event; a slow one of these does hold up
+         * the publisher.
+         */
+        BLOCK
+    }
+
+    private static final int MAX_DRAIN = 256;
+    private static final long FULL_WAIT_NANOS = 50_000;
+    private static final Subscription<?>[] NONE = new Subscription<?>[0];
+    private static ExecutorService _executor;
+
+    private final Executor _defaultExecutor;
+    private final TopicListener _topicListener;
+    private volatile Subscription<E>[] _subscriptions = none();
+    private int _topics;
+
+    /**
+     * A bus delivering on a shared pool of daemon threads.
+     */
+    public EventBus(TopicListener topicListener) {
+        this(executor(), topicListener);
+    }
+
+    /**
+     * @param defaultExecutor runs the deliveries of the subscribers that have no executor of their own.
+     * @param topicListener   told when topics gain their first subscriber or lose their last one, may be null.
+     */
+    public EventBus(Executor defaultExecutor, TopicListener topicListener) {
+        _defaultExecutor = defaultExecutor;
+        _topicListener = topicListener;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> Subscription<E>[] none() {
+        return (Subscription<E>[]) NONE;
+    }
+
+    /**
+     * @param topics   bit mask of the topics to receive.
+     * @param capacity number of events that can wait for the subscriber.
+     * @param executor runs the deliveries, or null for the executor of the bus.
+     */
+    public Subscription<E> subscribe(int topics, int capacity, OverflowPolicy policy, Executor executor,
+                                     Subscriber<? super E> subscriber) {
+        if (topics == 0)
+            throw new IllegalArgumentException("A subscriber needs at least one topic.");
+        Subscription<E> subscription = new Subscription<>(this, topics, capacity, policy,
+                executor == null ? _defaultExecutor : executor, subscriber);
+        synchronized (this) {
+            Subscription<E>[] subscriptions = Arrays.copyOf(_subscriptions, _subscriptions.length + 1);
+            subscriptions[subscriptions.length - 1] = subscription;
+            _subscriptions = subscriptions;
+        }
+        topicsChanged();
+        return subscription;
+    }
+
+    private void unsubscribe(Subscription<E> subscription) {
+        synchronized (this) {
+            Subscription<E>[] subscriptions = _subscriptions;
+            int index = Arrays.asList(subscriptions).indexOf(subscription);
+            if (index < 0)
+                return;
+            Subscription<E>[] remaining = Arrays.copyOf(subscriptions, subscriptions.length - 1);
+            System.arraycopy(subscriptions, index + 1, remaining, index, subscriptions.length - index - 1);
+            _subscriptions = remaining.length == 0 ? none() : remaining;
+        }
+        topicsChanged();
+    }
+
+    private void topicsChanged() {
+        int topics;
+        synchronized (this) {
+            topics = 0;
+            for (Subscription<E> subscription : _subscriptions)
+                topics |= subscription._topics;
+            if (topics == _topics)
+                return;
+            _topics = topics;
+            // Under the lock, so listeners see the changes in order.
+            if (_topicListener != null)
+                _topicListener.onTopicsChanged(topics);
+        }
+    }
+
+    /**
+     * Queue the event for the subscribers of the topic; callable from any thread.
+     *
+     * @param topic the topic, from 0 to 31.
+     */
+    public void publish(int topic, E event) {
+        int bit = 1 << topic;
+        for (Subscription<E> subscription : _subscriptions) {
+            if ((subscription._topics & bit) != 0)
+                subscription.offer(event);
+        }
+    }
+
+    /**
+     * @return bit mask of the topics that have subscribers.
+     */
+    public synchronized int getTopics() {
+        return _topics;
+    }
+
+    public int getSubscriberCount() {
+        return _subscriptions.length;
+    }
+
+    /**
+     * End all the subscriptions.
+     */
+    public void clear() {
+        for (Subscription<E> subscription : _subscriptions)
+            subscription.close();
+    }
+
+    private static synchronized ExecutorService executor() {
+        if (_executor == null) {
+            _executor = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), runnable -> {
+                Thread thread = new Thread(runnable, "event-bus");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return _executor;
+    }
+
+    public static final class Subscription<E> implements Closeable {
+        private final EventBus<E> _bus;
+        private final int _topics;
+        private final BoundedQueue<E> _queue;
+        private final OverflowPolicy _policy;
+        private final Executor _executor;
+        private final Subscriber<? super E> _subscriber;
+        private final AtomicBoolean _scheduled = new AtomicBoolean();
+        private final AtomicLong _dropped = new AtomicLong();
+        private final AtomicLong _delivered = new AtomicLong();
+        private final AtomicLong _failed = new AtomicLong();
+        private final Runnable _drain = this::drain;
+        private volatile boolean _closed;
+
+        private Subscription(EventBus<E> bus, int topics, int capacity, OverflowPolicy policy, Executor executor,
+                             Subscriber<? super E> subscriber) {
+            _bus = bus;
+            _topics = topics;
+            _queue = new BoundedQueue<>(capacity);
+            _policy = policy;
+            _executor = executor;
+            _subscriber = subscriber;
+        }
+
+        private void offer(E event) {
+            if (_closed)
+                return;
+            while (!_queue.offer(event)) {
+                if (_policy == OverflowPolicy.DROP_NEWEST) {
+                    _dropped.incrementAndGet();
+                    return;
+                }
+                if (_policy == OverflowPolicy.DROP_OLDEST) {
+                    if (_queue.poll() != null)
+                        _dropped.incrementAndGet();
+                } else {
+                    schedule();
+                    LockSupport.parkNanos(FULL_WAIT_NANOS);
+                    if (_closed)
+                        return;
+                }
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (_scheduled.compareAndSet(false, true))
+                _executor.execute(_drain);
+        }
+
+        private void drain() {
+            E event;
+            for (int i = 0; i < MAX_DRAIN && !_closed && (event = _queue.poll()) != null; i++) {
+                try {
+                    _subscriber.onEvent(event);
+                    _delivered.incrementAndGet();
+                } catch (RuntimeException e) {
+                    // One bad event does not end the subscription.
+                    _failed.incrementAndGet();
+                }
+            }
+            _scheduled.set(false);
+            // Left over, or queued after the last poll and before the flag was down.
+            if (!_closed && !_queue.isEmpty())
+                schedule();
+        }
+
+        /**
+         * @return the number of events lost to the overflow policy.
+         */
+        public long getDroppedCount() {
+            return _dropped.get();
+        }
+
+        public long getDeliveredCount() {
+            return _delivered.get();
+        }
+
+        /**
+         * @return the number of events the subscriber threw on.
+         */
+        public long getFailedCount() {
+            return _failed.get();
+        }
+
+        /**
+         * @return the size of the queue, the capacity rounded up to a power of two.
+         */
+        public int getCapacity() {
+            return _queue.capacity();
+        }
+
+        /**
+         * Stop receiving events; those still queued are not delivered.
+         */
+        @Override
+        public void close() {
+            if (_closed)
+                return;
+            _closed = true;
+            _bus.unsubscribe(this);
+        }
+    }
+}
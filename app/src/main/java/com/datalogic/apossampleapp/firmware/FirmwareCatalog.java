@@ -0,0 +1,273 @@
+package com.datalogic.apossampleapp.firmware;
+
+import com.datalogic.dlapos.androidpos.common.DLSJposConst;
+import com.datalogic.dlapos.commons.constant.CommonsConstants;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An index of the firmware images of a directory.
+ * <p>
+ * A file is read only when it is new or its length or modification time changed: it is then mapped in memory,
+ * hashed, and its {@link FirmwareHeader} parsed from the first bytes of the mapping, unless a file with the same
+ * content was already known. Files are read in parallel, and the index is kept in a file so that the next launch
+ * does not read them again.
+ */
+public class FirmwareCatalog {
+    public interface Comparison {
+        /**
+         * Compare a firmware file with the device, like compareFirmwareVersion.
+         */
+        void compare(File file, int[] result) throws Exception;
+    }
+
+    static final int VERSION = 1;
+    private static final long KEEP_ALIVE_SECONDS = 10;
+
+    private final File _indexFile;
+    private final ThreadPoolExecutor _executor;
+    private final AtomicInteger _createdThreads = new AtomicInteger();
+    private Map<String, FirmwareImage> _images;
+    private int _filesRead;
+
+    /**
+     * @param indexFile where the index is kept between launches.
+     * @param threads   how many files may be read at the same time.
+     */
+    public FirmwareCatalog(File indexFile, int threads) {
+        _indexFile = indexFile;
+        _executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "firmware-catalog-" + _createdThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        _executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Bring the index up to date with the files of the directory, subdirectories excluded.
+     *
+     * @return the files of the directory sorted by name, firmware images or not.
+     */
+    public synchronized List<FirmwareImage> scan(File directory) throws IOException {
+        if (_images == null)
+            _images = readIndex();
+        File[] files = directory.listFiles(File::isFile);
+        if (files == null)
+            throw new IOException("Cannot list " + directory + ".");
+
+        Map<String, FirmwareHeader> headers = new HashMap<>();
+        for (FirmwareImage image : _images.values())
+            headers.put(image.getContentHash(), image.getHeader());
+        Map<String, FirmwareImage> images = new LinkedHashMap<>();
+        List<Future<FirmwareImage>> reads = new ArrayList<>();
+        for (File file : files) {
+            long length = file.length();
+            long lastModified = file.lastModified();
+            FirmwareImage known = _images.get(file.getPath());
+            if (known != null && known.isCurrent(length, lastModified))
+                images.put(file.getPath(), known);
+            else
+                reads.add(_executor.submit(() -> read(file, length, lastModified, headers)));
+        }
+        for (Future<FirmwareImage> read : reads) {
+            try {
+                FirmwareImage image = read.get();
+                images.put(image.getFile().getPath(), image);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading firmware files.", e);
+            } catch (ExecutionException e) {
+                // The file went away or cannot be read: leave it out until the next scan.
+            }
+        }
+        _filesRead = reads.size();
+        if (!reads.isEmpty() || images.size() != _images.size()) {
+            _images = images;
+            writeIndex();
+        }
+
+        List<FirmwareImage> sorted = new ArrayList<>(images.values());
+        Collections.sort(sorted, (a, b) -> a.getFile().getName().compareTo(b.getFile().getName()));
+        return sorted;
+    }
+
+    /**
+     * @return the number of files the last {@link #scan} had to read.
+     */
+    public synchronized int getFilesRead() {
+        return _filesRead;
+    }
+
+    public void shutdown() {
+        _executor.shutdown();
+    }
+
+    /**
+     * Find the newest image made for the device.
+     * <p>
+     * The headers tell which images are for the same vendor and product IDs, and which of them is the newest, so
+     * the device has to compare only the newest image of each pair of IDs, until one is not rejected as made for
+     * another vendor or product. Files without a header, such as firmware files that do not start with the text
+     * fields, are then compared one by one, and the device tells which of them it accepts.
+     *
+     * @param result receives the result of the comparison of the returned image.
+     * @return the newest image the device accepts, or null if it rejects them all.
+     */
+    public static FirmwareImage findBest(List<FirmwareImage> images, Comparison comparison, int[] result) throws Exception {
+        Map<Long, FirmwareImage> newest = new HashMap<>();
+        List<FirmwareImage> unidentified = new ArrayList<>();
+        for (FirmwareImage image : images) {
+            FirmwareHeader header = image.getHeader();
+            if (header == null) {
+                unidentified.add(image);
+                continue;
+            }
+            FirmwareImage other = newest.get(header.getDeviceKey());
+            if (other == null || other.getHeader().getVersion() < header.getVersion())
+                newest.put(header.getDeviceKey(), image);
+        }
+        List<FirmwareImage> candidates = new ArrayList<>(newest.values());
+        Collections.sort(candidates, Comparator.comparingInt((FirmwareImage image) -> image.getHeader().getVersion()).reversed());
+        for (FirmwareImage candidate : candidates) {
+            comparison.compare(candidate.getFile(), result);
+            if (isAccepted(result))
+                return candidate;
+        }
+        return findBestUnidentified(unidentified, comparison, result);
+    }
+
+    /**
+     * @return the first file the device reports newer than its firmware, else the first one it accepts.
+     */
+    private static FirmwareImage findBestUnidentified(List<FirmwareImage> images, Comparison comparison, int[] result)
+            throws Exception {
+        FirmwareImage best = null;
+        int[] bestResult = null;
+        Exception failure = null;
+        int[] fileResult = new int[result.length];
+        for (FirmwareImage image : images) {
+            try {
+                comparison.compare(image.getFile(), fileResult);
+            } catch (Exception e) {
+                // Likely not a firmware file at all.
+                if (failure == null)
+                    failure = e;
+                continue;
+            }
+            if (!isAccepted(fileResult) || best != null && fileResult[0] != CommonsConstants.CVF_FIRMWARE_NEWER)
+                continue;
+            best = image;
+            bestResult = fileResult.clone();
+            if (fileResult[0] == CommonsConstants.CVF_FIRMWARE_NEWER)
+                break;
+        }
+        if (best == null) {
+            if (failure != null)
+                throw failure;
+            return null;
+        }
+        System.arraycopy(bestResult, 0, result, 0, result.length);
+        return best;
+    }
+
+    private static boolean isAccepted(int[] result) {
+        return result[0] != DLSJposConst.DLS_CFV_INVALID_VID && result[0] != DLSJposConst.DLS_CFV_INVALID_PID;
+    }
+
+    private static FirmwareImage read(File file, long length, long lastModified, Map<String, FirmwareHeader> headers) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer content = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IOException(e);
+            }
+            digest.update(content.duplicate());
+            String hash = hex(digest.digest());
+            FirmwareHeader header = headers.containsKey(hash) ? headers.get(hash) : FirmwareHeader.parse(content);
+            return new FirmwareImage(file, length, lastModified, hash, header);
+        }
+    }
+
+    private Map<String, FirmwareImage> readIndex() {
+        Map<String, FirmwareImage> images = new HashMap<>();
+        if (!_indexFile.exists())
+            return images;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(_indexFile)))) {
+            if (in.readInt() != VERSION)
+                return images;
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                File file = new File(in.readUTF());
+                long length = in.readLong();
+                long lastModified = in.readLong();
+                String hash = in.readUTF();
+                FirmwareHeader header = in.readBoolean() ? new FirmwareHeader(in.readInt(), in.readInt(), in.readInt()) : null;
+                images.put(file.getPath(), new FirmwareImage(file, length, lastModified, hash, header));
+            }
+            return images;
+        } catch (IOException e) {
+            // An unreadable index only costs reading the files again.
+            return new HashMap<>();
+        }
+    }
+
+    private void writeIndex() throws IOException {
+        File temp = new File(_indexFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(VERSION);
+            out.writeInt(_images.size());
+            for (FirmwareImage image : _images.values()) {
+                out.writeUTF(image.getFile().getPath());
+                out.writeLong(image.getLength());
+                out.writeLong(image.getLastModified());
+                out.writeUTF(image.getContentHash());
+                FirmwareHeader header = image.getHeader();
+                out.writeBoolean(header != null);
+                if (header != null) {
+                    out.writeInt(header.getVendorId());
+                    out.writeInt(header.getProductId());
+                    out.writeInt(header.getVersion());
+                }
+            }
+        }
+        if (!temp.renameTo(_indexFile))
+            throw new IOException("Cannot replace " + _indexFile + ".");
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        return hex.toString();
+    }
+}
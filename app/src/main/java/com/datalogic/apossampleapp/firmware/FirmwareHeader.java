@@ -0,0 +1,132 @@
+package com.datalogic.apossampleapp.firmware;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
+
+/**
+ * The identification of a firmware image: vendor ID, product ID and version.
+ * <p>
+ * They are read from the text fields at the start of the file, one {@code Name=Value} or {@code Name: Value}
+ * per line, IDs in hex; the first byte that is not text ends the header.
+ */
+public final class FirmwareHeader {
+    /**
+     * How far into a file the fields are looked for.
+     */
+    public static final int MAX_SIZE = 4096;
+    public static final int UNKNOWN_VERSION = -1;
+
+    private final int _vendorId;
+    private final int _productId;
+    private final int _version;
+
+    public FirmwareHeader(int vendorId, int productId, int version) {
+        _vendorId = vendorId;
+        _productId = productId;
+        _version = version;
+    }
+
+    /**
+     * Parse the header from the remaining bytes of the buffer, without moving its position.
+     *
+     * @return the header, or null if the bytes do not start with the vendor and product IDs of a firmware.
+     */
+    public static FirmwareHeader parse(ByteBuffer buffer) {
+        int end = buffer.position() + Math.min(buffer.remaining(), MAX_SIZE);
+        int vendorId = -1;
+        int productId = -1;
+        int version = UNKNOWN_VERSION;
+        StringBuilder line = new StringBuilder(64);
+        for (int i = buffer.position(); i <= end; i++) {
+            int b = i < end ? buffer.get(i) & 0xff : 0;
+            boolean text = b >= 0x20 && b <= 0x7e || b == '\t';
+            if (text) {
+                line.append((char) b);
+                continue;
+            }
+            int separator = indexOfSeparator(line);
+            if (separator > 0) {
+                String name = line.substring(0, separator).trim().toUpperCase(Locale.ROOT);
+                String value = line.substring(separator + 1).trim();
+                if (name.equals("VID") || name.equals("VENDORID"))
+                    vendorId = parseHex(value);
+                else if (name.equals("PID") || name.equals("PRODUCTID"))
+                    productId = parseHex(value);
+                else if (name.equals("VERSION") || name.equals("FIRMWAREVERSION"))
+                    version = parseDecimal(value);
+            }
+            line.setLength(0);
+            if (b != '\n' && b != '\r')
+                break;
+        }
+        return vendorId < 0 || productId < 0 ? null : new FirmwareHeader(vendorId, productId, version);
+    }
+
+    /**
+     * Parse the header of a file, mapping only its first bytes.
+     */
+    public static FirmwareHeader read(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            return parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), MAX_SIZE)));
+        }
+    }
+
+    public int getVendorId() {
+        return _vendorId;
+    }
+
+    public int getProductId() {
+        return _productId;
+    }
+
+    /**
+     * @return the version, {@link #UNKNOWN_VERSION} if the header has none.
+     */
+    public int getVersion() {
+        return _version;
+    }
+
+    /**
+     * @return the vendor and product IDs in one value, to group the images made for the same device.
+     */
+    public long getDeviceKey() {
+        return ((long) _vendorId << 32) | (_productId & 0xffffffffL);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%04X:%04X v%d", _vendorId, _productId, _version);
+    }
+
+    private static int indexOfSeparator(CharSequence line) {
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '=' || c == ':')
+                return i;
+        }
+        return -1;
+    }
+
+    private static int parseHex(String value) {
+        if (value.startsWith("0x") || value.startsWith("0X"))
+            value = value.substring(2);
+        try {
+            return value.isEmpty() || value.length() > 8 ? -1 : (int) Long.parseLong(value, 16);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int parseDecimal(String value) {
+        try {
+            return value.isEmpty() || value.length() > 9 ? UNKNOWN_VERSION : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return UNKNOWN_VERSION;
+        }
+    }
+}
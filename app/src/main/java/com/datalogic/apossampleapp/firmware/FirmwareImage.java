@@ -0,0 +1,60 @@
+package com.datalogic.apossampleapp.firmware;
+
+import java.io.File;
+
+/**
+ * A file of a {@link FirmwareCatalog}, with what was read from it the last time it changed.
+ */
+public final class FirmwareImage {
+    private final File _file;
+    private final long _length;
+    private final long _lastModified;
+    private final String _contentHash;
+    private final FirmwareHeader _header;
+
+    FirmwareImage(File file, long length, long lastModified, String contentHash, FirmwareHeader header) {
+        _file = file;
+        _length = length;
+        _lastModified = lastModified;
+        _contentHash = contentHash;
+        _header = header;
+    }
+
+    public File getFile() {
+        return _file;
+    }
+
+    public long getLength() {
+        return _length;
+    }
+
+    public long getLastModified() {
+        return _lastModified;
+    }
+
+    /**
+     * @return the hex encoded SHA-256 of the file content.
+     */
+    public String getContentHash() {
+        return _contentHash;
+    }
+
+    /**
+     * @return the header, or null if the file is not a firmware image.
+     */
+    public FirmwareHeader getHeader() {
+        return _header;
+    }
+
+    /**
+     * @return true if the file has not changed since it was read, judging by its length and modification time.
+     */
+    boolean isCurrent(long length, long lastModified) {
+        return _length == length && _lastModified == lastModified;
+    }
+
+    @Override
+    public String toString() {
+        return _file.getName() + (_header == null ? " (not a firmware)" : " " + _header);
+    }
+}
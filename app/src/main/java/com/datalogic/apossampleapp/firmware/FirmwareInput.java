@@ -0,0 +1,112 @@
+package com.datalogic.apossampleapp.firmware;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A firmware image picked as a document, opened once through its file descriptor.
+ * <p>
+ * When the provider hands out a regular file, the image is memory-mapped and the device service is given the
+ * {@code /proc/self/fd} path of the same descriptor, so the file is neither copied nor looked for on the storage.
+ * Providers that stream the content through a pipe are read once into memory and spooled to the cache directory,
+ * as the device service only takes paths.
+ */
+public final class FirmwareInput implements Closeable {
+    private static final String SPOOL_FILE = "firmware-input.bin";
+
+    private final Closeable _descriptor;
+    private final ByteBuffer _content;
+    private final String _path;
+    private final FirmwareHeader _header;
+
+    private FirmwareInput(Closeable descriptor, ByteBuffer content, String path) {
+        _descriptor = descriptor;
+        _content = content;
+        _path = path;
+        _header = FirmwareHeader.parse(content);
+    }
+
+    /**
+     * Open the document.
+     *
+     * @param spoolDirectory where to spool the content of providers that do not hand out a regular file.
+     */
+    public static FirmwareInput open(ContentResolver resolver, Uri uri, File spoolDirectory) throws IOException {
+        ParcelFileDescriptor descriptor = resolver.openFileDescriptor(uri, "r");
+        if (descriptor == null)
+            throw new FileNotFoundException("Cannot open " + uri + ".");
+        try {
+            FileChannel channel = new FileInputStream(descriptor.getFileDescriptor()).getChannel();
+            return open(channel, descriptor.getStatSize(), "/proc/self/fd/" + descriptor.getFd(), descriptor, spoolDirectory);
+        } catch (IOException | RuntimeException e) {
+            descriptor.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param size           the size of the file, negative if the channel is not on a regular file.
+     * @param descriptorPath a path that opens the same file as the channel.
+     * @param descriptor     closed with the input.
+     */
+    static FirmwareInput open(FileChannel channel, long size, String descriptorPath, Closeable descriptor, File spoolDirectory) throws IOException {
+        if (size >= 0)
+            return new FirmwareInput(descriptor, channel.map(FileChannel.MapMode.READ_ONLY, 0, size), descriptorPath);
+
+        ByteBuffer content = ByteBuffer.allocate(64 * 1024);
+        while (channel.read(content) >= 0) {
+            if (!content.hasRemaining()) {
+                ByteBuffer larger = ByteBuffer.allocate(content.capacity() * 2);
+                content.flip();
+                larger.put(content);
+                content = larger;
+            }
+        }
+        content.flip();
+        File spool = new File(spoolDirectory, SPOOL_FILE);
+        try (FileChannel out = new FileOutputStream(spool).getChannel()) {
+            ByteBuffer written = content.duplicate();
+            while (written.hasRemaining())
+                out.write(written);
+        }
+        descriptor.close();
+        return new FirmwareInput(null, content, spool.getPath());
+    }
+
+    /**
+     * @return the content of the image, read-only.
+     */
+    public ByteBuffer getContent() {
+        return _content.asReadOnlyBuffer();
+    }
+
+    /**
+     * @return the header of the image, or null if it does not start with one.
+     */
+    public FirmwareHeader getHeader() {
+        return _header;
+    }
+
+    /**
+     * @return the path to give compareFirmwareVersion and updateFirmware, valid until the input is closed.
+     */
+    public String getPath() {
+        return _path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (_descriptor != null)
+            _descriptor.close();
+    }
+}
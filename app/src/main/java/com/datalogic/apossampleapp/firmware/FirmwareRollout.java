@@ -0,0 +1,441 @@
+package com.datalogic.apossampleapp.firmware;
+
+import android.util.Log;
+
+import com.datalogic.apossampleapp.device.Controls;
+import com.datalogic.apossampleapp.device.DeviceManager;
+import com.datalogic.apossampleapp.device.DeviceState;
+import com.datalogic.apossampleapp.device.ManagedDevice;
+import com.datalogic.apossampleapp.scheduler.DeviceCommandScheduler;
+import com.datalogic.dlapos.commons.constant.CommonsConstants;
+import com.datalogic.dlapos.commons.control.BaseControl;
+import com.datalogic.dlapos.commons.event.BaseEvent;
+import com.datalogic.dlapos.commons.event.EventCallback;
+import com.datalogic.dlapos.commons.event.StatusUpdateEvent;
+import com.datalogic.dlapos.commons.support.APosException;
+import com.datalogic.dlapos.control.event.EventListener;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upgrades the firmware of the enabled devices of a {@link DeviceManager} with the newest image of a
+ * {@link FirmwareCatalog} each of them accepts.
+ * <p>
+ * Devices are updated in parallel, but only as many at a time on each bus as its limit allows: a USB hub
+ * handles a few transfers at once, serial ports are better updated one by one. The progress events of every
+ * device are merged into one stream with the progress of the whole rollout. A failed update is retried after
+ * the other devices of its bus, and devices that still failed can be resumed later with {@link #retryFailed()}.
+ */
+public class FirmwareRollout {
+    public interface BusResolver {
+        /**
+         * @return the bus the device is connected to, such as {@link #BUS_USB} or {@link #BUS_SERIAL}.
+         */
+        String busOf(String logicalName);
+    }
+
+    public interface Listener {
+        /**
+         * Called from device threads every time a device progresses or changes outcome.
+         *
+         * @param overallPercent the progress of the whole rollout, finished devices counting as done.
+         */
+        void onProgress(DeviceProgress device, int overallPercent);
+
+        void onFinished(List<DeviceProgress> devices);
+    }
+
+    public enum Outcome {
+        QUEUED,
+        UPDATING,
+        UPDATED,
+        UP_TO_DATE,
+        NO_FIRMWARE,
+        FAILED;
+
+        public boolean isFinished() {
+            return this != QUEUED && this != UPDATING;
+        }
+    }
+
+    /**
+     * Where a device is in the rollout.
+     */
+    public static final class DeviceProgress {
+        private final String _logicalName;
+        private final String _bus;
+        private final Outcome _outcome;
+        private final int _percent;
+        private final int _attempts;
+        private final String _message;
+
+        DeviceProgress(String logicalName, String bus, Outcome outcome, int percent, int attempts, String message) {
+            _logicalName = logicalName;
+            _bus = bus;
+            _outcome = outcome;
+            _percent = percent;
+            _attempts = attempts;
+            _message = message;
+        }
+
+        public String getLogicalName() {
+            return _logicalName;
+        }
+
+        public String getBus() {
+            return _bus;
+        }
+
+        public Outcome getOutcome() {
+            return _outcome;
+        }
+
+        /**
+         * @return the progress of the current update, from 0 to 100.
+         */
+        public int getPercent() {
+            return _percent;
+        }
+
+        public int getAttempts() {
+            return _attempts;
+        }
+
+        /**
+         * @return why the device failed, or an empty string.
+         */
+        public String getMessage() {
+            return _message;
+        }
+
+        @Override
+        public String toString() {
+            return _logicalName + " " + _outcome + " " + _percent + "% after " + _attempts + " attempts"
+                    + (_message.isEmpty() ? "" : ": " + _message);
+        }
+    }
+
+    public static final String BUS_USB = "USB";
+    public static final String BUS_SERIAL = "RS232";
+    private static final int DEFAULT_USB_LIMIT = 4;
+    private static final int DEFAULT_BUS_LIMIT = 1;
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+    private static final long DEFAULT_UPDATE_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(10);
+    private static ScheduledExecutorService _timer;
+
+    private final DeviceManager _manager;
+    private final DeviceCommandScheduler _scheduler;
+    private final BusResolver _buses;
+    private final Listener _listener;
+    private final Map<String, Integer> _busLimits = new HashMap<>();
+    private final Map<String, Job> _jobs = new LinkedHashMap<>();
+    private final Map<String, ArrayDeque<Job>> _queued = new HashMap<>();
+    private final Map<String, Integer> _active = new HashMap<>();
+    private int _maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private long _updateTimeoutMillis = DEFAULT_UPDATE_TIMEOUT_MS;
+    private List<FirmwareImage> _images;
+    private CompletableFuture<List<DeviceProgress>> _completion;
+    private int _maxConcurrent;
+
+    public FirmwareRollout(DeviceManager manager, DeviceCommandScheduler scheduler, BusResolver buses, Listener listener) {
+        _manager = manager;
+        _scheduler = scheduler;
+        _buses = buses;
+        _listener = listener;
+        _busLimits.put(BUS_USB, DEFAULT_USB_LIMIT);
+    }
+
+    /**
+     * Set how many devices of the bus may be updated at the same time; 1 for buses without a limit.
+     */
+    public synchronized void setBusLimit(String bus, int limit) {
+        _busLimits.put(bus, Math.max(1, limit));
+    }
+
+    /**
+     * Set how many times an update is tried before the device is given up.
+     */
+    public synchronized void setMaxAttempts(int maxAttempts) {
+        _maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    /**
+     * Set how long an update may go without completing before it counts as failed.
+     */
+    public synchronized void setUpdateTimeoutMillis(long timeoutMillis) {
+        _updateTimeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Start upgrading the devices.
+     *
+     * @param images the catalog to pick the firmware of every device from.
+     * @return a future completed with the outcome of every device once they are all finished.
+     */
+    public synchronized CompletableFuture<List<DeviceProgress>> start(Collection<String> logicalNames, List<FirmwareImage> images) {
+        if (_completion != null && !_completion.isDone())
+            throw new IllegalStateException("A rollout is already running.");
+        _images = new ArrayList<>(images);
+        _jobs.clear();
+        for (String logicalName : logicalNames)
+            _jobs.put(logicalName, new Job(logicalName, _buses.busOf(logicalName)));
+        return run(new ArrayList<>(_jobs.values()));
+    }
+
+    /**
+     * Try again the devices that failed in the last rollout, leaving the others as they are.
+     */
+    public synchronized CompletableFuture<List<DeviceProgress>> retryFailed() {
+        if (_completion != null && !_completion.isDone())
+            throw new IllegalStateException("A rollout is already running.");
+        List<Job> failed = new ArrayList<>();
+        for (Job job : _jobs.values()) {
+            if (job.outcome == Outcome.FAILED) {
+                job.attempts = 0;
+                job.message = "";
+                failed.add(job);
+            }
+        }
+        return run(failed);
+    }
+
+    /**
+     * @return the progress of every device of the last rollout.
+     */
+    public synchronized List<DeviceProgress> getProgress() {
+        List<DeviceProgress> progress = new ArrayList<>();
+        for (Job job : _jobs.values())
+            progress.add(job.snapshot());
+        return progress;
+    }
+
+    /**
+     * @return the highest number of devices of one bus updated at the same time since the rollout was created.
+     */
+    public synchronized int getMaxConcurrent() {
+        return _maxConcurrent;
+    }
+
+    private CompletableFuture<List<DeviceProgress>> run(List<Job> jobs) {
+        _completion = new CompletableFuture<>();
+        for (Job job : jobs)
+            queue(job);
+        for (String bus : new ArrayList<>(_queued.keySet()))
+            pump(bus);
+        if (jobs.isEmpty())
+            _completion.complete(getProgress());
+        return _completion;
+    }
+
+    private void queue(Job job) {
+        job.outcome = Outcome.QUEUED;
+        job.percent = 0;
+        ArrayDeque<Job> queue = _queued.get(job.bus);
+        if (queue == null) {
+            queue = new ArrayDeque<>();
+            _queued.put(job.bus, queue);
+        }
+        queue.addLast(job);
+    }
+
+    /**
+     * Start the next devices of the bus, as far as its limit allows.
+     */
+    private void pump(String bus) {
+        ArrayDeque<Job> queue = _queued.get(bus);
+        Integer limit = _busLimits.get(bus);
+        int active = _active.containsKey(bus) ? _active.get(bus) : 0;
+        while (queue != null && !queue.isEmpty() && active < (limit == null ? DEFAULT_BUS_LIMIT : limit)) {
+            Job job = queue.pollFirst();
+            active++;
+            _maxConcurrent = Math.max(_maxConcurrent, active);
+            job.attempts++;
+            long attempt = ++job.attempt;
+            job.outcome = Outcome.UPDATING;
+            _scheduler.submitBlocking(job.logicalName, "updateFirmware", () -> job.begin(attempt));
+        }
+        _active.put(bus, active);
+    }
+
+    private boolean isRoundDone() {
+        for (Job job : _jobs.values()) {
+            if (!job.outcome.isFinished())
+                return false;
+        }
+        return !_completion.isDone();
+    }
+
+    private static synchronized ScheduledExecutorService timer() {
+        if (_timer == null) {
+            _timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "firmware-rollout");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return _timer;
+    }
+
+    private final class Job {
+        private final String logicalName;
+        private final String bus;
+        private Outcome outcome = Outcome.QUEUED;
+        private int percent;
+        private int attempts;
+        private String message = "";
+        // Unlike attempts, never reset: tells the current attempt from the ended ones.
+        private long attempt;
+        private BaseControl control;
+        // One per attempt: the listener of a failed attempt is removed after the retry may have started.
+        private EventListener listener;
+        private ScheduledFuture<?> timeout;
+
+        private Job(String logicalName, String bus) {
+            this.logicalName = logicalName;
+            this.bus = bus == null ? "" : bus;
+        }
+
+        /**
+         * Runs in the device queue: pick the firmware and start the update.
+         */
+        private void begin(long attempt) {
+            ManagedDevice device = _manager.getDevice(logicalName);
+            if (device == null || device.getState() != DeviceState.ENABLED) {
+                finish(attempt, Outcome.FAILED, "The device is not enabled.", false);
+                return;
+            }
+            BaseControl control = device.getControl();
+            int[] result = new int[5];
+            FirmwareImage best;
+            try {
+                best = FirmwareCatalog.findBest(_images, (file, fileResult) -> control.compareFirmwareVersion(file.getPath(), fileResult), result);
+            } catch (Exception e) {
+                Log.e("Example", "Comparing firmware of " + logicalName + ": ", e);
+                finish(attempt, Outcome.FAILED, e.getMessage(), true);
+                return;
+            }
+            if (best == null) {
+                finish(attempt, Outcome.NO_FIRMWARE, "", false);
+                return;
+            }
+            if (result[0] == CommonsConstants.CVF_FIRMWARE_SAME || result[0] == CommonsConstants.CVF_FIRMWARE_OLDER) {
+                finish(attempt, Outcome.UP_TO_DATE, "", false);
+                return;
+            }
+            long timeoutMillis;
+            EventListener listener = event -> onEvent(attempt, event);
+            synchronized (FirmwareRollout.this) {
+                this.control = control;
+                this.listener = listener;
+                timeoutMillis = _updateTimeoutMillis;
+            }
+            try {
+                Controls.addEventListener(control, listener, EventCallback.EventType.StatusUpdate);
+                synchronized (FirmwareRollout.this) {
+                    if (this.control != null)
+                        timeout = timer().schedule(() -> finish(attempt, Outcome.FAILED, "The update timed out.", true),
+                                timeoutMillis, TimeUnit.MILLISECONDS);
+                }
+                report();
+                // The update goes on in the device service, which reports its progress and end through status events.
+                control.updateFirmware(best.getFile().getPath());
+            } catch (APosException e) {
+                Log.e("Example", "Updating firmware of " + logicalName + ": ", e);
+                finish(attempt, Outcome.FAILED, e.getMessage(), true);
+            }
+        }
+
+        private void onEvent(long attempt, BaseEvent event) {
+            if (!(event instanceof StatusUpdateEvent))
+                return;
+            int status = ((StatusUpdateEvent) event).getStatus();
+            if (status >= CommonsConstants.SUE_UF_PROGRESS && status < CommonsConstants.SUE_UF_COMPLETE) {
+                synchronized (FirmwareRollout.this) {
+                    if (outcome != Outcome.UPDATING || this.attempt != attempt)
+                        return;
+                    percent = status - CommonsConstants.SUE_UF_PROGRESS;
+                }
+                report();
+            } else if (status == CommonsConstants.SUE_UF_COMPLETE || status == CommonsConstants.SUE_UF_COMPLETE_DEV_NOT_RESTORED) {
+                finish(attempt, Outcome.UPDATED, "", false);
+            } else if (status == CommonsConstants.SUE_UF_FAILED_DEV_UNRECOVERABLE) {
+                finish(attempt, Outcome.FAILED, "The device is unrecoverable.", false);
+            } else if (status == CommonsConstants.SUE_UF_FAILED_DEV_OK || status == CommonsConstants.SUE_UF_FAILED_DEV_NEEDS_FIRMWARE
+                    || status == CommonsConstants.SUE_UF_FAILED_DEV_UNKNOWN) {
+                finish(attempt, Outcome.FAILED, "The update failed with status " + status + ".", true);
+            }
+        }
+
+        /**
+         * End the attempt, queueing the device again if it may be retried. Ignored if the attempt already ended,
+         * e.g. for the timeout of an attempt that has just failed, or a late event to its listener.
+         */
+        private void finish(long attempt, Outcome result, String reason, boolean retry) {
+            BaseControl listened;
+            EventListener listener;
+            boolean done;
+            synchronized (FirmwareRollout.this) {
+                if (outcome != Outcome.UPDATING || this.attempt != attempt)
+                    return;
+                listened = control;
+                listener = this.listener;
+                control = null;
+                this.listener = null;
+                if (timeout != null)
+                    timeout.cancel(false);
+                timeout = null;
+                message = reason == null ? "" : reason;
+                _active.put(bus, _active.get(bus) - 1);
+                if (retry && attempts < _maxAttempts) {
+                    queue(this);
+                } else {
+                    outcome = result;
+                    percent = result == Outcome.UPDATED ? 100 : percent;
+                }
+                pump(bus);
+                done = isRoundDone();
+            }
+            if (listened != null) {
+                try {
+                    Controls.removeEventListener(listened, listener, EventCallback.EventType.StatusUpdate);
+                } catch (APosException e) {
+                    Log.e("Example", "Removing firmware listener of " + logicalName + ": ", e);
+                }
+            }
+            report();
+            if (done) {
+                List<DeviceProgress> progress = getProgress();
+                _listener.onFinished(progress);
+                _completion.complete(progress);
+            }
+        }
+
+        private void report() {
+            DeviceProgress progress;
+            int overall;
+            synchronized (FirmwareRollout.this) {
+                progress = snapshot();
+                int sum = 0;
+                for (Job job : _jobs.values())
+                    sum += job.outcome.isFinished() ? 100 : job.percent;
+                overall = _jobs.isEmpty() ? 100 : sum / _jobs.size();
+            }
+            _listener.onProgress(progress, overall);
+        }
+
+        private DeviceProgress snapshot() {
+            return new DeviceProgress(logicalName, bus, outcome, percent, attempts, message);
+        }
+    }
+}
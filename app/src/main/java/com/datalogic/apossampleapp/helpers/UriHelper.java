@@ -1,104 +0,0 @@
-package com.datalogic.apossampleapp.helpers;
-
-import android.content.ContentUris;
-import android.content.Context;
-import android.database.Cursor;
-import android.net.Uri;
-import android.os.Build;
-import android.os.Environment;
-import android.provider.DocumentsContract;
-import android.provider.MediaStore;
-import android.text.TextUtils;
-
-public class UriHelper {
-    /**
-     * Get a file path from a Uri. This will get the the path for Storage Access
-     * Framework Documents, as well as the _data field for the MediaStore and
-     * other file-based ContentProviders.
-     *
-     * @param context The context.
-     * @param uri     The Uri to query.
-     * @author paulburke
-     */
-    public static String getPath(final Context context, final Uri uri) {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            final String id;
-            Cursor cursor = null;
-            try {
-                cursor = context.getContentResolver().query(uri, new String[]{MediaStore.MediaColumns.DISPLAY_NAME}, null, null, null);
-                if (cursor != null && cursor.moveToFirst()) {
-                    String fileName = cursor.getString(0);
-                    String path = Environment.getExternalStorageDirectory().toString() + "/Download/" + fileName;
-                    if (!TextUtils.isEmpty(path)) {
-                        return path;
-                    }
-                }
-            } finally {
-                if (cursor != null)
-                    cursor.close();
-            }
-            id = DocumentsContract.getDocumentId(uri);
-            if (!TextUtils.isEmpty(id)) {
-                if (id.startsWith("raw:")) {
-                    return id.replaceFirst("raw:", "");
-                }
-                String[] contentUriPrefixesToTry = new String[]{
-                        "content://downloads/public_downloads",
-                        "content://downloads/my_downloads"
-                };
-                for (String contentUriPrefix : contentUriPrefixesToTry) {
-                    try {
-                        final Uri contentUri = ContentUris.withAppendedId(Uri.parse(contentUriPrefix), Long.valueOf(id));
-
-
-                        return getDataColumn(context, contentUri, null, null);
-                    } catch (NumberFormatException e) {
-                        //In Android 8 and Android P the id is not a number
-                        return uri.getPath().replaceFirst("^/document/raw:", "").replaceFirst("^raw:", "");
-                    }
-                }
-
-
-            }
-        } else {
-            final String id = DocumentsContract.getDocumentId(uri);
-
-            if (id.startsWith("raw:")) {
-                return id.replaceFirst("raw:", "");
-            }
-            Uri contentUri = null;
-            try {
-                contentUri = ContentUris.withAppendedId(
-                        Uri.parse("content://downloads/public_downloads"), Long.valueOf(id));
-            } catch (NumberFormatException e) {
-                e.printStackTrace();
-            }
-            if (contentUri != null) {
-
-                return getDataColumn(context, contentUri, null, null);
-            }
-        }
-        return "ND";
-    }
-
-    private static String getDataColumn(Context context, Uri uri, String selection, String[] selectionArgs) {
-        Cursor cursor = null;
-        final String column = "_data";
-        final String[] projection = {column};
-
-        try {
-            cursor = context.getContentResolver().query(uri, projection,
-                    selection, selectionArgs, null);
-
-            if (cursor != null && cursor.moveToFirst()) {
-                final int index = cursor.getColumnIndexOrThrow(column);
-                return cursor.getString(index);
-            }
-        } finally {
-            if (cursor != null)
-                cursor.close();
-        }
-
-        return null;
-    }
-}
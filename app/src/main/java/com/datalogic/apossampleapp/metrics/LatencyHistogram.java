@@ -0,0 +1,81 @@
+package com.datalogic.apossampleapp.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free latency histogram with log-linear buckets, in the manner of HdrHistogram: each power of two is
+ * split in 16 linear buckets, so a recorded value is known within about 6%, from 1 ns up to Long.MAX_VALUE.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray _counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder _count = new LongAdder();
+    private final LongAdder _sum = new LongAdder();
+    private final AtomicLong _max = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        _counts.incrementAndGet(indexOf(value));
+        _count.increment();
+        _sum.add(value);
+        long max;
+        while (value > (max = _max.get()) && !_max.compareAndSet(max, value)) {
+            // Lost the race against a concurrent record, try again.
+        }
+    }
+
+    public long getCount() {
+        return _count.sum();
+    }
+
+    public long getMax() {
+        return _max.get();
+    }
+
+    public long getMean() {
+        long count = _count.sum();
+        return count == 0 ? 0 : _sum.sum() / count;
+    }
+
+    /**
+     * @param percentile between 0 and 100.
+     * @return the highest value of the bucket holding the percentile, or 0 if nothing was recorded.
+     */
+    public long getPercentile(double percentile) {
+        long count = _count.sum();
+        if (count == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += _counts.get(i);
+            if (seen >= rank)
+                return Math.min(highestValueOf(i), _max.get());
+        }
+        return _max.get();
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = index % SUB_BUCKETS;
+        int shift = exponent - SUB_BUCKET_BITS;
+        long lowest = (SUB_BUCKETS + subBucket) << shift;
+        long width = 1L << shift;
+        return lowest + (width - 1);
+    }
+}
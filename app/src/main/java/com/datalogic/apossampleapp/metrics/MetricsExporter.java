@@ -0,0 +1,73 @@
+package com.datalogic.apossampleapp.metrics;
+
+import android.util.Log;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the metrics of a {@link MetricsRegistry} to a JSON file at a fixed period. The file is replaced
+ * atomically, so a reader, e.g. {@code adb pull}, never sees a partial export.
+ */
+public class MetricsExporter {
+    private final MetricsRegistry _registry;
+    private final File _file;
+    private ScheduledExecutorService _executor;
+
+    public MetricsExporter(MetricsRegistry registry, File file) {
+        _registry = registry;
+        _file = file;
+    }
+
+    public synchronized void start(long periodMillis) {
+        if (_executor != null)
+            return;
+        _executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-export");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        _executor.scheduleWithFixedDelay(this::exportQuietly, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the periodic export after a last one.
+     */
+    public synchronized void stop() {
+        if (_executor == null)
+            return;
+        _executor.shutdown();
+        _executor = null;
+        exportQuietly();
+    }
+
+    public void export() throws IOException {
+        File temp = new File(_file.getPath() + ".tmp");
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8))) {
+            _registry.writeJson(writer, System.currentTimeMillis());
+        }
+        if (!temp.renameTo(_file))
+            throw new IOException("Cannot replace " + _file + ".");
+    }
+
+    public File getFile() {
+        return _file;
+    }
+
+    private void exportQuietly() {
+        try {
+            export();
+        } catch (IOException e) {
+            Log.e("Example", "Exporting metrics: ", e);
+        }
+    }
+}
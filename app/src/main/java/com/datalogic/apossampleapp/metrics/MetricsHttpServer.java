@@ -0,0 +1,96 @@
+package com.datalogic.apossampleapp.metrics;
+
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serves the metrics of a {@link MetricsRegistry} as JSON on {@code GET /metrics}, on the loopback interface
+ * only: reach it with {@code adb forward tcp:<port> tcp:<port>}.
+ */
+public class MetricsHttpServer {
+    private final MetricsRegistry _registry;
+    private final int _port;
+    private ServerSocket _socket;
+    private Thread _thread;
+
+    public MetricsHttpServer(MetricsRegistry registry, int port) {
+        _registry = registry;
+        _port = port;
+    }
+
+    public synchronized void start() throws IOException {
+        if (_socket != null)
+            return;
+        _socket = new ServerSocket(_port, 4, InetAddress.getLoopbackAddress());
+        ServerSocket socket = _socket;
+        _thread = new Thread(() -> serve(socket), "metrics-http");
+        _thread.setDaemon(true);
+        _thread.start();
+    }
+
+    public synchronized void stop() {
+        if (_socket == null)
+            return;
+        try {
+            _socket.close();
+        } catch (IOException e) {
+            // Closing anyway.
+        }
+        _socket = null;
+        _thread = null;
+    }
+
+    /**
+     * @return the port listened to, useful when started on port 0.
+     */
+    public synchronized int getPort() {
+        return _socket == null ? _port : _socket.getLocalPort();
+    }
+
+    private void serve(ServerSocket socket) {
+        while (!socket.isClosed()) {
+            try (Socket client = socket.accept()) {
+                client.setSoTimeout(2000);
+                respond(client);
+            } catch (SocketException e) {
+                // Closed by stop().
+            } catch (IOException e) {
+                Log.e("Example", "Serving metrics: ", e);
+            }
+        }
+    }
+
+    private void respond(Socket client) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.US_ASCII));
+        String request = reader.readLine();
+        String line;
+        while ((line = reader.readLine()) != null && !line.isEmpty()) {
+            // Headers are not used.
+        }
+        OutputStream out = client.getOutputStream();
+        if (request == null || !request.startsWith("GET /metrics")) {
+            out.write("HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(body, StandardCharsets.UTF_8)) {
+            _registry.writeJson(writer, System.currentTimeMillis());
+        }
+        out.write(("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: " + body.size()
+                + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        body.writeTo(out);
+        out.flush();
+    }
+}
@@ -0,0 +1,128 @@
+package com.datalogic.apossampleapp.metrics;
+
+import com.datalogic.apossampleapp.scheduler.DeviceCommand;
+import com.datalogic.apossampleapp.scheduler.DeviceCommandScheduler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Operation counters and latency histograms by device logical name.
+ * <p>
+ * Added as an observer of a {@link DeviceCommandScheduler}, it times every command by its name, so lifecycle calls are
+ * measured without touching their code; failures and work done outside of commands are recorded explicitly.
+ */
+public class MetricsRegistry implements DeviceCommandScheduler.CommandObserver {
+    private static MetricsRegistry _instance;
+
+    private final ConcurrentMap<String, ConcurrentMap<String, OperationMetrics>> _devices = new ConcurrentHashMap<>();
+
+    public static synchronized MetricsRegistry getInstance() {
+        if (_instance == null) {
+            _instance = new MetricsRegistry();
+        }
+        return _instance;
+    }
+
+    /**
+     * @return the metrics of the operation, created on first use.
+     */
+    public OperationMetrics operation(String device, String operation) {
+        ConcurrentMap<String, OperationMetrics> operations = _devices.get(device);
+        if (operations == null)
+            operations = _devices.computeIfAbsent(device, key -> new ConcurrentHashMap<>());
+        OperationMetrics metrics = operations.get(operation);
+        if (metrics == null)
+            metrics = operations.computeIfAbsent(operation, key -> new OperationMetrics());
+        return metrics;
+    }
+
+    /**
+     * Record a run of an operation started at the given {@link System#nanoTime()}.
+     */
+    public void record(String device, String operation, long startNanos) {
+        operation(device, operation).record(System.nanoTime() - startNanos);
+    }
+
+    public void failed(String device, String operation) {
+        operation(device, operation).failed();
+    }
+
+    @Override
+    public void onCommandDone(Object device, DeviceCommand command) {
+        OperationMetrics metrics = operation(deviceName(device), command.getName());
+        metrics.recordQueueLatency(command.getQueueLatencyNanos());
+        metrics.record(command.getRunNanos());
+        if (command.getFailure() != null)
+            metrics.failed();
+    }
+
+    /**
+     * Write all the metrics as a JSON object, latencies in microseconds, devices and operations sorted by name.
+     */
+    public void writeJson(Writer writer, long timestampMillis) throws IOException {
+        writer.write("{\"timestamp\":");
+        writer.write(Long.toString(timestampMillis));
+        writer.write(",\"devices\":{");
+        boolean firstDevice = true;
+        for (Map.Entry<String, ConcurrentMap<String, OperationMetrics>> device : new TreeMap<>(_devices).entrySet()) {
+            if (!firstDevice)
+                writer.write(',');
+            firstDevice = false;
+            writeString(writer, device.getKey());
+            writer.write(":{");
+            boolean firstOperation = true;
+            for (Map.Entry<String, OperationMetrics> operation : new TreeMap<>(device.getValue()).entrySet()) {
+                if (!firstOperation)
+                    writer.write(',');
+                firstOperation = false;
+                OperationMetrics metrics = operation.getValue();
+                writeString(writer, operation.getKey());
+                writer.write(":{\"count\":" + metrics.getCount() + ",\"failures\":" + metrics.getFailures() + ",\"latency\":");
+                writeHistogram(writer, metrics.getLatency());
+                if (metrics.getQueueLatency().getCount() > 0) {
+                    writer.write(",\"queue\":");
+                    writeHistogram(writer, metrics.getQueueLatency());
+                }
+                writer.write('}');
+            }
+            writer.write('}');
+        }
+        writer.write("}}");
+    }
+
+    private static void writeHistogram(Writer writer, LatencyHistogram histogram) throws IOException {
+        writer.write("{\"p50\":" + micros(histogram.getPercentile(50))
+                + ",\"p90\":" + micros(histogram.getPercentile(90))
+                + ",\"p99\":" + micros(histogram.getPercentile(99))
+                + ",\"max\":" + micros(histogram.getMax())
+                + ",\"mean\":" + micros(histogram.getMean()) + "}");
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private static void writeString(Writer writer, String value) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\')
+                writer.write('\\');
+            if (c < 0x20)
+                writer.write(String.format("\\u%04x", (int) c));
+            else
+                writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    private static String deviceName(Object device) {
+        return device instanceof Class ? ((Class<?>) device).getSimpleName() : String.valueOf(device);
+    }
+}
@@ -0,0 +1,50 @@
+package com.datalogic.apossampleapp.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latencies of one operation of one device.
+ */
+public final class OperationMetrics {
+    private final LongAdder _count = new LongAdder();
+    private final LongAdder _failures = new LongAdder();
+    private final LatencyHistogram _latency = new LatencyHistogram();
+    private final LatencyHistogram _queueLatency = new LatencyHistogram();
+
+    /**
+     * Record one run of the operation.
+     *
+     * @param latencyNanos time the operation took.
+     */
+    public void record(long latencyNanos) {
+        _count.increment();
+        _latency.record(latencyNanos);
+    }
+
+    /**
+     * Record the time an operation waited before running, e.g. in its device command queue.
+     */
+    public void recordQueueLatency(long nanos) {
+        _queueLatency.record(nanos);
+    }
+
+    public void failed() {
+        _failures.increment();
+    }
+
+    public long getCount() {
+        return _count.sum();
+    }
+
+    public long getFailures() {
+        return _failures.sum();
+    }
+
+    public LatencyHistogram getLatency() {
+        return _latency;
+    }
+
+    public LatencyHistogram getQueueLatency() {
+        return _queueLatency;
+    }
+}
@@ -0,0 +1,178 @@
+package com.datalogic.apossampleapp.profiles;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A file holding the profile IDs of a configuration, tagged with a format version and the hash of the
+ * configuration they were read from.
+ */
+public class ProfileIdCache {
+    public interface PageListener {
+        /**
+         * Called on the reading thread once the first IDs are read, before the others; not called if the cache
+         * holds fewer IDs, or cannot be used.
+         */
+        void onFirstPage(ProfileIdIndex page);
+    }
+
+    static final int VERSION = 1;
+    private static final int CHUNK = 16 * 1024;
+
+    private final File _file;
+
+    public ProfileIdCache(File file) {
+        _file = file;
+    }
+
+    /**
+     * @return the cached profile IDs, or null if the cache is missing, of another format version or built
+     * from another configuration.
+     */
+    public List<String> read(String configHash) throws IOException {
+        if (!_file.exists())
+            return null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(_file), StandardCharsets.UTF_8))) {
+            String header = reader.readLine();
+            if (header == null || !header.equals(header(configHash)))
+                return null;
+            List<String> ids = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty())
+                    ids.add(line);
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * Read the cached profile IDs into an index, handing the first ones to the listener as soon as they are read.
+     *
+     * @param firstPage number of IDs the listener gets before the others are read.
+     * @return all the cached profile IDs, or null if the cache is missing, of another format version or built
+     * from another configuration.
+     */
+    public ProfileIdIndex read(String configHash, int firstPage, PageListener listener) throws IOException {
+        if (!_file.exists())
+            return null;
+        byte[] expected = (header(configHash) + '\n').getBytes(StandardCharsets.UTF_8);
+        try (InputStream is = new FileInputStream(_file)) {
+            // Sized once from the file, so the first page can share the bytes read after it.
+            byte[] bytes = new byte[(int) Math.max(expected.length, _file.length())];
+            int[] starts = new int[Math.max(16, firstPage)];
+            int[] ends = new int[starts.length];
+            int count = 0;
+            int length = 0;
+            int lineStart = expected.length;
+            boolean headerChecked = false;
+            boolean paged = false;
+            int read;
+            while (length < bytes.length && (read = is.read(bytes, length, Math.min(CHUNK, bytes.length - length))) > 0) {
+                length += read;
+                if (!headerChecked) {
+                    if (length < expected.length)
+                        continue;
+                    for (int i = 0; i < expected.length; i++) {
+                        if (bytes[i] != expected[i])
+                            return null;
+                    }
+                    headerChecked = true;
+                }
+                for (int i = lineStart; i < length; i++) {
+                    if (bytes[i] != '\n')
+                        continue;
+                    if (i > lineStart) {
+                        if (count == starts.length) {
+                            starts = Arrays.copyOf(starts, count * 2);
+                            ends = Arrays.copyOf(ends, count * 2);
+                        }
+                        starts[count] = lineStart;
+                        ends[count] = i;
+                        count++;
+                    }
+                    lineStart = i + 1;
+                }
+                if (!paged && count >= firstPage && listener != null) {
+                    listener.onFirstPage(new ProfileIdIndex(bytes, starts, ends, count, false));
+                    paged = true;
+                }
+            }
+            if (!headerChecked)
+                return null;
+            return new ProfileIdIndex(bytes, starts, ends, count, true);
+        }
+    }
+
+    /**
+     * @return the hash of the configuration the cache was built from, or null if there is no usable cache.
+     */
+    public String readHash() throws IOException {
+        if (!_file.exists())
+            return null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(_file), StandardCharsets.UTF_8))) {
+            String header = reader.readLine();
+            String prefix = VERSION + " ";
+            return header != null && header.startsWith(prefix) ? header.substring(prefix.length()) : null;
+        }
+    }
+
+    /**
+     * Replace the cache atomically.
+     */
+    public void write(String configHash, List<String> ids) throws IOException {
+        File temp = new File(_file.getPath() + ".tmp");
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8))) {
+            writer.write(header(configHash));
+            writer.write('\n');
+            for (String id : ids) {
+                writer.write(id);
+                writer.write('\n');
+            }
+        }
+        if (!temp.renameTo(_file))
+            throw new IOException("Cannot replace " + _file + ".");
+    }
+
+    public void delete() {
+        _file.delete();
+    }
+
+    /**
+     * @return the hex encoded SHA-256 of the stream content.
+     */
+    public static String hash(InputStream is) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        byte[] buf = new byte[8192];
+        int length;
+        while ((length = is.read(buf)) > 0)
+            digest.update(buf, 0, length);
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest())
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        return hex.toString();
+    }
+
+    private static String header(String configHash) {
+        return VERSION + " " + configHash;
+    }
+}
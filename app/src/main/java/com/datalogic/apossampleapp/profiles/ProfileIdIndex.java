@@ -0,0 +1,210 @@
+package com.datalogic.apossampleapp.profiles;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Profile IDs held as UTF-8 bytes, for configurations of thousands of devices.
+ * <p>
+ * An ID becomes a String only when asked for, e.g. when its row is shown, and a prefix search such as
+ * {@code DL-PowerScan-*} is a binary search over the IDs sorted once, ignoring case. The result of a search is a
+ * view over the same bytes, in the order of the configuration like the whole index.
+ */
+public final class ProfileIdIndex {
+    public static final ProfileIdIndex EMPTY = new ProfileIdIndex(new byte[0], new int[0], new int[0], 0, true);
+
+    private final byte[] _bytes;
+    private final int[] _starts;
+    private final int[] _ends;
+    private final int _count;
+    private final boolean _complete;
+    // The positions of this view in the IDs, or null for all of them in their order.
+    private final int[] _order;
+    private final int _from;
+    private final int _to;
+    private final ProfileIdIndex _all;
+    private int[] _sorted;
+
+    /**
+     * @param starts   offset of each ID in the bytes.
+     * @param ends     offset after each ID in the bytes.
+     * @param count    number of IDs; the arrays may be longer, and the bytes after the last ID still being filled.
+     * @param complete false for the first IDs of a configuration still being read.
+     */
+    ProfileIdIndex(byte[] bytes, int[] starts, int[] ends, int count, boolean complete) {
+        _bytes = bytes;
+        _starts = starts;
+        _ends = ends;
+        _count = count;
+        _complete = complete;
+        _order = null;
+        _from = 0;
+        _to = count;
+        _all = this;
+        // The index of a whole configuration is built off the main thread: sort it there too.
+        if (complete)
+            sorted();
+    }
+
+    private ProfileIdIndex(ProfileIdIndex all, int[] order, int from, int to) {
+        _bytes = all._bytes;
+        _starts = all._starts;
+        _ends = all._ends;
+        _count = all._count;
+        _complete = all._complete;
+        _order = order;
+        _from = from;
+        _to = to;
+        _all = all;
+    }
+
+    public static ProfileIdIndex of(List<String> ids) {
+        byte[][] encoded = new byte[ids.size()][];
+        int length = 0;
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = ids.get(i).getBytes(StandardCharsets.UTF_8);
+            length += encoded[i].length;
+        }
+        byte[] bytes = new byte[length];
+        int[] starts = new int[encoded.length];
+        int[] ends = new int[encoded.length];
+        int offset = 0;
+        for (int i = 0; i < encoded.length; i++) {
+            System.arraycopy(encoded[i], 0, bytes, offset, encoded[i].length);
+            starts[i] = offset;
+            offset += encoded[i].length;
+            ends[i] = offset;
+        }
+        return new ProfileIdIndex(bytes, starts, ends, encoded.length, true);
+    }
+
+    public int size() {
+        return _to - _from;
+    }
+
+    public String get(int position) {
+        int id = getIndex(position);
+        return new String(_bytes, _starts[id], _ends[id] - _starts[id], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the position in the configuration of the ID at this position of the view, which stays the same
+     * whatever the filter.
+     */
+    public int getIndex(int position) {
+        if (position < 0 || position >= size())
+            throw new IndexOutOfBoundsException("Position " + position + " of " + size() + ".");
+        return _order == null ? position : _order[_from + position];
+    }
+
+    /**
+     * @return false if these are only the first IDs of a configuration still being read.
+     */
+    public boolean isComplete() {
+        return _complete;
+    }
+
+    /**
+     * @param prefix the start of the IDs, ignoring case, e.g. {@code DL-PowerScan-}; a trailing {@code *} is
+     *               ignored, and an empty prefix gives every ID in its order.
+     * @return the IDs of the index, all of them and not only those of this view, that start with the prefix, in
+     * the order of the configuration.
+     */
+    public ProfileIdIndex startingWith(String prefix) {
+        if (prefix.endsWith("*"))
+            prefix = prefix.substring(0, prefix.length() - 1);
+        if (prefix.isEmpty())
+            return _all;
+        byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+        int[] sorted = _all.sorted();
+        int from = bound(sorted, key, 0);
+        int to = bound(sorted, key, 1);
+        // The IDs are numbered in the order of the configuration.
+        int[] matches = Arrays.copyOfRange(sorted, from, to);
+        Arrays.sort(matches);
+        return new ProfileIdIndex(_all, matches, 0, matches.length);
+    }
+
+    /**
+     * @return the first position of the sorted IDs that compares to the key at least as the threshold.
+     */
+    private int bound(int[] sorted, byte[] key, int threshold) {
+        int low = 0;
+        int high = _count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (comparePrefix(sorted[middle], key) < threshold)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * @return negative, zero or positive if the ID sorts before the IDs starting with the key, starts with it or
+     * sorts after them.
+     */
+    private int comparePrefix(int id, byte[] key) {
+        int start = _starts[id];
+        int length = Math.min(_ends[id] - start, key.length);
+        for (int i = 0; i < length; i++) {
+            int difference = fold(_bytes[start + i]) - fold(key[i]);
+            if (difference != 0)
+                return difference;
+        }
+        return _ends[id] - start < key.length ? -1 : 0;
+    }
+
+    private int compare(int a, int b) {
+        int startA = _starts[a];
+        int startB = _starts[b];
+        int lengthA = _ends[a] - startA;
+        int lengthB = _ends[b] - startB;
+        int length = Math.min(lengthA, lengthB);
+        for (int i = 0; i < length; i++) {
+            int difference = fold(_bytes[startA + i]) - fold(_bytes[startB + i]);
+            if (difference != 0)
+                return difference;
+        }
+        return lengthA - lengthB;
+    }
+
+    /**
+     * @return the byte as unsigned, ASCII letters in lower case; UTF-8 keeps the order of code points so.
+     */
+    private static int fold(byte b) {
+        int value = b & 0xff;
+        return value >= 'A' && value <= 'Z' ? value + ('a' - 'A') : value;
+    }
+
+    private synchronized int[] sorted() {
+        if (_sorted == null) {
+            int[] ids = new int[_count];
+            for (int i = 0; i < ids.length; i++)
+                ids[i] = i;
+            // A stable merge sort on the ints, to not box thousands of IDs.
+            int[] buffer = new int[_count];
+            for (int width = 1; width < ids.length; width *= 2) {
+                for (int low = 0; low < ids.length; low += 2 * width) {
+                    int middle = Math.min(low + width, ids.length);
+                    int high = Math.min(low + 2 * width, ids.length);
+                    int left = low;
+                    int right = middle;
+                    for (int i = low; i < high; i++) {
+                        if (left < middle && (right >= high || compare(ids[left], ids[right]) <= 0))
+                            buffer[i] = ids[left++];
+                        else
+                            buffer[i] = ids[right++];
+                    }
+                }
+                int[] swap = ids;
+                ids = buffer;
+                buffer = swap;
+            }
+            _sorted = ids;
+        }
+        return _sorted;
+    }
+}
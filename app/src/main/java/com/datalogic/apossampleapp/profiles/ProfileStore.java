@@ -0,0 +1,279 @@
+package com.datalogic.apossampleapp.profiles;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.datalogic.apossampleapp.config.AposConfigLoader;
+import com.datalogic.apossampleapp.config.AposEntry;
+import com.datalogic.dlapos.commons.support.APosException;
+import com.datalogic.dlapos.confighelper.DLAPosConfigHelper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Profile IDs of apos.json, cached across launches and held in a {@link ProfileIdIndex}.
+ * <p>
+ * While apos.json does not change, the IDs are read from a small cache file and the profile database is
+ * kept, so a launch neither parses apos.json nor wipes and refills the database. Otherwise only the
+ * logical names are streamed from apos.json. DLAPosConfigHelper is initialized lazily, when a device is
+ * opened; after a change of apos.json the IDs are cached only once that initialization has replaced the
+ * profiles in the database, so a launch that opens no device leaves the next one to do it.
+ * <p>
+ * Debug builds add the simulated devices of apos-debug.json, which the configuration helper never sees.
+ */
+public class ProfileStore {
+    interface Assets {
+        InputStream open(String fileName) throws IOException;
+    }
+
+    /**
+     * The profile database of DLAPosConfigHelper.
+     */
+    interface ProfileDatabase {
+        boolean isInitialized();
+
+        /**
+         * Fill the database with the profiles of apos.json.
+         */
+        void initialize() throws APosException;
+
+        void deleteAllProfiles();
+
+        List<String> getAllProfileIds();
+    }
+
+    private static final String CONFIG_FILE = "apos.json";
+    private static final String DEBUG_CONFIG_FILE = "apos-debug.json";
+    private static final String CACHE_FILE = "profile_ids";
+    private static ProfileStore _instance;
+
+    private final Assets _assets;
+    private final ProfileDatabase _database;
+    private final ProfileIdCache _cache;
+    private String _configHash;
+    private boolean _cacheCurrent;
+    private List<String> _staleDatabaseIds;
+    private long _lastLoadMillis = -1;
+    private boolean _lastLoadWarm;
+
+    public static synchronized ProfileStore getInstance(Context context) {
+        if (_instance == null)
+            _instance = new ProfileStore(context.getApplicationContext());
+        return _instance;
+    }
+
+    private ProfileStore(Context context) {
+        this(context.getAssets()::open, new HelperDatabase(context), new File(context.getFilesDir(), CACHE_FILE));
+    }
+
+    ProfileStore(Assets assets, ProfileDatabase database, File cacheFile) {
+        _assets = assets;
+        _database = database;
+        _cache = new ProfileIdCache(cacheFile);
+    }
+
+    /**
+     * @param firstPage number of IDs handed to the listener before the others are read, when they come from the
+     *                  cache.
+     * @return the profile IDs, from the cache when apos.json did not change.
+     */
+    public synchronized ProfileIdIndex loadProfileIndex(int firstPage, ProfileIdCache.PageListener listener)
+            throws APosException {
+        long start = System.nanoTime();
+        String hash = configHash();
+        ProfileIdIndex index = null;
+        String cachedHash = null;
+        try {
+            index = _cache.read(hash, firstPage, listener);
+            if (index == null)
+                cachedHash = _cache.readHash();
+        } catch (IOException e) {
+            Log.e("Example", "Reading profile cache: ", e);
+        }
+        _lastLoadWarm = index != null;
+        if (index == null) {
+            // The logical names are streamed from apos.json; the helper parses it only when a device is opened.
+            List<String> ids;
+            try (Reader reader = new InputStreamReader(_assets.open(CONFIG_FILE), StandardCharsets.UTF_8)) {
+                ids = new AposConfigLoader().readLogicalNames(reader);
+            } catch (IOException e) {
+                Log.e("Example", "Reading " + CONFIG_FILE + ": ", e);
+                ensureInitialized();
+                ids = _database.getAllProfileIds();
+            }
+            List<String> debugIds = readDebugLogicalNames();
+            if (!debugIds.isEmpty()) {
+                ids = new ArrayList<>(ids);
+                ids.addAll(debugIds);
+            }
+            index = ProfileIdIndex.of(ids);
+            // The database still holds the profiles of the previous apos.json: cached once they are replaced.
+            if (cachedHash != null || _staleDatabaseIds != null)
+                _staleDatabaseIds = ids;
+            else
+                writeCache(hash, ids);
+        }
+        _cacheCurrent = _staleDatabaseIds == null;
+        _lastLoadMillis = (System.nanoTime() - start) / 1_000_000;
+        Log.i("Example", "Profiles loaded (" + (_lastLoadWarm ? "warm" : "cold") + ") in " + _lastLoadMillis + " ms");
+        return index;
+    }
+
+    /**
+     * Initialize DLAPosConfigHelper if no one did in this process yet, replacing the profiles of a previous
+     * apos.json.
+     */
+    public synchronized void ensureInitialized() throws APosException {
+        if (!_database.isInitialized())
+            _database.initialize();
+        if (_staleDatabaseIds != null) {
+            _database.deleteAllProfiles();
+            _database.initialize();
+            writeCache(_configHash, _staleDatabaseIds);
+            _staleDatabaseIds = null;
+            _cacheCurrent = true;
+        }
+    }
+
+    /**
+     * @return the apos.json or apos-debug.json entry of the logical name, or null if there is none or the file
+     * cannot be read.
+     */
+    public AposEntry getEntry(String logicalName) {
+        try (Reader reader = new InputStreamReader(_assets.open(CONFIG_FILE), StandardCharsets.UTF_8)) {
+            AposEntry entry = new AposConfigLoader().load(reader, logicalName);
+            if (entry != null)
+                return entry;
+        } catch (IOException e) {
+            Log.e("Example", "Reading " + CONFIG_FILE + ": ", e);
+        }
+        InputStream debug = openDebugConfig();
+        if (debug == null)
+            return null;
+        try (Reader reader = new InputStreamReader(debug, StandardCharsets.UTF_8)) {
+            return new AposConfigLoader().load(reader, logicalName);
+        } catch (IOException e) {
+            Log.e("Example", "Reading " + DEBUG_CONFIG_FILE + ": ", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return true if the profile database matches the current apos.json.
+     */
+    public synchronized boolean isCacheCurrent() {
+        return _cacheCurrent;
+    }
+
+    /**
+     * Empty the profile database unless it matches the current apos.json, when the app is left.
+     */
+    public synchronized void cleanDatabase() {
+        if (!_cacheCurrent && _database.isInitialized())
+            _database.deleteAllProfiles();
+    }
+
+    /**
+     * Forget the cache, so the next load parses apos.json again.
+     */
+    public synchronized void invalidate() {
+        _cache.delete();
+        _cacheCurrent = false;
+    }
+
+    /**
+     * @return the duration of the last load in milliseconds, or -1 if nothing was loaded yet.
+     */
+    public synchronized long getLastLoadMillis() {
+        return _lastLoadMillis;
+    }
+
+    /**
+     * @return true if the last load was served by the cache.
+     */
+    public synchronized boolean wasLastLoadWarm() {
+        return _lastLoadWarm;
+    }
+
+    private String configHash() throws APosException {
+        if (_configHash == null) {
+            // A debug build and a release build of the same apos.json list different devices.
+            try (InputStream is = _assets.open(CONFIG_FILE); InputStream debug = openDebugConfig()) {
+                _configHash = ProfileIdCache.hash(debug == null ? is : new SequenceInputStream(is, debug));
+            } catch (IOException e) {
+                Log.e("Example", "Hashing " + CONFIG_FILE + ": ", e);
+                // Without a hash the cache cannot be trusted: use a value that never matches.
+                _configHash = "unreadable-" + System.nanoTime();
+            }
+        }
+        return _configHash;
+    }
+
+    private List<String> readDebugLogicalNames() {
+        InputStream debug = openDebugConfig();
+        if (debug == null)
+            return Collections.emptyList();
+        try (Reader reader = new InputStreamReader(debug, StandardCharsets.UTF_8)) {
+            return new AposConfigLoader().readLogicalNames(reader);
+        } catch (IOException e) {
+            Log.e("Example", "Reading " + DEBUG_CONFIG_FILE + ": ", e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * @return apos-debug.json, or null in release builds, which do not have it.
+     */
+    private InputStream openDebugConfig() {
+        try {
+            return _assets.open(DEBUG_CONFIG_FILE);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void writeCache(String hash, List<String> ids) {
+        try {
+            _cache.write(hash, ids);
+        } catch (IOException e) {
+            Log.e("Example", "Writing profile cache: ", e);
+        }
+    }
+
+    private static class HelperDatabase implements ProfileDatabase {
+        private final Context _context;
+
+        HelperDatabase(Context context) {
+            _context = context;
+        }
+
+        @Override
+        public boolean isInitialized() {
+            return DLAPosConfigHelper.getInstance(_context).isInitialized();
+        }
+
+        @Override
+        public void initialize() throws APosException {
+            DLAPosConfigHelper.getInstance(_context).initialize(_context);
+        }
+
+        @Override
+        public void deleteAllProfiles() {
+            DLAPosConfigHelper.getInstance(_context).getProfileManager().deleteAllProfiles();
+        }
+
+        @Override
+        public List<String> getAllProfileIds() {
+            return DLAPosConfigHelper.getInstance(_context).getProfileManager().getAllProfileIds();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.datalogic.apossampleapp.scale;
+
+/**
+ * A weight delivered by a {@link WeightStream}.
+ */
+public final class LiveWeight {
+    private final int _weight;
+    private final boolean _stable;
+    private final long _sampleNanos;
+
+    LiveWeight(int weight, boolean stable, long sampleNanos) {
+        _weight = weight;
+        _stable = stable;
+        _sampleNanos = sampleNanos;
+    }
+
+    /**
+     * @return the weight as read from the scale, in thousandths of the weight unit.
+     */
+    public int getWeight() {
+        return _weight;
+    }
+
+    /**
+     * @return true if the weight did not move for the stability window.
+     */
+    public boolean isStable() {
+        return _stable;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} at which the weight was read.
+     */
+    public long getSampleNanos() {
+        return _sampleNanos;
+    }
+}
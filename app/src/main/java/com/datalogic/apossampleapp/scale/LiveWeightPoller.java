@@ -0,0 +1,122 @@
+package com.datalogic.apossampleapp.scale;
+
+import com.datalogic.apossampleapp.scheduler.DeviceCommand;
+import com.datalogic.apossampleapp.scheduler.DeviceCommandScheduler;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads a scale at a fixed rate and feeds a {@link WeightStream}.
+ * <p>
+ * Reads run in the device queue of the {@link DeviceCommandScheduler}, after the commands already waiting
+ * there. A tick is skipped while the previous read is still queued or running, so a slow scale lowers the
+ * read rate instead of piling up reads.
+ */
+public class LiveWeightPoller {
+    public interface WeightReader {
+        /**
+         * @return the current weight, in thousandths of the weight unit.
+         */
+        int readWeight() throws Exception;
+    }
+
+    public interface ErrorListener {
+        void onReadError(Exception e);
+    }
+
+    private static ScheduledExecutorService _timer;
+
+    private final DeviceCommandScheduler _scheduler;
+    private final Object _device;
+    private final WeightReader _reader;
+    private final WeightStream _stream;
+    private final ErrorListener _errorListener;
+    private final AtomicLong _reads = new AtomicLong();
+    private final AtomicLong _skipped = new AtomicLong();
+    private ScheduledFuture<?> _tick;
+    private volatile DeviceCommand _inFlight;
+
+    public LiveWeightPoller(DeviceCommandScheduler scheduler, Object device, WeightReader reader, WeightStream stream,
+                            ErrorListener errorListener) {
+        _scheduler = scheduler;
+        _device = device;
+        _reader = reader;
+        _stream = stream;
+        _errorListener = errorListener;
+    }
+
+    /**
+     * Start reading every given period; restarts with the new period if already started.
+     */
+    public synchronized void start(long periodMillis) {
+        stop();
+        _stream.reset();
+        _tick = timer().scheduleAtFixedRate(this::tick, 0, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop reading; a read already queued is cancelled.
+     */
+    public synchronized void stop() {
+        if (_tick != null) {
+            _tick.cancel(false);
+            _tick = null;
+        }
+        DeviceCommand inFlight = _inFlight;
+        if (inFlight != null)
+            inFlight.cancel();
+    }
+
+    public synchronized boolean isStarted() {
+        return _tick != null;
+    }
+
+    /**
+     * @return the number of reads done.
+     */
+    public long getReadCount() {
+        return _reads.get();
+    }
+
+    /**
+     * @return the number of ticks skipped because the previous read was not done.
+     */
+    public long getSkippedCount() {
+        return _skipped.get();
+    }
+
+    private void tick() {
+        DeviceCommand inFlight = _inFlight;
+        if (inFlight != null && !inFlight.isDone()) {
+            _skipped.incrementAndGet();
+            return;
+        }
+        _inFlight = _scheduler.submitBlockingCoalescing(_device, "liveWeight", this::read);
+    }
+
+    private void read() {
+        try {
+            int weight = _reader.readWeight();
+            _reads.incrementAndGet();
+            _stream.offer(weight, System.nanoTime());
+        } catch (Exception e) {
+            if (_errorListener != null)
+                _errorListener.onReadError(e);
+        }
+    }
+
+    private static synchronized ScheduledExecutorService timer() {
+        if (_timer == null) {
+            _timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "live-weight");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return _timer;
+    }
+}
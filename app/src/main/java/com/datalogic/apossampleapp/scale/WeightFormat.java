@@ -0,0 +1,42 @@
+package com.datalogic.apossampleapp.scale;
+
+/**
+ * Converts raw scale weights to display values and resolves weight unit names through a precomputed table.
+ */
+public final class WeightFormat {
+    private static final int MAX_UNIT_CODE = 63;
+
+    private final String[] _unitNames = new String[MAX_UNIT_CODE + 1];
+
+    /**
+     * @param unitCodes weight unit codes, each between 0 and 63.
+     * @param unitNames display names, in the same order as the codes.
+     */
+    public WeightFormat(int[] unitCodes, String[] unitNames) {
+        if (unitCodes.length != unitNames.length)
+            throw new IllegalArgumentException("Codes and names must have the same length.");
+        for (int i = 0; i < unitCodes.length; i++) {
+            if (unitCodes[i] < 0 || unitCodes[i] > MAX_UNIT_CODE)
+                throw new IllegalArgumentException("Unsupported weight unit " + unitCodes[i] + ".");
+            _unitNames[unitCodes[i]] = unitNames[i];
+        }
+    }
+
+    /**
+     * @param weight weight as reported by the scale, in thousandths of the weight unit.
+     * @return the weight in weight units.
+     */
+    public double toUnits(int weight) {
+        return weight / 1000d;
+    }
+
+    /**
+     * @return the name of the unit, or an empty string if the unit is unknown.
+     */
+    public String unitName(int unit) {
+        if (unit < 0 || unit > MAX_UNIT_CODE)
+            return "";
+        String name = _unitNames[unit];
+        return name == null ? "" : name;
+    }
+}
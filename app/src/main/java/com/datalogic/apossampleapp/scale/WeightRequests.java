@@ -0,0 +1,189 @@
+package com.datalogic.apossampleapp.scale;
+
+import com.datalogic.apossampleapp.scheduler.DeviceCommand;
+import com.datalogic.apossampleapp.scheduler.DeviceCommandScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads a scale on request without blocking the caller, who gets a future of the weight.
+ * <p>
+ * Reads run in the device queue of the {@link DeviceCommandScheduler}. The requests made while a read waits in
+ * that queue share it, so a burst of requests costs one read, or two if a read was already running. Each request
+ * has its own deadline, after which it fails with a {@link TimeoutException}; the scale is given until the latest
+ * deadline of the requests sharing the read.
+ */
+public class WeightRequests {
+    public interface WeightReader {
+        /**
+         * @param timeoutMillis how long the scale may take to give a weight.
+         * @return the weight, in thousandths of the weight unit.
+         */
+        int readWeight(int timeoutMillis) throws Exception;
+    }
+
+    private static ScheduledExecutorService _timer;
+
+    private final DeviceCommandScheduler _scheduler;
+    private final Object _device;
+    private final WeightReader _reader;
+    private final AtomicLong _requests = new AtomicLong();
+    private final AtomicLong _reads = new AtomicLong();
+    private final AtomicLong _timedOut = new AtomicLong();
+    private Read _pending;
+    private Read _running;
+
+    public WeightRequests(DeviceCommandScheduler scheduler, Object device, WeightReader reader) {
+        _scheduler = scheduler;
+        _device = device;
+        _reader = reader;
+    }
+
+    /**
+     * Request the weight; callable from any thread, the main one included.
+     *
+     * @param timeoutMillis time after which the future fails with a {@link TimeoutException}.
+     * @return the weight, in thousandths of the weight unit. Cancelling it gives up the request, and the read too
+     * if no other request waits for it.
+     */
+    public CompletableFuture<Integer> request(long timeoutMillis) {
+        Request request = new Request(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+        Read read;
+        synchronized (this) {
+            if (_pending == null) {
+                Read next = new Read();
+                // The read cannot start before the lock is released, so it finds its command set.
+                next.command = _scheduler.submitBlocking(_device, "readWeight", () -> run(next));
+                _pending = next;
+            }
+            read = _pending;
+            read.requests.add(request);
+        }
+        _requests.incrementAndGet();
+        ScheduledFuture<?> timeout = timer().schedule(() -> {
+            if (request.future.completeExceptionally(new TimeoutException("No weight within " + timeoutMillis + " ms.")))
+                _timedOut.incrementAndGet();
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        request.future.whenComplete((weight, e) -> {
+            timeout.cancel(false);
+            if (e != null)
+                abandon(read, request);
+        });
+        return request.future;
+    }
+
+    /**
+     * Cancel every request, e.g. when the scale is disabled or closed. A read waiting in the device queue does not
+     * run; one already running on the scale is left to end, and its weight is dropped.
+     */
+    public void cancelAll() {
+        List<Request> cancelled = new ArrayList<>();
+        synchronized (this) {
+            if (_pending != null) {
+                _pending.command.cancel();
+                cancelled.addAll(_pending.requests);
+                _pending = null;
+            }
+            if (_running != null)
+                cancelled.addAll(_running.requests);
+        }
+        for (Request request : cancelled)
+            request.future.cancel(false);
+    }
+
+    /**
+     * @return the number of requests made.
+     */
+    public long getRequestCount() {
+        return _requests.get();
+    }
+
+    /**
+     * @return the number of reads done on the scale for them.
+     */
+    public long getReadCount() {
+        return _reads.get();
+    }
+
+    /**
+     * @return the number of requests that failed on their deadline.
+     */
+    public long getTimedOutCount() {
+        return _timedOut.get();
+    }
+
+    private synchronized void abandon(Read read, Request request) {
+        read.requests.remove(request);
+        if (read == _pending && read.requests.isEmpty() && read.command.cancel())
+            _pending = null;
+    }
+
+    private void run(Read read) {
+        List<Request> requests;
+        synchronized (this) {
+            if (_pending == read)
+                _pending = null;
+            if (read.requests.isEmpty())
+                return;
+            _running = read;
+            requests = new ArrayList<>(read.requests);
+        }
+        try {
+            long deadline = Long.MIN_VALUE;
+            for (Request request : requests)
+                deadline = Math.max(deadline, request.deadlineNanos);
+            long timeoutMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (timeoutMillis <= 0)
+                return;
+            int weight;
+            try {
+                weight = _reader.readWeight((int) Math.min(Integer.MAX_VALUE, timeoutMillis));
+                _reads.incrementAndGet();
+            } catch (Exception e) {
+                for (Request request : requests)
+                    request.future.completeExceptionally(e);
+                return;
+            }
+            for (Request request : requests)
+                request.future.complete(weight);
+        } finally {
+            synchronized (this) {
+                if (_running == read)
+                    _running = null;
+            }
+        }
+    }
+
+    private static synchronized ScheduledExecutorService timer() {
+        if (_timer == null) {
+            _timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "weight-requests");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return _timer;
+    }
+
+    private static final class Request {
+        private final CompletableFuture<Integer> future = new CompletableFuture<>();
+        private final long deadlineNanos;
+
+        private Request(long deadlineNanos) {
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+
+    private static final class Read {
+        private final List<Request> requests = new ArrayList<>();
+        private DeviceCommand command;
+    }
+}
@@ -0,0 +1,120 @@
+package com.datalogic.apossampleapp.scale;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Turns raw weight samples into a stream of weight changes.
+ * <p>
+ * Samples within the deadband of the last delivered weight are dropped, unless the weight becomes stable or
+ * unstable. A weight is stable once it stays within the stability tolerance for the stability window.
+ * Delivery is conflated: at most one weight waits for the consumer, and a newer one replaces it, so a slow
+ * consumer sees the latest weight and the producer never waits.
+ */
+public class WeightStream {
+    public interface Listener {
+        /**
+         * Called on the delivery executor.
+         */
+        void onWeight(LiveWeight weight);
+    }
+
+    private final int _deadband;
+    private final int _stableTolerance;
+    private final long _stableWindowNanos;
+    private final Executor _executor;
+    private final Listener _listener;
+    private final AtomicReference<LiveWeight> _pending = new AtomicReference<>();
+    private final Runnable _deliver = this::deliver;
+    private final AtomicLong _delivered = new AtomicLong();
+    private final AtomicLong _superseded = new AtomicLong();
+    private long _filtered;
+
+    // Producer side, guarded by this.
+    private boolean _hasEmitted;
+    private int _lastEmitted;
+    private boolean _lastStable;
+    private int _anchor;
+    private long _anchorNanos;
+
+    /**
+     * @param deadband          smallest change worth delivering, in thousandths of the weight unit.
+     * @param stableTolerance   largest move of a stable weight, in thousandths of the weight unit.
+     * @param stableWindowNanos time a weight must stay within the tolerance to be stable.
+     * @param executor          where the listener is called, e.g. the main thread.
+     */
+    public WeightStream(int deadband, int stableTolerance, long stableWindowNanos, Executor executor, Listener listener) {
+        _deadband = deadband;
+        _stableTolerance = stableTolerance;
+        _stableWindowNanos = stableWindowNanos;
+        _executor = executor;
+        _listener = listener;
+    }
+
+    /**
+     * Add a sample; never blocks.
+     *
+     * @param weight      the weight read, in thousandths of the weight unit.
+     * @param sampleNanos {@link System#nanoTime()} at which it was read.
+     */
+    public void offer(int weight, long sampleNanos) {
+        LiveWeight change;
+        synchronized (this) {
+            if (!_hasEmitted || Math.abs(weight - _anchor) > _stableTolerance) {
+                _anchor = weight;
+                _anchorNanos = sampleNanos;
+            }
+            boolean stable = sampleNanos - _anchorNanos >= _stableWindowNanos;
+            if (_hasEmitted && stable == _lastStable && Math.abs(weight - _lastEmitted) < _deadband) {
+                _filtered++;
+                return;
+            }
+            _hasEmitted = true;
+            _lastEmitted = weight;
+            _lastStable = stable;
+            change = new LiveWeight(weight, stable, sampleNanos);
+        }
+        if (_pending.getAndSet(change) == null)
+            _executor.execute(_deliver);
+        else
+            _superseded.incrementAndGet();
+    }
+
+    /**
+     * Forget the last weight, so the next sample is delivered whatever its value.
+     */
+    public synchronized void reset() {
+        _hasEmitted = false;
+        _pending.set(null);
+    }
+
+    /**
+     * @return the number of weights handed to the listener.
+     */
+    public long getDeliveredCount() {
+        return _delivered.get();
+    }
+
+    /**
+     * @return the number of weights replaced by a newer one before the listener got them.
+     */
+    public long getSupersededCount() {
+        return _superseded.get();
+    }
+
+    /**
+     * @return the number of samples dropped by the deadband.
+     */
+    public synchronized long getFilteredCount() {
+        return _filtered;
+    }
+
+    private void deliver() {
+        LiveWeight weight = _pending.getAndSet(null);
+        if (weight != null) {
+            _delivered.incrementAndGet();
+            _listener.onWeight(weight);
+        }
+    }
+}
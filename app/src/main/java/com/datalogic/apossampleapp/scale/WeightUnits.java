@@ -0,0 +1,25 @@
+package com.datalogic.apossampleapp.scale;
+
+import com.datalogic.dlapos.commons.constant.ScaleConstants;
+
+/**
+ * Weight unit names for the {@link ScaleConstants} units.
+ */
+public final class WeightUnits {
+    public static final WeightFormat STANDARD = new WeightFormat(
+            new int[]{
+                    ScaleConstants.SCAL_WU_GRAM,
+                    ScaleConstants.SCAL_WU_KILOGRAM,
+                    ScaleConstants.SCAL_WU_OUNCE,
+                    ScaleConstants.SCAL_WU_POUND
+            },
+            new String[]{
+                    "grams",
+                    "kilograms",
+                    "ounces",
+                    "pounds"
+            });
+
+    private WeightUnits() {
+    }
+}
@@ -0,0 +1,139 @@
+package com.datalogic.apossampleapp.scan;
+
+import java.util.Arrays;
+
+/**
+ * Recognizes the same label read again within a time window, as multi-plane and tunnel scanners do when several
+ * planes see the label one after the other.
+ * <p>
+ * Reads are keyed on a 64-bit hash of the label bytes and the symbology, kept with the time of their last read
+ * in an open-addressing table of primitive arrays, so that no object is created per read. Expired reads are
+ * overwritten in place or dropped when the table is rebuilt, into arrays kept from the previous rebuild. A filter
+ * is used from the device event thread only.
+ */
+public final class DuplicateFilter {
+    private static final long EMPTY = 0;
+
+    private final long _windowNanos;
+    private long[] _keys;
+    private long[] _lastReads;
+    private long[] _spareKeys;
+    private long[] _spareLastReads;
+    private int _mask;
+    private int _used;
+    private long _suppressed;
+
+    /**
+     * @param windowMillis   how long after its last read a label is a duplicate.
+     * @param expectedLabels the number of distinct labels expected within a window, to size the table.
+     */
+    public DuplicateFilter(long windowMillis, int expectedLabels) {
+        if (windowMillis <= 0)
+            throw new IllegalArgumentException("The window must be positive.");
+        _windowNanos = windowMillis * 1_000_000;
+        allocate(Math.max(16, Integer.highestOneBit(Math.max(1, expectedLabels) * 4 - 1) << 1));
+    }
+
+    /**
+     * Record a read.
+     *
+     * @param length    number of valid bytes in {@code label}.
+     * @param nowNanos  the time of the read, from {@link System#nanoTime()}.
+     * @return true if the same label of the same symbology was read less than the window ago.
+     */
+    public boolean isDuplicate(byte[] label, int length, int symbology, long nowNanos) {
+        long key = hash(label, length, symbology);
+        int expired = -1;
+        int slot = (int) key & _mask;
+        while (_keys[slot] != EMPTY) {
+            if (_keys[slot] == key) {
+                boolean duplicate = nowNanos - _lastReads[slot] < _windowNanos;
+                _lastReads[slot] = nowNanos;
+                if (duplicate)
+                    _suppressed++;
+                return duplicate;
+            }
+            if (expired < 0 && nowNanos - _lastReads[slot] >= _windowNanos)
+                expired = slot;
+            slot = (slot + 1) & _mask;
+        }
+        // The label is not further down the probe sequence, so an expired slot on the way can take it.
+        if (expired >= 0) {
+            _keys[expired] = key;
+            _lastReads[expired] = nowNanos;
+            return false;
+        }
+        _keys[slot] = key;
+        _lastReads[slot] = nowNanos;
+        if (++_used > (_mask + 1) >> 1)
+            rebuild(nowNanos);
+        return false;
+    }
+
+    /**
+     * @return the number of reads found to be duplicates.
+     */
+    public long getSuppressedCount() {
+        return _suppressed;
+    }
+
+    public int getCapacity() {
+        return _keys.length;
+    }
+
+    /**
+     * Drop the expired reads, into a table twice as large if more than a quarter of it stays in use.
+     */
+    private void rebuild(long nowNanos) {
+        int live = 0;
+        for (int i = 0; i < _keys.length; i++) {
+            if (_keys[i] != EMPTY && nowNanos - _lastReads[i] < _windowNanos)
+                live++;
+        }
+        long[] keys = _keys;
+        long[] lastReads = _lastReads;
+        if (live > keys.length >> 2) {
+            allocate(keys.length << 1);
+        } else {
+            Arrays.fill(_spareKeys, EMPTY);
+            _keys = _spareKeys;
+            _lastReads = _spareLastReads;
+            _spareKeys = keys;
+            _spareLastReads = lastReads;
+        }
+        _used = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == EMPTY || nowNanos - lastReads[i] >= _windowNanos)
+                continue;
+            int slot = (int) keys[i] & _mask;
+            while (_keys[slot] != EMPTY)
+                slot = (slot + 1) & _mask;
+            _keys[slot] = keys[i];
+            _lastReads[slot] = lastReads[i];
+            _used++;
+        }
+    }
+
+    private void allocate(int capacity) {
+        _keys = new long[capacity];
+        _lastReads = new long[capacity];
+        _spareKeys = new long[capacity];
+        _spareLastReads = new long[capacity];
+        _mask = capacity - 1;
+    }
+
+    /**
+     * FNV-1a over the symbology and the label, then the MurmurHash3 finalizer so the low bits index the table well.
+     */
+    static long hash(byte[] label, int length, int symbology) {
+        long hash = 0xcbf29ce484222325L ^ symbology;
+        for (int i = 0; i < length; i++)
+            hash = (hash ^ (label[i] & 0xff)) * 0x100000001b3L;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == EMPTY ? 1 : hash;
+    }
+}
@@ -0,0 +1,51 @@
+package com.datalogic.apossampleapp.scan;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A product of the {@link ItemIndex}, found by the barcode printed on it.
+ */
+public final class Item {
+    private final byte[] _barcode;
+    private final String _description;
+    private final long _priceCents;
+
+    public Item(String barcode, String description, long priceCents) {
+        this(barcode.getBytes(StandardCharsets.UTF_8), description, priceCents);
+    }
+
+    Item(byte[] barcode, String description, long priceCents) {
+        _barcode = barcode;
+        _description = description;
+        _priceCents = priceCents;
+    }
+
+    public String getBarcode() {
+        return new String(_barcode, StandardCharsets.UTF_8);
+    }
+
+    public String getDescription() {
+        return _description;
+    }
+
+    public long getPriceCents() {
+        return _priceCents;
+    }
+
+    byte[] barcode() {
+        return _barcode;
+    }
+
+    /**
+     * @return true if the barcode of the item is the given bytes.
+     */
+    boolean matches(byte[] label, int offset, int length) {
+        if (_barcode.length != length)
+            return false;
+        for (int i = 0; i < length; i++) {
+            if (_barcode[i] != label[offset + i])
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,182 @@
+package com.datalogic.apossampleapp.scan;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/**
+ * A read-only product catalog in a memory-mapped file, keyed on the barcode bytes.
+ * <p>
+ * The file is a hash table of barcode hashes and record offsets followed by the records, so finding an item
+ * reads one or two slots and its record straight from the mapped pages, and the catalog stays off the Java heap
+ * whatever its size: only the items found are decoded to objects. Lookups may come from any thread.
+ * <p>
+ * File layout: a header of {@value #HEADER_SIZE} bytes holding a magic number, the number of slots and the number
+ * of items; slots of 64-bit hash, record offset and barcode length; records of barcode bytes, description length,
+ * UTF-8 description and price in cents.
+ */
+public final class ItemIndex {
+    private static final int MAGIC = 0x49544d31; // "ITM1"
+    private static final int HEADER_SIZE = 32;
+    private static final int SLOT_SIZE = 16;
+    private static final long EMPTY = 0;
+
+    private final MappedByteBuffer _map;
+    private final int _mask;
+    private final int _itemCount;
+
+    /**
+     * Map an index written by {@link #build}.
+     *
+     * @throws IOException if the file cannot be mapped or is not an item index.
+     */
+    public ItemIndex(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() > Integer.MAX_VALUE)
+                throw new IOException("Item index " + file + " is too large.");
+            // The mapping outlives the file descriptor.
+            _map = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        }
+        if (_map.capacity() < HEADER_SIZE || _map.getInt(0) != MAGIC)
+            throw new IOException(file + " is not an item index.");
+        int slots = _map.getInt(4);
+        if (Integer.bitCount(slots) != 1 || HEADER_SIZE + (long) slots * SLOT_SIZE > _map.capacity())
+            throw new IOException("Item index " + file + " is truncated.");
+        _mask = slots - 1;
+        _itemCount = _map.getInt(8);
+    }
+
+    /**
+     * Write the index of the items to the file; of items with the same barcode, the last one is kept.
+     *
+     * @throws IOException if the file cannot be written or the items need more than 2 GB.
+     */
+    public static void build(File file, Collection<Item> items) throws IOException {
+        int slots = Math.max(16, Integer.highestOneBit(Math.max(1, items.size()) * 4 / 3) << 1);
+        long size = HEADER_SIZE + (long) slots * SLOT_SIZE;
+        for (Item item : items)
+            size += recordSize(item);
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("The index of " + items.size() + " items would be too large.");
+
+        File built = new File(file.getPath() + ".tmp");
+        try (RandomAccessFile raf = new RandomAccessFile(built, "rw")) {
+            raf.setLength(0);
+            raf.setLength(size);
+            MappedByteBuffer map = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            int mask = slots - 1;
+            int count = 0;
+            int record = HEADER_SIZE + slots * SLOT_SIZE;
+            for (Item item : items) {
+                byte[] barcode = item.barcode();
+                long hash = hash(barcode, 0, barcode.length);
+                int slot = (int) hash & mask;
+                while (true) {
+                    int position = HEADER_SIZE + slot * SLOT_SIZE;
+                    long slotHash = map.getLong(position);
+                    if (slotHash == EMPTY) {
+                        count++;
+                        break;
+                    }
+                    if (slotHash == hash && map.getInt(position + 12) == barcode.length
+                            && matches(map, map.getInt(position + 8), barcode, 0, barcode.length))
+                        break;
+                    slot = (slot + 1) & mask;
+                }
+                int position = HEADER_SIZE + slot * SLOT_SIZE;
+                map.putLong(position, hash);
+                map.putInt(position + 8, record);
+                map.putInt(position + 12, barcode.length);
+                byte[] description = item.getDescription().getBytes(StandardCharsets.UTF_8);
+                map.position(record);
+                map.put(barcode);
+                map.putShort((short) description.length);
+                map.put(description);
+                map.putLong(item.getPriceCents());
+                record = map.position();
+            }
+            map.putInt(0, MAGIC);
+            map.putInt(4, slots);
+            map.putInt(8, count);
+            map.force();
+        }
+        if (!built.renameTo(file))
+            throw new IOException("Cannot replace " + file + " with " + built + ".");
+    }
+
+    private static long recordSize(Item item) throws IOException {
+        int description = item.getDescription().getBytes(StandardCharsets.UTF_8).length;
+        if (description > Short.MAX_VALUE)
+            throw new IOException("The description of item " + item.getBarcode() + " is too long.");
+        return item.barcode().length + 2 + description + 8;
+    }
+
+    /**
+     * @param hash the {@link #hash} of the barcode.
+     * @return the item with the barcode, or null if the catalog does not have it.
+     */
+    public Item find(byte[] barcode, int offset, int length, long hash) {
+        int slot = (int) hash & _mask;
+        while (true) {
+            int position = HEADER_SIZE + slot * SLOT_SIZE;
+            long slotHash = _map.getLong(position);
+            if (slotHash == EMPTY)
+                return null;
+            int record = _map.getInt(position + 8);
+            if (slotHash == hash && _map.getInt(position + 12) == length && matches(_map, record, barcode, offset, length))
+                return decode(record, length);
+            slot = (slot + 1) & _mask;
+        }
+    }
+
+    private Item decode(int record, int barcodeLength) {
+        byte[] barcode = new byte[barcodeLength];
+        for (int i = 0; i < barcodeLength; i++)
+            barcode[i] = _map.get(record + i);
+        int position = record + barcodeLength;
+        byte[] description = new byte[_map.getShort(position)];
+        position += 2;
+        for (int i = 0; i < description.length; i++)
+            description[i] = _map.get(position + i);
+        position += description.length;
+        return new Item(barcode, new String(description, StandardCharsets.UTF_8), _map.getLong(position));
+    }
+
+    private static boolean matches(MappedByteBuffer map, int record, byte[] barcode, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            if (map.get(record + i) != barcode[offset + i])
+                return false;
+        }
+        return true;
+    }
+
+    public int getItemCount() {
+        return _itemCount;
+    }
+
+    /**
+     * @return the size of the mapped file, in bytes.
+     */
+    public int getSize() {
+        return _map.capacity();
+    }
+
+    /**
+     * @return the 64-bit hash of the barcode that keys the index, never 0.
+     */
+    static long hash(byte[] barcode, int offset, int length) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = offset; i < offset + length; i++)
+            hash = (hash ^ (barcode[i] & 0xff)) * 0x100000001b3L;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == EMPTY ? 1 : hash;
+    }
+}
@@ -0,0 +1,157 @@
+package com.datalogic.apossampleapp.scan;
+
+import java.util.Arrays;
+
+/**
+ * Resolves scanned barcodes to the items of an {@link ItemIndex}, through a cache of the items most recently
+ * scanned.
+ * <p>
+ * The cache is least-recently-used, with its entries in primitive arrays: a hash table chained by node index and
+ * a list from the newest node to the oldest, which is the one replaced when the cache is full. A scan of a cached
+ * item thus creates no object and reads no mapped page. A lookup is used from the device event thread only.
+ */
+public final class ItemLookup {
+    private static final int NONE = -1;
+
+    private final ItemIndex _index;
+    private final int _capacity;
+    private final int[] _buckets;
+    private final int[] _chain;
+    private final long[] _hashes;
+    private final Item[] _items;
+    private final int[] _newer;
+    private final int[] _older;
+    private final int _mask;
+    private int _size;
+    private int _newest = NONE;
+    private int _oldest = NONE;
+    private long _hits;
+    private long _misses;
+    private long _unknown;
+
+    /**
+     * @param capacity the number of items kept in memory.
+     */
+    public ItemLookup(ItemIndex index, int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("The cache capacity must be positive.");
+        _index = index;
+        _capacity = capacity;
+        int buckets = Math.max(16, Integer.highestOneBit(capacity * 2 - 1) << 1);
+        _mask = buckets - 1;
+        _buckets = new int[buckets];
+        Arrays.fill(_buckets, NONE);
+        _chain = new int[capacity];
+        _hashes = new long[capacity];
+        _items = new Item[capacity];
+        _newer = new int[capacity];
+        _older = new int[capacity];
+    }
+
+    /**
+     * @param length number of valid bytes of {@code label} from {@code offset}.
+     * @return the item with the label as barcode, or null if the catalog does not have it.
+     */
+    public Item lookup(byte[] label, int offset, int length) {
+        long hash = ItemIndex.hash(label, offset, length);
+        for (int node = _buckets[bucket(hash)]; node != NONE; node = _chain[node]) {
+            if (_hashes[node] == hash && _items[node].matches(label, offset, length)) {
+                _hits++;
+                if (node != _newest) {
+                    unlink(node);
+                    linkNewest(node);
+                }
+                return _items[node];
+            }
+        }
+        _misses++;
+        Item item = _index.find(label, offset, length, hash);
+        if (item == null) {
+            _unknown++;
+            return null;
+        }
+        int node;
+        if (_size < _capacity) {
+            node = _size++;
+        } else {
+            node = _oldest;
+            unlink(node);
+            unchain(node);
+        }
+        _hashes[node] = hash;
+        _items[node] = item;
+        int bucket = bucket(hash);
+        _chain[node] = _buckets[bucket];
+        _buckets[bucket] = node;
+        linkNewest(node);
+        return item;
+    }
+
+    private int bucket(long hash) {
+        return (int) hash & _mask;
+    }
+
+    private void linkNewest(int node) {
+        _newer[node] = NONE;
+        _older[node] = _newest;
+        if (_newest != NONE)
+            _newer[_newest] = node;
+        _newest = node;
+        if (_oldest == NONE)
+            _oldest = node;
+    }
+
+    private void unlink(int node) {
+        int newer = _newer[node];
+        int older = _older[node];
+        if (newer != NONE)
+            _older[newer] = older;
+        else
+            _newest = older;
+        if (older != NONE)
+            _newer[older] = newer;
+        else
+            _oldest = newer;
+    }
+
+    private void unchain(int node) {
+        int bucket = bucket(_hashes[node]);
+        if (_buckets[bucket] == node) {
+            _buckets[bucket] = _chain[node];
+            return;
+        }
+        int previous = _buckets[bucket];
+        while (_chain[previous] != node)
+            previous = _chain[previous];
+        _chain[previous] = _chain[node];
+    }
+
+    /**
+     * @return the number of lookups answered from the cache.
+     */
+    public long getHitCount() {
+        return _hits;
+    }
+
+    /**
+     * @return the number of lookups that read the index.
+     */
+    public long getMissCount() {
+        return _misses;
+    }
+
+    /**
+     * @return the number of barcodes the catalog does not have.
+     */
+    public long getUnknownCount() {
+        return _unknown;
+    }
+
+    public int getSize() {
+        return _size;
+    }
+
+    public ItemIndex getIndex() {
+        return _index;
+    }
+}
@@ -0,0 +1,122 @@
+package com.datalogic.apossampleapp.scan;
+
+/**
+ * The label of a scan while it goes through a {@link LabelPipeline}: a window on a reusable byte buffer that the
+ * stages narrow, rewrite or annotate in place.
+ * <p>
+ * Positions are indexes into {@link #bytes()}, which may be replaced by a larger buffer by
+ * {@link #ensureCapacity(int)}.
+ */
+public final class Label {
+    private byte[] _bytes;
+    private int _start;
+    private int _length;
+    private int _symbology;
+    private int[] _elements = new int[3 * 8];
+    private int _elementCount;
+
+    public Label(int capacity) {
+        _bytes = new byte[capacity];
+    }
+
+    /**
+     * Start over with a copy of the first {@code length} bytes of {@code label}.
+     */
+    public void reset(byte[] label, int length, int symbology) {
+        if (_bytes.length < length)
+            _bytes = new byte[Math.max(length, _bytes.length * 2)];
+        System.arraycopy(label, 0, _bytes, 0, length);
+        _start = 0;
+        _length = length;
+        _symbology = symbology;
+        _elementCount = 0;
+    }
+
+    public byte[] bytes() {
+        return _bytes;
+    }
+
+    public int start() {
+        return _start;
+    }
+
+    public int length() {
+        return _length;
+    }
+
+    public int end() {
+        return _start + _length;
+    }
+
+    /**
+     * Narrow the label to the given window of the buffer.
+     */
+    public void set(int start, int length) {
+        if (start < 0 || length < 0 || start + length > _bytes.length)
+            throw new IndexOutOfBoundsException(start + "+" + length);
+        _start = start;
+        _length = length;
+    }
+
+    /**
+     * Make the buffer at least {@code capacity} bytes long, keeping its content.
+     */
+    public void ensureCapacity(int capacity) {
+        if (_bytes.length < capacity) {
+            byte[] bytes = new byte[Math.max(capacity, _bytes.length * 2)];
+            System.arraycopy(_bytes, 0, bytes, 0, _bytes.length);
+            _bytes = bytes;
+        }
+    }
+
+    public int getSymbology() {
+        return _symbology;
+    }
+
+    public void setSymbology(int symbology) {
+        _symbology = symbology;
+    }
+
+    /**
+     * Record a GS1 element string found in the label.
+     *
+     * @param aiStart    where the application identifier starts.
+     * @param valueStart where the data starts, right after the application identifier.
+     * @param valueEnd   where the data ends, excluded.
+     */
+    public void addElement(int aiStart, int valueStart, int valueEnd) {
+        if (_elementCount * 3 == _elements.length) {
+            int[] elements = new int[_elements.length * 2];
+            System.arraycopy(_elements, 0, elements, 0, _elements.length);
+            _elements = elements;
+        }
+        _elements[_elementCount * 3] = aiStart;
+        _elements[_elementCount * 3 + 1] = valueStart;
+        _elements[_elementCount * 3 + 2] = valueEnd;
+        _elementCount++;
+    }
+
+    public void clearElements() {
+        _elementCount = 0;
+    }
+
+    public int getElementCount() {
+        return _elementCount;
+    }
+
+    public int getApplicationIdentifierStart(int index) {
+        return _elements[index * 3];
+    }
+
+    public int getValueStart(int index) {
+        return _elements[index * 3 + 1];
+    }
+
+    public int getValueEnd(int index) {
+        return _elements[index * 3 + 2];
+    }
+
+    int[] elements() {
+        return _elements;
+    }
+}
@@ -0,0 +1,119 @@
+package com.datalogic.apossampleapp.scan;
+
+import com.datalogic.apossampleapp.config.PropertyMap;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The post-processing stages of the labels of one device, run between the data event and the publication of the
+ * scan.
+ * <p>
+ * The stages that apply to each symbology are picked once, when the pipeline is built, so a scan only runs the
+ * stages meant for it, in a plain loop over an array.
+ */
+public final class LabelPipeline {
+    public static final String STAGES = "labelStages";
+    public static final String PREFIX = "labelPrefix";
+    public static final String SUFFIX = "labelSuffix";
+    private static final int TABLE_SIZE = 512;
+    private static final LabelStage[] NO_STAGES = new LabelStage[0];
+
+    private final LabelStage[] _stages;
+    private final LabelStage[][] _bySymbology = new LabelStage[TABLE_SIZE][];
+    private long _rejected;
+
+    public LabelPipeline(List<LabelStage> stages) {
+        _stages = stages.toArray(NO_STAGES);
+        for (int symbology = 0; symbology < TABLE_SIZE; symbology++)
+            _bySymbology[symbology] = select(symbology);
+    }
+
+    /**
+     * Build the pipeline of the labelStages property of apos.json: stripPrefix, stripSuffix, expandUpcE, checkDigit
+     * or gs1, separated by commas in the order they run. The affixes are the labelPrefix and labelSuffix properties.
+     * <p>
+     * checkDigit validates the GS1 keys found by gs1, so when both are listed gs1 must come first.
+     *
+     * @return the pipeline, or null if there are no stages.
+     * @throws IllegalArgumentException if a stage is unknown or checkDigit is listed before gs1.
+     */
+    public static LabelPipeline fromProperties(PropertyMap properties) {
+        String names = properties.getString(STAGES);
+        if (names == null || names.trim().isEmpty())
+            return null;
+        List<LabelStage> stages = new ArrayList<>();
+        boolean checkDigit = false;
+        for (String name : names.split(",")) {
+            switch (name.trim()) {
+                case "stripPrefix":
+                    stages.add(LabelStages.stripPrefix(affix(properties, PREFIX)));
+                    break;
+                case "stripSuffix":
+                    stages.add(LabelStages.stripSuffix(affix(properties, SUFFIX)));
+                    break;
+                case "expandUpcE":
+                    stages.add(LabelStages.expandUpcE());
+                    break;
+                case "checkDigit":
+                    stages.add(LabelStages.checkDigit());
+                    checkDigit = true;
+                    break;
+                case "gs1":
+                    if (checkDigit)
+                        throw new IllegalArgumentException("Label stage checkDigit must come after gs1.");
+                    stages.add(LabelStages.gs1());
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown label stage " + name.trim() + ".");
+            }
+        }
+        return new LabelPipeline(stages);
+    }
+
+    private static byte[] affix(PropertyMap properties, String name) {
+        String affix = properties.getString(name);
+        return affix == null ? new byte[0] : affix.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Run the stages of the symbology of the label.
+     *
+     * @return false if a stage dropped the scan.
+     */
+    public boolean process(Label label) {
+        int symbology = label.getSymbology();
+        LabelStage[] stages = symbology >= 0 && symbology < TABLE_SIZE ? _bySymbology[symbology] : select(symbology);
+        for (LabelStage stage : stages) {
+            if (!stage.apply(label)) {
+                _rejected++;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of stages run for labels of the symbology.
+     */
+    public int getStageCount(int symbology) {
+        return symbology >= 0 && symbology < TABLE_SIZE ? _bySymbology[symbology].length : select(symbology).length;
+    }
+
+    /**
+     * @return the number of scans dropped by a stage.
+     */
+    public long getRejectedCount() {
+        return _rejected;
+    }
+
+    private LabelStage[] select(int symbology) {
+        List<LabelStage> selected = new ArrayList<>(_stages.length);
+        for (LabelStage stage : _stages) {
+            if (stage.appliesTo(symbology))
+                selected.add(stage);
+        }
+        return selected.isEmpty() ? NO_STAGES : selected.toArray(NO_STAGES);
+    }
+}
@@ -0,0 +1,18 @@
+package com.datalogic.apossampleapp.scan;
+
+/**
+ * One step of a {@link LabelPipeline}, working on the label bytes in place.
+ */
+public interface LabelStage {
+    /**
+     * Called once, when the pipeline is built.
+     *
+     * @return false if the stage has nothing to do with labels of this symbology, so the pipeline skips it.
+     */
+    boolean appliesTo(int symbology);
+
+    /**
+     * @return false to drop the scan.
+     */
+    boolean apply(Label label);
+}
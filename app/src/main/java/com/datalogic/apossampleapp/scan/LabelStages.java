@@ -0,0 +1,311 @@
+package com.datalogic.apossampleapp.scan;
+
+import com.datalogic.dlapos.commons.constant.ScannerConstants;
+
+import java.util.Arrays;
+
+/**
+ * The built-in {@link LabelStage}s.
+ */
+public final class LabelStages {
+    static final int UPCA = ScannerConstants.SCAN_SDT_UPCA;
+    static final int UPCE = ScannerConstants.SCAN_SDT_UPCE;
+    static final int EAN8 = ScannerConstants.SCAN_SDT_EAN8;
+    static final int EAN13 = ScannerConstants.SCAN_SDT_EAN13;
+    static final int EAN128 = ScannerConstants.SCAN_SDT_EAN128;
+    static final int RSS14 = ScannerConstants.SCAN_SDT_RSS14;
+    static final int RSS_EXPANDED = ScannerConstants.SCAN_SDT_RSS_EXPANDED;
+    static final int DATAMATRIX = ScannerConstants.SCAN_SDT_DATAMATRIX;
+    static final int QRCODE = ScannerConstants.SCAN_SDT_QRCODE;
+
+    private static final byte GS = 0x1d;
+    // Length of the application identifiers and of their data when it is predefined, by their first two digits.
+    private static final byte[] AI_LENGTHS = new byte[100];
+    private static final byte[] PREDEFINED_LENGTHS = new byte[100];
+
+    static {
+        for (int prefix = 0; prefix <= 22; prefix++)
+            AI_LENGTHS[prefix] = 2;
+        AI_LENGTHS[23] = AI_LENGTHS[24] = AI_LENGTHS[25] = 3;
+        AI_LENGTHS[30] = AI_LENGTHS[37] = 2;
+        for (int prefix = 31; prefix <= 36; prefix++)
+            AI_LENGTHS[prefix] = 4;
+        AI_LENGTHS[39] = 4;
+        AI_LENGTHS[40] = AI_LENGTHS[41] = AI_LENGTHS[42] = 3;
+        for (int prefix = 43; prefix <= 49; prefix++)
+            AI_LENGTHS[prefix] = 4;
+        AI_LENGTHS[70] = AI_LENGTHS[72] = 4;
+        AI_LENGTHS[71] = 3;
+        AI_LENGTHS[80] = AI_LENGTHS[81] = AI_LENGTHS[82] = 4;
+        for (int prefix = 90; prefix <= 99; prefix++)
+            AI_LENGTHS[prefix] = 2;
+
+        PREDEFINED_LENGTHS[0] = 18;
+        PREDEFINED_LENGTHS[1] = PREDEFINED_LENGTHS[2] = PREDEFINED_LENGTHS[3] = 14;
+        PREDEFINED_LENGTHS[4] = 16;
+        for (int prefix = 11; prefix <= 19; prefix++)
+            PREDEFINED_LENGTHS[prefix] = 6;
+        PREDEFINED_LENGTHS[20] = 2;
+        for (int prefix = 31; prefix <= 36; prefix++)
+            PREDEFINED_LENGTHS[prefix] = 6;
+        PREDEFINED_LENGTHS[41] = 13;
+    }
+
+    private LabelStages() {
+    }
+
+    /**
+     * @return a stage removing the given bytes from the start of the labels that begin with them.
+     */
+    public static LabelStage stripPrefix(byte[] prefix) {
+        byte[] bytes = prefix.clone();
+        return new AnySymbology() {
+            @Override
+            public boolean apply(Label label) {
+                if (matches(label.bytes(), label.start(), label.length(), bytes))
+                    label.set(label.start() + bytes.length, label.length() - bytes.length);
+                return true;
+            }
+        };
+    }
+
+    /**
+     * @return a stage removing the given bytes from the end of the labels that finish with them.
+     */
+    public static LabelStage stripSuffix(byte[] suffix) {
+        byte[] bytes = suffix.clone();
+        return new AnySymbology() {
+            @Override
+            public boolean apply(Label label) {
+                if (matches(label.bytes(), label.end() - bytes.length, label.length(), bytes))
+                    label.set(label.start(), label.length() - bytes.length);
+                return true;
+            }
+        };
+    }
+
+    /**
+     * @return a stage rewriting UPC-E labels of 6, 7 or 8 digits as the 12 digits of the same UPC-A.
+     */
+    public static LabelStage expandUpcE() {
+        return new LabelStage() {
+            @Override
+            public boolean appliesTo(int symbology) {
+                return symbology == UPCE;
+            }
+
+            @Override
+            public boolean apply(Label label) {
+                return expand(label);
+            }
+        };
+    }
+
+    /**
+     * @return a stage dropping the UPC, EAN and GS1 keys (SSCC, GTIN) whose check digit is wrong.
+     */
+    public static LabelStage checkDigit() {
+        return new LabelStage() {
+            @Override
+            public boolean appliesTo(int symbology) {
+                // UPC-E is validated once expanded.
+                return symbology == UPCA || symbology == UPCE || symbology == EAN8 || symbology == EAN13
+                        || isGs1(symbology);
+            }
+
+            @Override
+            public boolean apply(Label label) {
+                return checkDigits(label);
+            }
+        };
+    }
+
+    /**
+     * @return a stage finding the element strings of GS1 labels; labels that do not parse are left as they are.
+     */
+    public static LabelStage gs1() {
+        return new LabelStage() {
+            @Override
+            public boolean appliesTo(int symbology) {
+                return isGs1(symbology);
+            }
+
+            @Override
+            public boolean apply(Label label) {
+                parseGs1(label);
+                return true;
+            }
+        };
+    }
+
+    private static boolean isGs1(int symbology) {
+        return symbology == EAN128 || symbology == RSS14 || symbology == RSS_EXPANDED || symbology == DATAMATRIX
+                || symbology == QRCODE;
+    }
+
+    private static boolean expand(Label label) {
+        byte[] b = label.bytes();
+        int start = label.start();
+        int length = label.length();
+        if (length < 6 || length > 8 || !digits(b, start, start + length))
+            return true;
+        int system = length == 6 ? '0' : b[start];
+        if (system != '0' && system != '1')
+            return true;
+        int offset = length == 6 ? start : start + 1;
+        int check = length == 8 ? b[start + 7] : -1;
+        byte d1 = b[offset], d2 = b[offset + 1], d3 = b[offset + 2], d4 = b[offset + 3], d5 = b[offset + 4],
+                d6 = b[offset + 5];
+        label.ensureCapacity(start + 12);
+        b = label.bytes();
+        Arrays.fill(b, start, start + 11, (byte) '0');
+        b[start] = (byte) system;
+        b[start + 1] = d1;
+        b[start + 2] = d2;
+        switch (d6) {
+            case '0':
+            case '1':
+            case '2':
+                b[start + 3] = d6;
+                b[start + 8] = d3;
+                b[start + 9] = d4;
+                b[start + 10] = d5;
+                break;
+            case '3':
+                b[start + 3] = d3;
+                b[start + 9] = d4;
+                b[start + 10] = d5;
+                break;
+            case '4':
+                b[start + 3] = d3;
+                b[start + 4] = d4;
+                b[start + 10] = d5;
+                break;
+            default:
+                b[start + 3] = d3;
+                b[start + 4] = d4;
+                b[start + 5] = d5;
+                b[start + 10] = d6;
+                break;
+        }
+        b[start + 11] = (byte) (check >= 0 ? check : '0' + checkDigit(b, start, start + 11));
+        label.set(start, 12);
+        label.setSymbology(UPCA);
+        return true;
+    }
+
+    private static boolean checkDigits(Label label) {
+        byte[] b = label.bytes();
+        int symbology = label.getSymbology();
+        if (symbology == UPCA || symbology == EAN8 || symbology == EAN13) {
+            int expected = symbology == UPCA ? 12 : symbology == EAN8 ? 8 : 13;
+            // Labels with add-ons or without their check digit cannot be checked.
+            return label.length() != expected || !digits(b, label.start(), label.end()) || valid(b, label.start(), label.end());
+        }
+        for (int i = 0; i < label.getElementCount(); i++) {
+            int ai = label.getApplicationIdentifierStart(i);
+            int valueStart = label.getValueStart(i);
+            boolean key = valueStart - ai == 2 && b[ai] == '0' && b[ai + 1] >= '0' && b[ai + 1] <= '2';
+            if (key && (!digits(b, valueStart, label.getValueEnd(i)) || !valid(b, valueStart, label.getValueEnd(i))))
+                return false;
+        }
+        return true;
+    }
+
+    private static void parseGs1(Label label) {
+        byte[] b = label.bytes();
+        int pos = label.start();
+        int end = label.end();
+        label.clearElements();
+        // AIM symbology identifiers of GS1 data: ]C1 GS1-128, ]e0 DataBar, ]d2 GS1 DataMatrix, ]Q3 GS1 QR Code.
+        if (end - pos >= 3 && b[pos] == ']') {
+            byte code = b[pos + 1];
+            byte modifier = b[pos + 2];
+            boolean gs1 = code == 'C' && modifier == '1' || code == 'e' && modifier == '0'
+                    || code == 'd' && modifier == '2' || code == 'Q' && modifier == '3';
+            if (!gs1)
+                return;
+            pos += 3;
+            label.set(pos, end - pos);
+        } else if (label.getSymbology() == DATAMATRIX || label.getSymbology() == QRCODE) {
+            // Without an identifier these are not told apart from plain text.
+            return;
+        }
+        if (pos < end && b[pos] == GS)
+            pos++;
+        while (pos < end) {
+            if (end - pos < 2 || !digits(b, pos, pos + 2)) {
+                label.clearElements();
+                return;
+            }
+            int prefix = (b[pos] - '0') * 10 + b[pos + 1] - '0';
+            int valueStart = pos + AI_LENGTHS[prefix];
+            if (AI_LENGTHS[prefix] == 0 || valueStart >= end || !digits(b, pos, valueStart)) {
+                label.clearElements();
+                return;
+            }
+            int valueEnd;
+            if (PREDEFINED_LENGTHS[prefix] > 0) {
+                valueEnd = valueStart + PREDEFINED_LENGTHS[prefix];
+                if (valueEnd > end) {
+                    label.clearElements();
+                    return;
+                }
+            } else {
+                valueEnd = valueStart;
+                while (valueEnd < end && b[valueEnd] != GS)
+                    valueEnd++;
+            }
+            label.addElement(pos, valueStart, valueEnd);
+            pos = valueEnd < end && b[valueEnd] == GS ? valueEnd + 1 : valueEnd;
+        }
+    }
+
+    /**
+     * @return true if the last digit is the GS1 check digit of the others.
+     */
+    static boolean valid(byte[] b, int start, int end) {
+        return end - start >= 2 && b[end - 1] - '0' == checkDigit(b, start, end - 1);
+    }
+
+    /**
+     * @return the GS1 modulo 10 check digit of the digits, weighted 3 and 1 from the right.
+     */
+    static int checkDigit(byte[] b, int start, int end) {
+        int sum = 0;
+        int weight = 3;
+        for (int i = end - 1; i >= start; i--) {
+            sum += (b[i] - '0') * weight;
+            weight = 4 - weight;
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    private static boolean digits(byte[] b, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (b[i] < '0' || b[i] > '9')
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param length the length of the label, which must be able to hold the affix.
+     */
+    private static boolean matches(byte[] b, int start, int length, byte[] affix) {
+        if (affix.length == 0 || length < affix.length)
+            return false;
+        for (int i = 0; i < affix.length; i++) {
+            if (b[start + i] != affix[i])
+                return false;
+        }
+        return true;
+    }
+
+    private abstract static class AnySymbology implements LabelStage {
+        @Override
+        public boolean appliesTo(int symbology) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.datalogic.apossampleapp.scan;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free queue for many producers and a single consumer.
+ */
+public final class MpscRingBuffer<E> {
+    private final AtomicReferenceArray<E> _slots;
+    private final int _mask;
+    private final AtomicLong _tail = new AtomicLong();
+    private final AtomicLong _head = new AtomicLong();
+
+    /**
+     * @param capacity the capacity, rounded up to a power of two.
+     */
+    public MpscRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        _slots = new AtomicReferenceArray<>(size);
+        _mask = size - 1;
+    }
+
+    /**
+     * @return false if the buffer is full.
+     */
+    public boolean offer(E element) {
+        if (element == null)
+            throw new NullPointerException();
+        while (true) {
+            long tail = _tail.get();
+            if (tail - _head.get() > _mask)
+                return false;
+            if (_tail.compareAndSet(tail, tail + 1)) {
+                _slots.lazySet((int) tail & _mask, element);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Consumer only.
+     *
+     * @return the oldest element, or null if the buffer is empty.
+     */
+    public E poll() {
+        long head = _head.get();
+        int index = (int) head & _mask;
+        E element = _slots.get(index);
+        if (element == null) {
+            if (head == _tail.get())
+                return null;
+            // A producer claimed the slot but has not written it yet.
+            do {
+                element = _slots.get(index);
+            } while (element == null);
+        }
+        _slots.lazySet(index, null);
+        _head.lazySet(head + 1);
+        return element;
+    }
+
+    public boolean isEmpty() {
+        return _head.get() == _tail.get();
+    }
+
+    public int size() {
+        return (int) (_tail.get() - _head.get());
+    }
+
+    public int capacity() {
+        return _mask + 1;
+    }
+}
@@ -0,0 +1,144 @@
+package com.datalogic.apossampleapp.scan;
+
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Observer;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds the batches of {@link ScanRecord}s until an active observer has received them.
+ * <p>
+ * A batch set while no observer is active, e.g. while the activity is stopped, is merged with the next one instead
+ * of being replaced by it, so no scan is lost unless more than the given maximum pile up: the oldest are then
+ * dropped. The records of a batch go back to the pool once an observer has received it and the next batch replaces
+ * it.
+ */
+public class ScanBatchLiveData extends MutableLiveData<List<ScanRecord>> {
+    public interface ShownListener {
+        /**
+         * Called on the main thread the first time an observer receives the batch, before it does.
+         */
+        void onShown(List<ScanRecord> batch);
+    }
+
+    private final int _maxHeld;
+    private final ShownListener _shownListener;
+    private final Map<Observer<? super List<ScanRecord>>, Shown> _observers = new IdentityHashMap<>();
+    private List<ScanRecord> _shown;
+    private List<ScanRecord> _merged;
+    private long _shownCount;
+    private long _droppedCount;
+
+    /**
+     * @param maxHeld       the number of scans held at most while no observer is active.
+     * @param shownListener told of each batch once an observer receives it, may be null.
+     */
+    public ScanBatchLiveData(int maxHeld, ShownListener shownListener) {
+        _maxHeld = maxHeld;
+        _shownListener = shownListener;
+    }
+
+    @Override
+    public void setValue(List<ScanRecord> value) {
+        List<ScanRecord> previous = getValue();
+        if (previous != null && previous != value && previous != _shown) {
+            // Nobody received the previous scans yet: they go out in front of these.
+            if (previous != _merged)
+                _merged = new ArrayList<>(previous);
+            _merged.addAll(value);
+            dropOldest();
+            super.setValue(_merged);
+            return;
+        }
+        super.setValue(value);
+        if (previous != null && previous != value) {
+            for (ScanRecord record : previous)
+                record.recycle();
+        }
+    }
+
+    private void dropOldest() {
+        int excess = _merged.size() - _maxHeld;
+        if (excess <= 0)
+            return;
+        List<ScanRecord> oldest = _merged.subList(0, excess);
+        for (ScanRecord record : oldest)
+            record.recycle();
+        oldest.clear();
+        _droppedCount += excess;
+    }
+
+    /**
+     * @return the number of scans dropped because too many were held while no observer was active.
+     */
+    public long getDroppedCount() {
+        return _droppedCount;
+    }
+
+    /**
+     * @return the number of scans received by the observers, each counted once even if the batch is delivered
+     * again to the observer of a recreated activity.
+     */
+    public long getShownCount() {
+        return _shownCount;
+    }
+
+    @Override
+    public void observe(LifecycleOwner owner, Observer<? super List<ScanRecord>> observer) {
+        super.observe(owner, watch(observer));
+    }
+
+    @Override
+    public void observeForever(Observer<? super List<ScanRecord>> observer) {
+        super.observeForever(watch(observer));
+    }
+
+    @Override
+    public void removeObserver(Observer<? super List<ScanRecord>> observer) {
+        // The lifecycle of the owner removes the wrapper, the app the observer it passed.
+        Shown shown = observer instanceof Shown ? (Shown) observer : _observers.get(observer);
+        if (shown != null) {
+            _observers.remove(shown.observer);
+            super.removeObserver(shown);
+        } else
+            super.removeObserver(observer);
+    }
+
+    private Shown watch(Observer<? super List<ScanRecord>> observer) {
+        Shown shown = _observers.get(observer);
+        if (shown == null) {
+            shown = new Shown(observer);
+            _observers.put(observer, shown);
+        }
+        return shown;
+    }
+
+    private void onShown(List<ScanRecord> batch) {
+        if (batch == _shown)
+            return;
+        _shown = batch;
+        if (batch == _merged)
+            _merged = null;
+        _shownCount += batch.size();
+        if (_shownListener != null)
+            _shownListener.onShown(batch);
+    }
+
+    private final class Shown implements Observer<List<ScanRecord>> {
+        private final Observer<? super List<ScanRecord>> observer;
+
+        private Shown(Observer<? super List<ScanRecord>> observer) {
+            this.observer = observer;
+        }
+
+        @Override
+        public void onChanged(List<ScanRecord> batch) {
+            onShown(batch);
+            observer.onChanged(batch);
+        }
+    }
+}
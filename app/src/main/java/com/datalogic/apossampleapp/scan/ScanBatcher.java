@@ -0,0 +1,89 @@
+package com.datalogic.apossampleapp.scan;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Collects scans from device threads and hands them to the UI in batches, at most once per flush interval.
+ * <p>
+ * Scans are never dropped: when the buffer is full the producer waits for the consumer to catch up.
+ */
+public class ScanBatcher {
+    /**
+     * Runs the flush task on the consumer thread, usually the main thread.
+     */
+    public interface FlushScheduler {
+        void schedule(Runnable task, long delayMillis);
+    }
+
+    public interface BatchListener {
+        void onBatch(List<ScanRecord> batch);
+    }
+
+    private static final long FULL_WAIT_NANOS = 50_000;
+
+    private final MpscRingBuffer<ScanRecord> _buffer;
+    private final int _maxBatchSize;
+    private final long _flushIntervalMillis;
+    private final FlushScheduler _scheduler;
+    private final BatchListener _listener;
+    private final AtomicBoolean _flushScheduled = new AtomicBoolean();
+    private final AtomicLong _producerWaits = new AtomicLong();
+    private final Runnable _flushTask = this::flush;
+
+    /**
+     * @param capacity            number of scans that can wait for a flush.
+     * @param maxBatchSize        maximum number of scans delivered by a single flush.
+     * @param flushIntervalMillis delay between the first buffered scan and its flush.
+     */
+    public ScanBatcher(int capacity, int maxBatchSize, long flushIntervalMillis, FlushScheduler scheduler, BatchListener listener) {
+        if (maxBatchSize <= 0)
+            throw new IllegalArgumentException("The batch size must be positive.");
+        _buffer = new MpscRingBuffer<>(capacity);
+        _maxBatchSize = maxBatchSize;
+        _flushIntervalMillis = flushIntervalMillis;
+        _scheduler = scheduler;
+        _listener = listener;
+    }
+
+    /**
+     * Buffer a scan; callable from any thread.
+     */
+    public void publish(ScanRecord record) {
+        if (!_buffer.offer(record)) {
+            _producerWaits.incrementAndGet();
+            do {
+                requestFlush(0);
+                LockSupport.parkNanos(FULL_WAIT_NANOS);
+            } while (!_buffer.offer(record));
+        }
+        requestFlush(_flushIntervalMillis);
+    }
+
+    /**
+     * @return how many times a producer had to wait for room in the buffer.
+     */
+    public long getProducerWaits() {
+        return _producerWaits.get();
+    }
+
+    private void requestFlush(long delayMillis) {
+        if (_flushScheduled.compareAndSet(false, true))
+            _scheduler.schedule(_flushTask, delayMillis);
+    }
+
+    private void flush() {
+        List<ScanRecord> batch = new ArrayList<>(Math.min(_buffer.size(), _maxBatchSize));
+        ScanRecord record;
+        while (batch.size() < _maxBatchSize && (record = _buffer.poll()) != null)
+            batch.add(record);
+        _flushScheduled.set(false);
+        if (!batch.isEmpty())
+            _listener.onBatch(batch);
+        if (!_buffer.isEmpty())
+            requestFlush(_flushIntervalMillis);
+    }
+}
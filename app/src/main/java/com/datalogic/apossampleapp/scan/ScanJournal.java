@@ -0,0 +1,338 @@
+package com.datalogic.apossampleapp.scan;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * A crash-safe journal of the published scans, keeping them until they are acknowledged as delivered.
+ * <p>
+ * Scans are appended to a memory-mapped file as length-prefixed records with a CRC, so a scan survives the app
+ * dying as soon as it is appended. A background thread forces the file to storage every few milliseconds, for
+ * all the scans appended in the meantime at once (group commit), which bounds what a power loss can take without
+ * making the scan path wait for storage. Opening the journal finds the records of the file up to the first torn
+ * one, and {@link #replay} hands back those not acknowledged. When the file is full, the acknowledged records are
+ * compacted away, and the file grows if it is still needed.
+ * <p>
+ * File layout: a header of {@value #HEADER_SIZE} bytes holding a magic number and the last acknowledged sequence,
+ * then records of payload length, CRC32 of the payload, and a payload of sequence, time in milliseconds,
+ * symbology and label bytes.
+ */
+public class ScanJournal implements Closeable {
+    public interface Listener {
+        /**
+         * Called for each scan not acknowledged, in order. The record belongs to the listener, which recycles it.
+         */
+        void onScan(ScanRecord record, long timeMillis);
+    }
+
+    private static final int MAGIC = 0x53434a31; // "SCJ1"
+    private static final int HEADER_SIZE = 32;
+    private static final int ACKNOWLEDGED_OFFSET = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int PAYLOAD_HEADER_SIZE = 20;
+    private static ScheduledExecutorService _timer;
+
+    private final File _file;
+    private final CRC32 _crc = new CRC32();
+    private final byte[] _scratch = new byte[RECORD_HEADER_SIZE + PAYLOAD_HEADER_SIZE];
+    private final ByteBuffer _scratchBuffer = ByteBuffer.wrap(_scratch);
+    private final ScheduledFuture<?> _flusher;
+    private RandomAccessFile _raf;
+    private MappedByteBuffer _map;
+    private int _position = HEADER_SIZE;
+    private long _lastSequence;
+    private long _acknowledged;
+    private boolean _dirty;
+    private volatile long _durable;
+    private long _compactions;
+
+    /**
+     * Open the journal, creating the file if needed.
+     *
+     * @param capacity          initial size of the file, in bytes.
+     * @param groupCommitMillis how often the appended scans are forced to storage.
+     * @throws IOException if the file cannot be mapped or is not a scan journal.
+     */
+    public ScanJournal(File file, int capacity, long groupCommitMillis) throws IOException {
+        _file = file;
+        map(Math.max(capacity, HEADER_SIZE * 2));
+        recover();
+        _durable = _lastSequence;
+        _flusher = timer().scheduleWithFixedDelay(this::flushIfDirty, groupCommitMillis, groupCommitMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    private void map(int capacity) throws IOException {
+        _raf = new RandomAccessFile(_file, "rw");
+        try {
+            if (_raf.length() < capacity)
+                _raf.setLength(capacity);
+            if (_raf.length() > Integer.MAX_VALUE)
+                throw new IOException("Scan journal " + _file + " is too large.");
+            _map = _raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, _raf.length());
+        } catch (IOException e) {
+            _raf.close();
+            throw e;
+        }
+    }
+
+    private void recover() throws IOException {
+        int magic = _map.getInt(0);
+        if (magic == 0) {
+            _map.putInt(0, MAGIC);
+            _map.force();
+            return;
+        }
+        if (magic != MAGIC) {
+            _map = null;
+            _raf.close();
+            throw new IOException(_file + " is not a scan journal.");
+        }
+        _acknowledged = _map.getLong(ACKNOWLEDGED_OFFSET);
+        long previous = -1;
+        int position = HEADER_SIZE;
+        while (true) {
+            long sequence = sequenceAt(position, previous);
+            if (sequence < 0)
+                break;
+            previous = sequence;
+            position += RECORD_HEADER_SIZE + _map.getInt(position);
+        }
+        _position = position;
+        // Acknowledged records may have been overwritten since, their sequence numbers are not reused.
+        _lastSequence = Math.max(previous, _acknowledged);
+    }
+
+    /**
+     * @param previous the sequence of the record before, -1 for the first one.
+     * @return the sequence of the valid record at the position, or -1 past the last one.
+     */
+    private long sequenceAt(int position, long previous) {
+        if (position + RECORD_HEADER_SIZE + PAYLOAD_HEADER_SIZE > _map.capacity())
+            return -1;
+        int length = _map.getInt(position);
+        if (length < PAYLOAD_HEADER_SIZE || length > _map.capacity() - position - RECORD_HEADER_SIZE)
+            return -1;
+        long sequence = _map.getLong(position + RECORD_HEADER_SIZE);
+        // Past the records written after a rewind lie older ones, which must not be read as newer.
+        if (previous >= 0 && sequence != previous + 1)
+            return -1;
+        ByteBuffer payload = _map.duplicate();
+        payload.limit(position + RECORD_HEADER_SIZE + length).position(position + RECORD_HEADER_SIZE);
+        _crc.reset();
+        _crc.update(payload);
+        return (int) _crc.getValue() == _map.getInt(position + 4) ? sequence : -1;
+    }
+
+    /**
+     * Hand the scans not acknowledged to the listener, oldest first. The listener is called without holding the
+     * journal, so it may wait for scans to be acknowledged.
+     *
+     * @return the number of scans replayed.
+     */
+    public int replay(ScanRecordPool pool, SymbologyTable symbologies, Listener listener) {
+        List<ScanRecord> records = new ArrayList<>();
+        List<Long> times = new ArrayList<>();
+        synchronized (this) {
+            byte[] label = new byte[64];
+            int position = HEADER_SIZE;
+            while (_map != null && position < _position) {
+                int length = _map.getInt(position);
+                long sequence = _map.getLong(position + RECORD_HEADER_SIZE);
+                if (sequence > _acknowledged) {
+                    int symbology = _map.getInt(position + RECORD_HEADER_SIZE + 16);
+                    int labelLength = length - PAYLOAD_HEADER_SIZE;
+                    if (label.length < labelLength)
+                        label = new byte[labelLength];
+                    _map.position(position + RECORD_HEADER_SIZE + PAYLOAD_HEADER_SIZE);
+                    _map.get(label, 0, labelLength);
+                    ScanRecord record = pool.obtain(label, labelLength, symbology, symbologies.nameOf(symbology),
+                            System.nanoTime());
+                    record.setJournalSequence(sequence);
+                    records.add(record);
+                    times.add(_map.getLong(position + RECORD_HEADER_SIZE + 8));
+                }
+                position += RECORD_HEADER_SIZE + length;
+            }
+        }
+        for (int i = 0; i < records.size(); i++)
+            listener.onScan(records.get(i), times.get(i));
+        return records.size();
+    }
+
+    /**
+     * Append the scan, which is then given its sequence number. The scan is on storage within the group commit
+     * period.
+     *
+     * @return the sequence number of the scan.
+     */
+    public synchronized long append(ScanRecord record, long timeMillis) throws IOException {
+        if (_map == null)
+            throw new IOException("Scan journal " + _file + " is closed.");
+        if (_acknowledged == _lastSequence)
+            // Nothing to keep: start over at the beginning of the file, which is likely still in memory.
+            _position = HEADER_SIZE;
+        int labelLength = record.getLabelLength();
+        int size = RECORD_HEADER_SIZE + PAYLOAD_HEADER_SIZE + labelLength;
+        if (_position + size > _map.capacity())
+            compact(size);
+
+        long sequence = _lastSequence + 1;
+        _scratchBuffer.putInt(0, PAYLOAD_HEADER_SIZE + labelLength);
+        _scratchBuffer.putLong(RECORD_HEADER_SIZE, sequence);
+        _scratchBuffer.putLong(RECORD_HEADER_SIZE + 8, timeMillis);
+        _scratchBuffer.putInt(RECORD_HEADER_SIZE + 16, record.getSymbology());
+        _crc.reset();
+        _crc.update(_scratch, RECORD_HEADER_SIZE, PAYLOAD_HEADER_SIZE);
+        _crc.update(record.getLabelBuffer(), 0, labelLength);
+        _scratchBuffer.putInt(4, (int) _crc.getValue());
+        // The length goes in last, so the record is not there before it is whole.
+        _map.position(_position + 4);
+        _map.put(_scratch, 4, _scratch.length - 4);
+        _map.put(record.getLabelBuffer(), 0, labelLength);
+        _map.putInt(_position, PAYLOAD_HEADER_SIZE + labelLength);
+
+        _position += size;
+        _lastSequence = sequence;
+        _dirty = true;
+        record.setJournalSequence(sequence);
+        return sequence;
+    }
+
+    /**
+     * Mark the scans up to the sequence number as delivered, so they are not replayed anymore.
+     */
+    public synchronized void acknowledge(long sequence) {
+        if (_map == null || sequence <= _acknowledged)
+            return;
+        _acknowledged = Math.min(sequence, _lastSequence);
+        _map.putLong(ACKNOWLEDGED_OFFSET, _acknowledged);
+        _dirty = true;
+    }
+
+    /**
+     * Rewrite the scans not acknowledged at the beginning of a new file, large enough to append the given number
+     * of bytes with room to spare, and replace the journal with it.
+     */
+    private void compact(int needed) throws IOException {
+        int start = HEADER_SIZE;
+        while (start < _position && _map.getLong(start + RECORD_HEADER_SIZE) <= _acknowledged)
+            start += RECORD_HEADER_SIZE + _map.getInt(start);
+        int kept = _position - start;
+        long capacity = _map.capacity();
+        while (HEADER_SIZE + kept + needed > capacity / 2)
+            capacity *= 2;
+        if (capacity > Integer.MAX_VALUE)
+            throw new IOException("Scan journal " + _file + " is full.");
+
+        File compacted = new File(_file.getPath() + ".tmp");
+        try (RandomAccessFile raf = new RandomAccessFile(compacted, "rw")) {
+            raf.setLength(0);
+            raf.setLength(capacity);
+            MappedByteBuffer map = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            map.putInt(0, MAGIC);
+            map.putLong(ACKNOWLEDGED_OFFSET, _acknowledged);
+            ByteBuffer records = _map.duplicate();
+            records.limit(_position).position(start);
+            map.position(HEADER_SIZE);
+            map.put(records);
+            map.force();
+        }
+        if (!compacted.renameTo(_file))
+            throw new IOException("Cannot replace " + _file + " with " + compacted + ".");
+        _raf.close();
+        map((int) capacity);
+        _position = HEADER_SIZE + kept;
+        _compactions++;
+    }
+
+    private void flushIfDirty() {
+        MappedByteBuffer map;
+        long sequence;
+        synchronized (this) {
+            if (!_dirty || _map == null)
+                return;
+            _dirty = false;
+            map = _map;
+            sequence = _lastSequence;
+        }
+        // Outside the lock: appends go on while the pages are written.
+        map.force();
+        _durable = sequence;
+    }
+
+    /**
+     * Force the appended scans to storage now rather than at the next group commit.
+     */
+    public void flush() {
+        flushIfDirty();
+    }
+
+    /**
+     * @return the sequence number of the last scan known to be on storage.
+     */
+    public long getDurableSequence() {
+        return _durable;
+    }
+
+    public synchronized long getLastSequence() {
+        return _lastSequence;
+    }
+
+    public synchronized long getAcknowledgedSequence() {
+        return _acknowledged;
+    }
+
+    /**
+     * @return the number of scans appended and not acknowledged.
+     */
+    public synchronized long getPendingCount() {
+        return _lastSequence - _acknowledged;
+    }
+
+    /**
+     * @return the size of the file, in bytes.
+     */
+    public synchronized int getCapacity() {
+        return _map == null ? 0 : _map.capacity();
+    }
+
+    public synchronized long getCompactionCount() {
+        return _compactions;
+    }
+
+    @Override
+    public void close() throws IOException {
+        _flusher.cancel(false);
+        flushIfDirty();
+        synchronized (this) {
+            if (_map == null)
+                return;
+            _map = null;
+            _raf.close();
+        }
+    }
+
+    private static synchronized ScheduledExecutorService timer() {
+        if (_timer == null) {
+            _timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "scan-journal");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return _timer;
+    }
+}
@@ -0,0 +1,72 @@
+package com.datalogic.apossampleapp.scan;
+
+/**
+ * Turns raw scanner data into {@link ScanRecord}s using pooled buffers and a precomputed symbology table.
+ * <p>
+ * Labels go through the {@link LabelPipeline} of the device, if any, in a buffer reused from scan to scan, then
+ * are resolved to the item of the catalog, if any, so {@link #process} is called from the device event thread only.
+ */
+public class ScanPipeline {
+    private final SymbologyTable _symbologies;
+    private final ScanRecordPool _pool;
+    private volatile DuplicateFilter _duplicates;
+    private volatile LabelPipeline _labels;
+    private volatile ItemLookup _items;
+    private final Label _label = new Label(64);
+
+    public ScanPipeline(SymbologyTable symbologies, ScanRecordPool pool) {
+        _symbologies = symbologies;
+        _pool = pool;
+    }
+
+    /**
+     * @param duplicates the filter of repeated reads, or null to publish every read.
+     */
+    public void setDuplicateFilter(DuplicateFilter duplicates) {
+        _duplicates = duplicates;
+    }
+
+    /**
+     * @param labels the post-processing stages of the labels, or null to publish them as they are read.
+     */
+    public void setLabelPipeline(LabelPipeline labels) {
+        _labels = labels;
+    }
+
+    /**
+     * @param items the catalog the labels are looked up in, or null to publish scans without their item.
+     */
+    public void setItemLookup(ItemLookup items) {
+        _items = items;
+    }
+
+    /**
+     * @param label     the scanned label.
+     * @param length    number of valid bytes in {@code label}.
+     * @param symbology the symbology code reported by the scanner.
+     * @return the record to publish, or null if the read repeats one the duplicate filter still remembers or a
+     * stage of the label pipeline dropped it.
+     */
+    public ScanRecord process(byte[] label, int length, int symbology) {
+        long now = System.nanoTime();
+        DuplicateFilter duplicates = _duplicates;
+        if (duplicates != null && duplicates.isDuplicate(label, length, symbology, now))
+            return null;
+        LabelPipeline labels = _labels;
+        ScanRecord record;
+        if (labels == null) {
+            record = _pool.obtain(label, length, symbology, _symbologies.nameOf(symbology), now);
+        } else {
+            _label.reset(label, length, symbology);
+            if (!labels.process(_label))
+                return null;
+            record = _pool.obtain(_label.bytes(), _label.start(), _label.length(), _label.getSymbology(),
+                    _symbologies.nameOf(_label.getSymbology()), now);
+            record.setElements(_label);
+        }
+        ItemLookup items = _items;
+        if (items != null)
+            record.setItem(items.lookup(record.getLabelBuffer(), 0, record.getLabelLength()));
+        return record;
+    }
+}
@@ -0,0 +1,54 @@
+package com.datalogic.apossampleapp.scan;
+
+import java.io.IOException;
+
+/**
+ * The scanner data path of ExampleViewModel: a label read from the device becomes a {@link ScanRecord} of the
+ * {@link ScanPipeline}, is kept in the {@link ScanJournal}, if any, and goes to the UI through the
+ * {@link ScanBatcher}.
+ */
+public class ScanPublisher {
+    public interface JournalFailureListener {
+        /**
+         * Called on the device event thread; the scan is published anyway.
+         */
+        void onJournalFailure(IOException e);
+    }
+
+    private final ScanPipeline _pipeline;
+    private final ScanBatcher _batcher;
+    private final JournalFailureListener _journalFailures;
+    private volatile ScanJournal _journal;
+
+    public ScanPublisher(ScanPipeline pipeline, ScanBatcher batcher, JournalFailureListener journalFailures) {
+        _pipeline = pipeline;
+        _batcher = batcher;
+        _journalFailures = journalFailures;
+    }
+
+    /**
+     * @param journal where scans are kept until they are shown, or null to not keep them.
+     */
+    public void setJournal(ScanJournal journal) {
+        _journal = journal;
+    }
+
+    /**
+     * @return false if the pipeline dropped the read, e.g. as a duplicate.
+     */
+    public boolean publish(byte[] label, int length, int symbology) {
+        ScanRecord record = _pipeline.process(label, length, symbology);
+        if (record == null)
+            return false;
+        ScanJournal journal = _journal;
+        if (journal != null) {
+            try {
+                journal.append(record, System.currentTimeMillis());
+            } catch (IOException e) {
+                _journalFailures.onJournalFailure(e);
+            }
+        }
+        _batcher.publish(record);
+        return true;
+    }
+}
@@ -0,0 +1,147 @@
+package com.datalogic.apossampleapp.scan;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A single scan: label bytes, symbology, arrival time and the catalog item it resolves to, published together.
+ * <p>
+ * Records are not immutable: they come from a {@link ScanRecordPool} and are filled again for every scan they
+ * carry. Consumers only read them. The label is decoded to text only when {@link #getLabelText()} is called.
+ * Once {@link #recycle()} has been called the record may be reused for another scan and must not be read anymore.
+ */
+public final class ScanRecord {
+    private final ScanRecordPool _pool;
+    private byte[] _label;
+    private int _labelLength;
+    private int _symbology;
+    private String _symbologyName;
+    private long _timestampNanos;
+    private String _labelText;
+    private int[] _elements = new int[0];
+    private int _elementCount;
+    private long _journalSequence;
+    private Item _item;
+    boolean _pooled;
+
+    ScanRecord(ScanRecordPool pool, int labelCapacity) {
+        _pool = pool;
+        _label = new byte[labelCapacity];
+    }
+
+    void set(byte[] label, int offset, int length, int symbology, String symbologyName, long timestampNanos) {
+        if (_label.length < length)
+            _label = new byte[Math.max(length, _label.length * 2)];
+        System.arraycopy(label, offset, _label, 0, length);
+        _labelLength = length;
+        _symbology = symbology;
+        _symbologyName = symbologyName;
+        _timestampNanos = timestampNanos;
+        _labelText = null;
+        _elementCount = 0;
+        _journalSequence = 0;
+        _item = null;
+    }
+
+    /**
+     * Keep the GS1 elements found in the label, given as positions in the buffer of the label.
+     */
+    void setElements(Label label) {
+        int count = label.getElementCount();
+        if (_elements.length < count * 3)
+            _elements = new int[count * 3];
+        int[] elements = label.elements();
+        for (int i = 0; i < count * 3; i++)
+            _elements[i] = elements[i] - label.start();
+        _elementCount = count;
+    }
+
+    void setJournalSequence(long sequence) {
+        _journalSequence = sequence;
+    }
+
+    void setItem(Item item) {
+        _item = item;
+    }
+
+    void clear() {
+        _symbologyName = null;
+        _item = null;
+        _labelText = null;
+    }
+
+    /**
+     * @return the backing label buffer; only the first {@link #getLabelLength()} bytes are valid and it must
+     * not be modified.
+     */
+    public byte[] getLabelBuffer() {
+        return _label;
+    }
+
+    public int getLabelLength() {
+        return _labelLength;
+    }
+
+    public byte[] copyLabel() {
+        return Arrays.copyOf(_label, _labelLength);
+    }
+
+    public String getLabelText() {
+        if (_labelText == null)
+            _labelText = new String(_label, 0, _labelLength, StandardCharsets.UTF_8);
+        return _labelText;
+    }
+
+    /**
+     * @return the number of GS1 element strings found in the label, 0 if it was not parsed as GS1 data.
+     */
+    public int getElementCount() {
+        return _elementCount;
+    }
+
+    /**
+     * @return the application identifier of the element, e.g. "01" for a GTIN.
+     */
+    public String getApplicationIdentifier(int index) {
+        int start = _elements[index * 3];
+        return new String(_label, start, _elements[index * 3 + 1] - start, StandardCharsets.US_ASCII);
+    }
+
+    public String getElementValue(int index) {
+        int start = _elements[index * 3 + 1];
+        return new String(_label, start, _elements[index * 3 + 2] - start, StandardCharsets.UTF_8);
+    }
+
+    public int getSymbology() {
+        return _symbology;
+    }
+
+    public String getSymbologyName() {
+        return _symbologyName;
+    }
+
+    public long getTimestampNanos() {
+        return _timestampNanos;
+    }
+
+    /**
+     * @return the catalog item whose barcode is the label, null if there is no catalog or it does not have one.
+     */
+    public Item getItem() {
+        return _item;
+    }
+
+    /**
+     * @return the sequence number of the scan in the {@link ScanJournal}, 0 if it was not journaled.
+     */
+    public long getJournalSequence() {
+        return _journalSequence;
+    }
+
+    /**
+     * Give the record back to its pool.
+     */
+    public void recycle() {
+        _pool.release(this);
+    }
+}
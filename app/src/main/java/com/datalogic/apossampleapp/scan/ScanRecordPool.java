@@ -0,0 +1,64 @@
+package com.datalogic.apossampleapp.scan;
+
+/**
+ * A bounded pool of {@link ScanRecord}s and their label buffers.
+ * <p>
+ * When the pool is empty a new record is created, so records that are never recycled are simply left to the
+ * garbage collector.
+ */
+public final class ScanRecordPool {
+    private final ScanRecord[] _free;
+    private final int _labelCapacity;
+    private int _size;
+    private int _created;
+
+    /**
+     * @param capacity      maximum number of idle records kept.
+     * @param labelCapacity initial size of the label buffer of each record.
+     */
+    public ScanRecordPool(int capacity, int labelCapacity) {
+        _free = new ScanRecord[capacity];
+        _labelCapacity = labelCapacity;
+    }
+
+    /**
+     * @return a record holding a copy of the first {@code length} bytes of {@code label}.
+     */
+    public ScanRecord obtain(byte[] label, int length, int symbology, String symbologyName, long timestampNanos) {
+        return obtain(label, 0, length, symbology, symbologyName, timestampNanos);
+    }
+
+    /**
+     * @return a record holding a copy of the {@code length} bytes of {@code label} from {@code offset}.
+     */
+    public ScanRecord obtain(byte[] label, int offset, int length, int symbology, String symbologyName, long timestampNanos) {
+        ScanRecord record;
+        synchronized (this) {
+            if (_size > 0) {
+                record = _free[--_size];
+                _free[_size] = null;
+                record._pooled = false;
+            } else {
+                record = new ScanRecord(this, _labelCapacity);
+                _created++;
+            }
+        }
+        record.set(label, offset, length, symbology, symbologyName, timestampNanos);
+        return record;
+    }
+
+    synchronized void release(ScanRecord record) {
+        if (!record._pooled && _size < _free.length) {
+            record._pooled = true;
+            record.clear();
+            _free[_size++] = record;
+        }
+    }
+
+    /**
+     * @return the number of records allocated by this pool.
+     */
+    public synchronized int getCreatedCount() {
+        return _created;
+    }
+}
@@ -0,0 +1,65 @@
+package com.datalogic.apossampleapp.scan;
+
+import com.datalogic.dlapos.commons.constant.ScannerConstants;
+
+/**
+ * Symbology names for the {@link ScannerConstants} data types.
+ */
+public final class Symbologies {
+    public static final SymbologyTable STANDARD = new SymbologyTable(
+            new int[]{
+                    ScannerConstants.SCAN_SDT_UNKNOWN,
+                    ScannerConstants.SCAN_SDT_UPCA,
+                    ScannerConstants.SCAN_SDT_UPCE,
+                    ScannerConstants.SCAN_SDT_EAN8,
+                    ScannerConstants.SCAN_SDT_EAN13,
+                    ScannerConstants.SCAN_SDT_TF,
+                    ScannerConstants.SCAN_SDT_ITF,
+                    ScannerConstants.SCAN_SDT_Codabar,
+                    ScannerConstants.SCAN_SDT_Code39,
+                    ScannerConstants.SCAN_SDT_Code93,
+                    ScannerConstants.SCAN_SDT_Code128,
+                    ScannerConstants.SCAN_SDT_UPCA_S,
+                    ScannerConstants.SCAN_SDT_UPCE_S,
+                    ScannerConstants.SCAN_SDT_EAN8_S,
+                    ScannerConstants.SCAN_SDT_EAN13_S,
+                    ScannerConstants.SCAN_SDT_EAN128,
+                    ScannerConstants.SCAN_SDT_RSS14,
+                    ScannerConstants.SCAN_SDT_RSS_EXPANDED,
+                    ScannerConstants.SCAN_SDT_PDF417,
+                    ScannerConstants.SCAN_SDT_MAXICODE,
+                    ScannerConstants.SCAN_SDT_DATAMATRIX,
+                    ScannerConstants.SCAN_SDT_QRCODE,
+                    ScannerConstants.SCAN_SDT_AZTEC,
+                    ScannerConstants.SCAN_SDT_OTHER
+            },
+            new String[]{
+                    "Unknown",
+                    "UPC-A",
+                    "UPC-E",
+                    "EAN-8",
+                    "EAN-13",
+                    "Standard 2 of 5",
+                    "Interleaved 2 of 5",
+                    "Codabar",
+                    "Code 39",
+                    "Code 93",
+                    "Code 128",
+                    "UPC-A with supplemental",
+                    "UPC-E with supplemental",
+                    "EAN-8 with supplemental",
+                    "EAN-13 with supplemental",
+                    "GS1-128",
+                    "GS1 DataBar",
+                    "GS1 DataBar Expanded",
+                    "PDF417",
+                    "MaxiCode",
+                    "Data Matrix",
+                    "QR Code",
+                    "Aztec",
+                    "Other"
+            });
+
+    private Symbologies() {
+    }
+}
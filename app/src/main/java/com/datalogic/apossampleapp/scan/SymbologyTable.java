@@ -0,0 +1,41 @@
+package com.datalogic.apossampleapp.scan;
+
+/**
+ * Maps symbology codes to display names without allocating on lookup.
+ */
+public final class SymbologyTable {
+    private static final int MAX_DIRECT_CODE = 1023;
+
+    private final String[] _names;
+
+    /**
+     * @param codes symbology codes, each between 0 and 1023.
+     * @param names display names, in the same order as the codes.
+     */
+    public SymbologyTable(int[] codes, String[] names) {
+        if (codes.length != names.length)
+            throw new IllegalArgumentException("Codes and names must have the same length.");
+        _names = new String[MAX_DIRECT_CODE + 1];
+        for (int code : codes) {
+            if (code < 0 || code > MAX_DIRECT_CODE)
+                throw new IllegalArgumentException("Unsupported symbology code " + code + ".");
+        }
+        for (int i = 0; i < codes.length; i++)
+            _names[codes[i]] = names[i];
+    }
+
+    /**
+     * @return the display name of the given code; unknown codes are named after their value, the name being
+     * built only once per code.
+     */
+    public String nameOf(int code) {
+        if (code < 0 || code >= _names.length)
+            return Integer.toString(code);
+        String name = _names[code];
+        if (name == null) {
+            name = Integer.toString(code);
+            _names[code] = name;
+        }
+        return name;
+    }
+}
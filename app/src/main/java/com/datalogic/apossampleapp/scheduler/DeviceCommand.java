@@ -0,0 +1,114 @@
+package com.datalogic.apossampleapp.scheduler;
+
+import android.util.Log;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A unit of work queued on a {@link DeviceCommandScheduler} for a single device.
+ */
+public final class DeviceCommand {
+    private static final int PENDING = 0;
+    private static final int RUNNING = 1;
+    private static final int DONE = 2;
+    private static final int CANCELLED = 3;
+
+    private final String _name;
+    private final Runnable _action;
+    private final boolean _blocking;
+    private final long _submitNanos;
+    private final AtomicInteger _state = new AtomicInteger(PENDING);
+    private final CountDownLatch _completion = new CountDownLatch(1);
+    private volatile long _startNanos;
+    private volatile long _endNanos;
+    private volatile Throwable _failure;
+
+    DeviceCommand(String name, Runnable action, boolean blocking) {
+        _name = name;
+        _action = action;
+        _blocking = blocking;
+        _submitNanos = System.nanoTime();
+    }
+
+    void execute() {
+        if (!_state.compareAndSet(PENDING, RUNNING))
+            return;
+        _startNanos = System.nanoTime();
+        try {
+            _action.run();
+        } catch (RuntimeException e) {
+            Log.e("Example", "Running " + _name + ": ", e);
+            _failure = e;
+        } finally {
+            _endNanos = System.nanoTime();
+            _state.set(DONE);
+            _completion.countDown();
+        }
+    }
+
+    /**
+     * Cancel the command if it has not started yet.
+     *
+     * @return true if the command will never run.
+     */
+    public boolean cancel() {
+        if (_state.compareAndSet(PENDING, CANCELLED)) {
+            _completion.countDown();
+            return true;
+        }
+        return _state.get() == CANCELLED;
+    }
+
+    boolean isPending() {
+        return _state.get() == PENDING;
+    }
+
+    public boolean isCancelled() {
+        return _state.get() == CANCELLED;
+    }
+
+    public boolean isDone() {
+        int state = _state.get();
+        return state == DONE || state == CANCELLED;
+    }
+
+    /**
+     * @return true if the command may wait long on the device, and runs off the pool.
+     */
+    public boolean isBlocking() {
+        return _blocking;
+    }
+
+    public String getName() {
+        return _name;
+    }
+
+    /**
+     * @return the exception thrown by the action, or null.
+     */
+    public Throwable getFailure() {
+        return _failure;
+    }
+
+    /**
+     * @return the time spent waiting in the queue before running, or -1 if the command has not started.
+     */
+    public long getQueueLatencyNanos() {
+        long start = _startNanos;
+        return start == 0 ? -1 : start - _submitNanos;
+    }
+
+    /**
+     * @return the time the action ran, or -1 if the command has not completed.
+     */
+    public long getRunNanos() {
+        long end = _endNanos;
+        return end == 0 ? -1 : end - _startNanos;
+    }
+
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return _completion.await(timeout, unit);
+    }
+}
@@ -0,0 +1,242 @@
+package com.datalogic.apossampleapp.scheduler;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs device commands on a shared, bounded thread pool while keeping one serial queue per device:
+ * commands for the same device run one at a time in submission order, commands for different
+ * devices run in parallel.
+ * <p>
+ * Commands that wait long on the device, such as a firmware update or a weight read, are submitted as blocking:
+ * they keep their place in the queue of their device but run on a thread of their own, so the pool stays free for
+ * the other devices.
+ */
+public class DeviceCommandScheduler {
+    public interface CommandObserver {
+        /**
+         * Called on the pool thread after a command ran, whether it failed or not.
+         *
+         * @param device key of the device queue the command ran in.
+         */
+        void onCommandDone(Object device, DeviceCommand command);
+    }
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+    private static DeviceCommandScheduler _instance;
+
+    private final ThreadPoolExecutor _executor;
+    private final ThreadPoolExecutor _blockingExecutor;
+    private final Map<Object, SerialQueue> _queues = new HashMap<>();
+    private final AtomicInteger _createdThreads = new AtomicInteger();
+    private final AtomicInteger _createdBlockingThreads = new AtomicInteger();
+    private final List<CommandObserver> _observers = new CopyOnWriteArrayList<>();
+    private final AtomicLong _observerFailures = new AtomicLong();
+
+    public static synchronized DeviceCommandScheduler getInstance() {
+        if (_instance == null) {
+            // Device commands mostly wait on USB or serial I/O, so a lane of several devices gets a thread each
+            // even on small CPUs.
+            int threads = Math.max(4, Math.min(8, Runtime.getRuntime().availableProcessors()));
+            _instance = new DeviceCommandScheduler(threads);
+        }
+        return _instance;
+    }
+
+    public DeviceCommandScheduler(int maxThreads) {
+        _executor = new ThreadPoolExecutor(maxThreads, maxThreads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "device-command-" + _createdThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        _executor.allowCoreThreadTimeOut(true);
+        // A device runs one command at a time, so there are never more blocking threads than devices.
+        _blockingExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "device-blocking-" + _createdBlockingThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queue a command for the given device.
+     *
+     * @param device key of the device queue, usually its logical name.
+     * @param name   the command name.
+     * @param action the work to run.
+     * @return the queued command.
+     */
+    public DeviceCommand submit(Object device, String name, Runnable action) {
+        return enqueue(device, name, action, false, false);
+    }
+
+    /**
+     * Queue a command for the given device, unless the last command still waiting in that device queue
+     * has the same name: in that case the new command is redundant and the waiting one is returned.
+     */
+    public DeviceCommand submitCoalescing(Object device, String name, Runnable action) {
+        return enqueue(device, name, action, true, false);
+    }
+
+    /**
+     * Queue a command that may wait long on the device: it runs in the order of the device queue, but off the
+     * pool.
+     */
+    public DeviceCommand submitBlocking(Object device, String name, Runnable action) {
+        return enqueue(device, name, action, false, true);
+    }
+
+    /**
+     * {@link #submitCoalescing(Object, String, Runnable)} for a command that may wait long on the device.
+     */
+    public DeviceCommand submitBlockingCoalescing(Object device, String name, Runnable action) {
+        return enqueue(device, name, action, true, true);
+    }
+
+    /**
+     * Cancel every command of the given device that has not started yet.
+     *
+     * @return the number of cancelled commands.
+     */
+    public int cancelPending(Object device) {
+        int cancelled = 0;
+        synchronized (_queues) {
+            SerialQueue queue = _queues.get(device);
+            if (queue == null)
+                return 0;
+            for (DeviceCommand command : queue.pending) {
+                if (command.isPending() && command.cancel())
+                    cancelled++;
+            }
+            queue.pending.clear();
+        }
+        return cancelled;
+    }
+
+    /**
+     * Watch the commands that run, e.g. to time them.
+     */
+    public void addObserver(CommandObserver observer) {
+        _observers.add(observer);
+    }
+
+    public void removeObserver(CommandObserver observer) {
+        _observers.remove(observer);
+    }
+
+    /**
+     * @return the number of times an observer threw instead of returning.
+     */
+    public long getObserverFailureCount() {
+        return _observerFailures.get();
+    }
+
+    /**
+     * @return the number of threads created by the pool since its creation.
+     */
+    public int getCreatedThreadCount() {
+        return _createdThreads.get();
+    }
+
+    /**
+     * @return the number of threads created for blocking commands since the creation of the pool.
+     */
+    public int getCreatedBlockingThreadCount() {
+        return _createdBlockingThreads.get();
+    }
+
+    public int getMaxThreads() {
+        return _executor.getMaximumPoolSize();
+    }
+
+    public void shutdown() {
+        _executor.shutdown();
+        _blockingExecutor.shutdown();
+    }
+
+    private Executor executorOf(DeviceCommand command) {
+        return command.isBlocking() ? _blockingExecutor : _executor;
+    }
+
+    private DeviceCommand enqueue(Object device, String name, Runnable action, boolean coalesce, boolean blocking) {
+        synchronized (_queues) {
+            SerialQueue queue = _queues.get(device);
+            if (queue == null) {
+                queue = new SerialQueue(device);
+                _queues.put(device, queue);
+            }
+            if (coalesce) {
+                DeviceCommand last = queue.pending.peekLast();
+                if (last != null && last.isPending() && last.getName().equals(name))
+                    return last;
+            }
+            DeviceCommand command = new DeviceCommand(name, action, blocking);
+            queue.pending.addLast(command);
+            if (!queue.scheduled) {
+                queue.scheduled = true;
+                executorOf(command).execute(queue);
+            }
+            return command;
+        }
+    }
+
+    private final class SerialQueue implements Runnable {
+        private final Object device;
+        private final ArrayDeque<DeviceCommand> pending = new ArrayDeque<>();
+        private boolean scheduled;
+
+        private SerialQueue(Object device) {
+            this.device = device;
+        }
+
+        @Override
+        public void run() {
+            DeviceCommand command;
+            synchronized (_queues) {
+                command = pending.pollFirst();
+            }
+            try {
+                if (command != null) {
+                    command.execute();
+                    if (!command.isCancelled())
+                        notifyObservers(command);
+                }
+            } finally {
+                // Even after an Error, or the device queue would stall for good.
+                synchronized (_queues) {
+                    DeviceCommand next = pending.peekFirst();
+                    if (next == null) {
+                        scheduled = false;
+                        _queues.remove(device);
+                    } else {
+                        // Yield the thread between commands so a busy device cannot starve the others.
+                        executorOf(next).execute(this);
+                    }
+                }
+            }
+        }
+
+        private void notifyObservers(DeviceCommand command) {
+            for (CommandObserver observer : _observers) {
+                try {
+                    observer.onCommandDone(device, command);
+                } catch (RuntimeException e) {
+                    // A failing observer neither delays the next command nor keeps the others from seeing this one.
+                    _observerFailures.incrementAndGet();
+                }
+            }
+        }
+    }
+}
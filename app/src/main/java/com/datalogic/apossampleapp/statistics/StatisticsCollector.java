@@ -0,0 +1,135 @@
+package com.datalogic.apossampleapp.statistics;
+
+import com.datalogic.apossampleapp.scheduler.DeviceCommandScheduler;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Polls the statistics of the registered devices in the background and appends their changes to a
+ * {@link StatisticsDeltaLog}.
+ * <p>
+ * Polls run in the device queues of the {@link DeviceCommandScheduler}, so they never overlap other commands
+ * of the device. Every delay is drawn around the period, and the first one anywhere in it, so polls of several
+ * devices spread out and do not keep lining up with the same moments of the day.
+ */
+public class StatisticsCollector {
+    public interface Source {
+        /**
+         * @return the statistics as returned by retrieveStatistics, XML or Avalanche.
+         */
+        String retrieveStatistics() throws Exception;
+    }
+
+    private final DeviceCommandScheduler _scheduler;
+    private final StatisticsDeltaLog _log;
+    private final long _periodMillis;
+    private final double _jitter;
+    private final Random _random;
+    private final ScheduledExecutorService _timer;
+    private final Map<String, Registration> _devices = new HashMap<>();
+    private final AtomicLong _polls = new AtomicLong();
+    private final AtomicLong _failures = new AtomicLong();
+
+    /**
+     * @param jitter how much each delay may differ from the period, as a fraction of it, from 0 to 1.
+     */
+    public StatisticsCollector(DeviceCommandScheduler scheduler, StatisticsDeltaLog log, long periodMillis, double jitter, Random random) {
+        _scheduler = scheduler;
+        _log = log;
+        _periodMillis = periodMillis;
+        _jitter = Math.max(0, Math.min(1, jitter));
+        _random = random;
+        _timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "statistics-collector");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start polling the device; replaces a source already registered under the name.
+     */
+    public synchronized void add(String logicalName, Source source) {
+        remove(logicalName);
+        Registration registration = new Registration(logicalName, source);
+        _devices.put(logicalName, registration);
+        schedule(registration, (long) (_random.nextDouble() * _periodMillis));
+    }
+
+    public synchronized void remove(String logicalName) {
+        Registration registration = _devices.remove(logicalName);
+        if (registration != null)
+            registration.next.cancel(false);
+    }
+
+    public synchronized boolean contains(String logicalName) {
+        return _devices.containsKey(logicalName);
+    }
+
+    public synchronized void stop() {
+        for (Registration registration : _devices.values())
+            registration.next.cancel(false);
+        _devices.clear();
+        _timer.shutdown();
+    }
+
+    public StatisticsDeltaLog getLog() {
+        return _log;
+    }
+
+    public long getPollCount() {
+        return _polls.get();
+    }
+
+    public long getFailureCount() {
+        return _failures.get();
+    }
+
+    /**
+     * @return the next delay, uniformly drawn within the jitter around the period.
+     */
+    long nextDelayMillis() {
+        return Math.max(1, Math.round(_periodMillis * (1 + _jitter * (2 * _random.nextDouble() - 1))));
+    }
+
+    private void schedule(Registration registration, long delayMillis) {
+        registration.next = _timer.schedule(() -> tick(registration), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void tick(Registration registration) {
+        if (_devices.get(registration.logicalName) != registration)
+            return;
+        _scheduler.submitCoalescing(registration.logicalName, "collectStatistics", () -> poll(registration.logicalName, registration.source));
+        schedule(registration, nextDelayMillis());
+    }
+
+    private void poll(String logicalName, Source source) {
+        try {
+            String statistics = source.retrieveStatistics();
+            _log.append(logicalName, StatisticsSnapshot.parse(statistics), System.currentTimeMillis());
+            _polls.incrementAndGet();
+        } catch (Exception e) {
+            _failures.incrementAndGet();
+            // Lets the scheduler observer count the failure.
+            throw new IllegalStateException("Collecting statistics of " + logicalName, e);
+        }
+    }
+
+    private static final class Registration {
+        private final String logicalName;
+        private final Source source;
+        private ScheduledFuture<?> next;
+
+        private Registration(String logicalName, Source source) {
+            this.logicalName = logicalName;
+            this.source = source;
+        }
+    }
+}
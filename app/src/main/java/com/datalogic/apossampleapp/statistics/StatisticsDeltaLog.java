@@ -0,0 +1,336 @@
+package com.datalogic.apossampleapp.statistics;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An append-only log of statistics that stores, for each poll of a device, only the values that changed
+ * since its previous poll: the difference for counters, the new text otherwise.
+ * <p>
+ * Device and statistic names are written once, in definition records, and referred to by number after
+ * that. Opening a log replays it to restore the last values of every device; a record cut by a crash is
+ * dropped.
+ * <p>
+ * Past its maximum size the log is rotated: it becomes the previous log, named after it with a ".1" suffix, and
+ * a new log starts with the last values of every device, so both stay bounded.
+ */
+public class StatisticsDeltaLog implements Closeable {
+    public interface Listener {
+        /**
+         * @param changes the counters as deltas ({@link Long}) and the changed texts, by name.
+         */
+        void onSample(String device, long timeMillis, Map<String, Object> changes);
+    }
+
+    private static final int DEFINE = 1;
+    private static final int SAMPLE = 2;
+    private static final int COUNTER = 0;
+    private static final int TEXT = 1;
+    private static final long DEFAULT_MAX_BYTES = 1 << 20;
+
+    private final File _file;
+    private final long _maxBytes;
+    private final Map<String, Integer> _ids = new HashMap<>();
+    private final List<String> _names = new ArrayList<>();
+    private final Map<String, Map<String, Object>> _latest = new HashMap<>();
+    private final ByteArrayOutputStream _record = new ByteArrayOutputStream(256);
+    private final DataOutputStream _recordOut = new DataOutputStream(_record);
+    private FileOutputStream _out;
+    private long _size;
+
+    public StatisticsDeltaLog(File file) throws IOException {
+        this(file, DEFAULT_MAX_BYTES);
+    }
+
+    public StatisticsDeltaLog(File file, long maxBytes) throws IOException {
+        _file = file;
+        _maxBytes = maxBytes;
+        long valid = file.exists() ? read(file, this::restore, _names) : 0;
+        for (int i = 0; i < _names.size(); i++)
+            _ids.put(_names.get(i), i);
+        if (file.exists() && valid < file.length()) {
+            try (RandomAccessFile truncate = new RandomAccessFile(file, "rw")) {
+                truncate.setLength(valid);
+            }
+        }
+        _size = valid;
+        _out = new FileOutputStream(file, true);
+    }
+
+    /**
+     * Append the changes of the snapshot since the last one of the device.
+     *
+     * @return the number of values written, 0 if nothing changed.
+     */
+    public synchronized int append(String device, StatisticsSnapshot snapshot, long timeMillis) throws IOException {
+        Map<String, Object> latest = _latest.get(device);
+        Map<String, Object> values = new HashMap<>();
+        Map<String, Object> changes = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : snapshot.values().entrySet()) {
+            Object previous = latest == null ? null : latest.get(entry.getKey());
+            Object value = entry.getValue();
+            if (value.equals(previous))
+                continue;
+            values.put(entry.getKey(), value);
+            if (value instanceof Long && (previous == null || previous instanceof Long))
+                changes.put(entry.getKey(), (Long) value - (previous == null ? 0 : (Long) previous));
+            else
+                changes.put(entry.getKey(), value.toString());
+        }
+        write(device, timeMillis, changes);
+        // The last values only move once the record is in the log.
+        if (latest == null) {
+            latest = new HashMap<>();
+            _latest.put(device, latest);
+        }
+        latest.putAll(values);
+        if (_size > _maxBytes)
+            rotate(timeMillis);
+        return changes.size();
+    }
+
+    /**
+     * @return the last values of the device, counters as totals, or null if it was never polled.
+     */
+    public synchronized StatisticsSnapshot latest(String device) {
+        Map<String, Object> latest = _latest.get(device);
+        return latest == null ? null : new StatisticsSnapshot(new LinkedHashMap<>(latest));
+    }
+
+    /**
+     * @return the size of the log in bytes.
+     */
+    public synchronized long size() {
+        return _size;
+    }
+
+    public File getFile() {
+        return _file;
+    }
+
+    /**
+     * @return the log rotated out last, which may not exist.
+     */
+    public File getPreviousFile() {
+        return new File(_file.getPath() + ".1");
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        _out.close();
+    }
+
+    /**
+     * Read a log from the start.
+     */
+    public static void replay(File file, Listener listener) throws IOException {
+        read(file, listener, new ArrayList<>());
+    }
+
+    private void restore(String device, long timeMillis, Map<String, Object> changes) {
+        Map<String, Object> latest = _latest.get(device);
+        if (latest == null) {
+            latest = new HashMap<>();
+            _latest.put(device, latest);
+        }
+        for (Map.Entry<String, Object> change : changes.entrySet()) {
+            Object value = change.getValue();
+            Object previous = latest.get(change.getKey());
+            if (value instanceof Long)
+                value = (Long) value + (previous instanceof Long ? (Long) previous : 0);
+            latest.put(change.getKey(), value);
+        }
+    }
+
+    /**
+     * Write a sample of the changes, counters as deltas ({@link Long}) and texts, after the definitions of the names
+     * it uses first. The record goes out in one write; its names count as defined only once it did.
+     */
+    private void write(String device, long timeMillis, Map<String, Object> changes) throws IOException {
+        if (changes.isEmpty())
+            return;
+        _record.reset();
+        List<String> defined = new ArrayList<>();
+        int deviceId = define(device, defined);
+        int[] nameIds = new int[changes.size()];
+        int i = 0;
+        for (String name : changes.keySet())
+            nameIds[i++] = define(name, defined);
+        _recordOut.writeByte(SAMPLE);
+        _recordOut.writeLong(timeMillis);
+        writeVarLong(_recordOut, deviceId);
+        writeVarLong(_recordOut, changes.size());
+        i = 0;
+        for (Object change : changes.values()) {
+            writeVarLong(_recordOut, nameIds[i++]);
+            if (change instanceof Long) {
+                _recordOut.writeByte(COUNTER);
+                long delta = (Long) change;
+                writeVarLong(_recordOut, (delta << 1) ^ (delta >> 63));
+            } else {
+                _recordOut.writeByte(TEXT);
+                _recordOut.writeUTF(change.toString());
+            }
+        }
+        try {
+            _record.writeTo(_out);
+            _out.flush();
+        } catch (IOException e) {
+            // Leave no part of the record for the next one to follow.
+            try {
+                _out.getChannel().truncate(_size);
+            } catch (IOException truncateFailure) {
+                e.addSuppressed(truncateFailure);
+            }
+            throw e;
+        }
+        _size += _record.size();
+        for (String name : defined) {
+            _ids.put(name, _names.size());
+            _names.add(name);
+        }
+    }
+
+    /**
+     * @param defined the names defined so far by the record being written, which are not in the log yet.
+     */
+    private int define(String name, List<String> defined) throws IOException {
+        Integer id = _ids.get(name);
+        if (id != null)
+            return id;
+        int pending = defined.indexOf(name);
+        if (pending >= 0)
+            return _names.size() + pending;
+        id = _names.size() + defined.size();
+        defined.add(name);
+        _recordOut.writeByte(DEFINE);
+        writeVarLong(_recordOut, id);
+        _recordOut.writeUTF(name);
+        return id;
+    }
+
+    /**
+     * Keep the log as the previous one and start a new log with the last values of every device, counters as
+     * totals.
+     */
+    private void rotate(long timeMillis) throws IOException {
+        _out.close();
+        File previous = getPreviousFile();
+        if ((previous.exists() && !previous.delete()) || !_file.renameTo(previous)) {
+            _out = new FileOutputStream(_file, true);
+            throw new IOException("Cannot rotate " + _file);
+        }
+        _ids.clear();
+        _names.clear();
+        _size = 0;
+        _out = new FileOutputStream(_file);
+        for (Map.Entry<String, Map<String, Object>> device : _latest.entrySet())
+            write(device.getKey(), timeMillis, device.getValue());
+    }
+
+    /**
+     * @return the length of the log up to the last complete record.
+     */
+    private static long read(File file, Listener listener, List<String> names) throws IOException {
+        try (CountingInputStream counting = new CountingInputStream(new BufferedInputStream(new FileInputStream(file)));
+             DataInputStream in = new DataInputStream(counting)) {
+            long valid = 0;
+            List<String> defined = new ArrayList<>();
+            int validNames = 0;
+            while (true) {
+                int type = in.read();
+                if (type < 0 || (type != DEFINE && type != SAMPLE))
+                    break;
+                try {
+                    if (type == DEFINE) {
+                        int id = (int) readVarLong(in);
+                        String name = in.readUTF();
+                        while (defined.size() <= id)
+                            defined.add(null);
+                        defined.set(id, name);
+                    } else if (type == SAMPLE) {
+                        long time = in.readLong();
+                        String device = defined.get((int) readVarLong(in));
+                        int count = (int) readVarLong(in);
+                        Map<String, Object> changes = new LinkedHashMap<>();
+                        for (int i = 0; i < count; i++) {
+                            String name = defined.get((int) readVarLong(in));
+                            if (in.readByte() == COUNTER) {
+                                long zigzag = readVarLong(in);
+                                changes.put(name, (zigzag >>> 1) ^ -(zigzag & 1));
+                            } else
+                                changes.put(name, in.readUTF());
+                        }
+                        listener.onSample(device, time, changes);
+                    }
+                } catch (EOFException | IndexOutOfBoundsException e) {
+                    // Cut by a crash while being written.
+                    break;
+                }
+                valid = counting.count;
+                validNames = defined.size();
+            }
+            names.addAll(defined.subList(0, validNames));
+            return valid;
+        }
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Malformed statistics log");
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0)
+                count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0)
+                count += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.datalogic.apossampleapp.statistics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes statistics, as returned by retrieveStatistics, to a stream or a channel.
+ * <p>
+ * The text is encoded in UTF-8 chunk by chunk straight into the destination, optionally gzipped, so no byte
+ * copy of the whole payload is ever made. An exporter reuses its buffers and is not thread safe.
+ */
+public final class StatisticsExporter {
+    private static final int CHUNK_SIZE = 8192;
+
+    private interface Sink {
+        void write(ByteBuffer bytes) throws IOException;
+    }
+
+    private final boolean _gzip;
+    private final CharsetEncoder _encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final char[] _chars = new char[CHUNK_SIZE];
+    private final CharBuffer _charBuffer = CharBuffer.wrap(_chars);
+    private final ByteBuffer _heapBuffer = ByteBuffer.allocate(CHUNK_SIZE);
+    private ByteBuffer _directBuffer;
+
+    public StatisticsExporter(boolean gzip) {
+        _gzip = gzip;
+    }
+
+    public boolean isGzip() {
+        return _gzip;
+    }
+
+    /**
+     * Write the statistics to the stream; the stream is flushed, or finished when gzipped, but not closed.
+     *
+     * @return the number of bytes of the encoded text, before compression.
+     */
+    public long export(CharSequence statistics, OutputStream out) throws IOException {
+        if (_gzip) {
+            GZIPOutputStream gzip = new GZIPOutputStream(out, CHUNK_SIZE);
+            long length = encode(statistics, _heapBuffer, bytes -> gzip.write(bytes.array(), 0, bytes.limit()));
+            gzip.finish();
+            return length;
+        }
+        long length = encode(statistics, _heapBuffer, bytes -> out.write(bytes.array(), 0, bytes.limit()));
+        out.flush();
+        return length;
+    }
+
+    /**
+     * Write the statistics to the channel, e.g. a {@link java.nio.channels.FileChannel}; the channel is not closed.
+     *
+     * @return the number of bytes of the encoded text, before compression.
+     */
+    public long export(CharSequence statistics, WritableByteChannel channel) throws IOException {
+        if (_gzip)
+            return export(statistics, Channels.newOutputStream(channel));
+        if (_directBuffer == null)
+            _directBuffer = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        return encode(statistics, _directBuffer, bytes -> {
+            while (bytes.hasRemaining())
+                channel.write(bytes);
+        });
+    }
+
+    private long encode(CharSequence statistics, ByteBuffer bytes, Sink sink) throws IOException {
+        _encoder.reset();
+        _charBuffer.clear();
+        int length = statistics.length();
+        int position = 0;
+        long written = 0;
+        boolean endOfInput;
+        do {
+            int count = Math.min(length - position, _charBuffer.remaining());
+            copy(statistics, position, count, _charBuffer.position());
+            _charBuffer.position(_charBuffer.position() + count);
+            position += count;
+            endOfInput = position == length;
+            _charBuffer.flip();
+            CoderResult result;
+            do {
+                bytes.clear();
+                result = _encoder.encode(_charBuffer, bytes, endOfInput);
+                written += drain(bytes, sink);
+            } while (result.isOverflow());
+            // A high surrogate left at the end of a chunk is carried to the next one.
+            _charBuffer.compact();
+        } while (!endOfInput);
+        CoderResult result;
+        do {
+            bytes.clear();
+            result = _encoder.flush(bytes);
+            written += drain(bytes, sink);
+        } while (result.isOverflow());
+        return written;
+    }
+
+    private void copy(CharSequence text, int start, int count, int offset) {
+        if (text instanceof String) {
+            ((String) text).getChars(start, start + count, _chars, offset);
+        } else {
+            for (int i = 0; i < count; i++)
+                _chars[offset + i] = text.charAt(start + i);
+        }
+    }
+
+    private static int drain(ByteBuffer bytes, Sink sink) throws IOException {
+        bytes.flip();
+        int count = bytes.remaining();
+        if (count > 0)
+            sink.write(bytes);
+        return count;
+    }
+}
@@ -0,0 +1,149 @@
+package com.datalogic.apossampleapp.statistics;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The statistics of a device at one point in time: counters as longs, anything else as text.
+ */
+public final class StatisticsSnapshot {
+    private final Map<String, Object> _values;
+
+    StatisticsSnapshot(Map<String, Object> values) {
+        _values = values;
+    }
+
+    /**
+     * Parse the output of retrieveStatistics, XML or Avalanche.
+     */
+    public static StatisticsSnapshot parse(String statistics) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        int start = 0;
+        while (start < statistics.length() && Character.isWhitespace(statistics.charAt(start)))
+            start++;
+        if (statistics.startsWith("<", start))
+            parseXml(statistics, values);
+        else
+            parseAvalanche(statistics, values);
+        return new StatisticsSnapshot(values);
+    }
+
+    public Set<String> names() {
+        return Collections.unmodifiableSet(_values.keySet());
+    }
+
+    public int size() {
+        return _values.size();
+    }
+
+    /**
+     * @return a {@link Long} for counters, a String otherwise, null if there is no such statistic.
+     */
+    public Object get(String name) {
+        return _values.get(name);
+    }
+
+    public long getCounter(String name, long defaultValue) {
+        Object value = _values.get(name);
+        return value instanceof Long ? (Long) value : defaultValue;
+    }
+
+    Map<String, Object> values() {
+        return _values;
+    }
+
+    /**
+     * UPOS statistics XML: every {@code <Parameter><Name>..</Name><Value>..</Value></Parameter>}, and the
+     * simple elements of {@code <Equipment>} such as the serial number.
+     */
+    private static void parseXml(String xml, Map<String, Object> values) {
+        int equipment = xml.indexOf("<Equipment>");
+        if (equipment >= 0) {
+            int end = xml.indexOf("</Equipment>", equipment);
+            int position = equipment + "<Equipment>".length();
+            while (end > 0 && position < end) {
+                int open = xml.indexOf('<', position);
+                if (open < 0 || open >= end)
+                    break;
+                int close = xml.indexOf('>', open);
+                if (close < 0)
+                    break;
+                if (xml.charAt(close - 1) == '/' || xml.charAt(open + 1) == '/') {
+                    position = close + 1;
+                    continue;
+                }
+                String element = xml.substring(open + 1, close);
+                int space = element.indexOf(' ');
+                String name = space < 0 ? element : element.substring(0, space);
+                int closing = xml.indexOf("</" + name + ">", close);
+                if (closing < 0 || closing > end)
+                    break;
+                values.put(name, typed(unescape(xml.substring(close + 1, closing).trim())));
+                position = closing + name.length() + 3;
+            }
+        }
+        int position = 0;
+        while ((position = xml.indexOf("<Parameter>", position)) >= 0) {
+            int end = xml.indexOf("</Parameter>", position);
+            if (end < 0)
+                break;
+            String name = element(xml, "Name", position, end);
+            String value = element(xml, "Value", position, end);
+            if (name != null)
+                values.put(name, typed(value == null ? "" : value));
+            position = end;
+        }
+    }
+
+    /**
+     * Avalanche statistics: one {@code Name=Value} per line.
+     */
+    private static void parseAvalanche(String text, Map<String, Object> values) {
+        int position = 0;
+        while (position < text.length()) {
+            int end = text.indexOf('\n', position);
+            if (end < 0)
+                end = text.length();
+            int separator = text.indexOf('=', position);
+            if (separator > position && separator < end)
+                values.put(text.substring(position, separator).trim(), typed(text.substring(separator + 1, end).trim()));
+            position = end + 1;
+        }
+    }
+
+    private static String element(String xml, String name, int from, int to) {
+        int open = xml.indexOf("<" + name + ">", from);
+        if (open < 0 || open > to)
+            return null;
+        int start = open + name.length() + 2;
+        int close = xml.indexOf("</" + name + ">", start);
+        if (close < 0 || close > to)
+            return null;
+        return unescape(xml.substring(start, close).trim());
+    }
+
+    private static Object typed(String value) {
+        int length = value.length();
+        if (length == 0 || length > 18)
+            return value;
+        int start = value.charAt(0) == '-' ? 1 : 0;
+        if (start == length)
+            return value;
+        for (int i = start; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9')
+                return value;
+        }
+        if (length - start > 1 && value.charAt(start) == '0')
+            return value;
+        return Long.parseLong(value);
+    }
+
+    private static String unescape(String text) {
+        if (text.indexOf('&') < 0)
+            return text;
+        return text.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"").replace("&apos;", "'").replace("&amp;", "&");
+    }
+}
@@ -0,0 +1,24 @@
+package com.datalogic.apossampleapp.simulator;
+
+import android.content.Context;
+
+import com.datalogic.dlapos.commons.control.BaseControl;
+
+/**
+ * Release builds simulate no device; the simulated entries of apos-debug.json ship with debug builds only.
+ */
+public final class SimulatedDeviceFactory {
+    private SimulatedDeviceFactory() {
+    }
+
+    /**
+     * @return null: no logical name is simulated.
+     */
+    public static BaseControl create(String logicalName, Context context) {
+        return null;
+    }
+
+    public static boolean isSimulated(String logicalName, Context context) {
+        return false;
+    }
+}
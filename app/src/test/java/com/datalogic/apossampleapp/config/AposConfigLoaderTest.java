@@ -0,0 +1,85 @@
+package com.datalogic.apossampleapp.config;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class AposConfigLoaderTest {
+    private static final String CONFIG = "{\n"
+            + "  \"version\": \"1.0\",\n"
+            + "  \"aPosEntries\": [\n"
+            + entry("DL-Scanner-A", "Scanner", "\"beepDuration\", \"type\": \"String\", \"value\": \"1\"},"
+            + " {\"name\": \"canUpdateFirmware\", \"type\": \"String\", \"value\": \"True\"},"
+            + " {\"name\": \"deviceBus\", \"type\": \"String\", \"value\": \"USB\"") + ",\n"
+            + entry("DL-Scale-B", "Scale", "\"simulatedErrorRate\", \"type\": \"String\", \"value\": \"0.25\"") + ",\n"
+            + entry("DL-Scanner-C", "Scanner", "\"beepDuration\", \"value\": \"\\u0032\", \"type\": \"String\"") + "\n"
+            + "  ],\n"
+            + "  \"trailer\": {\"nested\": [1, 2, {\"x\": null}]}\n"
+            + "}";
+
+    @Test
+    public void readLogicalNames_listsEveryEntry() throws IOException {
+        assertEquals(Arrays.asList("DL-Scanner-A", "DL-Scale-B", "DL-Scanner-C"),
+                new AposConfigLoader().readLogicalNames(new StringReader(CONFIG)));
+    }
+
+    @Test
+    public void load_materializesOnlyRequestedEntries() throws IOException {
+        AposConfigLoader loader = new AposConfigLoader();
+        Map<String, AposEntry> entries = loader.load(new StringReader(CONFIG), Arrays.asList("DL-Scanner-A", "DL-Scanner-C", "missing"));
+
+        assertEquals(2, entries.size());
+        AposEntry scanner = entries.get("DL-Scanner-A");
+        assertEquals("Scanner", scanner.getCategory());
+        assertEquals("com.example.Factory", scanner.getFactoryClass());
+        assertEquals("com.example.Service", scanner.getServiceClass());
+        PropertyMap properties = scanner.getProperties();
+        assertEquals(3, properties.size());
+        assertEquals(1, properties.getInt("beepDuration", 0));
+        assertTrue(properties.getBoolean("canUpdateFirmware", false));
+        assertEquals("True", properties.getString("canUpdateFirmware"));
+        assertEquals("USB", properties.getString("deviceBus"));
+        assertNull(properties.get("motorTimeout"));
+        assertEquals(2, entries.get("DL-Scanner-C").getProperties().getInt("beepDuration", 0));
+
+        assertSame(properties.nameAt(0), entries.get("DL-Scanner-C").getProperties().nameAt(0));
+        assertSame(scanner.getFactoryClass(), entries.get("DL-Scanner-C").getFactoryClass());
+    }
+
+    @Test
+    public void typedValues_keepTheirText() throws IOException {
+        AposEntry scale = new AposConfigLoader().load(new StringReader(CONFIG), "DL-Scale-B");
+        assertEquals(0.25, scale.getProperties().getDouble("simulatedErrorRate", 0), 0);
+        assertEquals("0.25", scale.getProperties().getString("simulatedErrorRate"));
+        assertEquals(Integer.valueOf(42), PropertyMap.typed("String", "42"));
+        assertEquals("042", PropertyMap.typed("String", "042"));
+        assertEquals("-0", PropertyMap.typed("String", "-0"));
+        assertNull(new AposConfigLoader().load(new StringReader(CONFIG), "missing"));
+    }
+
+    @Test
+    public void load_withoutFilter_readsAll() throws IOException {
+        assertEquals(3, new AposConfigLoader().load(new StringReader(CONFIG), (Collection<String>) null).size());
+        assertTrue(new AposConfigLoader().load(new StringReader("{\"version\": \"1.0\"}"), Collections.singleton("x")).isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void malformedDocument_isRejected() throws IOException {
+        new AposConfigLoader().readLogicalNames(new StringReader("{\"aPosEntries\": [{\"logicalName\": \"x"));
+    }
+
+    private static String entry(String logicalName, String category, String properties) {
+        return "    {\"logicalName\": \"" + logicalName + "\",\n"
+                + "     \"creation\": {\"factoryClass\": \"com.example.Factory\", \"serviceClass\": \"com.example.Service\"},\n"
+                + "     \"vendor\": {\"name\": \"DLA\", \"url\": \"http://www.adc.datalogic.com\"},\n"
+                + "     \"apos\": {\"category\": \"" + category + "\", \"version\": \"1.13\"},\n"
+                + "     \"properties\": [{\"name\": " + properties + "}]}";
+    }
+}
@@ -0,0 +1,75 @@
+package com.datalogic.apossampleapp.device;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DeviceStateMachineTest {
+    private static final int SCANS = 10_000;
+
+    @Test
+    public void illegalTransitions_areRejected() {
+        List<DeviceState> published = new ArrayList<>();
+        DeviceStateMachine machine = new DeviceStateMachine(DeviceState.CLOSED, Runnable::run, published::add);
+
+        assertFalse(machine.moveTo(DeviceState.ENABLED));
+        assertTrue(machine.moveTo(DeviceState.OPENED));
+        assertFalse(machine.moveTo(DeviceState.ENABLED));
+        assertFalse(machine.moveFrom(DeviceState.ERROR, DeviceState.ENABLED));
+        assertTrue(machine.moveTo(DeviceState.CLAIMED));
+        assertFalse(machine.moveTo(DeviceState.CLOSED));
+        assertEquals(DeviceState.CLAIMED, machine.getState());
+        assertEquals(3, machine.getRejectedCount());
+
+        // A device resumed from the pool arrives enabled.
+        machine.reset(DeviceState.CLOSED);
+        machine.reset(DeviceState.ENABLED);
+        assertEquals(Arrays.asList(DeviceState.OPENED, DeviceState.CLAIMED, DeviceState.CLOSED, DeviceState.ENABLED),
+                published);
+        assertEquals(4, machine.getPublishedCount());
+    }
+
+    @Test
+    public void concurrentChanges_arePublishedWithoutRepeats() throws Exception {
+        ExecutorService mainThread = Executors.newSingleThreadExecutor();
+        ExecutorService devices = Executors.newFixedThreadPool(4);
+        List<DeviceState> published = Collections.synchronizedList(new ArrayList<>());
+        DeviceStateMachine machine = new DeviceStateMachine(DeviceState.ENABLED, mainThread, published::add);
+        CountDownLatch done = new CountDownLatch(4);
+        for (int t = 0; t < 4; t++) {
+            int thread = t;
+            devices.execute(() -> {
+                for (int i = 0; i < SCANS; i++) {
+                    if (thread == 0 && i % 100 == 0)
+                        machine.moveTo(DeviceState.ERROR);
+                    else
+                        machine.moveFrom(DeviceState.ERROR, DeviceState.ENABLED);
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        devices.shutdown();
+        // Whatever is still queued on the main thread runs before this.
+        mainThread.submit(() -> {
+        }).get(5, TimeUnit.SECONDS);
+        mainThread.shutdown();
+
+        assertTrue(published.size() <= 2 * SCANS / 100);
+        DeviceState previous = DeviceState.ENABLED;
+        for (DeviceState state : published) {
+            assertNotEquals(previous, state);
+            previous = state;
+        }
+        assertEquals(machine.getState(), published.isEmpty() ? DeviceState.ENABLED : previous);
+    }
+}
@@ -0,0 +1,173 @@
+package com.datalogic.apossampleapp.events;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+public class EventBusTest {
+    private static final int DATA = 0;
+    private static final int STATUS = 2;
+    private static final int EVENTS = 10_000;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void subscribers_receiveTheirTopicsInOrder() throws Exception {
+        EventBus<Integer> bus = new EventBus<>(executor, null);
+        List<Integer> data = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> all = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(2);
+        bus.subscribe(1 << DATA, 16, EventBus.OverflowPolicy.BLOCK, null, event -> {
+            data.add(event);
+            if (event == EVENTS - 2)
+                done.countDown();
+        });
+        bus.subscribe(1 << DATA | 1 << STATUS, 16, EventBus.OverflowPolicy.BLOCK, null, event -> {
+            all.add(event);
+            if (event == EVENTS - 1)
+                done.countDown();
+        });
+
+        for (int i = 0; i < EVENTS; i++)
+            bus.publish(i % 2 == 0 ? DATA : STATUS, i);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        assertEquals(EVENTS / 2, data.size());
+        assertEquals(EVENTS, all.size());
+        for (int i = 0; i < EVENTS; i++)
+            assertEquals(i, (int) all.get(i));
+        for (int i = 0; i < EVENTS / 2; i++)
+            assertEquals(2 * i, (int) data.get(i));
+    }
+
+    @Test
+    public void slowSubscriber_losesEventsWithoutHoldingUpThePublisher() throws Exception {
+        EventBus<Integer> bus = new EventBus<>(executor, null);
+        CountDownLatch entered = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> latest = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> earliest = Collections.synchronizedList(new ArrayList<>());
+        EventBus.Subscription<Integer> dropOldest = bus.subscribe(1, 8, EventBus.OverflowPolicy.DROP_OLDEST, null,
+                event -> {
+                    entered.countDown();
+                    await(release);
+                    latest.add(event);
+                });
+        EventBus.Subscription<Integer> dropNewest = bus.subscribe(1, 8, EventBus.OverflowPolicy.DROP_NEWEST, null,
+                event -> {
+                    entered.countDown();
+                    await(release);
+                    earliest.add(event);
+                });
+        CountDownLatch fast = new CountDownLatch(EVENTS);
+        bus.subscribe(1, EVENTS, EventBus.OverflowPolicy.DROP_NEWEST, null, event -> fast.countDown());
+
+        bus.publish(DATA, 0);
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        long start = System.nanoTime();
+        for (int i = 1; i < EVENTS; i++)
+            bus.publish(DATA, i);
+        long elapsed = System.nanoTime() - start;
+        assertTrue(fast.await(5, TimeUnit.SECONDS));
+        release.countDown();
+        waitFor(() -> dropOldest.getDeliveredCount() + dropOldest.getDroppedCount() == EVENTS
+                && dropNewest.getDeliveredCount() + dropNewest.getDroppedCount() == EVENTS);
+
+        assertTrue(elapsed < TimeUnit.SECONDS.toNanos(1));
+        // Each stalled subscriber took one event before its queue filled up.
+        assertEquals(9, latest.size());
+        assertEquals(EVENTS - 8, (int) latest.get(1));
+        assertEquals(EVENTS - 1, (int) latest.get(8));
+        assertEquals(9, earliest.size());
+        assertEquals(8, (int) earliest.get(8));
+    }
+
+    @Test
+    public void blockingSubscriber_getsEveryEvent() throws Exception {
+        EventBus<Integer> bus = new EventBus<>(executor, null);
+        List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+        EventBus.Subscription<Integer> subscription = bus.subscribe(1, 4, EventBus.OverflowPolicy.BLOCK, null, event -> {
+            if (event % 100 == 0)
+                sleep(1);
+            received.add(event);
+        });
+        for (int i = 0; i < 1000; i++)
+            bus.publish(DATA, i);
+        waitFor(() -> received.size() == 1000);
+        assertEquals(0, subscription.getDroppedCount());
+    }
+
+    @Test
+    public void failingSubscriber_keepsReceiving() throws Exception {
+        EventBus<Integer> bus = new EventBus<>(executor, null);
+        EventBus.Subscription<Integer> subscription = bus.subscribe(1, 16, EventBus.OverflowPolicy.BLOCK, null, event -> {
+            if (event == 1)
+                throw new IllegalStateException();
+        });
+        for (int i = 0; i < 3; i++)
+            bus.publish(DATA, i);
+        waitFor(() -> subscription.getDeliveredCount() == 2);
+        assertEquals(1, subscription.getFailedCount());
+    }
+
+    @Test
+    public void topicListener_followsTheSubscriptions() {
+        List<Integer> changes = new ArrayList<>();
+        EventBus<Integer> bus = new EventBus<>(executor, changes::add);
+        EventBus.Subscription<Integer> data = bus.subscribe(1 << DATA, 4, EventBus.OverflowPolicy.DROP_NEWEST, null, e -> {
+        });
+        EventBus.Subscription<Integer> both = bus.subscribe(1 << DATA | 1 << STATUS, 4, EventBus.OverflowPolicy.DROP_NEWEST,
+                null, e -> {
+                });
+        bus.subscribe(1 << DATA, 4, EventBus.OverflowPolicy.DROP_NEWEST, null, e -> {
+        });
+        both.close();
+        data.close();
+        bus.clear();
+
+        assertEquals(Arrays.asList(1, 5, 1, 0), changes);
+        assertEquals(0, bus.getSubscriberCount());
+        bus.publish(DATA, 1);
+        assertEquals(0, data.getDeliveredCount());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.datalogic.apossampleapp.firmware;
+
+import com.datalogic.dlapos.androidpos.common.DLSJposConst;
+import com.datalogic.dlapos.commons.constant.CommonsConstants;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FirmwareCatalogTest {
+    private static final int DEVICE_VID = 0x05F9;
+    private static final int DEVICE_PID = 0x4204;
+
+    private File directory;
+    private File index;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("firmware").toFile();
+        index = File.createTempFile("firmware", ".idx");
+        assertTrue(index.delete());
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files)
+                file.delete();
+        }
+        directory.delete();
+        index.delete();
+    }
+
+    @Test
+    public void header_isReadFromTheTextFields() {
+        FirmwareHeader header = FirmwareHeader.parse(ByteBuffer.wrap(
+                "Product: QD2430\r\nVID=0x05F9\r\nPID: 4204\r\nVersion=612\r\n\u0000\u0001VID=0001".getBytes(StandardCharsets.ISO_8859_1)));
+        assertNotNull(header);
+        assertEquals(0x05F9, header.getVendorId());
+        assertEquals(0x4204, header.getProductId());
+        assertEquals(612, header.getVersion());
+
+        assertNull(FirmwareHeader.parse(ByteBuffer.wrap(new byte[]{0x7f, 'E', 'L', 'F'})));
+        assertNull(FirmwareHeader.parse(ByteBuffer.wrap("VID=05F9\n".getBytes(StandardCharsets.ISO_8859_1))));
+        assertEquals(FirmwareHeader.UNKNOWN_VERSION, FirmwareHeader.parse(ByteBuffer.wrap(
+                "VID=05F9\nPID=1\nVersion=1.2\n".getBytes(StandardCharsets.ISO_8859_1))).getVersion());
+    }
+
+    @Test
+    public void scan_readsOnlyNewOrChangedFiles() throws IOException {
+        final int count = 200;
+        Random random = new Random(11);
+        for (int i = 0; i < count; i++)
+            writeImage(new File(directory, String.format(Locale.ROOT, "fw%03d.dfw", i)), DEVICE_VID, 0x4200 + i % 8, 100 + i, 256 * 1024, random);
+        writeText(new File(directory, "readme.txt"), "Not a firmware");
+
+        FirmwareCatalog catalog = new FirmwareCatalog(index, 4);
+        List<FirmwareImage> images = catalog.scan(directory);
+        assertEquals(count + 1, images.size());
+        assertEquals(count + 1, catalog.getFilesRead());
+        assertNull(images.get(count).getHeader());
+        assertEquals(100, images.get(0).getHeader().getVersion());
+
+        catalog.scan(directory);
+        assertEquals(0, catalog.getFilesRead());
+        catalog.shutdown();
+
+        // Another launch starts from the index file.
+        FirmwareCatalog relaunched = new FirmwareCatalog(index, 4);
+        images = relaunched.scan(directory);
+        assertEquals(0, relaunched.getFilesRead());
+        assertEquals(DEVICE_VID, images.get(5).getHeader().getVendorId());
+
+        File changed = new File(directory, "fw005.dfw");
+        writeImage(changed, DEVICE_VID, 0x4205, 900, 1024, random);
+        assertTrue(changed.setLastModified(changed.lastModified() + 2000));
+        assertTrue(new File(directory, "fw006.dfw").delete());
+        images = relaunched.scan(directory);
+        assertEquals(1, relaunched.getFilesRead());
+        assertEquals(count, images.size());
+        assertEquals(900, images.get(5).getHeader().getVersion());
+        relaunched.shutdown();
+    }
+
+    @Test
+    public void findBest_comparesOnlyTheNewestImageOfEachDevice() throws Exception {
+        Random random = new Random(5);
+        writeImage(new File(directory, "other-vendor.dfw"), 0x1234, DEVICE_PID, 999, 512, random);
+        writeImage(new File(directory, "other-product.dfw"), DEVICE_VID, 0x4100, 700, 512, random);
+        writeImage(new File(directory, "old.dfw"), DEVICE_VID, DEVICE_PID, 300, 512, random);
+        writeImage(new File(directory, "new.dfw"), DEVICE_VID, DEVICE_PID, 500, 512, random);
+        writeImage(new File(directory, "older.dfw"), DEVICE_VID, DEVICE_PID, 200, 512, random);
+        FirmwareCatalog catalog = new FirmwareCatalog(index, 2);
+        List<FirmwareImage> images = catalog.scan(directory);
+        catalog.shutdown();
+
+        List<String> compared = new ArrayList<>();
+        int[] result = new int[5];
+        FirmwareImage best = FirmwareCatalog.findBest(images, (file, fileResult) -> {
+            compared.add(file.getName());
+            FirmwareHeader header = FirmwareHeader.parse(ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+            if (header.getVendorId() != DEVICE_VID) {
+                fileResult[0] = DLSJposConst.DLS_CFV_INVALID_VID;
+            } else if (header.getProductId() != DEVICE_PID) {
+                fileResult[0] = DLSJposConst.DLS_CFV_INVALID_PID;
+            } else {
+                fileResult[0] = CommonsConstants.CVF_FIRMWARE_NEWER;
+                fileResult[3] = header.getVersion();
+                fileResult[4] = 400;
+            }
+        }, result);
+
+        assertEquals("new.dfw", best.getFile().getName());
+        assertEquals(CommonsConstants.CVF_FIRMWARE_NEWER, result[0]);
+        assertEquals(500, result[3]);
+        assertEquals(3, compared.size());
+        assertEquals("other-vendor.dfw", compared.get(0));
+
+        assertNull(FirmwareCatalog.findBest(images, (file, fileResult) -> fileResult[0] = DLSJposConst.DLS_CFV_INVALID_VID, result));
+    }
+
+    @Test
+    public void findBest_comparesTheFilesWithoutAHeaderWhenNoImageIsForTheDevice() throws Exception {
+        Random random = new Random(7);
+        writeImage(new File(directory, "other-vendor.dfw"), 0x1234, DEVICE_PID, 999, 512, random);
+        writeText(new File(directory, "a-older.bin"), "OLDER");
+        writeText(new File(directory, "b-newer.bin"), "NEWER");
+        writeText(new File(directory, "c-other.bin"), "OTHER");
+        writeText(new File(directory, "readme.txt"), "Not a firmware");
+        FirmwareCatalog catalog = new FirmwareCatalog(index, 2);
+        List<FirmwareImage> images = catalog.scan(directory);
+        catalog.shutdown();
+        assertNull(images.get(1).getHeader());
+
+        List<String> compared = new ArrayList<>();
+        FirmwareCatalog.Comparison device = (file, fileResult) -> {
+            compared.add(file.getName());
+            String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            if (content.equals("OLDER"))
+                fileResult[0] = CommonsConstants.CVF_FIRMWARE_OLDER;
+            else if (content.equals("NEWER"))
+                fileResult[0] = CommonsConstants.CVF_FIRMWARE_NEWER;
+            else if (content.equals("OTHER"))
+                fileResult[0] = DLSJposConst.DLS_CFV_INVALID_PID;
+            else if (content.startsWith("VID="))
+                fileResult[0] = DLSJposConst.DLS_CFV_INVALID_VID;
+            else
+                throw new IOException("Not a firmware file.");
+        };
+        int[] result = new int[5];
+        FirmwareImage best = FirmwareCatalog.findBest(images, device, result);
+        assertEquals("b-newer.bin", best.getFile().getName());
+        assertEquals(CommonsConstants.CVF_FIRMWARE_NEWER, result[0]);
+        assertEquals("other-vendor.dfw", compared.get(0));
+
+        assertTrue(new File(directory, "b-newer.bin").delete());
+        catalog = new FirmwareCatalog(index, 2);
+        images = catalog.scan(directory);
+        catalog.shutdown();
+        best = FirmwareCatalog.findBest(images, device, result);
+        assertEquals("a-older.bin", best.getFile().getName());
+        assertEquals(CommonsConstants.CVF_FIRMWARE_OLDER, result[0]);
+    }
+
+    private static void writeImage(File file, int vid, int pid, int version, int length, Random random) throws IOException {
+        byte[] content = new byte[length];
+        random.nextBytes(content);
+        byte[] header = String.format(Locale.ROOT, "VID=%04X\nPID=%04X\nVersion=%d\n\u0000", vid, pid, version)
+                .getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(header, 0, content, 0, header.length);
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(content);
+        }
+    }
+
+    private static void writeText(File file, String text) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
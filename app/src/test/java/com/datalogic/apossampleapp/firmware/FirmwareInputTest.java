@@ -0,0 +1,89 @@
+package com.datalogic.apossampleapp.firmware;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class FirmwareInputTest {
+    private File directory;
+    private File image;
+    private byte[] content;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("firmware-input").toFile();
+        image = new File(directory, "image.dfw");
+        content = new byte[200 * 1024];
+        new Random(2).nextBytes(content);
+        byte[] header = "VID=05F9\nPID=4204\nVersion=310\n\u0000".getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(header, 0, content, 0, header.length);
+        try (OutputStream out = new FileOutputStream(image)) {
+            out.write(content);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files)
+                file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void regularFile_isMappedAndReadThroughItsDescriptor() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(image, "r");
+        AtomicBoolean closed = new AtomicBoolean();
+        Closeable descriptor = () -> {
+            closed.set(true);
+            raf.close();
+        };
+        FirmwareInput input = FirmwareInput.open(raf.getChannel(), raf.length(), "/proc/self/fd/42", descriptor, directory);
+
+        assertEquals("/proc/self/fd/42", input.getPath());
+        assertEquals(310, input.getHeader().getVersion());
+        ByteBuffer mapped = input.getContent();
+        assertTrue(mapped.isDirect());
+        assertTrue(mapped.isReadOnly());
+        assertEquals(ByteBuffer.wrap(content), mapped);
+        assertFalse(new File(directory, "firmware-input.bin").exists());
+        assertFalse(closed.get());
+        input.close();
+        assertTrue(closed.get());
+    }
+
+    @Test
+    public void stream_isReadOnceAndSpooled() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(image, "r");
+        AtomicBoolean closed = new AtomicBoolean();
+        Closeable descriptor = () -> {
+            closed.set(true);
+            raf.close();
+        };
+        FirmwareInput input = FirmwareInput.open(raf.getChannel(), -1, "/proc/self/fd/42", descriptor, directory);
+
+        assertTrue(closed.get());
+        File spool = new File(directory, "firmware-input.bin");
+        assertEquals(spool.getPath(), input.getPath());
+        assertArrayEquals(content, Files.readAllBytes(spool.toPath()));
+        assertEquals(ByteBuffer.wrap(content), input.getContent());
+        assertEquals(0x4204, input.getHeader().getProductId());
+        input.close();
+    }
+}
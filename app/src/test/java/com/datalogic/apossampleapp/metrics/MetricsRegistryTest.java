@@ -0,0 +1,103 @@
+package com.datalogic.apossampleapp.metrics;
+
+import com.datalogic.apossampleapp.scheduler.DeviceCommand;
+import com.datalogic.apossampleapp.scheduler.DeviceCommandScheduler;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.*;
+
+public class MetricsRegistryTest {
+    @Test
+    public void histogram_percentilesAreWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 100_000; i++)
+            histogram.record(i * 1000);
+
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(100_000_000, histogram.getMax());
+        assertEquals(50_000_500, histogram.getMean());
+        assertWithin(50_000_000, histogram.getPercentile(50));
+        assertWithin(99_000_000, histogram.getPercentile(99));
+        assertEquals(100_000_000, histogram.getPercentile(100));
+        assertEquals(0, new LatencyHistogram().getPercentile(99));
+    }
+
+    @Test
+    public void histogram_bucketsCoverEveryValue() {
+        Random random = new Random(3);
+        for (int i = 0; i < 100_000; i++) {
+            long value = (random.nextLong() >>> 1) >>> random.nextInt(63);
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(LatencyHistogram.highestValueOf(index) >= value);
+            assertTrue(index == 0 || LatencyHistogram.highestValueOf(index - 1) < value);
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValueOf(LatencyHistogram.indexOf(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void concurrentRecords_areAllCounted() throws InterruptedException {
+        MetricsRegistry registry = new MetricsRegistry();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    registry.operation("scanner", "onDataEvent").record(i);
+                    if (i % 10 == 0)
+                        registry.failed("scanner", "onDataEvent");
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        OperationMetrics metrics = registry.operation("scanner", "onDataEvent");
+        assertEquals(200_000, metrics.getCount());
+        assertEquals(200_000, metrics.getLatency().getCount());
+        assertEquals(20_000, metrics.getFailures());
+    }
+
+    @Test
+    public void schedulerCommands_areTimedByName() throws InterruptedException, IOException {
+        MetricsRegistry registry = new MetricsRegistry();
+        DeviceCommandScheduler scheduler = new DeviceCommandScheduler(2);
+        scheduler.addObserver(registry);
+        try {
+            scheduler.submit("DL-Scale", "open", () -> LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5)));
+            scheduler.submit("DL-Scale", "claim", () -> {
+                throw new IllegalStateException("not opened");
+            });
+            DeviceCommand last = scheduler.submit("DL-Scale", "claim", () -> { });
+            assertTrue(last.await(5, TimeUnit.SECONDS));
+        } finally {
+            scheduler.shutdown();
+        }
+        OperationMetrics open = registry.operation("DL-Scale", "open");
+        OperationMetrics claim = registry.operation("DL-Scale", "claim");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (claim.getCount() < 2 && System.nanoTime() < deadline)
+            Thread.sleep(1);
+
+        assertEquals(1, open.getCount());
+        assertTrue(open.getLatency().getMax() >= TimeUnit.MILLISECONDS.toNanos(5));
+        assertEquals(2, claim.getCount());
+        assertEquals(1, claim.getFailures());
+        assertEquals(2, claim.getQueueLatency().getCount());
+
+        StringWriter json = new StringWriter();
+        registry.writeJson(json, 42);
+        assertTrue(json.toString(), json.toString().startsWith("{\"timestamp\":42,\"devices\":{\"DL-Scale\":{\"claim\":{\"count\":2,\"failures\":1,\"latency\":{\"p50\":"));
+        assertTrue(json.toString().endsWith("}}}}"));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("Expected about " + expected + " got " + actual, Math.abs(actual - expected) <= expected / 16);
+    }
+}
@@ -0,0 +1,95 @@
+package com.datalogic.apossampleapp.profiles;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ProfileIdCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void cache_isReadBackOnlyForTheSameConfiguration() throws IOException {
+        ProfileIdCache cache = new ProfileIdCache(new File(folder.getRoot(), "profile_ids"));
+        String hash = hash("{\"profiles\":[]}");
+        assertNull(cache.read(hash));
+
+        cache.write(hash, Arrays.asList("DL-Gryphon-GD4590", "DL-Magellan-9800i"));
+
+        assertEquals(Arrays.asList("DL-Gryphon-GD4590", "DL-Magellan-9800i"), cache.read(hash));
+        assertEquals(hash, cache.readHash());
+        assertNull(cache.read(hash("{\"profiles\":[1]}")));
+        cache.delete();
+        assertNull(cache.read(hash));
+    }
+
+    @Test
+    public void hash_dependsOnContent() throws IOException {
+        assertEquals(64, hash("a").length());
+        assertEquals(hash("a"), hash("a"));
+        assertNotEquals(hash("a"), hash("b"));
+    }
+
+    @Test
+    public void warmRead_readsTheIdsFromAFileSmallerThanTheConfiguration() throws IOException {
+        StringBuilder json = new StringBuilder("[");
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            String id = "DL-Device-" + i;
+            ids.add(id);
+            json.append("{\"logicalName\":\"").append(id).append("\",\"vendorId\":").append(i).append("},");
+        }
+        json.append("]");
+        byte[] config = json.toString().getBytes(StandardCharsets.UTF_8);
+        File cacheFile = new File(folder.getRoot(), "profile_ids");
+        ProfileIdCache cache = new ProfileIdCache(cacheFile);
+
+        String hash = ProfileIdCache.hash(new ByteArrayInputStream(config));
+        cache.write(hash, ids);
+
+        assertEquals(ids, cache.read(hash));
+        // A warm launch reads the IDs alone instead of hashing and parsing the whole configuration.
+        assertTrue(cacheFile.length() + " bytes", cacheFile.length() < config.length / 2);
+    }
+
+    @Test
+    public void firstPage_isHandedOverBeforeTheRestIsRead() throws IOException {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++)
+            ids.add("DL-" + (i % 2 == 0 ? "PowerScan-PD9530-" : "Magellan-9800i-") + i);
+        ProfileIdCache cache = new ProfileIdCache(new File(folder.getRoot(), "profile_ids"));
+        String hash = hash("fleet");
+        cache.write(hash, ids);
+        assertNull(cache.read(hash("other"), 64, page -> fail("Paged a stale cache.")));
+
+        List<String> firstRows = new ArrayList<>();
+        ProfileIdCache.PageListener paint = page -> {
+            assertFalse(page.isComplete());
+            assertTrue(page.size() >= 64 && page.size() < ids.size());
+            for (int i = 0; i < 20; i++)
+                firstRows.add(page.get(i));
+        };
+        ProfileIdIndex index = cache.read(hash, 64, paint);
+
+        assertEquals(ids, cache.read(hash));
+        assertEquals(ids.subList(0, 20), firstRows);
+        assertTrue(index.isComplete());
+        assertEquals(ids.size(), index.size());
+        assertEquals(ids.get(9_999), index.get(9_999));
+        assertEquals(5_000, index.startingWith("dl-powerscan-*").size());
+    }
+
+    private static String hash(String content) throws IOException {
+        return ProfileIdCache.hash(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,54 @@
+package com.datalogic.apossampleapp.profiles;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ProfileIdIndexTest {
+    private static final List<String> IDS = Arrays.asList("DL-PowerScan-PD9530", "DL-Magellan-9800i",
+            "DL-PowerScan-PM9500", "DL-Gryphon-GD4500", "DL-PowerScan", "dl-powerscan-pbt9500", "DL-PowerScanner",
+            "DL-Gryphon-GD4590");
+
+    @Test
+    public void startingWith_findsAVendorAndModelIgnoringCase() {
+        ProfileIdIndex index = ProfileIdIndex.of(IDS);
+
+        assertEquals(Arrays.asList("DL-PowerScan-PD9530", "DL-PowerScan-PM9500", "dl-powerscan-pbt9500"),
+                toList(index.startingWith("DL-PowerScan-*")));
+        assertEquals(toList(index.startingWith("DL-PowerScan-")), toList(index.startingWith("dl-POWERSCAN-")));
+        assertEquals(5, index.startingWith("DL-PowerScan").size());
+        assertEquals(Arrays.asList("DL-Gryphon-GD4500", "DL-Gryphon-GD4590"), toList(index.startingWith("DL-G")));
+        assertEquals(0, index.startingWith("DL-Gryphon-GD4500-USB").size());
+        assertEquals(0, index.startingWith("Honeywell").size());
+        assertEquals(IDS, toList(index.startingWith("*")));
+        // Searched in all the IDs, not in the last result.
+        assertEquals(2, index.startingWith("DL-PowerScan-").startingWith("DL-Gryphon").size());
+    }
+
+    @Test
+    public void largeIndex_keepsTheOrderOfTheConfiguration() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 9_999; i >= 0; i--)
+            ids.add((i % 3 == 0 ? "DL-PowerScan-" : "DL-Magellan-") + i);
+        ProfileIdIndex index = ProfileIdIndex.of(ids);
+
+        assertEquals(ids, toList(index));
+        ProfileIdIndex powerScans = index.startingWith("DL-PowerScan-");
+        assertEquals(3334, powerScans.size());
+        // As unfiltered: a filter cleared or narrowed does not reorder the rows.
+        for (int i = 0; i < powerScans.size(); i++)
+            assertEquals("DL-PowerScan-" + (9_999 - 3 * i), powerScans.get(i));
+        assertEquals(1, index.startingWith("DL-Magellan-9998").size());
+    }
+
+    private static List<String> toList(ProfileIdIndex index) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < index.size(); i++)
+            ids.add(index.get(i));
+        return ids;
+    }
+}
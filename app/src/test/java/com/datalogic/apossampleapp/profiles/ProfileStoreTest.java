@@ -0,0 +1,102 @@
+package com.datalogic.apossampleapp.profiles;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ProfileStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void changedConfig_replacesTheProfilesAtTheFirstOpen_evenAfterALaunchWithoutOne() throws Exception {
+        File cacheFile = new File(folder.getRoot(), "profile_ids");
+        FakeDatabase database = new FakeDatabase();
+
+        // A launch that opens a device, then apos.json changes.
+        ProfileStore store = launch(database, cacheFile, "DL-A");
+        store.loadProfileIndex(1, null);
+        store.ensureInitialized();
+        store.cleanDatabase();
+        assertEquals(Arrays.asList("DL-A"), new ArrayList<>(database.profiles));
+
+        // Changed, closed without opening a device.
+        store = launch(database, cacheFile, "DL-B");
+        assertEquals("DL-B", store.loadProfileIndex(1, null).get(0));
+        assertFalse(store.isCacheCurrent());
+        store.cleanDatabase();
+
+        // Relaunched: the profiles of the previous apos.json go at the first open.
+        store = launch(database, cacheFile, "DL-B");
+        store.loadProfileIndex(1, null);
+        assertFalse(store.wasLastLoadWarm());
+        assertFalse(store.isCacheCurrent());
+        store.ensureInitialized();
+        assertTrue(store.isCacheCurrent());
+        assertEquals(Arrays.asList("DL-B"), new ArrayList<>(database.profiles));
+
+        store = launch(database, cacheFile, "DL-B");
+        store.loadProfileIndex(1, null);
+        assertTrue(store.wasLastLoadWarm());
+        assertTrue(store.isCacheCurrent());
+    }
+
+    /**
+     * @return the store of a new process, whose apos.json declares the logical names.
+     */
+    private static ProfileStore launch(FakeDatabase database, File cacheFile, String... logicalNames) {
+        StringBuilder config = new StringBuilder("{\"version\": \"1.0\", \"aPosEntries\": [");
+        for (int i = 0; i < logicalNames.length; i++)
+            config.append(i == 0 ? "" : ", ").append("{\"logicalName\": \"").append(logicalNames[i]).append("\"}");
+        byte[] bytes = config.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+        database.config = Arrays.asList(logicalNames);
+        database.initialized = false;
+        return new ProfileStore(fileName -> {
+            if (!fileName.equals("apos.json"))
+                throw new FileNotFoundException(fileName);
+            return new ByteArrayInputStream(bytes);
+        }, database, cacheFile);
+    }
+
+    /**
+     * Keeps its profiles across launches, and only adds those of apos.json when initialized.
+     */
+    private static class FakeDatabase implements ProfileStore.ProfileDatabase {
+        final Set<String> profiles = new LinkedHashSet<>();
+        List<String> config;
+        boolean initialized;
+
+        @Override
+        public boolean isInitialized() {
+            return initialized;
+        }
+
+        @Override
+        public void initialize() {
+            profiles.addAll(config);
+            initialized = true;
+        }
+
+        @Override
+        public void deleteAllProfiles() {
+            profiles.clear();
+        }
+
+        @Override
+        public List<String> getAllProfileIds() {
+            return new ArrayList<>(profiles);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.datalogic.apossampleapp.scan;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class DuplicateFilterTest {
+    private static final long MS = 1_000_000;
+    // 50k events per second: one read every 20 us.
+    private static final long EVENT_PERIOD_NANOS = 20_000;
+    private static final int EVENTS = 1_800_000;
+    private static final int PLANES = 3;
+
+    @Test
+    public void sameLabel_isSuppressedWithinTheWindowOfItsLastRead() {
+        DuplicateFilter filter = new DuplicateFilter(100, 16);
+        byte[] label = "8001234567895".getBytes(StandardCharsets.US_ASCII);
+
+        assertFalse(filter.isDuplicate(label, label.length, 104, 0));
+        assertTrue(filter.isDuplicate(label, label.length, 104, 60 * MS));
+        // The window restarts with every read: a label left in front of the scanner stays suppressed.
+        assertTrue(filter.isDuplicate(label, label.length, 104, 150 * MS));
+        assertFalse(filter.isDuplicate(label, label.length, 104, 250 * MS));
+        assertEquals(2, filter.getSuppressedCount());
+    }
+
+    @Test
+    public void symbologyAndLength_arePartOfTheKey() {
+        DuplicateFilter filter = new DuplicateFilter(100, 16);
+        byte[] label = "80012345678950".getBytes(StandardCharsets.US_ASCII);
+
+        assertFalse(filter.isDuplicate(label, 13, 104, 0));
+        assertFalse(filter.isDuplicate(label, 13, 110, 0));
+        assertFalse(filter.isDuplicate(label, 14, 104, 0));
+        assertTrue(filter.isDuplicate(label.clone(), 13, 104, MS));
+    }
+
+    @Test
+    public void expiredReads_makeRoomWithoutGrowing() {
+        DuplicateFilter filter = new DuplicateFilter(1, 64);
+        int capacity = filter.getCapacity();
+        byte[] label = new byte[8];
+        for (int i = 0; i < 100_000; i++) {
+            writeLabel(label, i);
+            assertFalse(filter.isDuplicate(label, label.length, 104, i * 100_000L));
+        }
+        assertEquals(capacity, filter.getCapacity());
+
+        // Ten thousand labels within one window do not fit, and each is still remembered.
+        DuplicateFilter busy = new DuplicateFilter(1000, 64);
+        for (int i = 0; i < 10_000; i++) {
+            writeLabel(label, i);
+            assertFalse(busy.isDuplicate(label, label.length, 104, i));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            writeLabel(label, i);
+            assertTrue(busy.isDuplicate(label, label.length, 104, 10_000 + i));
+        }
+        assertTrue(busy.getCapacity() >= 20_000);
+    }
+
+    @Test
+    public void multiPlaneReads_at50kEventsPerSecond_doNotAllocate() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled());
+
+        // A new item every 60 us, seen by three planes, with reads remembered for 50 ms: about 830 live labels.
+        DuplicateFilter filter = new DuplicateFilter(50, 1024);
+        byte[] label = new byte[13];
+        run(filter, label, 0);
+        int capacity = filter.getCapacity();
+        long suppressedBefore = filter.getSuppressedCount();
+
+        long threadId = Thread.currentThread().getId();
+        long bytes = allocations.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        int published = run(filter, label, EVENTS);
+        long elapsed = System.nanoTime() - start;
+        bytes = allocations.getThreadAllocatedBytes(threadId) - bytes;
+
+        assertEquals(EVENTS / PLANES, published);
+        assertEquals(EVENTS - published, filter.getSuppressedCount() - suppressedBefore);
+        assertEquals(capacity, filter.getCapacity());
+        assertTrue("Allocated " + bytes + " bytes", bytes < 1024);
+        double eventsPerSecond = EVENTS / (elapsed / 1e9);
+        assertTrue(eventsPerSecond > 50_000);
+    }
+
+    /**
+     * @return the number of reads published.
+     */
+    private static int run(DuplicateFilter filter, byte[] label, int start) {
+        int published = 0;
+        for (int i = start; i < start + EVENTS; i++) {
+            writeLabel(label, i / PLANES);
+            if (!filter.isDuplicate(label, label.length, 104, i * EVENT_PERIOD_NANOS))
+                published++;
+        }
+        return published;
+    }
+
+    private static void writeLabel(byte[] label, int item) {
+        for (int i = label.length - 1; i >= 0; i--) {
+            label[i] = (byte) ('0' + item % 10);
+            item /= 10;
+        }
+    }
+}
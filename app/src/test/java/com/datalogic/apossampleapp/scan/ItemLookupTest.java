@@ -0,0 +1,165 @@
+package com.datalogic.apossampleapp.scan;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class ItemLookupTest {
+    private static final int CATALOG = 500_000;
+    private static final int LOOKUPS = 100_000;
+    private static final int HOT_ITEMS = 1000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void barcodes_resolveToTheirItems() throws IOException {
+        File file = folder.newFile("items.idx");
+        ItemIndex.build(file, Arrays.asList(
+                new Item("4006381333931", "Pencil", 199),
+                new Item("042100005264", "Cereals", 349),
+                new Item("4006381333931", "Pencil HB", 209),
+                new Item("9780201379624", "Book \u00e9dition", 4500)));
+        ItemIndex index = new ItemIndex(file);
+        assertEquals(3, index.getItemCount());
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+
+        ItemLookup lookup = new ItemLookup(index, 16);
+        Item pencil = lookup.lookup(bytes("@4006381333931"), 1, 13);
+        assertEquals("4006381333931", pencil.getBarcode());
+        assertEquals("Pencil HB", pencil.getDescription());
+        assertEquals(209, pencil.getPriceCents());
+        assertEquals("Book \u00e9dition", lookup.lookup(bytes("9780201379624"), 0, 13).getDescription());
+        assertNull(lookup.lookup(bytes("4006381333932"), 0, 13));
+        assertNull(lookup.lookup(bytes("400638133393"), 0, 12));
+        assertSame(pencil, lookup.lookup(bytes("4006381333931"), 0, 13));
+        assertEquals(1, lookup.getHitCount());
+        assertEquals(4, lookup.getMissCount());
+        assertEquals(2, lookup.getUnknownCount());
+    }
+
+    @Test
+    public void leastRecentlyScannedItem_leavesTheCache() throws IOException {
+        File file = folder.newFile("items.idx");
+        ItemIndex.build(file, catalog(100));
+        ItemLookup lookup = new ItemLookup(new ItemIndex(file), 3);
+
+        lookup(lookup, 0);
+        lookup(lookup, 1);
+        lookup(lookup, 2);
+        lookup(lookup, 0);
+        lookup(lookup, 3);
+        assertEquals(4, lookup.getMissCount());
+        assertEquals(3, lookup.getSize());
+
+        lookup(lookup, 0);
+        lookup(lookup, 2);
+        lookup(lookup, 3);
+        assertEquals(4, lookup.getMissCount());
+        lookup(lookup, 1);
+        assertEquals(5, lookup.getMissCount());
+        // 0 was the least recently scanned.
+        lookup(lookup, 2);
+        lookup(lookup, 0);
+        assertEquals(6, lookup.getMissCount());
+    }
+
+    @Test
+    public void scans_arePublishedWithTheirItem() throws IOException {
+        File file = folder.newFile("items.idx");
+        ItemIndex.build(file, Arrays.asList(new Item("4006381333931", "Pencil", 199)));
+        ScanPipeline pipeline = new ScanPipeline(new SymbologyTable(new int[]{104}, new String[]{"EAN-13"}),
+                new ScanRecordPool(4, 32));
+        pipeline.setLabelPipeline(new LabelPipeline(Arrays.asList(LabelStages.stripPrefix(bytes("@")))));
+        pipeline.setItemLookup(new ItemLookup(new ItemIndex(file), 16));
+
+        byte[] label = bytes("@4006381333931");
+        ScanRecord record = pipeline.process(label, label.length, 104);
+        assertEquals("4006381333931", record.getLabelText());
+        assertEquals("EAN-13", record.getSymbologyName());
+        assertEquals("Pencil", record.getItem().getDescription());
+        record.recycle();
+        label = bytes("5901234123457");
+        assertNull(pipeline.process(label, label.length, 104).getItem());
+    }
+
+    @Test
+    public void warmLookups_areFasterThanColdOnesAndDoNotAllocate() throws IOException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled());
+
+        File file = folder.newFile("items.idx");
+        ItemIndex.build(file, catalog(CATALOG));
+        ItemLookup lookup = new ItemLookup(new ItemIndex(file), 4096);
+        Random random = new Random(42);
+        byte[][] cold = new byte[LOOKUPS][];
+        for (int i = 0; i < LOOKUPS; i++)
+            cold[i] = barcode(random.nextInt(CATALOG));
+        byte[][] hot = new byte[HOT_ITEMS][];
+        for (int i = 0; i < HOT_ITEMS; i++)
+            hot[i] = barcode(random.nextInt(CATALOG));
+
+        long[] coldLatencies = time(lookup, cold);
+        time(lookup, hot);
+        long[] warmLatencies = new long[LOOKUPS];
+        long threadId = Thread.currentThread().getId();
+        long before = allocations.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < LOOKUPS; i++) {
+            byte[] barcode = hot[i % HOT_ITEMS];
+            long start = System.nanoTime();
+            lookup.lookup(barcode, 0, barcode.length);
+            warmLatencies[i] = System.nanoTime() - start;
+        }
+        long bytes = allocations.getThreadAllocatedBytes(threadId) - before;
+
+        Arrays.sort(coldLatencies);
+        Arrays.sort(warmLatencies);
+        assertTrue("Allocated " + bytes + " bytes", bytes < LOOKUPS / 10);
+        assertTrue(warmLatencies[LOOKUPS / 2] <= coldLatencies[LOOKUPS / 2]);
+    }
+
+    private static long[] time(ItemLookup lookup, byte[][] barcodes) {
+        long[] latencies = new long[barcodes.length];
+        for (int i = 0; i < barcodes.length; i++) {
+            long start = System.nanoTime();
+            assertNotNull(lookup.lookup(barcodes[i], 0, barcodes[i].length));
+            latencies[i] = System.nanoTime() - start;
+        }
+        return latencies;
+    }
+
+    private static void lookup(ItemLookup lookup, int item) {
+        byte[] barcode = barcode(item);
+        assertEquals("Item " + item, lookup.lookup(barcode, 0, barcode.length).getDescription());
+    }
+
+    private static List<Item> catalog(int size) {
+        List<Item> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            items.add(new Item(new String(barcode(i), StandardCharsets.US_ASCII), "Item " + i, i));
+        return items;
+    }
+
+    private static byte[] barcode(int item) {
+        return bytes(String.format("%013d", 8001234000000L + item * 7919L));
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,154 @@
+package com.datalogic.apossampleapp.scan;
+
+import com.datalogic.apossampleapp.config.AposConfigLoader;
+import com.datalogic.apossampleapp.config.AposEntry;
+
+import org.junit.Test;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class LabelPipelineTest {
+    private static final int EVENTS = 100_000;
+    private static final SymbologyTable TABLE = new SymbologyTable(
+            new int[]{LabelStages.UPCA, LabelStages.UPCE, LabelStages.EAN13, LabelStages.EAN128},
+            new String[]{"UPC-A", "UPC-E", "EAN-13", "GS1-128"});
+
+    private final LabelPipeline all = new LabelPipeline(Arrays.asList(
+            LabelStages.stripPrefix(bytes("@")),
+            LabelStages.stripSuffix(bytes("\r")),
+            LabelStages.expandUpcE(),
+            LabelStages.gs1(),
+            LabelStages.checkDigit()));
+
+    @Test
+    public void upcE_isExpandedToUpcA() {
+        ScanRecord record = process(all, "@04252614\r", LabelStages.UPCE);
+
+        assertEquals("042100005264", record.getLabelText());
+        assertEquals(LabelStages.UPCA, record.getSymbology());
+        assertEquals("UPC-A", record.getSymbologyName());
+        // Without number system and check digit, the check digit is computed.
+        assertEquals("042100005264", process(all, "425261", LabelStages.UPCE).getLabelText());
+        assertEquals("042100005264", process(all, "0425261", LabelStages.UPCE).getLabelText());
+    }
+
+    @Test
+    public void wrongCheckDigits_areDropped() {
+        assertEquals("4006381333931", process(all, "4006381333931", LabelStages.EAN13).getLabelText());
+        assertNull(process(all, "4006381333932", LabelStages.EAN13));
+        assertNull(process(all, "04252615", LabelStages.UPCE));
+        assertNull(process(all, "]C10109501101530004", LabelStages.EAN128));
+        assertEquals(3, all.getRejectedCount());
+    }
+
+    @Test
+    public void gs1ElementStrings_areParsed() {
+        ScanRecord record = process(all, "]C1010950110153000317140704" + "10AB-123\u001d3103000150", LabelStages.EAN128);
+
+        assertEquals(4, record.getElementCount());
+        String[] ais = {"01", "17", "10", "3103"};
+        String[] values = {"09501101530003", "140704", "AB-123", "000150"};
+        for (int i = 0; i < ais.length; i++) {
+            assertEquals(ais[i], record.getApplicationIdentifier(i));
+            assertEquals(values[i], record.getElementValue(i));
+        }
+        assertTrue(record.getLabelText().startsWith("0109501101530003"));
+
+        // Not GS1 data: published as read.
+        ScanRecord text = process(all, "]C0HELLO", LabelStages.EAN128);
+        assertEquals(0, text.getElementCount());
+        assertEquals("]C0HELLO", text.getLabelText());
+        assertEquals(0, process(all, "99", LabelStages.EAN128).getElementCount());
+    }
+
+    @Test
+    public void shippedStages_checkTheGs1KeysOnceParsed() throws IOException {
+        AposEntry entry;
+        // Unit tests run from the module directory.
+        try (Reader reader = new InputStreamReader(new FileInputStream("src/main/assets/apos.json"),
+                StandardCharsets.UTF_8)) {
+            entry = new AposConfigLoader().load(reader, "DL-Magellan-9800i-USB-OEM-Scanner-Scale");
+        }
+        LabelPipeline shipped = LabelPipeline.fromProperties(entry.getProperties());
+
+        assertEquals(2, process(shipped, "]C1010950110153000317140704", LabelStages.EAN128).getElementCount());
+        assertNull(process(shipped, "]C1010950110153000417140704", LabelStages.EAN128));
+        assertNull(process(shipped, "04252615", LabelStages.UPCE));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void checkDigitBeforeGs1_isRejected() throws IOException {
+        String config = "{\"aPosEntries\": [{\"logicalName\": \"x\", \"properties\": [{\"name\": \"labelStages\","
+                + " \"type\": \"String\", \"value\": \"expandUpcE,checkDigit,gs1\"}]}]}";
+        AposEntry entry = new AposConfigLoader().load(new StringReader(config), "x");
+
+        LabelPipeline.fromProperties(entry.getProperties());
+    }
+
+    @Test
+    public void stages_areSelectedBySymbologyOnce() {
+        assertEquals(3, all.getStageCount(LabelStages.EAN13));
+        assertEquals(4, all.getStageCount(LabelStages.UPCE));
+        assertEquals(4, all.getStageCount(LabelStages.EAN128));
+        assertEquals(2, all.getStageCount(108));
+        assertEquals(2, all.getStageCount(100_000));
+        assertEquals(0, new LabelPipeline(Collections.emptyList()).getStageCount(LabelStages.EAN13));
+    }
+
+    @Test
+    public void steadyState_doesNotAllocatePerScan() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled());
+
+        byte[][] labels = {bytes("@04252614\r"), bytes("4006381333931"),
+                bytes("]C1010950110153000317140704" + "10AB-123\u001d3103000150")};
+        int[] types = {LabelStages.UPCE, LabelStages.EAN13, LabelStages.EAN128};
+        ScanPipeline pipeline = new ScanPipeline(TABLE, new ScanRecordPool(16, 32));
+        pipeline.setLabelPipeline(all);
+
+        long checksum = run(pipeline, labels, types);
+        long threadId = Thread.currentThread().getId();
+        long before = allocations.getThreadAllocatedBytes(threadId);
+        checksum += run(pipeline, labels, types);
+        long bytes = allocations.getThreadAllocatedBytes(threadId) - before;
+
+        assertNotEquals(0, checksum);
+        assertTrue("Allocated " + bytes + " bytes", bytes < EVENTS / 10);
+    }
+
+    private static long run(ScanPipeline pipeline, byte[][] labels, int[] types) {
+        long checksum = 0;
+        for (int i = 0; i < EVENTS; i++) {
+            byte[] label = labels[i % labels.length];
+            ScanRecord record = pipeline.process(label, label.length, types[i % types.length]);
+            checksum += record.getLabelLength() + record.getElementCount() + record.getSymbology();
+            record.recycle();
+        }
+        return checksum;
+    }
+
+    private static ScanRecord process(LabelPipeline labels, String label, int symbology) {
+        ScanPipeline pipeline = new ScanPipeline(TABLE, new ScanRecordPool(4, 4));
+        pipeline.setLabelPipeline(labels);
+        byte[] bytes = bytes(label);
+        return pipeline.process(bytes, bytes.length, symbology);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
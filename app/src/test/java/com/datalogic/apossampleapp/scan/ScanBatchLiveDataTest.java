@@ -0,0 +1,80 @@
+package com.datalogic.apossampleapp.scan;
+
+import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
+import androidx.lifecycle.Observer;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ScanBatchLiveDataTest {
+    private static final SymbologyTable TABLE = new SymbologyTable(new int[]{110}, new String[]{"Code 128"});
+
+    @Rule
+    public InstantTaskExecutorRule mainThread = new InstantTaskExecutorRule();
+
+    private final ScanPipeline pipeline = new ScanPipeline(TABLE, new ScanRecordPool(16, 16));
+
+    @Test
+    public void batchesSetWhileUnobserved_areShownOnceAnObserverReceivesThem() {
+        List<Integer> shown = new ArrayList<>();
+        ScanBatchLiveData scans = new ScanBatchLiveData(16, batch -> shown.add(batch.size()));
+        scans.setValue(batch("A1"));
+        scans.setValue(batch("A2"));
+        assertTrue(shown.isEmpty());
+        assertEquals(0, scans.getShownCount());
+
+        List<String> received = new ArrayList<>();
+        Observer<List<ScanRecord>> screen = batch -> {
+            for (ScanRecord record : batch)
+                received.add(record.getLabelText());
+        };
+        scans.observeForever(screen);
+        assertEquals(Arrays.asList("A1", "A2"), received);
+        assertEquals(Collections.singletonList(2), shown);
+        assertEquals(2, scans.getShownCount());
+
+        // The screen of a recreated activity receives the batch again, which was shown already.
+        scans.removeObserver(screen);
+        scans.observeForever(screen);
+        assertEquals(Collections.singletonList(2), shown);
+        assertEquals(2, scans.getShownCount());
+
+        scans.setValue(batch("A3"));
+        assertEquals(Arrays.asList(2, 1), shown);
+        assertEquals("A3", received.get(received.size() - 1));
+        scans.removeObserver(screen);
+    }
+
+    @Test
+    public void scansSetWhileUnobserved_keepOnlyTheNewestBeyondTheMaximum() {
+        ScanBatchLiveData scans = new ScanBatchLiveData(3, null);
+        for (int i = 1; i <= 10; i++)
+            scans.setValue(batch("A" + i));
+        assertEquals(7, scans.getDroppedCount());
+
+        List<String> received = new ArrayList<>();
+        Observer<List<ScanRecord>> screen = batch -> {
+            for (ScanRecord record : batch)
+                received.add(record.getLabelText());
+        };
+        scans.observeForever(screen);
+        assertEquals(Arrays.asList("A8", "A9", "A10"), received);
+        assertEquals(3, scans.getShownCount());
+        scans.removeObserver(screen);
+    }
+
+    private List<ScanRecord> batch(String label) {
+        byte[] bytes = label.getBytes(StandardCharsets.US_ASCII);
+        List<ScanRecord> batch = new ArrayList<>();
+        batch.add(pipeline.process(bytes, bytes.length, 110));
+        return batch;
+    }
+}
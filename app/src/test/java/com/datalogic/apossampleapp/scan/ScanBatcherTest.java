@@ -0,0 +1,109 @@
+package com.datalogic.apossampleapp.scan;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.*;
+
+public class ScanBatcherTest {
+    private static final SymbologyTable TABLE = new SymbologyTable(new int[]{110}, new String[]{"Code 128"});
+
+    private ScheduledExecutorService mainThread;
+
+    @Before
+    public void setUp() {
+        mainThread = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        mainThread.shutdownNow();
+    }
+
+    @Test
+    public void ringBuffer_isBoundedAndFifo() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(3);
+        assertEquals(4, buffer.capacity());
+        for (int i = 0; i < 4; i++)
+            assertTrue(buffer.offer(i));
+        assertFalse(buffer.offer(4));
+        assertEquals(0, (int) buffer.poll());
+        assertTrue(buffer.offer(4));
+        for (int i = 1; i <= 4; i++)
+            assertEquals(i, (int) buffer.poll());
+        assertNull(buffer.poll());
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void burstOfTenThousandScansInOneSecond_isDeliveredInFull() throws InterruptedException {
+        final int producers = 2;
+        final int scansPerProducer = 5_000;
+        final int maxBatchSize = 128;
+        final List<List<ScanRecord>> batches = new ArrayList<>();
+        final List<String> delivered = new ArrayList<>();
+        ScanBatcher batcher = new ScanBatcher(256, maxBatchSize, 16,
+                (task, delay) -> mainThread.schedule(task, delay, TimeUnit.MILLISECONDS),
+                batch -> {
+                    batches.add(batch);
+                    for (ScanRecord record : batch)
+                        delivered.add(record.getLabelText());
+                });
+        ScanRecordPool pool = new ScanRecordPool(256, 16);
+
+        // Two scanners, each with the pipeline its event thread calls alone.
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            final ScanPipeline pipeline = new ScanPipeline(TABLE, pool);
+            threads[p] = new Thread(() -> {
+                long interval = TimeUnit.SECONDS.toNanos(1) / scansPerProducer;
+                long next = System.nanoTime();
+                for (int i = 0; i < scansPerProducer; i++) {
+                    byte[] label = (producer + ":" + i).getBytes(StandardCharsets.UTF_8);
+                    batcher.publish(pipeline.process(label, label.length, 110));
+                    next += interval;
+                    LockSupport.parkNanos(next - System.nanoTime());
+                }
+            });
+            threads[p].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (copyOnMainThread(delivered).size() < producers * scansPerProducer && System.nanoTime() < deadline)
+            Thread.sleep(10);
+
+        List<String> scans = copyOnMainThread(delivered);
+        assertEquals(producers * scansPerProducer, scans.size());
+        int[] nextExpected = new int[producers];
+        for (String scan : scans) {
+            int separator = scan.indexOf(':');
+            int producer = Integer.parseInt(scan.substring(0, separator));
+            assertEquals(nextExpected[producer]++, Integer.parseInt(scan.substring(separator + 1)));
+        }
+        List<List<ScanRecord>> delivery = copyOnMainThread(batches);
+        for (List<ScanRecord> batch : delivery)
+            assertTrue(batch.size() <= maxBatchSize);
+        // Batched, not one main-thread call per scan.
+        assertTrue(delivery.size() < scans.size());
+    }
+
+    private <T> List<T> copyOnMainThread(List<T> list) throws InterruptedException {
+        try {
+            return mainThread.submit(() -> new ArrayList<>(list)).get();
+        } catch (ExecutionException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.datalogic.apossampleapp.scan;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ScanJournalTest {
+    private static final int APPENDS = 200_000;
+    private static final int BATCH = 256;
+    private static final SymbologyTable TABLE = new SymbologyTable(new int[]{104, 120}, new String[]{"EAN-13", "GS1-128"});
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ScanRecordPool pool = new ScanRecordPool(16, 64);
+
+    @Test
+    public void scansNotAcknowledged_areReplayedOnRestart() throws IOException {
+        File file = folder.newFile("scans.journal");
+        try (ScanJournal journal = new ScanJournal(file, 4096, 10)) {
+            assertEquals(1, journal.append(scan("4006381333931", 104), 1000));
+            assertEquals(2, journal.append(scan("]C10109501101530003", 120), 1001));
+            assertEquals(3, journal.append(scan("4006381333931", 104), 1002));
+            journal.acknowledge(1);
+        }
+
+        try (ScanJournal journal = new ScanJournal(file, 4096, 10)) {
+            List<String> replayed = replay(journal);
+            assertEquals(Arrays.asList("2 GS1-128 ]C10109501101530003 1001", "3 EAN-13 4006381333931 1002"), replayed);
+            assertEquals(2, journal.getPendingCount());
+            assertEquals(4, journal.append(scan("1", 104), 1003));
+            journal.flush();
+            assertEquals(4, journal.getDurableSequence());
+        }
+    }
+
+    @Test
+    public void tornRecord_endsTheJournal() throws IOException {
+        File file = folder.newFile("scans.journal");
+        try (ScanJournal journal = new ScanJournal(file, 4096, 10)) {
+            journal.append(scan("AAAA", 104), 1);
+            journal.append(scan("BBBB", 104), 2);
+            journal.append(scan("CCCC", 104), 3);
+        }
+        // The last label half written when the app died.
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(32 + 2 * (8 + 20 + 4) + 8 + 20 + 2);
+            raf.write('X');
+        }
+
+        try (ScanJournal journal = new ScanJournal(file, 4096, 10)) {
+            assertEquals(Arrays.asList("1 EAN-13 AAAA 1", "2 EAN-13 BBBB 2"), replay(journal));
+            assertEquals(3, journal.append(scan("DDDD", 104), 4));
+        }
+        try (ScanJournal journal = new ScanJournal(file, 4096, 10)) {
+            assertEquals(Arrays.asList("1 EAN-13 AAAA 1", "2 EAN-13 BBBB 2", "3 EAN-13 DDDD 4"), replay(journal));
+        }
+    }
+
+    @Test
+    public void acknowledgedJournal_startsOverWithoutReplayingOlderScans() throws IOException {
+        File file = folder.newFile("scans.journal");
+        try (ScanJournal journal = new ScanJournal(file, 4096, 10)) {
+            for (int i = 1; i <= 5; i++)
+                journal.append(scan("LABEL" + i, 104), i);
+            journal.acknowledge(5);
+            // Written over the first scan, the older ones still follow it in the file.
+            journal.append(scan("NEW", 104), 6);
+        }
+
+        try (ScanJournal journal = new ScanJournal(file, 4096, 10)) {
+            assertEquals(Arrays.asList("6 EAN-13 NEW 6"), replay(journal));
+            assertEquals(7, journal.append(scan("NEXT", 104), 7));
+        }
+    }
+
+    @Test
+    public void fullJournal_isCompactedAndGrowsOnlyForPendingScans() throws IOException {
+        File file = folder.newFile("scans.journal");
+        try (ScanJournal journal = new ScanJournal(file, 4096, 10)) {
+            // Delivery lags ten scans behind.
+            for (int i = 1; i <= 10_000; i++) {
+                journal.append(scan("4006381333931", 104), i);
+                journal.acknowledge(i - 10);
+            }
+            assertTrue(journal.getCompactionCount() > 0);
+            assertEquals(4096, journal.getCapacity());
+
+            for (int i = 10_001; i <= 10_500; i++)
+                journal.append(scan("4006381333931", 104), i);
+            assertTrue(journal.getCapacity() > 4096);
+        }
+
+        try (ScanJournal journal = new ScanJournal(file, 4096, 10)) {
+            List<String> replayed = replay(journal);
+            assertEquals(510, replayed.size());
+            assertEquals("9991 EAN-13 4006381333931 9991", replayed.get(0));
+            assertEquals("10500 EAN-13 4006381333931 10500", replayed.get(509));
+        }
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void append_addsLittleToTheScanPath() throws IOException {
+        File file = folder.newFile("scans.journal");
+        ScanRecord record = scan("]C1010950110153000317140704" + "10AB-123", 120);
+        long[] latencies = new long[APPENDS];
+        try (ScanJournal journal = new ScanJournal(file, 1 << 20, 10)) {
+            for (int round = 0; round < 2; round++) {
+                for (int i = 0; i < APPENDS; i++) {
+                    long start = System.nanoTime();
+                    long sequence = journal.append(record, i);
+                    latencies[i] = System.nanoTime() - start;
+                    // As the screen does once a batch is shown.
+                    if (i % BATCH == BATCH - 1)
+                        journal.acknowledge(sequence);
+                }
+            }
+            Arrays.sort(latencies);
+            long p99 = latencies[APPENDS * 99 / 100];
+            assertTrue("p99 of " + p99 + " ns", p99 < 50_000);
+        }
+    }
+
+    private List<String> replay(ScanJournal journal) {
+        List<String> replayed = new ArrayList<>();
+        journal.replay(pool, TABLE, (record, timeMillis) -> {
+            replayed.add(record.getJournalSequence() + " " + record.getSymbologyName() + " " + record.getLabelText()
+                    + " " + timeMillis);
+            record.recycle();
+        });
+        return replayed;
+    }
+
+    private ScanRecord scan(String label, int symbology) {
+        byte[] bytes = label.getBytes(StandardCharsets.US_ASCII);
+        return pool.obtain(bytes, bytes.length, symbology, TABLE.nameOf(symbology), System.nanoTime());
+    }
+}
@@ -0,0 +1,97 @@
+package com.datalogic.apossampleapp.scan;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class ScanPipelineTest {
+    private static final int EVENTS = 100_000;
+    private static final SymbologyTable TABLE = new SymbologyTable(new int[]{101, 104, 110}, new String[]{"UPC-A", "EAN-13", "Code 128"});
+
+    @Test
+    public void process_copiesLabelAndResolvesSymbology() {
+        ScanPipeline pipeline = new ScanPipeline(TABLE, new ScanRecordPool(4, 4));
+        byte[] label = "8001234567895".getBytes(StandardCharsets.UTF_8);
+
+        ScanRecord record = pipeline.process(label, label.length, 104);
+        label[0] = '0';
+
+        assertEquals("8001234567895", record.getLabelText());
+        assertEquals(13, record.getLabelLength());
+        assertEquals(104, record.getSymbology());
+        assertEquals("EAN-13", record.getSymbologyName());
+        assertEquals("999", TABLE.nameOf(999));
+        assertSame(TABLE.nameOf(42), TABLE.nameOf(42));
+    }
+
+    @Test
+    public void recycledRecords_areReused() {
+        ScanRecordPool pool = new ScanRecordPool(2, 16);
+        ScanPipeline pipeline = new ScanPipeline(TABLE, pool);
+        byte[] label = "012345678905".getBytes(StandardCharsets.UTF_8);
+
+        ScanRecord first = pipeline.process(label, label.length, 101);
+        first.recycle();
+        first.recycle();
+        ScanRecord second = pipeline.process(label, label.length, 110);
+        ScanRecord third = pipeline.process(label, label.length, 110);
+
+        assertSame(first, second);
+        assertNotSame(second, third);
+        assertEquals(2, pool.getCreatedCount());
+    }
+
+    @Test
+    public void steadyState_doesNotAllocatePerScan() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled());
+
+        byte[][] labels = new byte[64][];
+        int[] types = {101, 104, 110, 999};
+        for (int i = 0; i < labels.length; i++)
+            labels[i] = ("80012345" + (10000 + i)).getBytes(StandardCharsets.UTF_8);
+        ScanPipeline pipeline = new ScanPipeline(TABLE, new ScanRecordPool(16, 32));
+
+        long checksum = run(pipeline, labels, types);
+        long threadId = Thread.currentThread().getId();
+        long before = allocations.getThreadAllocatedBytes(threadId);
+        checksum += run(pipeline, labels, types);
+        long pooledBytes = allocations.getThreadAllocatedBytes(threadId) - before;
+
+        before = allocations.getThreadAllocatedBytes(threadId);
+        checksum += runStringBased(labels, types);
+        long stringBytes = allocations.getThreadAllocatedBytes(threadId) - before;
+
+        assertNotEquals(0, checksum);
+        assertTrue("Pooled path allocated " + pooledBytes + " bytes", pooledBytes < EVENTS / 10);
+        assertTrue(pooledBytes < stringBytes);
+    }
+
+    private static long run(ScanPipeline pipeline, byte[][] labels, int[] types) {
+        long checksum = 0;
+        for (int i = 0; i < EVENTS; i++) {
+            byte[] label = labels[i % labels.length];
+            ScanRecord record = pipeline.process(label, label.length, types[i % types.length]);
+            checksum += record.getLabelBuffer()[record.getLabelLength() - 1] + record.getSymbologyName().length();
+            record.recycle();
+        }
+        return checksum;
+    }
+
+    private static long runStringBased(byte[][] labels, int[] types) {
+        long checksum = 0;
+        for (int i = 0; i < EVENTS; i++) {
+            String content = new String(labels[i % labels.length], StandardCharsets.UTF_8);
+            String symbology = "" + types[i % types.length];
+            checksum += content.length() + symbology.length();
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,204 @@
+package com.datalogic.apossampleapp.scheduler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class DeviceCommandSchedulerTest {
+    private static final int THREADS = 4;
+    private DeviceCommandScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = new DeviceCommandScheduler(THREADS);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void burst_keepsPerDeviceOrderAndBoundedThreads() throws InterruptedException {
+        final int devices = 8;
+        final int commandsPerDevice = 2000;
+        final List<List<Integer>> executed = new ArrayList<>();
+        for (int d = 0; d < devices; d++)
+            executed.add(new ArrayList<>());
+        final DeviceCommand[] commands = new DeviceCommand[devices * commandsPerDevice];
+
+        for (int i = 0; i < commandsPerDevice; i++) {
+            for (int d = 0; d < devices; d++) {
+                final int device = d;
+                final int sequence = i;
+                commands[i * devices + d] = scheduler.submit("device-" + d, "command", () -> executed.get(device).add(sequence));
+            }
+        }
+        for (DeviceCommand command : commands)
+            assertTrue(command.await(10, TimeUnit.SECONDS));
+
+        for (List<Integer> sequences : executed) {
+            assertEquals(commandsPerDevice, sequences.size());
+            for (int i = 0; i < commandsPerDevice; i++)
+                assertEquals(i, (int) sequences.get(i));
+        }
+        assertTrue(scheduler.getCreatedThreadCount() <= THREADS);
+        for (DeviceCommand command : commands)
+            assertTrue(command.getQueueLatencyNanos() >= 0);
+    }
+
+    @Test
+    public void commandAfterACoalescedBurst_waitsForASingleRunOfIt() throws InterruptedException {
+        CountDownLatch gate = new CountDownLatch(1);
+        AtomicInteger enables = new AtomicInteger();
+        AtomicInteger enablesBeforeRead = new AtomicInteger(-1);
+        scheduler.submit("scanner", "open", () -> awaitQuietly(gate));
+        // Run one by one, the burst would hold the lane for 5 seconds.
+        for (int i = 0; i < 1000; i++) {
+            scheduler.submitCoalescing("scanner", "enable", () -> {
+                enables.incrementAndGet();
+                sleepQuietly(5);
+            });
+        }
+        long submitted = System.nanoTime();
+        DeviceCommand read = scheduler.submit("scanner", "read", () -> enablesBeforeRead.set(enables.get()));
+
+        long released = System.nanoTime();
+        gate.countDown();
+        assertTrue(read.await(5, TimeUnit.SECONDS));
+        assertEquals(1, enablesBeforeRead.get());
+        long waitedAfterRelease = submitted + read.getQueueLatencyNanos() - released;
+        assertTrue("Waited " + waitedAfterRelease + " ns", waitedAfterRelease < TimeUnit.MILLISECONDS.toNanos(500));
+    }
+
+    @Test
+    public void repeatedCommands_areCoalesced() throws InterruptedException {
+        CountDownLatch gate = new CountDownLatch(1);
+        AtomicInteger enables = new AtomicInteger();
+        scheduler.submit("scanner", "open", () -> awaitQuietly(gate));
+
+        DeviceCommand first = scheduler.submitCoalescing("scanner", "enable", enables::incrementAndGet);
+        for (int i = 0; i < 10; i++)
+            assertSame(first, scheduler.submitCoalescing("scanner", "enable", enables::incrementAndGet));
+        DeviceCommand disable = scheduler.submitCoalescing("scanner", "disable", () -> { });
+        DeviceCommand second = scheduler.submitCoalescing("scanner", "enable", enables::incrementAndGet);
+        assertNotSame(first, second);
+
+        gate.countDown();
+        assertTrue(second.await(5, TimeUnit.SECONDS));
+        assertTrue(disable.isDone());
+        assertEquals(2, enables.get());
+    }
+
+    @Test
+    public void pendingCommands_canBeCancelled() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        DeviceCommand blocking = scheduler.submit("scale", "open", () -> {
+            started.countDown();
+            awaitQuietly(gate);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        DeviceCommand claim = scheduler.submit("scale", "claim", runs::incrementAndGet);
+        DeviceCommand enable = scheduler.submit("scale", "enable", runs::incrementAndGet);
+
+        assertTrue(claim.cancel());
+        assertEquals(1, scheduler.cancelPending("scale"));
+        gate.countDown();
+        assertTrue(blocking.await(5, TimeUnit.SECONDS));
+        DeviceCommand close = scheduler.submit("scale", "close", runs::incrementAndGet);
+        assertTrue(close.await(5, TimeUnit.SECONDS));
+
+        assertTrue(claim.isCancelled());
+        assertTrue(enable.isCancelled());
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void failingCommand_doesNotStallQueue() throws InterruptedException {
+        DeviceCommand failing = scheduler.submit("scanner", "claim", () -> {
+            throw new IllegalStateException("not opened");
+        });
+        DeviceCommand next = scheduler.submit("scanner", "close", () -> { });
+        assertTrue(next.await(5, TimeUnit.SECONDS));
+        assertTrue(failing.getFailure() instanceof IllegalStateException);
+    }
+
+    @Test
+    public void commandThrowingAnError_doesNotStallQueue() throws InterruptedException {
+        DeviceCommand failing = scheduler.submit("scanner", "claim", () -> {
+            throw new AssertionError("driver bug");
+        });
+        DeviceCommand next = scheduler.submit("scanner", "close", () -> { });
+        assertTrue(next.await(5, TimeUnit.SECONDS));
+        assertTrue(failing.isDone());
+    }
+
+    @Test
+    public void throwingObserver_doesNotKeepTheOthersFromTheCommands() throws InterruptedException {
+        List<String> observed = new CopyOnWriteArrayList<>();
+        scheduler.addObserver((device, command) -> {
+            throw new IllegalStateException("observer bug");
+        });
+        scheduler.addObserver((device, command) -> observed.add(command.getName()));
+        scheduler.submit("scanner", "claim", () -> { });
+        DeviceCommand next = scheduler.submit("scanner", "enable", () -> { });
+        assertTrue(next.await(5, TimeUnit.SECONDS));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (observed.size() < 2 && System.nanoTime() < deadline)
+            Thread.sleep(1);
+
+        assertEquals(Arrays.asList("claim", "enable"), observed);
+        assertEquals(2, scheduler.getObserverFailureCount());
+    }
+
+    @Test
+    public void blockingCommands_leaveThePoolToOtherDevices() throws InterruptedException {
+        CountDownLatch gate = new CountDownLatch(1);
+        List<String> scaleOrder = new ArrayList<>();
+        List<DeviceCommand> updates = new ArrayList<>();
+        for (int d = 0; d < THREADS + 1; d++)
+            updates.add(scheduler.submitBlocking("scale-" + d, "updateFirmware", () -> awaitQuietly(gate)));
+        scheduler.submit("scale-0", "open", () -> scaleOrder.add("open"));
+        scheduler.submitBlocking("scale-0", "readWeight", () -> scaleOrder.add("readWeight"));
+        DeviceCommand close = scheduler.submit("scale-0", "close", () -> scaleOrder.add("close"));
+
+        // Every pool thread would be waiting on an update if they ran there.
+        DeviceCommand scan = scheduler.submit("scanner", "enable", () -> { });
+        assertTrue(scan.await(5, TimeUnit.SECONDS));
+        assertTrue(scaleOrder.isEmpty());
+
+        gate.countDown();
+        for (DeviceCommand update : updates)
+            assertTrue(update.await(5, TimeUnit.SECONDS));
+        assertTrue(close.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("open", "readWeight", "close"), scaleOrder);
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.datalogic.apossampleapp.statistics;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+public class StatisticsExporterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void export_toStream_matchesGetBytes() throws IOException {
+        String statistics = statistics(20_000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long length = new StatisticsExporter(false).export(statistics, out);
+
+        assertArrayEquals(statistics.getBytes(StandardCharsets.UTF_8), out.toByteArray());
+        assertEquals(out.size(), length);
+    }
+
+    @Test
+    public void export_gzipped_inflatesToTheStatistics() throws IOException {
+        String statistics = statistics(20_000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long length = new StatisticsExporter(true).export(statistics, out);
+
+        byte[] expected = statistics.getBytes(StandardCharsets.UTF_8);
+        assertEquals(expected.length, length);
+        assertTrue(out.size() < expected.length / 4);
+        assertArrayEquals(expected, readAll(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))));
+    }
+
+    @Test
+    public void export_toFileChannel_isReusable() throws IOException {
+        StatisticsExporter exporter = new StatisticsExporter(false);
+        for (int size : new int[]{0, 1, 8191, 50_000}) {
+            String statistics = statistics(size);
+            File file = folder.newFile();
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                exporter.export(statistics, channel);
+            }
+            try (InputStream in = new FileInputStream(file)) {
+                assertArrayEquals(statistics.getBytes(StandardCharsets.UTF_8), readAll(in));
+            }
+        }
+        assertEquals(0, Files.size(folder.newFile().toPath()));
+    }
+
+    /**
+     * UPOS-like statistics with a multi-byte character and a surrogate pair straddling chunk boundaries.
+     */
+    static String statistics(int length) {
+        StringBuilder text = new StringBuilder(length + 64);
+        for (int i = 0; text.length() < length; i++) {
+            text.append("<Parameter><Name>HoursPoweredCount").append(i).append("</Name><Value>")
+                    .append(i * 7).append("</Value></Parameter>\n");
+            if (i % 50 == 0)
+                text.append("\u00e9\ud83d\ude00");
+        }
+        text.setLength(length);
+        if (length > 0 && Character.isHighSurrogate(text.charAt(length - 1)))
+            text.setCharAt(length - 1, 'x');
+        return text.toString();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int length;
+        while ((length = in.read(buf)) > 0)
+            out.write(buf, 0, length);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,134 @@
+package com.datalogic.apossampleapp;
+
+import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
+
+import com.datalogic.apossampleapp.simulator.SimulatedScale;
+import com.datalogic.apossampleapp.simulator.SimulatedScanner;
+import com.datalogic.apossampleapp.simulator.SimulationConfig;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class ExampleViewModelTest {
+    private static final long TIMEOUT_MS = 5000;
+    private static final int SCANS = 10_000;
+
+    @Rule
+    public InstantTaskExecutorRule mainThread = new InstantTaskExecutorRule();
+
+    @Test
+    public void simulatedScanner_deliversItsScansToTheScreen() throws Exception {
+        SimulatedScanner scanner = new SimulatedScanner(new SimulationConfig(2000, 100, 0, 42));
+        ExampleViewModel viewModel = new ExampleViewModel(Runnable::run, (task, delayMillis) -> task.run());
+        AtomicReference<String> lastLabel = new AtomicReference<>();
+        // Like the screen, which observes them before opening a device.
+        viewModel.getConnectionStatus();
+        viewModel.getScans().observeForever(batch -> lastLabel.set(batch.get(batch.size() - 1).getLabelText()));
+
+        viewModel.open("DL-Simulated-Scanner", scanner, null);
+        awaitStatus(viewModel, ExampleViewModel.Status.OPENED);
+        viewModel.claim();
+        awaitStatus(viewModel, ExampleViewModel.Status.CLAIMED);
+        viewModel.enable();
+        awaitStatus(viewModel, ExampleViewModel.Status.ENABLED);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MS);
+        while (viewModel.getScanCount() < 1000 && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        viewModel.disable();
+        awaitStatus(viewModel, ExampleViewModel.Status.CLAIMED);
+        viewModel.release();
+        awaitStatus(viewModel, ExampleViewModel.Status.OPENED);
+        viewModel.close();
+        awaitStatus(viewModel, ExampleViewModel.Status.CLOSED);
+
+        assertTrue("Only " + viewModel.getScanCount() + " scans", viewModel.getScanCount() >= 1000);
+        // The scan read as the device is disabled may go with the events still queued.
+        assertTrue(scanner.getDataEventCount() - viewModel.getScanCount() <= 1);
+        assertEquals(13, lastLabel.get().length());
+    }
+
+    @Test
+    public void scans_causeNoMainThreadCallbacks() throws Exception {
+        SimulatedScanner scanner = new SimulatedScanner(new SimulationConfig(10_000, 0, 0, 42));
+        AtomicInteger mainThreadCalls = new AtomicInteger();
+        // Scans go to the screen through the flushes, so every call to the main thread is a status or weight.
+        ExampleViewModel viewModel = new ExampleViewModel(task -> {
+            mainThreadCalls.incrementAndGet();
+            task.run();
+        }, (task, delayMillis) -> task.run());
+        viewModel.getConnectionStatus();
+        viewModel.getScans().observeForever(batch -> {
+        });
+
+        viewModel.open("DL-Simulated-Scanner", scanner, null);
+        awaitStatus(viewModel, ExampleViewModel.Status.OPENED);
+        viewModel.claim();
+        awaitStatus(viewModel, ExampleViewModel.Status.CLAIMED);
+        viewModel.enable();
+        awaitStatus(viewModel, ExampleViewModel.Status.ENABLED);
+        int callsBeforeScans = mainThreadCalls.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MS);
+        while (viewModel.getScanCount() < SCANS && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        int callsDuringScans = mainThreadCalls.get() - callsBeforeScans;
+        viewModel.close();
+        awaitStatus(viewModel, ExampleViewModel.Status.CLOSED);
+
+        assertTrue("Only " + viewModel.getScanCount() + " scans", viewModel.getScanCount() >= SCANS);
+        assertEquals(0, callsDuringScans);
+    }
+
+    @Test
+    public void liveWeightInAsyncMode_startsTheNextReadAfterEachWeight() throws Exception {
+        SimulatedScale scale = new SimulatedScale(new SimulationConfig(200, 0, 0, 7));
+        ExampleViewModel viewModel = new ExampleViewModel(Runnable::run, (task, delayMillis) -> task.run());
+        AtomicInteger liveWeights = new AtomicInteger();
+        viewModel.getConnectionStatus();
+        viewModel.getLiveWeight().observeForever(weight -> liveWeights.incrementAndGet());
+
+        viewModel.open("DL-Simulated-Scale", scale, null);
+        awaitStatus(viewModel, ExampleViewModel.Status.OPENED);
+        viewModel.claim();
+        awaitStatus(viewModel, ExampleViewModel.Status.CLAIMED);
+        viewModel.enable();
+        awaitStatus(viewModel, ExampleViewModel.Status.ENABLED);
+        viewModel.setScaleAsync(true);
+        viewModel.setLiveWeight(true);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MS);
+        while (scale.getDataEventCount() < 20 && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        viewModel.setLiveWeight(false);
+        viewModel.close();
+        awaitStatus(viewModel, ExampleViewModel.Status.CLOSED);
+
+        assertTrue("Only " + scale.getDataEventCount() + " weights", scale.getDataEventCount() >= 20);
+        assertTrue(liveWeights.get() > 0);
+    }
+
+    @Test
+    public void lifecycleButtons_beforeAnyDeviceIsOpened_leaveItClosed() throws Exception {
+        ExampleViewModel viewModel = new ExampleViewModel(Runnable::run, (task, delayMillis) -> task.run());
+
+        // Close is the only button left after an error such as profiles that failed to load.
+        viewModel.close();
+        viewModel.claim();
+        viewModel.enable();
+        viewModel.disable();
+        viewModel.release();
+        awaitStatus(viewModel, ExampleViewModel.Status.CLOSED);
+    }
+
+    private static void awaitStatus(ExampleViewModel viewModel, ExampleViewModel.Status status)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MS);
+        while (viewModel.getStatus().getValue() != status && System.nanoTime() < deadline)
+            Thread.sleep(5);
+        assertEquals(viewModel.getErrorMessage(), status, viewModel.getStatus().getValue());
+    }
+}
@@ -0,0 +1,81 @@
+package com.datalogic.apossampleapp.device;
+
+import com.datalogic.apossampleapp.events.EventBus;
+import com.datalogic.apossampleapp.simulator.SimulatedScanner;
+import com.datalogic.apossampleapp.simulator.SimulationConfig;
+import com.datalogic.dlapos.commons.event.DataEvent;
+import com.datalogic.dlapos.commons.event.EventCallback;
+import com.datalogic.dlapos.commons.upos.RequestListener;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class DeviceEventBusTest {
+    private static final RequestListener IGNORE = new RequestListener() {
+        @Override
+        public void onSuccess() {
+        }
+
+        @Override
+        public void onFailure(String failureDescription) {
+        }
+    };
+
+    @Test
+    public void slowSubscriber_doesNotHoldUpTheScanner() throws Exception {
+        SimulatedScanner scanner = new SimulatedScanner(new SimulationConfig(500, 0, 0.2, 7));
+        DeviceEventBus events = new DeviceEventBus(scanner);
+        AtomicLong data = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        AtomicLong misrouted = new AtomicLong();
+        AtomicLong bridged = new AtomicLong();
+
+        // As the screen does: read the label, then ask for the next one.
+        events.subscribe(16, EventBus.OverflowPolicy.BLOCK, null, event -> {
+            if (!(event instanceof DataEvent)) {
+                misrouted.incrementAndGet();
+                return;
+            }
+            scanner.getScanDataLabel();
+            data.incrementAndGet();
+            scanner.setDataEventEnabled(true);
+        }, EventCallback.EventType.Data);
+        events.subscribe(16, EventBus.OverflowPolicy.DROP_OLDEST, null, event -> errors.incrementAndGet(),
+                EventCallback.EventType.Error);
+        // A POS bridge far slower than the scanner.
+        EventBus.Subscription<?> bridge = events.subscribe(4, EventBus.OverflowPolicy.DROP_OLDEST, null, event -> {
+            bridged.incrementAndGet();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, EventCallback.EventType.Data, EventCallback.EventType.Error);
+        assertTrue(events.isListening(EventCallback.EventType.Data));
+        assertTrue(events.isListening(EventCallback.EventType.Error));
+        assertFalse(events.isListening(EventCallback.EventType.StatusUpdate));
+
+        scanner.open("DL-Simulated-Scanner", null);
+        scanner.claim(IGNORE);
+        scanner.setDataEventEnabled(true);
+        scanner.setDeviceEnabled(true);
+        Thread.sleep(1000);
+        scanner.setDeviceEnabled(false);
+        Thread.sleep(100);
+        events.close();
+        scanner.close();
+
+        assertTrue("Only " + data.get() + " data events", data.get() > 250);
+        assertEquals(scanner.getDataEventCount(), data.get());
+        assertEquals(scanner.getErrorEventCount(), errors.get());
+        assertEquals(0, misrouted.get());
+        assertTrue(bridged.get() > 0);
+        assertTrue(bridge.getDroppedCount() > 0);
+        assertFalse(events.isListening(EventCallback.EventType.Data));
+        assertFalse(events.isListening(EventCallback.EventType.Error));
+        assertEquals(0, events.getSubscriberCount());
+    }
+}
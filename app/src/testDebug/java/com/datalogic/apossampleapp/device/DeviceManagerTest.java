@@ -0,0 +1,143 @@
+package com.datalogic.apossampleapp.device;
+
+import com.datalogic.apossampleapp.scheduler.DeviceCommandScheduler;
+import com.datalogic.apossampleapp.simulator.SimulatedScale;
+import com.datalogic.apossampleapp.simulator.SimulatedScanner;
+import com.datalogic.apossampleapp.simulator.SimulationConfig;
+import com.datalogic.dlapos.commons.event.BaseEvent;
+import com.datalogic.dlapos.commons.event.DataEvent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DeviceManagerTest {
+    private static final long STEP_DELAY_MS = 150;
+    private static final List<String> LANE = Arrays.asList(
+            "DL-Magellan-9800i-USB-OEM-Scanner-Scale", "DL-Magellan-9800i-USB-OEM-Scale", "DL-Gryphon-GD4500-USB-OEM");
+
+    private DeviceCommandScheduler scheduler;
+    private final Map<String, SimulatedScanner> scanners = new ConcurrentHashMap<>();
+    private final Set<String> failingClaims = ConcurrentHashMap.newKeySet();
+    private DeviceManager manager;
+
+    @Before
+    public void setUp() {
+        scheduler = new DeviceCommandScheduler(4);
+        manager = new DeviceManager(scheduler, (logicalName, context) -> {
+            if (logicalName.endsWith("-Scale")) {
+                SimulatedScale scale = new SimulatedScale(new SimulationConfig(100, 0, 0, 1));
+                scale.setLifecycleDelayMillis(STEP_DELAY_MS);
+                if (failingClaims.contains(logicalName))
+                    scale.failNextClaim();
+                return scale;
+            }
+            SimulatedScanner scanner = new SimulatedScanner(new SimulationConfig(200, 0, 0, 1));
+            scanner.setLifecycleDelayMillis(STEP_DELAY_MS);
+            if (failingClaims.contains(logicalName))
+                scanner.failNextClaim();
+            scanners.put(logicalName, scanner);
+            return scanner;
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        manager.stopAll().get(5, TimeUnit.SECONDS);
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void lane_startsInTheTimeOfTheSlowestDevice() throws Exception {
+        long start = System.nanoTime();
+        manager.start(LANE, null).get(5, TimeUnit.SECONDS);
+        long elapsed = System.nanoTime() - start;
+
+        long sum = 0;
+        for (String logicalName : LANE) {
+            ManagedDevice device = manager.getDevice(logicalName);
+            assertEquals(DeviceState.ENABLED, device.getState());
+            sum += device.getStartupNanos();
+        }
+        assertTrue(elapsed < sum * 2 / 3);
+    }
+
+    @Test
+    public void events_areMergedAndTaggedWithTheirDevice() throws Exception {
+        Set<String> sources = ConcurrentHashMap.newKeySet();
+        manager.addListener(new DeviceManager.Listener() {
+            @Override
+            public void onDeviceEvent(ManagedDevice device, BaseEvent event) {
+                if (event instanceof DataEvent && device.getControl() instanceof SimulatedScanner) {
+                    sources.add(device.getLogicalName());
+                    ((SimulatedScanner) device.getControl()).setDataEventEnabled(true);
+                }
+            }
+
+            @Override
+            public void onDeviceStateChanged(ManagedDevice device, DeviceState state) {
+            }
+        });
+        manager.start(LANE, null).get(5, TimeUnit.SECONDS);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (sources.size() < scanners.size() && System.nanoTime() < deadline)
+            Thread.sleep(10);
+
+        assertEquals(scanners.keySet(), sources);
+    }
+
+    @Test
+    public void failingDevice_doesNotBlockTheOthers() throws Exception {
+        failingClaims.add("DL-Gryphon-GD4500-USB-OEM");
+        manager.start(LANE, null).get(5, TimeUnit.SECONDS);
+
+        ManagedDevice failed = manager.getDevice("DL-Gryphon-GD4500-USB-OEM");
+        assertEquals(DeviceState.ERROR, failed.getState());
+        assertEquals("Simulated claim failure.", failed.getErrorMessage());
+        assertEquals(DeviceState.ENABLED, manager.getDevice("DL-Magellan-9800i-USB-OEM-Scale").getState());
+
+        failingClaims.clear();
+        manager.start(LANE, null).get(5, TimeUnit.SECONDS);
+        assertEquals(DeviceState.ENABLED, failed.getState());
+    }
+
+    @Test
+    public void failedStep_leavesTheDeviceInErrorUntilItIsClosed() throws Exception {
+        String logicalName = "DL-Gryphon-GD4500-USB-OEM";
+        failingClaims.add(logicalName);
+        manager.open(logicalName, null, null).get(5, TimeUnit.SECONDS);
+        try {
+            manager.claim(logicalName).get(5, TimeUnit.SECONDS);
+            fail("The claim should have failed.");
+        } catch (ExecutionException expected) {
+            assertEquals(DeviceState.ERROR, manager.getDevice(logicalName).getState());
+        }
+
+        // Steps from another state do nothing.
+        manager.enable(logicalName).get(5, TimeUnit.SECONDS);
+        assertEquals(DeviceState.ERROR, manager.getDevice(logicalName).getState());
+
+        manager.close(logicalName).get(5, TimeUnit.SECONDS);
+        assertEquals(DeviceState.CLOSED, manager.getDevice(logicalName).getState());
+    }
+
+    @Test
+    public void stateMachine_rejectsIllegalTransitions() {
+        assertTrue(DeviceState.CLOSED.canMoveTo(DeviceState.OPENED));
+        assertFalse(DeviceState.CLOSED.canMoveTo(DeviceState.ENABLED));
+        assertFalse(DeviceState.ENABLED.canMoveTo(DeviceState.CLOSED));
+        assertTrue(DeviceState.ENABLED.canMoveTo(DeviceState.ERROR));
+        assertTrue(DeviceState.ERROR.canMoveTo(DeviceState.CLOSED));
+        assertFalse(DeviceState.ERROR.canMoveTo(DeviceState.CLAIMED));
+    }
+}
@@ -0,0 +1,201 @@
+package com.datalogic.apossampleapp.device;
+
+import com.datalogic.apossampleapp.scheduler.DeviceCommandScheduler;
+import com.datalogic.apossampleapp.simulator.SimulatedScanner;
+import com.datalogic.apossampleapp.simulator.SimulationConfig;
+import com.datalogic.dlapos.commons.control.BaseControl;
+import com.datalogic.dlapos.commons.event.DataEvent;
+import com.datalogic.dlapos.commons.event.EventCallback;
+import com.datalogic.dlapos.commons.upos.RequestListener;
+import com.datalogic.dlapos.control.event.EventListener;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DevicePoolTest {
+    private static final String SCANNER = "DL-Gryphon-GD4500-USB-OEM";
+    private static final long LIFECYCLE_DELAY_MS = 300;
+
+    private DeviceCommandScheduler scheduler;
+    private DeviceManager manager;
+    private DevicePool pool;
+    private final Map<String, SimulatedScanner> scanners = new ConcurrentHashMap<>();
+
+    @Before
+    public void setUp() {
+        scheduler = new DeviceCommandScheduler(4);
+        manager = new DeviceManager(scheduler, (logicalName, context) -> scanners.computeIfAbsent(logicalName, name -> {
+            SimulatedScanner scanner = new SimulatedScanner(new SimulationConfig(200, 0, 0, 1));
+            scanner.setLifecycleDelayMillis(LIFECYCLE_DELAY_MS);
+            return scanner;
+        }));
+        pool = new DevicePool(manager, 300);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        manager.stopAll().get(5, TimeUnit.SECONDS);
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void screenCreatedAgain_scansWithinMilliseconds() throws Exception {
+        long cold = timeToFirstScan();
+        assertEquals(0, pool.getLeaseCount(SCANNER));
+        assertTrue(pool.isWarm(SCANNER));
+        assertEquals(Collections.singletonList(SCANNER), pool.getIdleLogicalNames());
+
+        long warm = timeToFirstScan();
+        // Open, claim and enable each wait for the device once.
+        assertTrue(cold >= TimeUnit.MILLISECONDS.toNanos(3 * LIFECYCLE_DELAY_MS));
+        assertTrue(warm < TimeUnit.MILLISECONDS.toNanos(LIFECYCLE_DELAY_MS));
+    }
+
+    @Test
+    public void scanWhileIdle_goesToTheNextLease() throws Exception {
+        pool.acquire(SCANNER, null, null).get(5, TimeUnit.SECONDS).close();
+        SimulatedScanner scanner = scanners.get(SCANNER);
+        assertFalse(scanner.getDataEventEnabled());
+        scanner.scan("4006381333931");
+        // Generated labels keep coming meanwhile; none is delivered while the device is idle.
+        Thread.sleep(100);
+
+        BlockingQueue<String> labels = new LinkedBlockingQueue<>();
+        DevicePool.Lease lease = pool.acquire(SCANNER, null, event -> {
+            if (event instanceof DataEvent)
+                labels.add(new String(scanner.getScanDataLabel(), StandardCharsets.US_ASCII));
+        }).get(1, TimeUnit.SECONDS);
+        assertEquals("4006381333931", labels.poll(1, TimeUnit.SECONDS));
+        lease.close();
+    }
+
+    @Test
+    public void idleDevice_isClosedAfterTheTimeout() throws Exception {
+        DevicePool.Lease lease = pool.acquire(SCANNER, null, null).get(5, TimeUnit.SECONDS);
+        Thread.sleep(500);
+        assertEquals(DeviceState.ENABLED, manager.getDevice(SCANNER).getState());
+
+        lease.close();
+        lease.close();
+        assertEquals(0, pool.getLeaseCount(SCANNER));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (manager.getDevice(SCANNER).getState() != DeviceState.CLOSED && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        assertEquals(DeviceState.CLOSED, manager.getDevice(SCANNER).getState());
+        assertFalse(pool.isWarm(SCANNER));
+        assertTrue(pool.getIdleLogicalNames().isEmpty());
+    }
+
+    @Test
+    public void leaseEvents_areDeliveredOffTheDeviceThread() throws Exception {
+        BlockingQueue<String> threads = new LinkedBlockingQueue<>();
+        DevicePool.Lease lease = pool.acquire(SCANNER, null, event -> {
+            if (event instanceof DataEvent)
+                threads.add(Thread.currentThread().getName());
+        }).get(5, TimeUnit.SECONDS);
+
+        String thread = threads.poll(5, TimeUnit.SECONDS);
+        assertNotNull(thread);
+        assertNotEquals("simulated-device", thread);
+        lease.close();
+    }
+
+    @Test
+    public void leasedDeviceGoingOffline_isBroughtBackByThePool() throws Exception {
+        CountDownLatch recovered = new CountDownLatch(1);
+        pool.supervise(null).addListener(new DeviceSupervisor.Listener() {
+            @Override
+            public void onRecovering(ManagedDevice device, int attempt, long delayMillis) {
+            }
+
+            @Override
+            public void onRecovered(ManagedDevice device, long recoverNanos) {
+                recovered.countDown();
+            }
+
+            @Override
+            public void onGaveUp(ManagedDevice device, int attempts) {
+            }
+        });
+        BlockingQueue<DataEvent> scans = new LinkedBlockingQueue<>();
+        DevicePool.Lease lease = pool.acquire(SCANNER, null, event -> {
+            if (event instanceof DataEvent)
+                scans.add((DataEvent) event);
+        }).get(5, TimeUnit.SECONDS);
+        assertNotNull(scans.poll(5, TimeUnit.SECONDS));
+
+        // Offline for longer than the first attempt to bring it back, which then fails to claim it.
+        SimulatedScanner scanner = scanners.get(SCANNER);
+        scanner.setOnline(false);
+        Thread.sleep(1000);
+        scans.clear();
+        scanner.setOnline(true);
+
+        assertTrue(recovered.await(5, TimeUnit.SECONDS));
+        assertEquals(DeviceState.ENABLED, manager.getDevice(SCANNER).getState());
+        // The lease listens to the device opened again.
+        assertNotNull(scans.poll(5, TimeUnit.SECONDS));
+        lease.close();
+    }
+
+    @Test
+    public void parkedControl_isLeasedAndTakenBack() throws Exception {
+        SimulatedScanner scanner = new SimulatedScanner(new SimulationConfig(200, 0, 0, 1));
+        scanner.open(SCANNER, null);
+        scanner.claim(new RequestListener() {
+            @Override
+            public void onSuccess() {
+            }
+
+            @Override
+            public void onFailure(String failureDescription) {
+                fail(failureDescription);
+            }
+        });
+        // Enabled by a screen that goes away, which stops listening before leaving the device to the pool.
+        EventListener screen = event -> {
+        };
+        Controls.enable(scanner, screen);
+        Controls.removeEventListener(scanner, screen, EventCallback.EventType.Data);
+        Controls.removeEventListener(scanner, screen, EventCallback.EventType.StatusUpdate);
+        pool.park(SCANNER, scanner);
+        assertTrue(pool.isWarm(SCANNER));
+
+        CountDownLatch scanned = new CountDownLatch(1);
+        DevicePool.Lease lease = pool.acquire(SCANNER, null, event -> scanned.countDown()).get(1, TimeUnit.SECONDS);
+        assertSame(scanner, lease.getControl());
+        assertTrue(scanned.await(1, TimeUnit.SECONDS));
+
+        BaseControl taken = lease.take();
+        assertSame(scanner, taken);
+        assertNull(manager.getDevice(SCANNER));
+        assertFalse(pool.isWarm(SCANNER));
+        taken.close();
+    }
+
+    private long timeToFirstScan() throws Exception {
+        CountDownLatch scanned = new CountDownLatch(1);
+        EventListener listener = event -> {
+            if (event instanceof DataEvent)
+                scanned.countDown();
+        };
+        long start = System.nanoTime();
+        DevicePool.Lease lease = pool.acquire(SCANNER, null, listener).get(5, TimeUnit.SECONDS);
+        assertTrue(scanned.await(5, TimeUnit.SECONDS));
+        long elapsed = System.nanoTime() - start;
+        lease.close();
+        return elapsed;
+    }
+}
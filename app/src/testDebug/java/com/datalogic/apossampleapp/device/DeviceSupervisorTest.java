@@ -0,0 +1,172 @@
+package com.datalogic.apossampleapp.device;
+
+import com.datalogic.apossampleapp.metrics.MetricsRegistry;
+import com.datalogic.apossampleapp.scheduler.DeviceCommandScheduler;
+import com.datalogic.apossampleapp.simulator.SimulatedScanner;
+import com.datalogic.apossampleapp.simulator.SimulationConfig;
+import com.datalogic.dlapos.commons.event.BaseEvent;
+import com.datalogic.dlapos.commons.event.DataEvent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class DeviceSupervisorTest {
+    private static final String SCANNER = "DL-Gryphon-GD4500-USB-OEM";
+
+    private DeviceCommandScheduler scheduler;
+    private DeviceManager manager;
+    private MetricsRegistry metrics;
+    private DeviceSupervisor supervisor;
+    private final Map<String, SimulatedScanner> scanners = new ConcurrentHashMap<>();
+    private final AtomicLong scans = new AtomicLong();
+    private final List<Long> recoveries = new CopyOnWriteArrayList<>();
+    private final List<Integer> attempts = new CopyOnWriteArrayList<>();
+    private final List<Integer> gaveUp = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        scheduler = new DeviceCommandScheduler(4);
+        // The same simulated scanner comes back after every close, like a device plugged in again.
+        manager = new DeviceManager(scheduler, (logicalName, context) -> scanners.computeIfAbsent(logicalName,
+                name -> new SimulatedScanner(new SimulationConfig(200, 0, 0, 1))));
+        manager.addListener(new DeviceManager.Listener() {
+            @Override
+            public void onDeviceEvent(ManagedDevice device, BaseEvent event) {
+                if (event instanceof DataEvent) {
+                    scans.incrementAndGet();
+                    try {
+                        device.getControl().setDataEventEnabled(true);
+                    } catch (Exception e) {
+                        throw new AssertionError(e);
+                    }
+                }
+            }
+
+            @Override
+            public void onDeviceStateChanged(ManagedDevice device, DeviceState state) {
+            }
+        });
+        metrics = new MetricsRegistry();
+        supervisor = new DeviceSupervisor(manager, null, metrics, 50, 400, 8, new Random(4));
+        supervisor.addListener(new DeviceSupervisor.Listener() {
+            @Override
+            public void onRecovering(ManagedDevice device, int attempt, long delayMillis) {
+                attempts.add(attempt);
+            }
+
+            @Override
+            public void onRecovered(ManagedDevice device, long recoverNanos) {
+                recoveries.add(recoverNanos);
+            }
+
+            @Override
+            public void onGaveUp(ManagedDevice device, int attemptCount) {
+                gaveUp.add(attemptCount);
+            }
+        });
+        manager.start(Collections.singletonList(SCANNER), null).get(5, TimeUnit.SECONDS);
+        assertEquals(DeviceState.ENABLED, manager.getDevice(SCANNER).getState());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        supervisor.stop();
+        manager.stopAll().get(5, TimeUnit.SECONDS);
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void backoff_doublesUpToTheMaximumWithJitter() {
+        Backoff backoff = new Backoff(100, 1000, 0.5, new Random(1));
+        long[] bases = {100, 200, 400, 800, 1000, 1000};
+        for (long base : bases) {
+            long delay = backoff.nextDelayMillis();
+            assertTrue(delay + " for " + base, delay > base / 2 && delay <= base);
+        }
+        assertEquals(bases.length, backoff.getAttempts());
+        backoff.reset();
+        assertTrue(backoff.nextDelayMillis() <= 100);
+    }
+
+    @Test
+    public void shortBlip_recoversWithoutReopening() throws Exception {
+        SimulatedScanner scanner = scanners.get(SCANNER);
+        scanner.setOnline(false);
+        assertTrue(supervisor.isRecovering(SCANNER));
+        scanner.setOnline(true);
+
+        assertFalse(supervisor.isRecovering(SCANNER));
+        assertEquals(1, recoveries.size());
+        assertEquals(0, metrics.operation(SCANNER, DeviceSupervisor.RECONNECT).getCount());
+        assertEquals(DeviceState.ENABLED, manager.getDevice(SCANNER).getState());
+    }
+
+    @Test
+    public void outage_isRecoveredWithBackoffAndScansResume() throws Exception {
+        SimulatedScanner scanner = scanners.get(SCANNER);
+        Thread.sleep(100);
+        assertTrue(scans.get() > 0);
+
+        scanner.setOnline(false);
+        Thread.sleep(600);
+        assertTrue(supervisor.isRecovering(SCANNER));
+        long failedAttempts = metrics.operation(SCANNER, DeviceSupervisor.RECONNECT).getFailures();
+        assertTrue("Only " + failedAttempts + " attempts", failedAttempts >= 2);
+        // 50, 100, 200 then 400 ms at most: far fewer attempts than polling every 50 ms would make.
+        assertTrue(failedAttempts <= 5);
+        assertEquals(DeviceState.ERROR, manager.getDevice(SCANNER).getState());
+
+        long scansWhileOffline = scans.get();
+        scanner.setOnline(true);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (supervisor.isRecovering(SCANNER) && System.nanoTime() < deadline)
+            Thread.sleep(5);
+        assertFalse(supervisor.isRecovering(SCANNER));
+        assertEquals(DeviceState.ENABLED, manager.getDevice(SCANNER).getState());
+        Thread.sleep(100);
+        assertTrue(scans.get() > scansWhileOffline);
+
+        assertEquals(1, metrics.operation(SCANNER, DeviceSupervisor.RECOVER).getCount());
+        assertEquals(1, recoveries.size());
+        assertTrue(attempts.size() >= 3);
+        assertTrue(gaveUp.isEmpty());
+    }
+
+    @Test
+    public void longOutage_isGivenUpAfterTheMaximumAttempts() throws Exception {
+        scanners.get(SCANNER).setOnline(false);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (gaveUp.isEmpty() && System.nanoTime() < deadline)
+            Thread.sleep(5);
+
+        assertEquals(Collections.singletonList(8), gaveUp);
+        assertFalse(supervisor.isRecovering(SCANNER));
+        assertEquals(8, metrics.operation(SCANNER, DeviceSupervisor.RECONNECT).getFailures());
+        assertEquals(DeviceState.ERROR, manager.getDevice(SCANNER).getState());
+        assertTrue(recoveries.isEmpty());
+    }
+
+    @Test
+    public void cancelledRecovery_makesNoMoreAttempts() throws Exception {
+        scanners.get(SCANNER).setOnline(false);
+        assertTrue(supervisor.isRecovering(SCANNER));
+        supervisor.cancel(SCANNER);
+        assertFalse(supervisor.isRecovering(SCANNER));
+
+        Thread.sleep(200);
+        assertEquals(0, metrics.operation(SCANNER, DeviceSupervisor.RECONNECT).getCount());
+        assertEquals(DeviceState.ENABLED, manager.getDevice(SCANNER).getState());
+    }
+}
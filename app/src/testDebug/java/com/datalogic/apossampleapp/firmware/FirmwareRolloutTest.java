@@ -0,0 +1,257 @@
+package com.datalogic.apossampleapp.firmware;
+
+import com.datalogic.apossampleapp.device.DeviceManager;
+import com.datalogic.apossampleapp.scheduler.DeviceCommandScheduler;
+import com.datalogic.apossampleapp.simulator.SimulatedScanner;
+import com.datalogic.apossampleapp.simulator.SimulationConfig;
+import com.datalogic.dlapos.commons.constant.CommonsConstants;
+import com.datalogic.dlapos.commons.event.EventCallback;
+import com.datalogic.dlapos.commons.event.StatusUpdateEvent;
+import com.datalogic.dlapos.control.event.EventListener;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class FirmwareRolloutTest {
+    private static final int VID = 0x05F9;
+    private static final int PID = 0x4204;
+    private static final long UPDATE_MS = 100;
+
+    private File directory;
+    private DeviceCommandScheduler scheduler;
+    private DeviceManager manager;
+    private final Map<String, SimulatedScanner> scanners = new ConcurrentHashMap<>();
+    private List<FirmwareImage> images;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("rollout").toFile();
+        writeImage("gd4500-200.dfw", PID, 200);
+        writeImage("gd4500-150.dfw", PID, 150);
+        writeImage("pd9530-300.dfw", 0x4300, 300);
+        FirmwareCatalog catalog = new FirmwareCatalog(new File(directory, "index"), 2);
+        images = catalog.scan(directory);
+        catalog.shutdown();
+
+        scheduler = new DeviceCommandScheduler(8);
+        manager = new DeviceManager(scheduler, (logicalName, context) -> {
+            SimulatedScanner scanner = new ListenedScanner(new SimulationConfig(10, 0, 0, 1));
+            scanner.setFirmware(VID, logicalName.startsWith("Other") ? 0x9999 : PID, logicalName.startsWith("Current") ? 200 : 100);
+            scanner.setFirmwareUpdateMillis(UPDATE_MS);
+            scanners.put(logicalName, scanner);
+            return scanner;
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        manager.stopAll().get(5, TimeUnit.SECONDS);
+        scheduler.shutdown();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files)
+                file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void rollout_respectsBusLimitsAndRetries() throws Exception {
+        List<String> lane = Arrays.asList("USB-1", "USB-2", "USB-3", "USB-4", "USB-5", "COM-1", "COM-2",
+                "Other-USB", "Current-USB");
+        manager.start(lane, null).get(5, TimeUnit.SECONDS);
+        scanners.get("USB-3").failNextFirmwareUpdate();
+
+        Map<String, Set<String>> updating = new HashMap<>();
+        Map<String, Integer> maxUpdating = new ConcurrentHashMap<>();
+        AtomicInteger events = new AtomicInteger();
+        AtomicInteger finished = new AtomicInteger();
+        List<Integer> overall = new ArrayList<>();
+        FirmwareRollout rollout = new FirmwareRollout(manager, scheduler,
+                logicalName -> logicalName.startsWith("COM") ? FirmwareRollout.BUS_SERIAL : FirmwareRollout.BUS_USB,
+                new FirmwareRollout.Listener() {
+                    @Override
+                    public void onProgress(FirmwareRollout.DeviceProgress device, int overallPercent) {
+                        events.incrementAndGet();
+                        synchronized (updating) {
+                            Set<String> devices = updating.computeIfAbsent(device.getBus(), bus -> ConcurrentHashMap.newKeySet());
+                            if (device.getOutcome() == FirmwareRollout.Outcome.UPDATING && device.getPercent() > 0)
+                                devices.add(device.getLogicalName());
+                            else
+                                devices.remove(device.getLogicalName());
+                            maxUpdating.merge(device.getBus(), devices.size(), Math::max);
+                            overall.add(overallPercent);
+                        }
+                    }
+
+                    @Override
+                    public void onFinished(List<FirmwareRollout.DeviceProgress> devices) {
+                        finished.incrementAndGet();
+                    }
+                });
+        rollout.setBusLimit(FirmwareRollout.BUS_USB, 2);
+
+        long start = System.nanoTime();
+        Map<String, FirmwareRollout.DeviceProgress> outcomes = byName(rollout.start(lane, images).get(10, TimeUnit.SECONDS));
+        long elapsed = System.nanoTime() - start;
+
+        for (String name : Arrays.asList("USB-1", "USB-2", "USB-3", "USB-4", "USB-5", "COM-1", "COM-2")) {
+            assertEquals(name, FirmwareRollout.Outcome.UPDATED, outcomes.get(name).getOutcome());
+            assertEquals(200, scanners.get(name).getFirmwareVersion());
+        }
+        assertEquals(2, outcomes.get("USB-3").getAttempts());
+        assertEquals(1, outcomes.get("USB-1").getAttempts());
+        assertEquals(FirmwareRollout.Outcome.NO_FIRMWARE, outcomes.get("Other-USB").getOutcome());
+        assertEquals(FirmwareRollout.Outcome.UP_TO_DATE, outcomes.get("Current-USB").getOutcome());
+        assertEquals(1, finished.get());
+        assertEquals(2, (int) maxUpdating.get(FirmwareRollout.BUS_USB));
+        assertEquals(1, (int) maxUpdating.get(FirmwareRollout.BUS_SERIAL));
+        synchronized (updating) {
+            assertEquals(100, (int) overall.get(overall.size() - 1));
+        }
+        // Six USB updates two at a time, in parallel with two serial updates one at a time.
+        assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(3 * UPDATE_MS));
+        assertTrue(elapsed < TimeUnit.MILLISECONDS.toNanos(8 * UPDATE_MS));
+        assertTrue(events.get() > lane.size());
+    }
+
+    @Test
+    public void failedDevices_canBeResumed() throws Exception {
+        List<String> lane = Arrays.asList("USB-1", "USB-2");
+        manager.start(lane, null).get(5, TimeUnit.SECONDS);
+        scanners.get("USB-2").failNextFirmwareUpdate();
+        FirmwareRollout rollout = new FirmwareRollout(manager, scheduler, logicalName -> FirmwareRollout.BUS_USB,
+                new FirmwareRollout.Listener() {
+                    @Override
+                    public void onProgress(FirmwareRollout.DeviceProgress device, int overallPercent) {
+                    }
+
+                    @Override
+                    public void onFinished(List<FirmwareRollout.DeviceProgress> devices) {
+                    }
+                });
+        rollout.setMaxAttempts(1);
+
+        Map<String, FirmwareRollout.DeviceProgress> outcomes = byName(rollout.start(lane, images).get(5, TimeUnit.SECONDS));
+        assertEquals(FirmwareRollout.Outcome.UPDATED, outcomes.get("USB-1").getOutcome());
+        assertEquals(FirmwareRollout.Outcome.FAILED, outcomes.get("USB-2").getOutcome());
+        assertFalse(outcomes.get("USB-2").getMessage().isEmpty());
+
+        outcomes = byName(rollout.retryFailed().get(5, TimeUnit.SECONDS));
+        assertEquals(FirmwareRollout.Outcome.UPDATED, outcomes.get("USB-2").getOutcome());
+        assertEquals(1, outcomes.get("USB-1").getAttempts());
+        assertEquals(200, scanners.get("USB-2").getFirmwareVersion());
+    }
+
+    @Test
+    public void updateWithoutEnd_timesOut() throws Exception {
+        manager.start(Arrays.asList("USB-1"), null).get(5, TimeUnit.SECONDS);
+        scanners.get("USB-1").setFirmwareUpdateMillis(5_000);
+        FirmwareRollout rollout = new FirmwareRollout(manager, scheduler, logicalName -> FirmwareRollout.BUS_USB,
+                new FirmwareRollout.Listener() {
+                    @Override
+                    public void onProgress(FirmwareRollout.DeviceProgress device, int overallPercent) {
+                    }
+
+                    @Override
+                    public void onFinished(List<FirmwareRollout.DeviceProgress> devices) {
+                    }
+                });
+        rollout.setMaxAttempts(1);
+        rollout.setUpdateTimeoutMillis(100);
+
+        FirmwareRollout.DeviceProgress progress = rollout.start(Arrays.asList("USB-1"), images).get(5, TimeUnit.SECONDS).get(0);
+        assertEquals(FirmwareRollout.Outcome.FAILED, progress.getOutcome());
+        assertEquals("The update timed out.", progress.getMessage());
+    }
+
+    @Test
+    public void lateEventOfAnEndedAttempt_isIgnored() throws Exception {
+        manager.start(Arrays.asList("USB-1"), null).get(5, TimeUnit.SECONDS);
+        ListenedScanner scanner = (ListenedScanner) scanners.get("USB-1");
+        scanner.setFirmwareUpdateMillis(5_000);
+        scanner.statusListeners.clear();
+        FirmwareRollout rollout = new FirmwareRollout(manager, scheduler, logicalName -> FirmwareRollout.BUS_USB,
+                new FirmwareRollout.Listener() {
+                    @Override
+                    public void onProgress(FirmwareRollout.DeviceProgress device, int overallPercent) {
+                    }
+
+                    @Override
+                    public void onFinished(List<FirmwareRollout.DeviceProgress> devices) {
+                    }
+                });
+        rollout.setMaxAttempts(2);
+        rollout.setUpdateTimeoutMillis(200);
+
+        CompletableFuture<List<FirmwareRollout.DeviceProgress>> rolledOut = rollout.start(Arrays.asList("USB-1"), images);
+        // The first attempt times out and the second one starts.
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (scanner.statusListeners.size() < 2 && System.nanoTime() < deadline)
+            Thread.sleep(5);
+        assertEquals(2, scanner.statusListeners.size());
+        // Sent by the device service to the listener of the first attempt just before it was removed.
+        scanner.statusListeners.get(0).onEvent(new StatusUpdateEvent(scanner, CommonsConstants.SUE_UF_COMPLETE));
+
+        FirmwareRollout.DeviceProgress progress = rollout.getProgress().get(0);
+        assertEquals(FirmwareRollout.Outcome.UPDATING, progress.getOutcome());
+        assertEquals(2, progress.getAttempts());
+        progress = rolledOut.get(5, TimeUnit.SECONDS).get(0);
+        assertEquals(FirmwareRollout.Outcome.FAILED, progress.getOutcome());
+        assertEquals("The update timed out.", progress.getMessage());
+    }
+
+    private static Map<String, FirmwareRollout.DeviceProgress> byName(List<FirmwareRollout.DeviceProgress> devices) {
+        Map<String, FirmwareRollout.DeviceProgress> byName = new HashMap<>();
+        for (FirmwareRollout.DeviceProgress device : devices)
+            byName.put(device.getLogicalName(), device);
+        return byName;
+    }
+
+    private void writeImage(String name, int pid, int version) throws IOException {
+        try (OutputStream out = new FileOutputStream(new File(directory, name))) {
+            out.write(String.format(Locale.ROOT, "VID=%04X\nPID=%04X\nVersion=%d\n", VID, pid, version).getBytes(StandardCharsets.US_ASCII));
+            out.write(new byte[]{0, 1, 2, 3});
+        }
+    }
+
+    /**
+     * Keeps every status listener it is given, to send events as a device service late to remove one would.
+     */
+    private static class ListenedScanner extends SimulatedScanner {
+        final List<EventListener> statusListeners = new CopyOnWriteArrayList<>();
+
+        ListenedScanner(SimulationConfig config) {
+            super(config);
+        }
+
+        @Override
+        public void addEventListener(EventListener listener, EventCallback.EventType type) {
+            if (type == EventCallback.EventType.StatusUpdate)
+                statusListeners.add(listener);
+            super.addEventListener(listener, type);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.datalogic.apossampleapp.scale;
+
+import com.datalogic.apossampleapp.scheduler.DeviceCommandScheduler;
+import com.datalogic.apossampleapp.simulator.SimulatedScale;
+import com.datalogic.apossampleapp.simulator.SimulationConfig;
+import com.datalogic.dlapos.commons.support.APosException;
+import com.datalogic.dlapos.commons.upos.RequestListener;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+public class WeightRequestsTest {
+    private static final long FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(16);
+    private static final RequestListener IGNORE = new RequestListener() {
+        @Override
+        public void onSuccess() {
+        }
+
+        @Override
+        public void onFailure(String failureDescription) {
+        }
+    };
+
+    private final DeviceCommandScheduler scheduler = new DeviceCommandScheduler(2);
+    // Too slow for the weight on the platter to move during a test.
+    private final SimulatedScale scale = new SimulatedScale(new SimulationConfig(0.01, 0, 0, 3));
+
+    @Before
+    public void setUp() {
+        scale.open("DL-Simulated-Scale", null);
+        scale.claim(IGNORE);
+        scale.setDeviceEnabled(true);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+        scale.close();
+    }
+
+    @Test
+    public void requestsDuringARead_shareTheNextOne() throws Exception {
+        scale.setReadDelayMillis(200);
+        scale.setSimulatedWeight(1250);
+        CountDownLatch started = new CountDownLatch(1);
+        WeightRequests requests = new WeightRequests(scheduler, "scale", timeoutMillis -> {
+            started.countDown();
+            return read(timeoutMillis);
+        });
+
+        CompletableFuture<Integer> first = requests.request(1000);
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        List<CompletableFuture<Integer>> burst = new ArrayList<>();
+        for (int i = 0; i < 50; i++)
+            burst.add(requests.request(1000));
+
+        assertEquals(1250, (int) first.get(1, TimeUnit.SECONDS));
+        for (CompletableFuture<Integer> request : burst)
+            assertEquals(1250, (int) request.get(1, TimeUnit.SECONDS));
+        assertEquals(51, requests.getRequestCount());
+        assertEquals(2, requests.getReadCount());
+    }
+
+    @Test
+    public void eachRequest_hasItsOwnDeadline() throws Exception {
+        scale.setReadDelayMillis(300);
+        scale.setSimulatedWeight(400);
+        WeightRequests requests = new WeightRequests(scheduler, "scale", this::read);
+        // Another command of the scale holds the queue, so both requests wait for the same read.
+        CountDownLatch busy = new CountDownLatch(1);
+        scheduler.submit("scale", "busy", () -> await(busy));
+
+        CompletableFuture<Integer> impatient = requests.request(50);
+        CompletableFuture<Integer> patient = requests.request(1000);
+
+        try {
+            impatient.get(200, TimeUnit.MILLISECONDS);
+            fail("The request outlived its deadline.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        busy.countDown();
+        // The read shared with the timed out request still gets the scale the time the patient one allows.
+        assertEquals(400, (int) patient.get(1, TimeUnit.SECONDS));
+        assertEquals(1, requests.getTimedOutCount());
+        assertEquals(1, requests.getReadCount());
+    }
+
+    @Test
+    public void cancelAll_endsRunningAndQueuedRequests() throws Exception {
+        scale.setReadDelayMillis(200);
+        CountDownLatch started = new CountDownLatch(1);
+        WeightRequests requests = new WeightRequests(scheduler, "scale", timeoutMillis -> {
+            started.countDown();
+            return read(timeoutMillis);
+        });
+
+        CompletableFuture<Integer> running = requests.request(1000);
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        CompletableFuture<Integer> queued = requests.request(1000);
+        requests.cancelAll();
+
+        assertTrue(running.isCancelled());
+        assertTrue(queued.isCancelled());
+        try {
+            queued.get();
+            fail();
+        } catch (CancellationException expected) {
+        }
+        Thread.sleep(400);
+        // The running read ends on its own, the queued one never starts.
+        assertEquals(1, requests.getReadCount());
+    }
+
+    @Test
+    public void cancelledRequest_givesUpItsRead() throws Exception {
+        scale.setReadDelayMillis(200);
+        CountDownLatch started = new CountDownLatch(1);
+        WeightRequests requests = new WeightRequests(scheduler, "scale", timeoutMillis -> {
+            started.countDown();
+            return read(timeoutMillis);
+        });
+
+        CompletableFuture<Integer> running = requests.request(1000);
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        CompletableFuture<Integer> kept = requests.request(1000);
+        CompletableFuture<Integer> given = requests.request(1000);
+        given.cancel(false);
+        running.get(1, TimeUnit.SECONDS);
+        kept.get(1, TimeUnit.SECONDS);
+        assertEquals(2, requests.getReadCount());
+
+        // Nobody else waits for this read, so it does not run once the command ahead of it is done.
+        CountDownLatch busy = new CountDownLatch(1);
+        scheduler.submit("scale", "busy", () -> await(busy));
+        requests.request(1000).cancel(false);
+        busy.countDown();
+        Thread.sleep(300);
+        assertEquals(2, requests.getReadCount());
+    }
+
+    @Test
+    public void slowScale_dropsNoFrames() throws Exception {
+        scale.setReadDelayMillis(300);
+        WeightRequests requests = new WeightRequests(scheduler, "scale", this::read);
+
+        // A main thread rendering 60 frames a second, with the weight button clicked every 10th frame: first
+        // reading the scale in the click listener, then through requests.
+        int blockingDrops = renderFrames(120, () -> read(1000));
+        List<CompletableFuture<Integer>> pending = new ArrayList<>();
+        int asyncDrops = renderFrames(120, () -> pending.add(requests.request(1000)));
+        for (CompletableFuture<Integer> request : pending)
+            request.get(2, TimeUnit.SECONDS);
+
+        assertTrue(blockingDrops >= 12 * 17);
+        assertEquals(0, asyncDrops);
+        assertTrue(requests.getReadCount() < requests.getRequestCount());
+    }
+
+    private int read(int timeoutMillis) {
+        int[] result = new int[3];
+        try {
+            scale.readWeight(result, timeoutMillis);
+        } catch (APosException e) {
+            throw new IllegalStateException(e);
+        }
+        return result[0];
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the number of frames missed because the work of a frame took longer than a frame.
+     */
+    private static int renderFrames(int frames, Runnable click) throws InterruptedException {
+        int dropped = 0;
+        for (int frame = 0; frame < frames; frame++) {
+            long start = System.nanoTime();
+            if (frame % 10 == 0)
+                click.run();
+            long work = System.nanoTime() - start;
+            dropped += (int) (work / FRAME_NANOS);
+            TimeUnit.NANOSECONDS.sleep(Math.max(0, FRAME_NANOS - work));
+        }
+        return dropped;
+    }
+}
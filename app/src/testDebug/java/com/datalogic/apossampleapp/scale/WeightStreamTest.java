@@ -0,0 +1,123 @@
+package com.datalogic.apossampleapp.scale;
+
+import com.datalogic.apossampleapp.scheduler.DeviceCommandScheduler;
+import com.datalogic.apossampleapp.simulator.SimulatedScale;
+import com.datalogic.apossampleapp.simulator.SimulationConfig;
+import com.datalogic.dlapos.commons.upos.RequestListener;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class WeightStreamTest {
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final RequestListener IGNORE = new RequestListener() {
+        @Override
+        public void onSuccess() {
+        }
+
+        @Override
+        public void onFailure(String failureDescription) {
+        }
+    };
+
+    @Test
+    public void smallMoves_areFilteredAndStabilityIsReported() {
+        List<LiveWeight> delivered = new ArrayList<>();
+        WeightStream stream = new WeightStream(10, 2, 100 * MS, Runnable::run, delivered::add);
+
+        stream.offer(1000, 0);
+        stream.offer(1004, 10 * MS);
+        stream.offer(1020, 20 * MS);
+        stream.offer(1021, 60 * MS);
+        stream.offer(1021, 130 * MS);
+        stream.offer(1022, 140 * MS);
+
+        assertEquals(3, delivered.size());
+        assertEquals(1000, delivered.get(0).getWeight());
+        assertFalse(delivered.get(0).isStable());
+        assertEquals(1020, delivered.get(1).getWeight());
+        assertFalse(delivered.get(1).isStable());
+        assertEquals(1021, delivered.get(2).getWeight());
+        assertTrue(delivered.get(2).isStable());
+        assertEquals(3, stream.getFilteredCount());
+
+        stream.offer(0, 150 * MS);
+        assertFalse(delivered.get(3).isStable());
+    }
+
+    @Test
+    public void slowConsumer_getsLatestWeightWithoutBlockingProducer() {
+        ArrayDeque<Runnable> mainThread = new ArrayDeque<>();
+        List<LiveWeight> delivered = new ArrayList<>();
+        WeightStream stream = new WeightStream(1, 0, Long.MAX_VALUE, mainThread::add, delivered::add);
+
+        for (int i = 1; i <= 1000; i++)
+            stream.offer(i * 10, i * MS);
+        assertEquals(1, mainThread.size());
+        mainThread.poll().run();
+
+        assertEquals(1, delivered.size());
+        assertEquals(10_000, delivered.get(0).getWeight());
+        assertEquals(999, stream.getSupersededCount());
+        assertEquals(1, stream.getDeliveredCount());
+    }
+
+    @Test
+    public void simulatedScale_weightToDisplayLatency() throws Exception {
+        final int pollMillis = 20;
+        final int changes = 40;
+        // Too slow for the weight on the platter to move but by the test.
+        SimulatedScale scale = new SimulatedScale(new SimulationConfig(0.01, 0, 0, 1));
+        scale.open("DL-Simulated-Scale", null);
+        scale.claim(IGNORE);
+        scale.setDeviceEnabled(true);
+        DeviceCommandScheduler scheduler = new DeviceCommandScheduler(2);
+        ExecutorService mainThread = Executors.newSingleThreadExecutor();
+        final long[] changedAt = new long[1];
+        final List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        WeightStream stream = new WeightStream(5, 2, 200 * MS, mainThread, weight -> {
+            synchronized (changedAt) {
+                if (weight.getWeight() == scale.getSimulatedWeight() && changedAt[0] != 0) {
+                    latencies.add(System.nanoTime() - changedAt[0]);
+                    changedAt[0] = 0;
+                }
+            }
+        });
+        LiveWeightPoller poller = new LiveWeightPoller(scheduler, "scale", () -> {
+            int[] result = new int[3];
+            scale.readWeight(result, pollMillis);
+            return result[0];
+        }, stream, null);
+
+        poller.start(pollMillis);
+        Random random = new Random(5);
+        for (int i = 0; i < changes; i++) {
+            synchronized (changedAt) {
+                scale.setSimulatedWeight(100 + random.nextInt(10_000));
+                changedAt[0] = System.nanoTime();
+            }
+            Thread.sleep(pollMillis * 3 + random.nextInt(pollMillis));
+        }
+        poller.stop();
+        mainThread.shutdown();
+        assertTrue(mainThread.awaitTermination(5, TimeUnit.SECONDS));
+        scheduler.shutdown();
+        scale.close();
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        assertTrue("Delivered " + sorted.size() + " of " + changes, sorted.size() >= changes - 2);
+        long median = sorted.get(sorted.size() / 2);
+        assertTrue(median < TimeUnit.MILLISECONDS.toNanos(pollMillis * 3));
+    }
+}
@@ -0,0 +1,128 @@
+package com.datalogic.apossampleapp.simulator;
+
+import com.datalogic.dlapos.commons.event.DataEvent;
+import com.datalogic.dlapos.commons.event.ErrorEvent;
+import com.datalogic.dlapos.commons.event.EventCallback;
+import com.datalogic.dlapos.commons.support.APosException;
+import com.datalogic.dlapos.commons.upos.RequestListener;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SimulatedDeviceTest {
+    private static final RequestListener IGNORE = new RequestListener() {
+        @Override
+        public void onSuccess() {
+        }
+
+        @Override
+        public void onFailure(String failureDescription) {
+        }
+    };
+
+    @Test
+    public void errorInjection_reportsErrorEvents() throws Exception {
+        SimulatedScanner scanner = new SimulatedScanner(new SimulationConfig(1000, 0, 0.25, 7));
+        AtomicInteger errors = new AtomicInteger();
+        AtomicInteger data = new AtomicInteger();
+        scanner.addEventListener(event -> {
+            if (event instanceof ErrorEvent)
+                errors.incrementAndGet();
+            else if (event instanceof DataEvent) {
+                data.incrementAndGet();
+                scanner.setDataEventEnabled(true);
+            }
+        }, EventCallback.EventType.Data);
+        scanner.open("DL-Simulated-Scanner", null);
+        scanner.claim(IGNORE);
+        scanner.setDataEventEnabled(true);
+        scanner.setDeviceEnabled(true);
+        Thread.sleep(500);
+        scanner.close();
+
+        double errorRatio = errors.get() / (double) (errors.get() + data.get());
+        assertEquals(errors.get(), scanner.getErrorEventCount());
+        assertTrue("Error ratio " + errorRatio, errorRatio > 0.1 && errorRatio < 0.4);
+    }
+
+    @Test
+    public void claim_canBeMadeToFail() {
+        SimulatedScale scale = new SimulatedScale(new SimulationConfig(10, 0, 0, 1));
+        final String[] failure = new String[1];
+        RequestListener listener = new RequestListener() {
+            @Override
+            public void onSuccess() {
+                failure[0] = null;
+            }
+
+            @Override
+            public void onFailure(String failureDescription) {
+                failure[0] = failureDescription;
+            }
+        };
+        scale.claim(listener);
+        assertNotNull(failure[0]);
+        scale.open("DL-Simulated-Scale", null);
+        scale.failNextClaim();
+        scale.claim(listener);
+        assertNotNull(failure[0]);
+        scale.claim(listener);
+        assertNull(failure[0]);
+    }
+
+    @Test
+    public void scale_reportsWeightsInAsyncMode() throws Exception {
+        SimulatedScale scale = new SimulatedScale(new SimulationConfig(500, 0, 0, 3));
+        AtomicInteger weights = new AtomicInteger();
+        scale.addEventListener(event -> {
+            if (event instanceof DataEvent) {
+                weights.incrementAndGet();
+                scale.setDataEventEnabled(true);
+            }
+        }, EventCallback.EventType.Data);
+        scale.open("DL-Simulated-Scale", null);
+        scale.claim(IGNORE);
+        scale.setAsyncMode(true);
+        scale.setDataEventEnabled(true);
+        scale.setDeviceEnabled(true);
+        int[] result = new int[3];
+        scale.readWeight(result, 1000);
+        Thread.sleep(200);
+
+        // One weight per read.
+        assertEquals(1, weights.get());
+        scale.readWeight(result, 1000);
+        Thread.sleep(200);
+        assertEquals(2, weights.get());
+        scale.setAsyncMode(false);
+        scale.setSimulatedWeight(1234);
+        scale.readWeight(result, 1000);
+        assertEquals(1234, result[0]);
+        scale.close();
+    }
+
+    @Test
+    public void readWeight_failsUnlessTheScaleIsEnabled() throws Exception {
+        SimulatedScale scale = new SimulatedScale(new SimulationConfig(10, 0, 0, 1));
+        assertReadFails(scale);
+        scale.open("DL-Simulated-Scale", null);
+        scale.claim(IGNORE);
+        assertReadFails(scale);
+        scale.setDeviceEnabled(true);
+        scale.readWeight(new int[3], 1000);
+        scale.setDeviceEnabled(false);
+        assertReadFails(scale);
+        scale.close();
+    }
+
+    private static void assertReadFails(SimulatedScale scale) {
+        try {
+            scale.readWeight(new int[3], 1000);
+            fail("A weight was read from a device that is not enabled.");
+        } catch (APosException expected) {
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.datalogic.apossampleapp.statistics;
+
+import com.datalogic.apossampleapp.scheduler.DeviceCommandScheduler;
+import com.datalogic.apossampleapp.simulator.SimulatedScanner;
+import com.datalogic.apossampleapp.simulator.SimulationConfig;
+import com.datalogic.dlapos.commons.upos.RequestListener;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class StatisticsCollectorTest {
+    private static final String XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<UPOSStat version=\"1.13\">\n"
+            + "  <Equipment><UnifiedPOSVersion>1.13</UnifiedPOSVersion><SerialNumber>S&amp;N-01</SerialNumber><DeviceCategory UPOS=\"Scanner\"/></Equipment>\n"
+            + "  <Parameter><Name>GoodScanCount</Name><Value>%d</Value></Parameter>\n"
+            + "  <Parameter><Name>ErrorCount</Name><Value>%d</Value></Parameter>\n"
+            + "  <Parameter><Name>FirmwareRevision</Name><Value>%s</Value></Parameter>\n"
+            + "</UPOSStat>\n";
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("statistics", ".log");
+        assertTrue(file.delete());
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void snapshot_parsesXmlAndAvalanche() {
+        StatisticsSnapshot xml = StatisticsSnapshot.parse(String.format(Locale.ROOT, XML, 12, 0, "0100"));
+        assertEquals(12, xml.getCounter("GoodScanCount", -1));
+        assertEquals(0, xml.getCounter("ErrorCount", -1));
+        assertEquals("0100", xml.get("FirmwareRevision"));
+        assertEquals("S&N-01", xml.get("SerialNumber"));
+        assertEquals("1.13", xml.get("UnifiedPOSVersion"));
+        assertNull(xml.get("DeviceCategory"));
+
+        StatisticsSnapshot avalanche = StatisticsSnapshot.parse("GoodScanCount=12\nModel=QD2430\r\nErrorCount = 3\n");
+        assertEquals(12, avalanche.getCounter("GoodScanCount", -1));
+        assertEquals(3, avalanche.getCounter("ErrorCount", -1));
+        assertEquals("QD2430", avalanche.get("Model"));
+        assertEquals(3, avalanche.size());
+    }
+
+    @Test
+    public void log_writesOnlyChanges() throws IOException {
+        try (StatisticsDeltaLog log = new StatisticsDeltaLog(file)) {
+            assertEquals(5, log.append("scanner", snapshot(10, 0, "0100"), 1));
+            assertEquals(0, log.append("scanner", snapshot(10, 0, "0100"), 2));
+            long size = log.size();
+            assertEquals(1, log.append("scanner", snapshot(15, 0, "0100"), 3));
+            assertEquals(2, log.append("scanner", snapshot(15, 1, "0200"), 4));
+            assertEquals(5, log.append("scale", snapshot(15, 1, "0200"), 5));
+            assertTrue(log.size() > size);
+            assertEquals(log.size(), file.length());
+        }
+
+        List<String> samples = new ArrayList<>();
+        StatisticsDeltaLog.replay(file, (device, time, changes) -> samples.add(device + "@" + time + " " + changes));
+        assertEquals(4, samples.size());
+        assertEquals("scanner@3 {GoodScanCount=5}", samples.get(1));
+        assertEquals("scanner@4 {ErrorCount=1, FirmwareRevision=0200}", samples.get(2));
+    }
+
+    @Test
+    public void reopening_restoresLatestValuesAndDropsTornRecord() throws IOException {
+        try (StatisticsDeltaLog log = new StatisticsDeltaLog(file)) {
+            log.append("scanner", snapshot(10, 0, "0100"), 1);
+            log.append("scanner", snapshot(25, 2, "0100"), 2);
+        }
+        long complete = file.length();
+        try (StatisticsDeltaLog log = new StatisticsDeltaLog(file)) {
+            log.append("scanner", snapshot(40, 3, "0300"), 3);
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 2);
+        }
+
+        try (StatisticsDeltaLog log = new StatisticsDeltaLog(file)) {
+            assertEquals(complete, file.length());
+            StatisticsSnapshot latest = log.latest("scanner");
+            assertEquals(25, latest.getCounter("GoodScanCount", -1));
+            assertEquals(2, latest.getCounter("ErrorCount", -1));
+            assertEquals("0100", latest.get("FirmwareRevision"));
+            assertNull(log.latest("scale"));
+            // Unchanged values are still recognised after the restart.
+            assertEquals(0, log.append("scanner", snapshot(25, 2, "0100"), 4));
+            assertEquals(1, log.append("scanner", snapshot(26, 2, "0100"), 5));
+        }
+        try (StatisticsDeltaLog log = new StatisticsDeltaLog(file)) {
+            assertEquals(26, log.latest("scanner").getCounter("GoodScanCount", -1));
+        }
+    }
+
+    @Test
+    public void log_isSmallerThanFullSnapshots() throws IOException {
+        final int polls = 1440;
+        long full = 0;
+        Random random = new Random(1);
+        long scans = 0;
+        long errors = 0;
+        try (StatisticsDeltaLog log = new StatisticsDeltaLog(file)) {
+            for (int i = 0; i < polls; i++) {
+                if (random.nextInt(4) != 0)
+                    scans += random.nextInt(500);
+                if (random.nextInt(50) == 0)
+                    errors++;
+                String statistics = String.format(Locale.ROOT, XML, scans, errors, "0100");
+                full += statistics.getBytes(StandardCharsets.UTF_8).length;
+                log.append("scanner", StatisticsSnapshot.parse(statistics), i * 60_000L);
+            }
+            assertTrue(log.size() * 10 < full);
+        }
+    }
+
+    @Test
+    public void log_rotatesPastItsMaximumSizeAndKeepsTheLatestValues() throws IOException {
+        File previous;
+        try (StatisticsDeltaLog log = new StatisticsDeltaLog(file, 512)) {
+            previous = log.getPreviousFile();
+            for (int i = 1; i <= 200; i++)
+                log.append("scanner", snapshot(i * 10, i / 50, "0100"), i);
+            assertTrue(previous.exists());
+            assertTrue(log.size() <= 512);
+            assertEquals(log.size(), file.length());
+            assertEquals(2000, log.latest("scanner").getCounter("GoodScanCount", -1));
+        }
+        try (StatisticsDeltaLog log = new StatisticsDeltaLog(file, 512)) {
+            StatisticsSnapshot latest = log.latest("scanner");
+            assertEquals(2000, latest.getCounter("GoodScanCount", -1));
+            assertEquals(4, latest.getCounter("ErrorCount", -1));
+            assertEquals("0100", latest.get("FirmwareRevision"));
+        } finally {
+            previous.delete();
+        }
+    }
+
+    @Test
+    public void failedWrite_leavesTheLatestValuesUnchanged() throws IOException {
+        StatisticsDeltaLog log = new StatisticsDeltaLog(file);
+        log.append("scanner", snapshot(10, 0, "0100"), 1);
+        long size = log.size();
+        log.close();
+        try {
+            log.append("scanner", snapshot(20, 1, "0200"), 2);
+            fail("The log is closed.");
+        } catch (IOException expected) {
+            assertEquals(10, log.latest("scanner").getCounter("GoodScanCount", -1));
+            assertEquals("0100", log.latest("scanner").get("FirmwareRevision"));
+            assertEquals(size, log.size());
+        }
+        try (StatisticsDeltaLog reopened = new StatisticsDeltaLog(file)) {
+            assertEquals(10, reopened.latest("scanner").getCounter("GoodScanCount", -1));
+        }
+    }
+
+    @Test
+    public void delays_stayWithinTheJitter() {
+        StatisticsCollector collector = new StatisticsCollector(new DeviceCommandScheduler(1), null, 1000, 0.25, new Random(3));
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        for (int i = 0; i < 10_000; i++) {
+            long delay = collector.nextDelayMillis();
+            min = Math.min(min, delay);
+            max = Math.max(max, delay);
+        }
+        collector.stop();
+        assertTrue("Shortest delay " + min, min >= 750 && min < 760);
+        assertTrue("Longest delay " + max, max <= 1250 && max > 1240);
+    }
+
+    @Test
+    public void collector_pollsRegisteredDevices() throws Exception {
+        SimulatedScanner scanner = new SimulatedScanner(new SimulationConfig(10, 0, 0, 5));
+        scanner.open("DL-Simulated-Scanner", null);
+        scanner.claim(new RequestListener() {
+            @Override
+            public void onSuccess() {
+            }
+
+            @Override
+            public void onFailure(String failureDescription) {
+            }
+        });
+        DeviceCommandScheduler scheduler = new DeviceCommandScheduler(2);
+        StatisticsDeltaLog log = new StatisticsDeltaLog(file);
+        StatisticsCollector collector = new StatisticsCollector(scheduler, log, 20, 0.5, new Random(9));
+        collector.add("DL-Simulated-Scanner", () -> {
+            String[] statistics = new String[2];
+            scanner.retrieveStatistics(statistics);
+            return statistics[0];
+        });
+        collector.add("broken", () -> {
+            throw new IOException("Unplugged");
+        });
+        long deadline = System.currentTimeMillis() + 5_000;
+        while ((collector.getPollCount() < 5 || collector.getFailureCount() < 5) && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        collector.remove("broken");
+        assertFalse(collector.contains("broken"));
+        assertTrue(collector.contains("DL-Simulated-Scanner"));
+        collector.stop();
+        scheduler.shutdown();
+        scanner.close();
+
+        assertTrue(collector.getPollCount() >= 5);
+        assertTrue(collector.getFailureCount() >= 5);
+        assertEquals(0, log.latest("DL-Simulated-Scanner").getCounter("GoodScanCount", -1));
+        assertNull(log.latest("broken"));
+        log.close();
+    }
+
+    private static StatisticsSnapshot snapshot(long scans, long errors, String firmware) {
+        return StatisticsSnapshot.parse(String.format(Locale.ROOT, XML, scans, errors, firmware));
+    }
+}
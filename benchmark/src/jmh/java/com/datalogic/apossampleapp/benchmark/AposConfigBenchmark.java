@@ -0,0 +1,112 @@
+package com.datalogic.apossampleapp.benchmark;
+
+import com.datalogic.apossampleapp.config.AposConfigLoader;
+import com.datalogic.apossampleapp.config.AposEntry;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse time of a large apos.json: streaming loader against a full tree parse.
+ * <p>
+ * {@link #fullTree()} stands for the DLAPosConfigHelper.initialize path, which needs Android: it parses the
+ * whole document with org.json and builds a property map per entry, without the database inserts.
+ * The heap retained by each approach is printed once per fork; run with {@code -prof gc} for the
+ * allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AposConfigBenchmark {
+    @Param({"5000"})
+    public int entries;
+
+    @Param({"40"})
+    public int propertiesPerEntry;
+
+    // Keeps the parse result reachable while its heap is measured.
+    private static volatile Object result;
+
+    private String config;
+    private List<String> opened;
+
+    @Setup
+    public void setUp() throws Exception {
+        config = Fixtures.fleetConfig(entries, propertiesPerEntry);
+        // A lane: a few devices spread over the file.
+        opened = Arrays.asList(Fixtures.logicalName(0), Fixtures.logicalName(entries / 2), Fixtures.logicalName(entries - 1));
+        System.out.println();
+        System.out.println("apos.json of " + config.length() / 1024 + " KiB, retained heap: full tree "
+                + retainedBytes(this::fullTree) / 1024 + " KiB, all entries streamed "
+                + retainedBytes(this::streamAllEntries) / 1024 + " KiB, opened entries streamed "
+                + retainedBytes(this::streamOpenedEntries) / 1024 + " KiB, logical names "
+                + retainedBytes(this::logicalNames) / 1024 + " KiB");
+    }
+
+    @Benchmark
+    public Map<String, AposEntry> streamOpenedEntries() throws IOException {
+        return new AposConfigLoader().load(new StringReader(config), opened);
+    }
+
+    @Benchmark
+    public Map<String, AposEntry> streamAllEntries() throws IOException {
+        return new AposConfigLoader().load(new StringReader(config), (List<String>) null);
+    }
+
+    @Benchmark
+    public List<String> logicalNames() throws IOException {
+        return new AposConfigLoader().readLogicalNames(new StringReader(config));
+    }
+
+    @Benchmark
+    public Map<String, Map<String, String>> fullTree() throws JSONException {
+        Map<String, Map<String, String>> profiles = new HashMap<>();
+        JSONArray aPosEntries = new JSONObject(config).getJSONArray("aPosEntries");
+        for (int i = 0; i < aPosEntries.length(); i++) {
+            JSONObject entry = aPosEntries.getJSONObject(i);
+            Map<String, String> properties = new HashMap<>();
+            JSONArray propertyArray = entry.getJSONArray("properties");
+            for (int j = 0; j < propertyArray.length(); j++) {
+                JSONObject property = propertyArray.getJSONObject(j);
+                properties.put(property.getString("name"), property.getString("value"));
+            }
+            profiles.put(entry.getString("logicalName"), properties);
+        }
+        return profiles;
+    }
+
+    private static long retainedBytes(Callable<Object> parse) throws Exception {
+        Runtime runtime = Runtime.getRuntime();
+        result = parse.call();
+        collectGarbage();
+        long withResult = runtime.totalMemory() - runtime.freeMemory();
+        result = null;
+        collectGarbage();
+        return Math.max(0, withResult - (runtime.totalMemory() - runtime.freeMemory()));
+    }
+
+    private static void collectGarbage() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+    }
+}
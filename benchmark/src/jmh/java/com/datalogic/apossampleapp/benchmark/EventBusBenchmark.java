@@ -0,0 +1,55 @@
+package com.datalogic.apossampleapp.benchmark;
+
+import com.datalogic.apossampleapp.events.EventBus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Events per millisecond a device callback thread publishes to 1 to 16 subscribers. With DROP_OLDEST the publisher
+ * never waits and the subscribers lose what they cannot keep up with; with BLOCK every event reaches every
+ * subscriber, so this is the delivered throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EventBusBenchmark {
+    private static final int DATA = 0;
+
+    @Param({"1", "2", "4", "8", "16"})
+    public int subscribers;
+
+    @Param({"DROP_OLDEST", "BLOCK"})
+    public EventBus.OverflowPolicy policy;
+
+    private EventBus<Object> bus;
+    private final AtomicLong delivered = new AtomicLong();
+    private final Object event = new Object();
+
+    @Setup
+    public void setUp() {
+        bus = new EventBus<>(null);
+        for (int i = 0; i < subscribers; i++)
+            bus.subscribe(1 << DATA, 1024, policy, null, e -> delivered.incrementAndGet());
+    }
+
+    @TearDown
+    public void tearDown() {
+        bus.clear();
+    }
+
+    @Benchmark
+    public void publish() {
+        bus.publish(DATA, event);
+    }
+}
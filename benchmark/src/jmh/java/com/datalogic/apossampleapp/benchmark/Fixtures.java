@@ -0,0 +1,60 @@
+package com.datalogic.apossampleapp.benchmark;
+
+/**
+ * Inputs shaped like those of the devices and of the shipped configuration.
+ */
+final class Fixtures {
+    private static final String[] PROPERTY_NAMES = {
+            "beepDuration", "beepFrequency", "beepVolume", "canAcceptStatisticsCmd", "canCompareFirmwareVersion",
+            "canNotifyPowerChange", "canUpdateFirmware", "deviceBus", "itfRange", "motorTimeout"};
+
+    private Fixtures() {
+    }
+
+    /**
+     * @return an apos.json with the given number of scanner entries, shaped like the shipped one.
+     */
+    static String fleetConfig(int entries, int propertiesPerEntry) {
+        StringBuilder json = new StringBuilder(entries * propertiesPerEntry * 90);
+        json.append("{\n  \"version\": \"1.0\",\n  \"aPosEntries\": [\n");
+        for (int i = 0; i < entries; i++) {
+            if (i > 0)
+                json.append(",\n");
+            json.append("    {\n      \"logicalName\": \"").append(logicalName(i)).append("\",\n")
+                    .append("      \"creation\": {\"factoryClass\": \"com.datalogic.dlapos.androidpos.service.DLSScannerInstanceServiceFactory\",")
+                    .append(" \"serviceClass\": \"com.datalogic.dlapos.androidpos.service.DLSScannerService\"},\n")
+                    .append("      \"vendor\": {\"name\": \"DLA\", \"url\": \"http://www.adc.datalogic.com\"},\n")
+                    .append("      \"apos\": {\"category\": \"Scanner\", \"version\": \"1.13\"},\n")
+                    .append("      \"properties\": [");
+            for (int j = 0; j < propertiesPerEntry; j++) {
+                if (j > 0)
+                    json.append(',');
+                String name = PROPERTY_NAMES[j % PROPERTY_NAMES.length] + (j < PROPERTY_NAMES.length ? "" : j);
+                String value = j % 3 == 0 ? "True" : j % 3 == 1 ? Integer.toString((i + j) % 50) : "USB-OEM";
+                json.append("\n        {\"name\": \"").append(name).append("\", \"type\": \"String\", \"value\": \"")
+                        .append(value).append("\"}");
+            }
+            json.append("\n      ]\n    }");
+        }
+        json.append("\n  ]\n}\n");
+        return json.toString();
+    }
+
+    /**
+     * @return UPOS statistics XML of about the given length.
+     */
+    static String statistics(int length) {
+        StringBuilder xml = new StringBuilder(length + 256);
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<UPOSStat version=\"1.13.0\">\n");
+        for (int i = 0; xml.length() < length; i++) {
+            xml.append("  <Parameter><Name>HoursPoweredCount").append(i % 997).append("</Name><Value>")
+                    .append(i * 31L).append("</Value></Parameter>\n");
+        }
+        xml.append("</UPOSStat>\n");
+        return xml.toString();
+    }
+
+    static String logicalName(int index) {
+        return "DL-Fleet-Scanner-" + index;
+    }
+}
@@ -0,0 +1,110 @@
+package com.datalogic.apossampleapp.benchmark;
+
+import com.datalogic.apossampleapp.scan.Item;
+import com.datalogic.apossampleapp.scan.ItemIndex;
+import com.datalogic.apossampleapp.scan.ItemLookup;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractCollection;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of resolving a barcode to its item: cold, every scan is of an item the cache does not hold, and warm,
+ * scans go round a thousand items the cache holds. See the p0.99 lines of the sample time results.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ItemLookupBenchmark {
+    private static final int CACHE_SIZE = 4096;
+    private static final int HOT_ITEMS = 1024;
+    private static final int COLD_ITEMS = 65536;
+
+    @Param({"100000", "5000000"})
+    public int items;
+
+    private File file;
+    private ItemLookup cold;
+    private ItemLookup warm;
+    private byte[][] scanned;
+    private byte[][] hot;
+    private int index;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("items", ".idx");
+        // Generated as they are written, so the catalog is never on the heap as a whole.
+        ItemIndex.build(file, new AbstractCollection<Item>() {
+            @Override
+            public Iterator<Item> iterator() {
+                return new Iterator<Item>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < items;
+                    }
+
+                    @Override
+                    public Item next() {
+                        int item = next++;
+                        return new Item(barcode(item), "Item " + item, 100 + item % 10_000);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return items;
+            }
+        });
+        ItemIndex index = new ItemIndex(file);
+        cold = new ItemLookup(index, CACHE_SIZE);
+        warm = new ItemLookup(index, CACHE_SIZE);
+        Random random = new Random(42);
+        scanned = new byte[COLD_ITEMS][];
+        for (int i = 0; i < COLD_ITEMS; i++)
+            scanned[i] = barcode(random.nextInt(items)).getBytes(StandardCharsets.US_ASCII);
+        hot = new byte[HOT_ITEMS][];
+        for (int i = 0; i < HOT_ITEMS; i++) {
+            hot[i] = barcode(random.nextInt(items)).getBytes(StandardCharsets.US_ASCII);
+            warm.lookup(hot[i], 0, hot[i].length);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public Item coldLookup() {
+        // Going round many more items than the cache holds, the item has always left it.
+        byte[] barcode = scanned[index++ & (COLD_ITEMS - 1)];
+        return cold.lookup(barcode, 0, barcode.length);
+    }
+
+    @Benchmark
+    public Item warmLookup() {
+        byte[] barcode = hot[index++ & (HOT_ITEMS - 1)];
+        return warm.lookup(barcode, 0, barcode.length);
+    }
+
+    private static String barcode(int item) {
+        return String.format("%013d", 8001234000000L + item * 7919L);
+    }
+}
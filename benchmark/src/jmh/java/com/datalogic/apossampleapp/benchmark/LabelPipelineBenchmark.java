@@ -0,0 +1,78 @@
+package com.datalogic.apossampleapp.benchmark;
+
+import com.datalogic.apossampleapp.scan.LabelPipeline;
+import com.datalogic.apossampleapp.scan.LabelStage;
+import com.datalogic.apossampleapp.scan.LabelStages;
+import com.datalogic.apossampleapp.scan.ScanPipeline;
+import com.datalogic.apossampleapp.scan.ScanRecord;
+import com.datalogic.apossampleapp.scan.ScanRecordPool;
+import com.datalogic.apossampleapp.scan.Symbologies;
+import com.datalogic.dlapos.commons.constant.ScannerConstants;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost per scan of the label post-processing stages, on a mix of UPC-E, EAN-13 and GS1-128 labels.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LabelPipelineBenchmark {
+    /**
+     * 0 is the scan path without post-processing.
+     */
+    @Param({"0", "1", "5", "10"})
+    public int stages;
+
+    private byte[][] labels;
+    private int[] types;
+    private int index;
+    private ScanPipeline pipeline;
+
+    @Setup
+    public void setUp() {
+        labels = new byte[][]{
+                "@04252614\r".getBytes(StandardCharsets.US_ASCII),
+                "@4006381333931\r".getBytes(StandardCharsets.US_ASCII),
+                "@]C101095011015300031714070410AB-123\u001d3103000150\r".getBytes(StandardCharsets.US_ASCII)};
+        types = new int[]{ScannerConstants.SCAN_SDT_UPCE, ScannerConstants.SCAN_SDT_EAN13, ScannerConstants.SCAN_SDT_EAN128};
+        LabelStage[] available = {
+                LabelStages.stripPrefix("@".getBytes(StandardCharsets.US_ASCII)),
+                LabelStages.stripSuffix("\r".getBytes(StandardCharsets.US_ASCII)),
+                LabelStages.expandUpcE(),
+                LabelStages.gs1(),
+                LabelStages.checkDigit(),
+                LabelStages.stripPrefix("#".getBytes(StandardCharsets.US_ASCII)),
+                LabelStages.stripSuffix("\n".getBytes(StandardCharsets.US_ASCII)),
+                LabelStages.stripPrefix("]E0".getBytes(StandardCharsets.US_ASCII)),
+                LabelStages.stripSuffix("\t".getBytes(StandardCharsets.US_ASCII)),
+                LabelStages.stripPrefix("$".getBytes(StandardCharsets.US_ASCII))};
+        List<LabelStage> selected = new ArrayList<>();
+        for (int i = 0; i < stages; i++)
+            selected.add(available[i]);
+        pipeline = new ScanPipeline(Symbologies.STANDARD, new ScanRecordPool(16, 64));
+        if (stages > 0)
+            pipeline.setLabelPipeline(new LabelPipeline(selected));
+    }
+
+    @Benchmark
+    public int scan() {
+        int i = index++ % labels.length;
+        ScanRecord record = pipeline.process(labels[i], labels[i].length, types[i]);
+        int result = record.getLabelLength() + record.getElementCount();
+        record.recycle();
+        return result;
+    }
+}
@@ -0,0 +1,83 @@
+package com.datalogic.apossampleapp.benchmark;
+
+import com.datalogic.apossampleapp.scheduler.DeviceCommand;
+import com.datalogic.apossampleapp.scheduler.DeviceCommandScheduler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the device lane of {@link DeviceCommandScheduler} for an open, claim, enable, disable, release, close
+ * cycle, one command per step with claim on the blocking executor as DeviceManager queues them, against a fake
+ * control that answers immediately. DeviceManager itself is left out because it needs the Android classes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LifecycleBenchmark {
+    private static final String LOGICAL_NAME = "DL-Fake-Scanner";
+
+    private DeviceCommandScheduler scheduler;
+    private FakeControl control;
+
+    @Setup
+    public void setUp() {
+        scheduler = new DeviceCommandScheduler(2);
+        control = new FakeControl();
+    }
+
+    @TearDown
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Benchmark
+    public boolean cycle() throws InterruptedException {
+        scheduler.submit(LOGICAL_NAME, "open", () -> control.open(LOGICAL_NAME));
+        scheduler.submitBlocking(LOGICAL_NAME, "claim", control::claim);
+        scheduler.submit(LOGICAL_NAME, "enable", () -> control.setDeviceEnabled(true));
+        scheduler.submit(LOGICAL_NAME, "disable", () -> control.setDeviceEnabled(false));
+        scheduler.submit(LOGICAL_NAME, "release", control::release);
+        DeviceCommand close = scheduler.submit(LOGICAL_NAME, "close", control::close);
+        return close.await(1, TimeUnit.SECONDS) && control.state == FakeControl.CLOSED;
+    }
+
+    static final class FakeControl {
+        static final int CLOSED = 0;
+        static final int OPENED = 1;
+        static final int CLAIMED = 2;
+        static final int ENABLED = 3;
+
+        volatile int state = CLOSED;
+        volatile String logicalName;
+
+        void open(String logicalName) {
+            this.logicalName = logicalName;
+            state = OPENED;
+        }
+
+        void claim() {
+            state = CLAIMED;
+        }
+
+        void setDeviceEnabled(boolean enabled) {
+            state = enabled ? ENABLED : CLAIMED;
+        }
+
+        void release() {
+            state = OPENED;
+        }
+
+        void close() {
+            state = CLOSED;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.datalogic.apossampleapp.benchmark;
+
+import com.datalogic.apossampleapp.profiles.ProfileIdCache;
+import com.datalogic.apossampleapp.profiles.ProfileIdIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * First paint of the profile spinner for a fleet configuration: the rows of the first screen, from the profile
+ * cache as a whole list against paged into an index, and the cost of a vendor and model search in each.
+ * <p>
+ * {@link #firstPaintPaged()} stops reading at the first page, where the screen gets it while the rest is read in
+ * the background.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProfileIdBenchmark {
+    private static final String[] MODELS = {"DL-PowerScan-PD9530-", "DL-Magellan-9800i-", "DL-Gryphon-GD4500-",
+            "DL-QuickScan-QD2590-", "DL-PowerScan-PM9500-"};
+    private static final String SEARCH = "DL-PowerScan-";
+    private static final int FIRST_PAGE = 64;
+    private static final int ROWS = 20;
+
+    @Param({"10000"})
+    public int profiles;
+
+    private File file;
+    private ProfileIdCache cache;
+    private String hash;
+    private List<String> list;
+    private ProfileIdIndex index;
+
+    private static final class Painted extends RuntimeException {
+        private final List<String> rows;
+
+        private Painted(List<String> rows) {
+            super(null, null, false, false);
+            this.rows = rows;
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < profiles; i++)
+            ids.add(MODELS[i % MODELS.length] + i);
+        file = File.createTempFile("profile_ids", null);
+        cache = new ProfileIdCache(file);
+        hash = "fleet";
+        cache.write(hash, ids);
+        list = cache.read(hash);
+        index = cache.read(hash, FIRST_PAGE, null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public List<String> firstPaintList() throws IOException {
+        return new ArrayList<>(cache.read(hash).subList(0, ROWS));
+    }
+
+    @Benchmark
+    public List<String> firstPaintPaged() throws IOException {
+        try {
+            cache.read(hash, FIRST_PAGE, page -> {
+                List<String> rows = new ArrayList<>(ROWS);
+                for (int i = 0; i < ROWS; i++)
+                    rows.add(page.get(i));
+                throw new Painted(rows);
+            });
+        } catch (Painted painted) {
+            return painted.rows;
+        }
+        throw new IllegalStateException("No first page.");
+    }
+
+    @Benchmark
+    public ProfileIdIndex loadIndex() throws IOException {
+        return cache.read(hash, FIRST_PAGE, null);
+    }
+
+    @Benchmark
+    public int searchList() {
+        int found = 0;
+        for (String id : list) {
+            if (id.regionMatches(true, 0, SEARCH, 0, SEARCH.length()))
+                found++;
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int searchIndex() {
+        return index.startingWith(SEARCH).size();
+    }
+}
@@ -0,0 +1,102 @@
+package com.datalogic.apossampleapp.benchmark;
+
+import com.datalogic.apossampleapp.scan.DuplicateFilter;
+import com.datalogic.apossampleapp.scan.ScanBatcher;
+import com.datalogic.apossampleapp.scan.ScanPipeline;
+import com.datalogic.apossampleapp.scan.ScanPublisher;
+import com.datalogic.apossampleapp.scan.ScanRecord;
+import com.datalogic.apossampleapp.scan.ScanRecordPool;
+import com.datalogic.apossampleapp.scan.Symbologies;
+import com.datalogic.dlapos.commons.constant.ScannerConstants;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the work done by ExampleViewModel.onEvent for scanner data events: the {@link ScanPublisher} of
+ * scans. The weight formatting of scale data events is measured by WeightFormatBenchmark.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ScanEventBenchmark {
+    private byte[][] labels;
+    private byte[][] items;
+    private int index;
+    private ScanPublisher publisher;
+    private ScanPublisher deduplicatingPublisher;
+    private long delivered;
+    private Runnable pendingFlush;
+
+    @Setup
+    public void setUp() {
+        labels = new byte[256][];
+        for (int i = 0; i < labels.length; i++)
+            labels[i] = String.format("%013d", 8001234000000L + i * 7919L).getBytes(StandardCharsets.US_ASCII);
+        // The benchmark thread stands in for the main looper and runs the flush every 256 scans.
+        ScanBatcher batcher = new ScanBatcher(1024, 256, 16, (task, delay) -> pendingFlush = task, batch -> {
+            delivered += batch.size();
+            for (ScanRecord record : batch)
+                record.recycle();
+        });
+        publisher = new ScanPublisher(new ScanPipeline(Symbologies.STANDARD, new ScanRecordPool(1024, 32)), batcher,
+                e -> {
+                    throw new IllegalStateException(e);
+                });
+        // Enough items for each one to leave the window before it comes back.
+        items = new byte[65536][];
+        for (int i = 0; i < items.length; i++)
+            items[i] = String.format("%013d", 8001234000000L + i * 7919L).getBytes(StandardCharsets.US_ASCII);
+        ScanPipeline deduplicatingPipeline = new ScanPipeline(Symbologies.STANDARD, new ScanRecordPool(1024, 32));
+        deduplicatingPipeline.setDuplicateFilter(new DuplicateFilter(5, 1024));
+        deduplicatingPublisher = new ScanPublisher(deduplicatingPipeline, batcher, e -> {
+            throw new IllegalStateException(e);
+        });
+    }
+
+    private void flushEvery256Scans() {
+        if ((index & 255) == 0 && pendingFlush != null) {
+            Runnable flush = pendingFlush;
+            pendingFlush = null;
+            flush.run();
+        }
+    }
+
+    @Benchmark
+    public long scannerDataEvent() {
+        byte[] label = labels[index++ & 255];
+        publisher.publish(label, label.length, ScannerConstants.SCAN_SDT_EAN13);
+        flushEvery256Scans();
+        return delivered;
+    }
+
+    /**
+     * The scanner path of a three-plane scanner, which reads every item three times, with the duplicates dropped.
+     */
+    @Benchmark
+    public long scannerDataEventDeduplicated() {
+        byte[] label = items[(index++ / 3) & 65535];
+        deduplicatingPublisher.publish(label, label.length, ScannerConstants.SCAN_SDT_EAN13);
+        flushEvery256Scans();
+        return delivered;
+    }
+
+    /**
+     * The scanner path before pooled records: a new string for the label and the symbology.
+     */
+    @Benchmark
+    public int scannerDataEventStrings() {
+        byte[] label = labels[index++ & 255];
+        String content = new String(label, StandardCharsets.UTF_8);
+        String symbology = "" + ScannerConstants.SCAN_SDT_EAN13;
+        return content.length() + symbology.length();
+    }
+}
@@ -0,0 +1,75 @@
+package com.datalogic.apossampleapp.benchmark;
+
+import com.datalogic.apossampleapp.scan.ScanJournal;
+import com.datalogic.apossampleapp.scan.ScanPipeline;
+import com.datalogic.apossampleapp.scan.ScanRecord;
+import com.datalogic.apossampleapp.scan.ScanRecordPool;
+import com.datalogic.apossampleapp.scan.Symbologies;
+import com.datalogic.dlapos.commons.constant.ScannerConstants;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a scanner data event with and without its scan appended to the journal; the p0.99 line of the sample
+ * time results is the one the journal must keep under 50 us.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ScanJournalBenchmark {
+    private byte[][] labels;
+    private int index;
+    private ScanPipeline pipeline;
+    private File file;
+    private ScanJournal journal;
+
+    @Setup
+    public void setUp() throws IOException {
+        labels = new byte[256][];
+        for (int i = 0; i < labels.length; i++)
+            labels[i] = String.format("%013d", 8001234000000L + i * 7919L).getBytes(StandardCharsets.US_ASCII);
+        pipeline = new ScanPipeline(Symbologies.STANDARD, new ScanRecordPool(1024, 32));
+        file = File.createTempFile("scans", ".journal");
+        // The settings of ExampleViewModel.
+        journal = new ScanJournal(file, 1 << 20, 20);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        journal.close();
+        file.delete();
+    }
+
+    @Benchmark
+    public long scannerDataEvent() {
+        byte[] label = labels[index++ & 255];
+        ScanRecord record = pipeline.process(label, label.length, ScannerConstants.SCAN_SDT_EAN13);
+        int length = record.getLabelLength();
+        record.recycle();
+        return length;
+    }
+
+    @Benchmark
+    public long scannerDataEventJournaled() throws IOException {
+        byte[] label = labels[index++ & 255];
+        ScanRecord record = pipeline.process(label, label.length, ScannerConstants.SCAN_SDT_EAN13);
+        long sequence = journal.append(record, System.currentTimeMillis());
+        record.recycle();
+        // The screen acknowledges the scans a batch at a time.
+        if ((index & 255) == 0)
+            journal.acknowledge(sequence);
+        return sequence;
+    }
+}
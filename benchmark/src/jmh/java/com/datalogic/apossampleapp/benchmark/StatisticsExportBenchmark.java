@@ -0,0 +1,95 @@
+package com.datalogic.apossampleapp.benchmark;
+
+import com.datalogic.apossampleapp.statistics.StatisticsExporter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saving large statistics payloads: the former getBytes and ByteArrayInputStream copy against the
+ * streaming exporter, plain, gzipped and to a file channel. Run with {@code -prof gc} to compare allocations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StatisticsExportBenchmark {
+    @Param({"1048576", "16777216"})
+    public int length;
+
+    private String statistics;
+    private final StatisticsExporter plain = new StatisticsExporter(false);
+    private final StatisticsExporter gzip = new StatisticsExporter(true);
+    private final CountingOutputStream sink = new CountingOutputStream();
+    private File file;
+    private FileChannel channel;
+
+    @Setup
+    public void setUp() throws IOException {
+        statistics = Fixtures.statistics(length);
+        file = File.createTempFile("statistics", ".xml");
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        channel.close();
+        file.delete();
+    }
+
+    @Benchmark
+    public long copyThroughByteArray() throws IOException {
+        InputStream is = new ByteArrayInputStream(statistics.getBytes());
+        byte[] buf = new byte[8192];
+        int length;
+        while ((length = is.read(buf)) > 0)
+            sink.write(buf, 0, length);
+        sink.flush();
+        return sink.count;
+    }
+
+    @Benchmark
+    public long stream() throws IOException {
+        return plain.export(statistics, sink);
+    }
+
+    @Benchmark
+    public long streamGzip() throws IOException {
+        return gzip.export(statistics, sink);
+    }
+
+    @Benchmark
+    public long fileChannel() throws IOException {
+        channel.position(0);
+        return plain.export(statistics, channel);
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
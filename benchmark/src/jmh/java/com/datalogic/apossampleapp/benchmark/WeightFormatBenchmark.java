@@ -0,0 +1,39 @@
+package com.datalogic.apossampleapp.benchmark;
+
+import com.datalogic.apossampleapp.scale.WeightFormat;
+import com.datalogic.apossampleapp.scale.WeightUnits;
+import com.datalogic.dlapos.commons.constant.ScaleConstants;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of formatWeight and of the weight unit resolution.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WeightFormatBenchmark {
+    private static final int[] UNITS = {ScaleConstants.SCAL_WU_GRAM, ScaleConstants.SCAL_WU_KILOGRAM,
+            ScaleConstants.SCAL_WU_OUNCE, ScaleConstants.SCAL_WU_POUND};
+
+    private final WeightFormat weightFormat = WeightUnits.STANDARD;
+    private int weight = 1234;
+    private int unit;
+
+    @Benchmark
+    public double formatWeight() {
+        return weightFormat.toUnits(weight++);
+    }
+
+    @Benchmark
+    public String weightUnit() {
+        return weightFormat.unitName(UNITS[unit++ & 3]);
+    }
+}